@@ -1,7 +1,12 @@
 package cli;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -9,12 +14,27 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FilenameUtils;
+import geometries.AgglomerativeHierarchyBuilder;
+import geometries.CachedHierarchyBuilder;
+import geometries.CompressedHierarchy;
+import geometries.FlatHierarchy;
+import geometries.GeometryPages;
+import geometries.HierarchyBuilder;
+import geometries.Intersectible;
+import geometries.MortonHierarchyBuilder;
+import geometries.OffHeapHierarchy;
+import geometries.SahHierarchyBuilder;
+import geometries.SpatialSplitHierarchyBuilder;
+import geometries.TraversalStatistics;
+import geometries.UniformGrid;
+import geometries.WideHierarchy;
 import rendering.Renderer;
 import rendering.raytracing.PhongRayTracer;
 import rendering.raytracing.RayTracer;
 import scene.Scene;
 import xml.XmlParserException;
 import xml.XmlSceneParser;
+import static java.util.Map.entry;
 
 /**
  * A command line interface for the ray tracer.
@@ -28,6 +48,122 @@ public class Main {
 	private static final int THREADS_DEFAULT = 3;
 	private static final int RECURSION_DEFAULT = 4;
 	private static final double MIN_COEFFICIENT_DEFAULT = 0.01;
+	private static final String BUILDER_DEFAULT = "sah";
+	private static final String ACCELERATOR_DEFAULT = "bvh";
+	private static final long MEMORY_DEFAULT = 1024;
+
+	/**
+	 * Builds the acceleration structure which the rays of a scene are traced against.
+	 */
+	@FunctionalInterface
+	private interface Accelerator {
+		/**
+		 * Build the acceleration structure for the geometries of a scene.
+		 *
+		 * @param scene   The {@link Scene}.
+		 * @param builder The {@link HierarchyBuilder} to optimize the geometries with.
+		 * @param options The options given on the command line.
+		 * @return The acceleration structure.
+		 */
+		Intersectible build(Scene scene, HierarchyBuilder builder, AcceleratorOptions options);
+
+		/**
+		 * Determines whether the acceleration structure includes the {@link Scene#meshes} which were left in their
+		 * files, so that the meshes need not be loaded into the geometries of the scene.
+		 *
+		 * @return true if the meshes are streamed into the acceleration structure.
+		 */
+		default boolean streamsMeshes() {
+			return false;
+		}
+	}
+
+	/**
+	 * Builds an {@link OffHeapHierarchy} in a temporary file, streaming the meshes of the scene into it from their
+	 * files.
+	 */
+	private static class PagedAccelerator implements Accelerator {
+		@Override
+		public Intersectible build(Scene scene, HierarchyBuilder builder, AcceleratorOptions options) {
+			scene.geometries.optimize(builder, scene.camera().position());
+			GeometryPages pages;
+			try {
+				pages = new GeometryPages(options.pageBudget);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			Intersectible hierarchy;
+			try {
+				hierarchy = OffHeapHierarchy.stream(scene.geometries, scene.meshes, pages);
+			} catch (IOException e) {
+				UncheckedIOException error = new UncheckedIOException(e);
+				close(pages, error);
+				throw error;
+			} catch (RuntimeException e) {
+				close(pages, e);
+				throw e;
+			}
+			scene.geometries.clear();
+			return hierarchy;
+		}
+
+		@Override
+		public boolean streamsMeshes() {
+			return true;
+		}
+	}
+
+	/**
+	 * The options given on the command line which the accelerators depend on.
+	 */
+	private static class AcceleratorOptions {
+		/** The number of bytes of pages of geometry the paged accelerator maps at once. */
+		final long pageBudget;
+		/** Whether the wide accelerator is intersected with the Vector API, if it is available. */
+		final boolean vector;
+
+		AcceleratorOptions(long pageBudget, boolean vector) {
+			this.pageBudget = pageBudget;
+			this.vector = vector;
+		}
+	}
+
+	//@formatter:off
+	private static final Map<String, IntFunction<HierarchyBuilder>> BUILDERS = Map.ofEntries(
+		entry("agglomerative", threads -> new AgglomerativeHierarchyBuilder()),
+		entry("morton", MortonHierarchyBuilder::new),
+		entry("sah", SahHierarchyBuilder::new),
+		entry("sbvh", threads -> new SpatialSplitHierarchyBuilder())
+	);
+
+	private static final Map<String, Accelerator> ACCELERATORS =
+		Map.ofEntries(
+			entry("bvh", (scene, builder, options) -> {
+				scene.geometries.optimize(builder, scene.camera().position());
+				return new FlatHierarchy(scene.geometries);
+			}),
+			entry("wide", (scene, builder, options) -> {
+				scene.geometries.optimize(builder, scene.camera().position());
+				WideHierarchy hierarchy = new WideHierarchy(scene.geometries, options.vector);
+				if (options.vector && !hierarchy.vectorized()) {
+					System.out.println("The Vector API is not available, so the wide accelerator uses scalar loops.");
+				}
+				return hierarchy;
+			}),
+			entry("compressed", (scene, builder, options) -> {
+				scene.geometries.optimize(builder, scene.camera().position());
+				return new CompressedHierarchy(scene.geometries);
+			}),
+			entry("offheap", (scene, builder, options) -> {
+				scene.geometries.optimize(builder, scene.camera().position());
+				Intersectible hierarchy = new OffHeapHierarchy(scene.geometries);
+				scene.geometries.clear();
+				return hierarchy;
+			}),
+			entry("paged", new PagedAccelerator()),
+			entry("grid", (scene, builder, options) -> new UniformGrid(scene.geometries))
+		);
+	//@formatter:on
 
 	private static HelpFormatter formatter = new HelpFormatter();
 	private static Options options = createOptions();
@@ -78,6 +214,23 @@ public class Main {
 
 		double minCoefficient = parseArg("min-coefficient", Double::parseDouble, MIN_COEFFICIENT_DEFAULT, cmd);
 
+		HierarchyBuilder builder = parseChoice("builder", BUILDERS, BUILDER_DEFAULT, cmd).apply(threads);
+
+		Accelerator accelerator = parseChoice("accelerator", ACCELERATORS, ACCELERATOR_DEFAULT, cmd);
+
+		long memory = parseArg("memory", Long::parseLong, MEMORY_DEFAULT, cmd);
+		if (memory <= 0 || memory > Long.MAX_VALUE >> 20) {
+			throw new ParseException(
+				"Memory must be a positive number of megabytes, no more than " + (Long.MAX_VALUE >> 20) + ".");
+		}
+		AcceleratorOptions acceleratorOptions = new AcceleratorOptions(memory << 20, cmd.hasOption("vector"));
+
+		boolean cache = cmd.hasOption("cache");
+
+		boolean statistics = cmd.hasOption("statistics");
+
+		boolean packets = !cmd.hasOption("no-packets");
+
 		String[] infiles = cmd.getArgs();
 		if (infiles.length == 0) {
 			throw new ParseException("Required argument <INFILES> missing");
@@ -85,18 +238,68 @@ public class Main {
 		int i = 0;
 		for (String infile : infiles) {
 			System.out.println("(" + ++i + '/' + infiles.length + ") " + infile);
-			renderXml(infile, FilenameUtils.removeExtension(infile) + ".png", threads, recursion, minCoefficient);
+			String name = FilenameUtils.removeExtension(infile);
+			HierarchyBuilder fileBuilder =
+				cache ? new CachedHierarchyBuilder(builder, Path.of(name + ".bvh")) : builder;
+			renderXml(infile, name + ".png", threads, recursion, minCoefficient, accelerator, acceleratorOptions,
+				fileBuilder, statistics, packets);
 		}
 	}
 
-	private static void renderXml(String infile, String outfile, int threads, int recursion, double minCoefficient)
-		throws IOException {
-		Scene scene = new XmlSceneParser().parse(infile);
-		scene.geometries.optimize();
-		RayTracer rayTracer = new PhongRayTracer(scene, recursion, minCoefficient);
-		Renderer renderer = new Renderer(scene.camera(), rayTracer, outfile, threads);
-		renderer.register(new ProgressBar(renderer.totalJobs(), 80, '#', '-'));
-		renderer.render();
+	private static void renderXml(String infile, String outfile, int threads, int recursion, double minCoefficient,
+		Accelerator accelerator, AcceleratorOptions acceleratorOptions, HierarchyBuilder builder, boolean statistics,
+		boolean packets) throws IOException {
+		Scene scene = new XmlSceneParser(accelerator.streamsMeshes()).parse(infile);
+		long start = System.nanoTime();
+		Intersectible accelerated = accelerator.build(scene, builder, acceleratorOptions);
+		System.out.printf("Built acceleration structure in %.1f ms", (System.nanoTime() - start) / 1e6);
+		if (builder instanceof CachedHierarchyBuilder && ((CachedHierarchyBuilder) builder).loaded()) {
+			System.out.print(" (loaded from cache)");
+		}
+		if (accelerated instanceof FlatHierarchy) {
+			System.out.printf(", SAH cost %.2f", ((FlatHierarchy) accelerated).cost());
+		}
+		System.out.println();
+		GeometryPages pages =
+			accelerated instanceof OffHeapHierarchy ? ((OffHeapHierarchy) accelerated).pages() : null;
+		try {
+			TraversalStatistics counters = null;
+			if (statistics && accelerated instanceof FlatHierarchy) {
+				System.out.print(((FlatHierarchy) accelerated).statistics());
+				counters = new TraversalStatistics();
+				((FlatHierarchy) accelerated).count(counters);
+			}
+			scene.accelerate(accelerated);
+			RayTracer rayTracer = new PhongRayTracer(scene, recursion, minCoefficient).packets(packets);
+			Renderer renderer = new Renderer(scene.camera(), rayTracer, outfile, threads);
+			renderer.register(new ProgressBar(renderer.totalJobs(), 80, '#', '-'));
+			renderer.render();
+			if (counters != null) {
+				System.out.print(counters);
+			}
+			if (statistics && pages != null) {
+				System.out.print(pages);
+			}
+		} finally {
+			if (pages != null) {
+				pages.close();
+			}
+		}
+	}
+
+	/**
+	 * Close the pages of a hierarchy which could not be built, keeping any error in closing them with the error which
+	 * stopped the build.
+	 *
+	 * @param pages The pages.
+	 * @param error The error which stopped the build.
+	 */
+	private static void close(GeometryPages pages, RuntimeException error) {
+		try {
+			pages.close();
+		} catch (IOException e) {
+			error.addSuppressed(e);
+		}
 	}
 
 	private static Options createOptions() {
@@ -104,12 +307,33 @@ public class Main {
 
 		options.addOption("h", "help", false, "Print this help message.");
 
-		options.addOption("t", "threads", true, "Number of threads to use. Default is " + THREADS_DEFAULT + ".");
+		options.addOption("t", "threads", true,
+			"Number of threads to use for building the hierarchy and rendering. Default is " + THREADS_DEFAULT + ".");
 		options.addOption("r", "recursion", true,
 			"Maximum recursion level for reflections and refractions. Default is " + RECURSION_DEFAULT + ".");
 		options.addOption("c", "min-coefficient", true,
 			"Minimum effect coefficient. This is the minimum coefficient to consider worthwhile to calculate effects such as reflections, refractions, and shadows. Default is "
 				+ MIN_COEFFICIENT_DEFAULT + ".");
+		options.addOption("b", "builder", true,
+			"Algorithm used to build the bounding volume hierarchy. One of " + names(BUILDERS)
+				+ ". Default is " + BUILDER_DEFAULT + ".");
+		options.addOption("k", "cache", false,
+			"Save the bounding volume hierarchy to a .bvh file next to each input file, and load it from there rather "
+				+ "than building it again when the same scene is rendered.");
+		options.addOption("s", "statistics", false,
+			"Print the shape of the bounding volume hierarchy, and count the work done tracing rays through it, including how often each type of primitive is tested without being intersected.");
+		options.addOption("p", "no-packets", false,
+			"Trace each ray from the camera on its own, rather than tracing the rays through each pixel together.");
+		options.addOption("a", "accelerator", true,
+			"Acceleration structure the rays are traced against. One of " + names(ACCELERATORS)
+				+ ". Default is " + ACCELERATOR_DEFAULT + ".");
+		options.addOption("m", "memory", true,
+			"Megabytes of geometry the paged accelerator keeps mapped into memory at once, from a temporary file which "
+				+ "holds the whole hierarchy. Meshes are streamed into the file without being loaded onto the heap. "
+				+ "Default is " + MEMORY_DEFAULT + ".");
+		options.addOption("v", "vector", false,
+			"Intersect the wide accelerator with the Vector API, which is compiled by the vector profile of the build, "
+				+ "and run with java --add-modules jdk.incubator.vector. Otherwise it falls back on scalar loops.");
 
 		return options;
 	}
@@ -135,4 +359,29 @@ public class Main {
 		String input = cmd.getOptionValue(name);
 		return input == null ? defaultValue : parser.apply(input);
 	}
+
+	/**
+	 * Parse an input from the command line which must be one of a fixed set of names.
+	 *
+	 * @param <T>          The type of the values the names map to.
+	 * @param name         The argument name.
+	 * @param choices      A map from each of the allowed names to its value.
+	 * @param defaultValue The name to use if the argument was absent.
+	 * @param cmd          The {@link CommandLine} object.
+	 * @return The value the given name maps to.
+	 * @throws ParseException if the given name is not one of the allowed names.
+	 */
+	private static <T> T parseChoice(String name, Map<String, T> choices, String defaultValue, CommandLine cmd)
+		throws ParseException {
+		String input = cmd.getOptionValue(name, defaultValue);
+		T choice = choices.get(input);
+		if (choice == null) {
+			throw new ParseException("Unknown " + name + " \"" + input + "\". Expected one of " + names(choices) + ".");
+		}
+		return choice;
+	}
+
+	private static String names(Map<String, ?> choices) {
+		return String.join(", ", new TreeSet<>(choices.keySet()));
+	}
 }
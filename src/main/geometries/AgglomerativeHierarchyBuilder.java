@@ -0,0 +1,31 @@
+package geometries;
+
+import java.util.List;
+import util.CompleteWeightedGraph;
+
+/**
+ * Builds a hierarchy bottom up by repeatedly merging the two {@link Intersectible}s whose union has the smallest
+ * surface area. The pairs are found through a {@link ClusterGrid}, so the clusters are only compared with the
+ * clusters near them.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class AgglomerativeHierarchyBuilder implements HierarchyBuilder {
+
+	@Override
+	public Intersectible build(List<Intersectible> intersectibles) {
+		if (intersectibles.size() == 1) {
+			return intersectibles.get(0);
+		}
+		CompleteWeightedGraph<Intersectible, Boundary> G = new CompleteWeightedGraph<>(intersectibles,
+			(i1, i2) -> i1.boundary().union(i2.boundary()), new ClusterGrid(intersectibles));
+		CompleteWeightedGraph<Intersectible, Boundary>.Edge minEdge;
+		while (G.size() > 2) {
+			minEdge = G.extract();
+			G.add(new GeometryList(minEdge.weight, minEdge.vertex1, minEdge.vertex2));
+		}
+		minEdge = G.extract();
+		return new GeometryList(minEdge.weight, minEdge.vertex1, minEdge.vertex2);
+	}
+}
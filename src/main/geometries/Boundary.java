@@ -72,6 +72,17 @@ class Boundary implements Comparable<Boundary> {
 	 * @return if the line intersects
 	 */
 	boolean intersects(LineSegment line) {
+		return entryDistance(line) != Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters this bounding box.
+	 *
+	 * @param line The {@link LineSegment}
+	 * @return The distance from the start of the line to where it enters the box, zero if the line starts inside the
+	 *         box, or positive infinity if the line doesn't intersect the box.
+	 */
+	double entryDistance(LineSegment line) {
 		double tmin, tmax;
 
 		double tx1 = (min.x - line.start.x) * line.inverse.x;
@@ -96,7 +107,60 @@ class Boundary implements Comparable<Boundary> {
 		// but if tmax is less than 0 then the entire line is 'behind' the box and then no intersection.
 		// if tmin is less than 0 than than the line intersects (since tmax is greater than 0)
 		// OR if tmin^2 < line.squareLength than the (positive) tmin is within the length of the line and therefore in the box
-		return tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < line.squareLength);
+		if (tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < line.squareLength)) {
+			return Math.max(tmin, 0);
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it leaves this bounding box.
+	 *
+	 * @param line The {@link LineSegment}, which should start inside the box.
+	 * @return The distance from the start of the line to where it leaves the box, ignoring the end of the line
+	 *         segment, or NaN if the line starts on the boundary of the box and runs along it.
+	 */
+	double exitDistance(LineSegment line) {
+		double tx = Math.max((min.x - line.start.x) * line.inverse.x, (max.x - line.start.x) * line.inverse.x);
+		double ty = Math.max((min.y - line.start.y) * line.inverse.y, (max.y - line.start.y) * line.inverse.y);
+		double tz = Math.max((min.z - line.start.z) * line.inverse.z, (max.z - line.start.z) * line.inverse.z);
+		return Math.min(tx, Math.min(ty, tz));
+	}
+
+	/**
+	 * Determines if a {@link Point} is inside this bounding box or on its boundary.
+	 *
+	 * @param p The {@link Point}.
+	 * @return true if the point is in the box.
+	 */
+	boolean contains(Point p) {
+		return p.x >= min.x && p.x <= max.x && p.y >= min.y && p.y <= max.y && p.z >= min.z && p.z <= max.z;
+	}
+
+	/**
+	 * Form a new bounding box which is larger than this box by the given margin on every side.
+	 *
+	 * @param margin The distance by which to move each face of the box outwards.
+	 * @return The new bounding box.
+	 */
+	Boundary expand(double margin) {
+		return new Boundary(new Point(min.x - margin, min.y - margin, min.z - margin),
+			new Point(max.x + margin, max.y + margin, max.z + margin));
+	}
+
+	/**
+	 * Form a new bounding box that exactly encompases the space which is in both this box and the parameter.
+	 *
+	 * @param other The other box.
+	 * @return The new bounding box, or {@link #EMPTY} if the boxes do not overlap.
+	 */
+	Boundary intersection(Boundary other) {
+		Point low = max(min, other.min);
+		Point high = min(max, other.max);
+		if (low.x > high.x || low.y > high.y || low.z > high.z) {
+			return EMPTY;
+		}
+		return new Boundary(low, high);
 	}
 
 	/**
@@ -130,6 +194,24 @@ class Boundary implements Comparable<Boundary> {
 		return min.isFinite() && max.isFinite();
 	}
 
+	/**
+	 * Get the corner of the box with the minimal x, y, and z values.
+	 *
+	 * @return The {@link Point} in the bounding box with minimal x, y, and z values.
+	 */
+	Point min() {
+		return min;
+	}
+
+	/**
+	 * Get the corner of the box with the maximal x, y, and z values.
+	 *
+	 * @return The {@link Point} in the bounding box with maximal x, y, and z values.
+	 */
+	Point max() {
+		return max;
+	}
+
 
 	private static Point min(Point p, Point q) {
 		return p.transform(Math::min, q, Point::new);
@@ -185,8 +267,8 @@ class Boundary implements Comparable<Boundary> {
 		}
 
 		@Override
-		boolean intersects(LineSegment line) {
-			return true;
+		double entryDistance(LineSegment line) {
+			return 0;
 		}
 
 		@Override
@@ -211,8 +293,8 @@ class Boundary implements Comparable<Boundary> {
 		}
 
 		@Override
-		boolean intersects(LineSegment line) {
-			return false;
+		double entryDistance(LineSegment line) {
+			return Double.POSITIVE_INFINITY;
 		}
 
 		@Override
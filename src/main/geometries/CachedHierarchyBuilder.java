@@ -0,0 +1,251 @@
+package geometries;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import primitives.Point;
+
+/**
+ * Saves the hierarchies built by another {@link HierarchyBuilder} to a binary file, and loads them from the file
+ * instead of building them again the next time the same {@link Intersectible}s are given.
+ *
+ * The file is keyed by a SHA-256 hash of the name of the wrapped builder and the type and {@link Boundary} of each
+ * intersectible, in order, along with the vertices of each {@link Polygon}, since the boxes of the nodes may be
+ * clipped to the shapes of polygons rather than their boundaries. If the hash in the file doesn't match, the
+ * hierarchy is built and the file is overwritten. The file is read through a memory mapped {@link FileChannel}.
+ * If the file can't be written, a warning is printed and the hierarchy which was built is used without caching it.
+ *
+ * The file contains the magic number, the hash, and then the root node. Each node is stored as the six values of its
+ * bounding box, the number of its children, and then an int per child, which is either the index of an intersectible
+ * in the given list, or {@link #CHILD} followed by the child node. The nodes are read with a stack rather than by
+ * recursion, so a corrupt file can't overflow the call stack.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class CachedHierarchyBuilder implements HierarchyBuilder {
+	private static final int MAGIC = 0x42564831; // "BVH1"
+	private static final int CHILD = -1;
+	private static final int HASH_SIZE = 32;
+
+	private final HierarchyBuilder builder;
+	private final Path file;
+	private boolean loaded = false;
+
+	/**
+	 * Construct a builder which caches the hierarchies built by the given builder in the given file.
+	 *
+	 * @param builder The {@link HierarchyBuilder} to use when the cached hierarchy is missing or out of date.
+	 * @param file    The file to cache the hierarchy in.
+	 */
+	public CachedHierarchyBuilder(HierarchyBuilder builder, Path file) {
+		this.builder = builder;
+		this.file = file;
+	}
+
+	/**
+	 * Loads the hierarchy from the file if it was built from the same intersectibles, otherwise builds it with the
+	 * wrapped builder and saves it to the file.
+	 */
+	@Override
+	public Intersectible build(List<Intersectible> intersectibles) {
+		byte[] hash = hash(intersectibles);
+		Intersectible root = load(hash, intersectibles);
+		loaded = root != null;
+		if (!loaded) {
+			root = builder.build(intersectibles);
+			if (root instanceof GeometryList) {
+				save(hash, intersectibles, (GeometryList) root);
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * Determines whether the last hierarchy built was loaded from the file.
+	 *
+	 * @return true if the last hierarchy was loaded from the file, false if it was built.
+	 */
+	public boolean loaded() {
+		return loaded;
+	}
+
+	private byte[] hash(List<Intersectible> intersectibles) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Error: SHA-256 is not supported.", e);
+		}
+		digest.update(builder.getClass().getName().getBytes(StandardCharsets.UTF_8));
+		ByteBuffer buffer = ByteBuffer.allocate(6 * Double.BYTES);
+		for (Intersectible intersectible : intersectibles) {
+			digest.update(intersectible.getClass().getName().getBytes(StandardCharsets.UTF_8));
+			putBoundary(buffer.clear(), intersectible.boundary());
+			digest.update(buffer.flip());
+			if (intersectible instanceof Polygon) {
+				for (Point vertex : ((Polygon) intersectible).vertices()) {
+					buffer.clear().putDouble(vertex.x).putDouble(vertex.y).putDouble(vertex.z);
+					digest.update(buffer.flip());
+				}
+			}
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Load the hierarchy from the file.
+	 *
+	 * @return The root of the hierarchy, or null if the file doesn't exist, can't be read, or wasn't built from the
+	 *         intersectibles with the given hash.
+	 */
+	private Intersectible load(byte[] hash, List<Intersectible> intersectibles) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC) {
+				return null;
+			}
+			byte[] fileHash = new byte[HASH_SIZE];
+			buffer.get(fileHash);
+			if (!Arrays.equals(hash, fileHash)) {
+				return null;
+			}
+			return readHierarchy(buffer, intersectibles);
+		} catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			return null; // treat an unreadable or corrupt file as out of date
+		}
+	}
+
+	private static GeometryList readHierarchy(ByteBuffer buffer, List<Intersectible> intersectibles) {
+		Deque<PartialNode> ancestors = new ArrayDeque<>();
+		PartialNode node = new PartialNode(buffer);
+		while (true) {
+			if (node.read < node.children.length) {
+				int child = buffer.getInt();
+				if (child == CHILD) {
+					ancestors.push(node);
+					node = new PartialNode(buffer);
+				} else {
+					node.children[node.read++] = intersectibles.get(child);
+				}
+				continue;
+			}
+			GeometryList list = new GeometryList(node.boundary, node.children);
+			if (ancestors.isEmpty()) {
+				return list;
+			}
+			node = ancestors.pop();
+			node.children[node.read++] = list;
+		}
+	}
+
+	/**
+	 * A node whose children are still being read from the file.
+	 */
+	private static class PartialNode {
+		final Boundary boundary;
+		final Intersectible[] children;
+		/** The number of children read so far. */
+		int read = 0;
+
+		PartialNode(ByteBuffer buffer) {
+			boundary = new Boundary(new Point(buffer.getDouble(), buffer.getDouble(), buffer.getDouble()),
+				new Point(buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+			int count = buffer.getInt();
+			if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+				throw new IllegalArgumentException("Error: Corrupt hierarchy file.");
+			}
+			children = new Intersectible[count];
+		}
+	}
+
+	/**
+	 * Save the hierarchy to the file. It is first written to a temporary file which then replaces the file, so that
+	 * a partially written file is never read. Failing to save it only prints a warning, since the hierarchy can still
+	 * be used, and is built again the next time.
+	 */
+	private void save(byte[] hash, List<Intersectible> intersectibles, GeometryList root) {
+		Map<Intersectible, Integer> indices = new IdentityHashMap<>();
+		for (int i = 0; i < intersectibles.size(); ++i) {
+			indices.put(intersectibles.get(i), i);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + HASH_SIZE + size(root, indices));
+		buffer.putInt(MAGIC).put(hash);
+		writeNode(buffer, root, indices);
+		buffer.flip();
+		Path temp = null;
+		try {
+			temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), null);
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Warning: Could not save the hierarchy to " + file + ": " + e);
+			deleteTemp(temp);
+		}
+	}
+
+	private static void deleteTemp(Path temp) {
+		if (temp == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(temp);
+		} catch (IOException e) {
+			System.err.println("Warning: Could not delete " + temp + ": " + e);
+		}
+	}
+
+	/**
+	 * Calculate the number of bytes needed to store the given node.
+	 */
+	private static int size(GeometryList node, Map<Intersectible, Integer> indices) {
+		int size = 6 * Double.BYTES + Integer.BYTES;
+		for (Intersectible child : node.children()) {
+			size += Integer.BYTES + (indices.containsKey(child) ? 0 : size((GeometryList) child, indices));
+		}
+		return size;
+	}
+
+	private static void writeNode(ByteBuffer buffer, GeometryList node, Map<Intersectible, Integer> indices) {
+		putBoundary(buffer, node.boundary());
+		buffer.putInt(node.children().size());
+		for (Intersectible child : node.children()) {
+			Integer index = indices.get(child); // the intersectibles themselves may also be geometry lists
+			if (index == null) {
+				buffer.putInt(CHILD);
+				writeNode(buffer, (GeometryList) child, indices);
+			} else {
+				buffer.putInt(index);
+			}
+		}
+	}
+
+	private static ByteBuffer putBoundary(ByteBuffer buffer, Boundary boundary) {
+		Point min = boundary.min();
+		Point max = boundary.max();
+		return buffer.putDouble(min.x).putDouble(min.y).putDouble(min.z).putDouble(max.x).putDouble(max.y)
+			.putDouble(max.z);
+	}
+}
@@ -0,0 +1,75 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.List;
+import primitives.LineSegment;
+
+/**
+ * The part of an {@link InfiniteGeometry} inside a finite region of space, such as the region containing the finite
+ * geometries of a scene and the camera. Unlike the geometry itself, it has a finite {@link Boundary}, so it can be
+ * placed in a hierarchy among the finite geometries and skipped by the line segments which don't pass near it. The
+ * rest of the geometry is intersected by an {@link ExteriorGeometries}.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+class ClippedGeometry implements Intersectible {
+	/**
+	 * The fraction of the size of the region by which the boxes are enlarged, so that rounding errors in clipping the
+	 * geometry cannot lose any of its intersections inside the region.
+	 */
+	private static final double MARGIN = 1e-9;
+
+	/** The geometry which is clipped. */
+	final InfiniteGeometry geometry;
+	private final Boundary region;
+	private final Boundary boundary;
+
+	/**
+	 * Clip the given geometry to the given region.
+	 *
+	 * @param geometry The infinite geometry.
+	 * @param region   The finite {@link Boundary} of the region.
+	 */
+	ClippedGeometry(InfiniteGeometry geometry, Boundary region) {
+		this.geometry = geometry;
+		this.region = region;
+		double margin = MARGIN * (1 + region.min().distance(region.max()));
+		Boundary clipped = geometry.clip(region.expand(margin));
+		this.boundary = clipped == Boundary.EMPTY ? clipped : clipped.expand(margin);
+	}
+
+	/**
+	 * Finds only the intersections inside the region, since those outside it are found by the
+	 * {@link ExteriorGeometries}.
+	 */
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>(2);
+		for (Intersection intersection : geometry.intersect(line)) {
+			if (region.contains(intersection.point)) {
+				result.add(intersection);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the closest intersection with the whole geometry, which is closer than any intersection outside the region
+	 * which would be found by the {@link ExteriorGeometries}.
+	 */
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		return geometry.intersect(line, hit);
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		return geometry.intersects(line);
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+}
@@ -0,0 +1,377 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import primitives.Point;
+import util.CompleteWeightedGraph;
+
+/**
+ * Finds, for an {@link AgglomerativeHierarchyBuilder}, the cluster whose union with a given cluster has the smallest
+ * surface area, without calculating the union with every other cluster.
+ *
+ * The clusters are listed in the cells of a uniform grid by the centers of their bounding boxes, and each cell keeps
+ * the boxes of its clusters in a single array. The grid covers the centers of the clusters it is sized for, and has
+ * about as many cells as there are clusters. Clusters which are formed by merging are placed in the nearest cell, and
+ * when the clusters have been merged into much fewer, larger clusters the grid is rebuilt with fewer, larger cells.
+ *
+ * The search visits the cells in rings of growing distance from the cell of the given cluster. Since the union of two
+ * boxes contains the center of each, the union with any cluster beyond a ring has at least the area of the given box
+ * stretched to the nearest face of the ring, so the search stops when that area is no smaller than the best union
+ * found. In the same way, the cells of a ring are only read when the box stretched to the nearest point of the cell
+ * has a smaller area than the best union found.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class ClusterGrid implements CompleteWeightedGraph.NearestNeighbors<Intersectible> {
+	/** The grid is rebuilt with fewer cells when this many times fewer clusters are left than it was sized for. */
+	private static final int COARSENING = 2;
+
+	private final double[] min = new double[3];
+	private final double[] cellSize = new double[3];
+	private final int[] resolution = new int[3];
+	/** The clusters whose centers are in each cell, or null for cells which have never had any. */
+	private Cell[] cells;
+	/** The number of clusters in the cells. */
+	private int size;
+	/** The number of clusters the cells were sized for. */
+	private int sized;
+	/** The clusters whose centers are not finite, such as empty clusters, which are compared with every cluster. */
+	private final Cell others = new Cell();
+
+	/**
+	 * Construct an empty grid sized for the given clusters.
+	 *
+	 * @param clusters The clusters which will be added to the grid.
+	 */
+	ClusterGrid(List<Intersectible> clusters) {
+		resize(clusters);
+	}
+
+	/**
+	 * Empty the grid and divide it into cells for the given clusters.
+	 *
+	 * @param clusters The clusters which will be added to the grid.
+	 */
+	private void resize(List<Intersectible> clusters) {
+		double[] low = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] high = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		int count = 0;
+		for (Intersectible cluster : clusters) {
+			double[] center = center(cluster.boundary());
+			if (center != null) {
+				for (int axis = 0; axis < 3; ++axis) {
+					low[axis] = Math.min(low[axis], center[axis]);
+					high[axis] = Math.max(high[axis], center[axis]);
+				}
+				++count;
+			}
+		}
+		// Choose the size of the cells so there is about one cell per cluster, along the axes which the clusters span
+		boolean[] flat = new boolean[3];
+		int dimensions = 0;
+		for (int axis = 0; axis < 3; ++axis) {
+			flat[axis] = !(high[axis] > low[axis]);
+			dimensions += flat[axis] ? 0 : 1;
+		}
+		double size = 0;
+		while (count > 1 && dimensions > 0) {
+			double volume = 1;
+			for (int axis = 0; axis < 3; ++axis) {
+				if (!flat[axis]) {
+					volume *= high[axis] - low[axis];
+				}
+			}
+			size = Math.pow(volume / count, 1.0 / dimensions);
+			int flattened = 0;
+			for (int axis = 0; axis < 3; ++axis) {
+				if (!flat[axis] && high[axis] - low[axis] < size) {
+					flat[axis] = true;
+					++flattened;
+				}
+			}
+			if (flattened == 0) {
+				break;
+			}
+			dimensions -= flattened;
+		}
+		int total = 1;
+		for (int axis = 0; axis < 3; ++axis) {
+			min[axis] = count > 0 ? low[axis] : 0;
+			resolution[axis] = 1;
+			cellSize[axis] = 0;
+			if (count > 1 && !flat[axis] && size > 0) {
+				resolution[axis] = (int) Math.max(1, Math.min(count, Math.round((high[axis] - low[axis]) / size)));
+				cellSize[axis] = (high[axis] - low[axis]) / resolution[axis];
+			}
+			total *= resolution[axis];
+		}
+		cells = new Cell[total];
+		this.size = 0;
+		sized = count;
+	}
+
+	@Override
+	public void add(Intersectible cluster) {
+		int cell = cell(cluster.boundary());
+		if (cell < 0) {
+			others.add(cluster);
+			return;
+		}
+		if (cells[cell] == null) {
+			cells[cell] = new Cell();
+		}
+		cells[cell].add(cluster);
+		++size;
+	}
+
+	@Override
+	public void remove(Intersectible cluster) {
+		int cell = cell(cluster.boundary());
+		if (cell < 0) {
+			others.remove(cluster);
+			return;
+		}
+		cells[cell].remove(cluster);
+		if (--size * COARSENING < sized) {
+			// the clusters are fewer and larger, so a search for their neighbors would cross many empty cells
+			List<Intersectible> clusters = new ArrayList<>(size);
+			for (Cell remaining : cells) {
+				if (remaining != null) {
+					clusters.addAll(Arrays.asList(remaining.clusters).subList(0, remaining.size));
+				}
+			}
+			resize(clusters);
+			for (Intersectible remaining : clusters) {
+				add(remaining);
+			}
+		}
+	}
+
+	@Override
+	public Intersectible nearest(Intersectible cluster) {
+		Boundary boundary = cluster.boundary();
+		Search search = new Search(cluster, box(boundary));
+		search.consider(others);
+		double[] center = center(boundary);
+		if (center == null) {
+			// there is no lower bound on the unions with a box which is not finite, so every cluster is compared
+			for (Cell cell : cells) {
+				search.consider(cell);
+			}
+			return search.nearest;
+		}
+		int[] origin = new int[3];
+		for (int axis = 0; axis < 3; ++axis) {
+			origin[axis] = cell(center[axis], axis);
+		}
+		double floor = area(search.box); // no union is smaller than the box itself
+		int[] from = new int[3];
+		int[] to = new int[3];
+		double[] bound = new double[6];
+		for (int ring = 0;; ++ring) {
+			// the bound is infinite when the ring is entirely outside the grid
+			if (search.area <= floor || ring > 0 && bound(search.box, origin, ring) >= search.area) {
+				return search.nearest;
+			}
+			for (int axis = 0; axis < 3; ++axis) {
+				from[axis] = Math.max(0, origin[axis] - ring);
+				to[axis] = Math.min(resolution[axis] - 1, origin[axis] + ring);
+			}
+			// rows and cells are skipped without reading them when no union with a center in them could be better
+			for (int z = from[2]; z <= to[2]; ++z) {
+				stretch(search.box, bound, 2, z);
+				for (int y = from[1]; y <= to[1]; ++y) {
+					stretch(search.box, bound, 1, y);
+					bound[0] = search.box[0];
+					bound[3] = search.box[3];
+					if (area(bound) >= search.area) {
+						continue;
+					}
+					boolean inside = Math.abs(z - origin[2]) < ring && Math.abs(y - origin[1]) < ring;
+					// only the cells at the ends of the row are on the ring when the row passes through its inside
+					int step = inside ? 2 * ring : 1;
+					for (int x = origin[0] - ring; x <= origin[0] + ring; x += step) {
+						if (x >= from[0] && x <= to[0]) {
+							stretch(search.box, bound, 0, x);
+							if (area(bound) < search.area) {
+								search.consider(cells[index(x, y, z)]);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate a lower bound on the area of the union of a box with any cluster whose center is in the given ring of
+	 * cells, as the area of the box stretched to the nearest face of the cube of cells inside the ring.
+	 *
+	 * @param box    The minimal x, y, and z values of the box followed by its maximal values.
+	 * @param origin The cell at the center of the rings.
+	 * @param ring   The distance of the ring from the origin in cells, which is at least one.
+	 * @return The lower bound, or infinity if the ring has no cells in the grid.
+	 */
+	private double bound(double[] box, int[] origin, int ring) {
+		double bound = Double.POSITIVE_INFINITY;
+		for (int axis = 0; axis < 3; ++axis) {
+			double low = box[axis], high = box[axis + 3];
+			if (origin[axis] + ring < resolution[axis]) {
+				box[axis + 3] = Math.max(high, min[axis] + (origin[axis] + ring) * cellSize[axis]);
+				bound = Math.min(bound, area(box));
+				box[axis + 3] = high;
+			}
+			if (origin[axis] - ring >= 0) {
+				box[axis] = Math.min(low, min[axis] + (origin[axis] - ring + 1) * cellSize[axis]);
+				bound = Math.min(bound, area(box));
+				box[axis] = low;
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * Stretch a box along one axis to the nearest point of a slice of cells, for a lower bound on the area of its union
+	 * with any cluster whose center is in the slice. The slices at the ends of the grid extend to infinity, since they
+	 * also hold the clusters whose centers are beyond the grid.
+	 *
+	 * @param box       The minimal x, y, and z values of the box followed by its maximal values.
+	 * @param stretched The box to write the stretched values of the axis into.
+	 * @param axis      The axis along which to stretch the box.
+	 * @param cell      The index along the axis of the slice of cells.
+	 */
+	private void stretch(double[] box, double[] stretched, int axis, int cell) {
+		stretched[axis] = cell == resolution[axis] - 1 ? box[axis]
+			: Math.min(box[axis], min[axis] + (cell + 1) * cellSize[axis]);
+		stretched[axis + 3] = cell == 0 ? box[axis + 3] : Math.max(box[axis + 3], min[axis] + cell * cellSize[axis]);
+	}
+
+	/**
+	 * The clusters in a cell of the grid, with their boxes.
+	 */
+	private static class Cell {
+		Intersectible[] clusters = new Intersectible[2];
+		/** Six values per cluster: min x, y, z then max x, y, z. */
+		double[] boxes = new double[12];
+		int size = 0;
+
+		void add(Intersectible cluster) {
+			if (size == clusters.length) {
+				clusters = Arrays.copyOf(clusters, 2 * size);
+				boxes = Arrays.copyOf(boxes, 12 * size);
+			}
+			clusters[size] = cluster;
+			System.arraycopy(box(cluster.boundary()), 0, boxes, 6 * size++, 6);
+		}
+
+		void remove(Intersectible cluster) {
+			for (int i = 0; i < size; ++i) {
+				if (clusters[i] == cluster) {
+					clusters[i] = clusters[--size];
+					clusters[size] = null;
+					System.arraycopy(boxes, 6 * size, boxes, 6 * i, 6);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The progress of a search for the cluster whose union with a given box has the smallest area.
+	 */
+	private static class Search {
+		private final Intersectible cluster;
+		final double[] box;
+		private final double[] union = new double[6];
+		Intersectible nearest = null;
+		double area = Double.POSITIVE_INFINITY;
+
+		Search(Intersectible cluster, double[] box) {
+			this.cluster = cluster;
+			this.box = box;
+		}
+
+		void consider(Cell cell) {
+			if (cell == null) {
+				return;
+			}
+			double[] boxes = cell.boxes;
+			for (int i = 0; i < cell.size; ++i) {
+				for (int axis = 0; axis < 3; ++axis) {
+					union[axis] = Math.min(box[axis], boxes[6 * i + axis]);
+					union[axis + 3] = Math.max(box[axis + 3], boxes[6 * i + axis + 3]);
+				}
+				double area = area(union);
+				if ((nearest == null || area < this.area) && cell.clusters[i] != cluster) {
+					nearest = cell.clusters[i];
+					this.area = area;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the surface area of a box in the same way as {@link Boundary#surfaceArea()}.
+	 *
+	 * @param box The minimal x, y, and z values of the box followed by its maximal values.
+	 */
+	private static double area(double[] box) {
+		double xLength = box[3] - box[0];
+		double yLength = box[4] - box[1];
+		double zLength = box[5] - box[2];
+		return 2 * (xLength * yLength + xLength * zLength + yLength * zLength);
+	}
+
+	/**
+	 * Get the corners of a bounding box.
+	 *
+	 * @return The minimal x, y, and z values of the box followed by its maximal values.
+	 */
+	private static double[] box(Boundary boundary) {
+		Point low = boundary.min(), high = boundary.max();
+		return new double[] { low.x, low.y, low.z, high.x, high.y, high.z };
+	}
+
+	/**
+	 * Calculate the center of a bounding box.
+	 *
+	 * @return The x, y, and z values of the center, or null if they are not all finite.
+	 */
+	private static double[] center(Boundary boundary) {
+		Point low = boundary.min(), high = boundary.max();
+		double[] center = { (low.x + high.x) / 2, (low.y + high.y) / 2, (low.z + high.z) / 2 };
+		for (double value : center) {
+			if (!Double.isFinite(value)) {
+				return null;
+			}
+		}
+		return center;
+	}
+
+	/**
+	 * Calculate the index of the cell containing the center of a bounding box.
+	 *
+	 * @return The index of the cell, or -1 if the center is not finite.
+	 */
+	private int cell(Boundary boundary) {
+		double[] center = center(boundary);
+		if (center == null) {
+			return -1;
+		}
+		return index(cell(center[0], 0), cell(center[1], 1), cell(center[2], 2));
+	}
+
+	/**
+	 * Calculate the index along the given axis of the cell containing the given coordinate, clamped to the grid.
+	 */
+	private int cell(double coordinate, int axis) {
+		int cell = (int) ((coordinate - min[axis]) / cellSize[axis]); // NaN if the grid is flat, which casts to 0
+		return Math.max(0, Math.min(resolution[axis] - 1, cell));
+	}
+
+	private int index(int x, int y, int z) {
+		return x + resolution[0] * (y + resolution[1] * z);
+	}
+}
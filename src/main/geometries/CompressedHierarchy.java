@@ -0,0 +1,420 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Point;
+
+/**
+ * A compiled, read only copy of a hierarchy of {@link GeometryList}s with the same nodes as a {@link WideHierarchy},
+ * stored in a fraction of the memory, for scenes so large that the size of the hierarchy matters.
+ *
+ * Rather than storing the boxes of the children of a node in doubles, each node stores its own box as a corner
+ * rounded down to floats and a power of two step along each axis, and each child box as a whole number of steps from
+ * that corner, in a single byte per bound. The bounds are rounded outwards, so the stored boxes contain the real ones,
+ * and a line segment never misses a child it would have entered, though it may enter children it then doesn't
+ * intersect. The byte bounds of the same face of all the children of a node are packed in one int, so a whole node
+ * takes {@value #NODE_SIZE} ints, which is less than a cache line. The primitives of the leaves are intersected through
+ * their own methods, without copying them.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class CompressedHierarchy implements Intersectible {
+	/** The number of children of each node. */
+	public static final int WIDTH = WideHierarchy.WIDTH;
+	/** The number of ints each node takes. */
+	static final int NODE_SIZE = 10 + WIDTH;
+	/** The largest number of steps from the corner of a node to a bound of one of its children. */
+	private static final int STEPS = 255;
+	/** The exponents of the steps are stored in a byte each, biased by this. */
+	private static final int EXPONENT_BIAS = 128;
+
+	/**
+	 * The nodes, each of which is {@value #NODE_SIZE} ints. The first three are the bits of the minimum x, y, and z
+	 * values of the box of the node as floats. The bytes of the fourth are the biased exponents of the steps along the
+	 * x, y, and z axes, from the lowest byte up, followed by the number of children. Each of the next six ints holds
+	 * one of the bounds of every child, from the lowest byte up, where the bounds are the minimum x, y, and z values
+	 * followed by the maximum x, y, and z values, as a number of steps from the corner of the node. The last ints are
+	 * the children, each of which is the index of a node if it is not negative, or the bitwise complement of the index
+	 * of a leaf.
+	 */
+	private int[] nodes = new int[NODE_SIZE];
+	/** The index in {@code primitives} of the first primitive of each leaf, followed by the number of primitives. */
+	private final int[] leafOffsets;
+	/** The primitives of the leaves, grouped by leaf. */
+	private final Intersectible[] primitives;
+	/**
+	 * The children of the root with infinite boundaries, which are intersected after the rest of the hierarchy, so that
+	 * they can be skipped by line segments which have already found a closer intersection.
+	 */
+	private final Intersectible[] unbounded;
+	/** Whether some primitives are in more than one leaf, so that each traversal needs a {@link Mailbox}. */
+	private final boolean shared;
+	/** The mailbox of each thread for line segments traced without a {@link HitRecord}, if primitives are shared. */
+	private final ThreadLocal<Mailbox> mailboxes;
+	/** The maximum number of children which may be waiting on the stack during a traversal. */
+	private final int stackSize;
+	private final Boundary boundary;
+
+	// Only used while compiling
+	private int nodeCount = 0;
+	private List<Intersectible> all = new ArrayList<>();
+	private List<Integer> leafStarts = new ArrayList<>();
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList}. This should be done after calling
+	 * {@link GeometryList#optimize()}, and the {@link GeometryList} should not be modified afterwards.
+	 *
+	 * @param geometries The root of the hierarchy to compile.
+	 * @throws IllegalArgumentException if the geometries are too far from the origin for their boxes to be stored in
+	 *                                  floats.
+	 */
+	public CompressedHierarchy(GeometryList geometries) {
+		List<Intersectible> unbounded = new ArrayList<>();
+		stackSize = 1 + compile(WideHierarchy.collapse(geometries.bounded(unbounded)), unbounded);
+		this.unbounded = unbounded.toArray(new Intersectible[unbounded.size()]);
+		boundary = geometries.boundary();
+		shared = geometries.shared();
+		mailboxes = shared ? ThreadLocal.withInitial(Mailbox::new) : null;
+		nodes = Arrays.copyOf(nodes, NODE_SIZE * nodeCount);
+		primitives = all.toArray(new Intersectible[all.size()]);
+		leafOffsets = new int[leafStarts.size() + 1];
+		for (int leaf = 0; leaf < leafStarts.size(); ++leaf) {
+			leafOffsets[leaf] = leafStarts.get(leaf);
+		}
+		leafOffsets[leafStarts.size()] = primitives.length;
+		all = null;
+		leafStarts = null;
+	}
+
+	/**
+	 * Compile a node with the given children, then compile the children.
+	 *
+	 * @param children  The children of the node, collapsed from the binary hierarchy.
+	 * @param unbounded The list to add the children with infinite boxes to.
+	 * @return The maximum number of children which may be pushed to the stack while traversing the subtree of the node.
+	 */
+	private int compile(List<WideHierarchy.Lane> children, List<Intersectible> unbounded) {
+		int node = nodeCount++;
+		if (nodes.length < NODE_SIZE * nodeCount) {
+			nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+		}
+		int offset = NODE_SIZE * node;
+		List<WideHierarchy.Lane> lanes = encode(children, unbounded, nodes, offset);
+		int deepest = 0;
+		for (int lane = 0; lane < lanes.size(); ++lane) {
+			WideHierarchy.Lane child = lanes.get(lane);
+			if (child.node == null) {
+				nodes[offset + 10 + lane] = ~leafStarts.size();
+				leafStarts.add(all.size());
+				all.addAll(child.primitives);
+			} else {
+				nodes[offset + 10 + lane] = nodeCount;
+				deepest = Math.max(deepest, compile(WideHierarchy.collapse(child.node), unbounded));
+			}
+		}
+		return WIDTH + deepest;
+	}
+
+	/**
+	 * Encode the box of a node with the given children and the boxes of the children, which is every int of the node
+	 * but the children themselves. Children with empty boxes contain nothing which can be intersected, so they are left
+	 * out, and children with infinite boxes cannot be stored in steps, so they are intersected with the unbounded
+	 * children of the root.
+	 *
+	 * @param children  The children of the node, collapsed from the binary hierarchy.
+	 * @param unbounded The list to add the children with infinite boxes to.
+	 * @param nodes     The array to write the node to, whose ints for the bounds of the children must be zero.
+	 * @param offset    The index in the array of the first int of the node.
+	 * @return The children which were encoded, in the order of their lanes.
+	 * @throws IllegalArgumentException if the children are too far from the origin for their boxes to be stored in
+	 *                                  floats.
+	 */
+	static List<WideHierarchy.Lane> encode(List<WideHierarchy.Lane> children, List<Intersectible> unbounded,
+		int[] nodes, int offset) {
+		List<WideHierarchy.Lane> lanes = new ArrayList<>();
+		List<Boundary> boxes = new ArrayList<>();
+		for (WideHierarchy.Lane child : children) {
+			if (child.boundary == Boundary.EMPTY) {
+				continue;
+			}
+			if (!child.boundary.isFinite()) {
+				if (child.node != null) {
+					unbounded.add(child.node);
+				} else {
+					unbounded.addAll(child.primitives);
+				}
+				continue;
+			}
+			lanes.add(child);
+			boxes.add(child.boundary);
+		}
+		encode(boxes, nodes, offset);
+		return lanes;
+	}
+
+	/**
+	 * Encode the box of a node whose children have the given finite boxes and the boxes of the children, in the order
+	 * of their lanes.
+	 *
+	 * @param boxes  The boxes of the children.
+	 * @param nodes  The array to write the node to, whose ints for the bounds of the children must be zero.
+	 * @param offset The index in the array of the first int of the node.
+	 * @throws IllegalArgumentException if the boxes are too far from the origin to be stored in floats.
+	 */
+	static void encode(List<Boundary> boxes, int[] nodes, int offset) {
+		double[] low = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] high = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (Boundary boundary : boxes) {
+			double[] box = bounds(boundary);
+			for (int axis = 0; axis < 3; ++axis) {
+				low[axis] = Math.min(low[axis], box[axis]);
+				high[axis] = Math.max(high[axis], box[axis + 3]);
+			}
+		}
+
+		double[] origin = new double[3];
+		double[] scale = new double[3];
+		int header = boxes.size() << 24;
+		for (int axis = 0; axis < 3 && !boxes.isEmpty(); ++axis) {
+			float corner = (float) low[axis];
+			if (corner > low[axis]) {
+				corner = Math.nextDown(corner);
+			}
+			if (Float.isInfinite(corner) || Float.isInfinite((float) high[axis])) {
+				throw new IllegalArgumentException(
+					"Error: The geometries are too far from the origin to compress their hierarchy.");
+			}
+			origin[axis] = corner;
+			// the smallest power of two step which reaches the top of the box
+			int exponent = Math.max(-EXPONENT_BIAS, Math.getExponent((high[axis] - corner) / STEPS));
+			while (corner + STEPS * scale(exponent + EXPONENT_BIAS) < high[axis]) {
+				++exponent;
+			}
+			scale[axis] = scale(exponent + EXPONENT_BIAS);
+			nodes[offset + axis] = Float.floatToRawIntBits(corner);
+			header |= (exponent + EXPONENT_BIAS) << (8 * axis);
+		}
+		nodes[offset + 3] = header;
+
+		for (int lane = 0; lane < boxes.size(); ++lane) {
+			double[] box = bounds(boxes.get(lane));
+			for (int axis = 0; axis < 3; ++axis) {
+				// round the minimum down and the maximum up to whole steps, checking the rounding of the calculation
+				int min = Math.max(0, Math.min(STEPS, (int) Math.floor((box[axis] - origin[axis]) / scale[axis])));
+				while (min > 0 && origin[axis] + min * scale[axis] > box[axis]) {
+					--min;
+				}
+				int max = Math.max(0, Math.min(STEPS, (int) Math.ceil((box[axis + 3] - origin[axis]) / scale[axis])));
+				while (max < STEPS && origin[axis] + max * scale[axis] < box[axis + 3]) {
+					++max;
+				}
+				nodes[offset + 4 + axis] |= min << (8 * lane);
+				nodes[offset + 7 + axis] |= max << (8 * lane);
+			}
+		}
+	}
+
+	private static double[] bounds(Boundary boundary) {
+		Point min = boundary.min(), max = boundary.max();
+		return new double[] { min.x, min.y, min.z, max.x, max.y, max.z };
+	}
+
+	/**
+	 * Calculate the size of a step from its biased exponent.
+	 *
+	 * @param exponent The exponent of the step plus {@value #EXPONENT_BIAS}.
+	 * @return Two to the power of the exponent.
+	 */
+	static double scale(int exponent) {
+		return Double.longBitsToDouble((long) (exponent - EXPONENT_BIAS + Double.MAX_EXPONENT) << 52);
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = leafOffsets[~child + 1]; i < end; ++i) {
+					if (mailbox == null || mailbox.add(primitives[i])) {
+						result.addAll(primitives[i].intersect(line));
+					}
+				}
+				continue;
+			}
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = nodes[NODE_SIZE * child + 10 + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			result.addAll(primitive.intersect(line));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = leafOffsets[~child + 1]; i < end; ++i) {
+					if ((mailbox == null || mailbox.add(primitives[i])) && primitives[i].intersects(line)) {
+						return true;
+					}
+				}
+				continue;
+			}
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = nodes[NODE_SIZE * child + 10 + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			if (primitive.intersects(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = leafOffsets[~child + 1]; i < end; ++i) {
+					if (mailbox != null && !mailbox.add(primitives[i])) {
+						continue;
+					}
+					transparency = primitives[i].transparency(line, transparency, threshold);
+					if (transparency.lt(threshold)) {
+						return Factors.ZERO;
+					}
+				}
+				continue;
+			}
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = nodes[NODE_SIZE * child + 10 + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			transparency = primitive.transparency(line, transparency, threshold);
+			if (transparency.lt(threshold)) {
+				return Factors.ZERO;
+			}
+		}
+		return transparency;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		int[] stack = hit.nodeStack(stackSize);
+		double[] distances = hit.entryStack(stackSize); // the entry distance of each child on the stack
+		double[] entries = hit.laneEntries(WIDTH);
+		Mailbox mailbox = shared ? hit.mailbox() : null;
+		int top = 0;
+		distances[top] = 0;
+		stack[top++] = 0;
+		boolean found = false;
+		while (top > 0) {
+			int child = stack[--top];
+			if (distances[top] >= hit.distance) {
+				continue; // the child starts after the closest intersection found so far
+			}
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = leafOffsets[~child + 1]; i < end; ++i) {
+					if (mailbox == null || mailbox.add(primitives[i])) {
+						found |= primitives[i].intersect(line, hit);
+					}
+				}
+				continue;
+			}
+			// push the children which start before the closest intersection, nearest on top
+			int first = top;
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				double entry = entries[lane];
+				if (entry < hit.distance) {
+					int j = top++;
+					for (; j > first && distances[j - 1] < entry; --j) {
+						distances[j] = distances[j - 1];
+						stack[j] = stack[j - 1];
+					}
+					distances[j] = entry;
+					stack[j] = nodes[NODE_SIZE * child + 10 + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			found |= primitive.intersect(line, hit);
+		}
+		return found;
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters the box of each child of the given node,
+	 * by the same test as {@link Boundary#entryDistance(LineSegment)} on the boxes decoded from their steps.
+	 *
+	 * @param node    The index of the node.
+	 * @param line    The {@link LineSegment}.
+	 * @param entries The array to write the distance for each child to. The distance is zero if the line starts inside
+	 *                the box, or positive infinity if the line doesn't intersect the box.
+	 * @return The number of children of the node.
+	 */
+	private int entryDistances(int node, LineSegment line, double[] entries) {
+		int offset = NODE_SIZE * node;
+		int header = nodes[offset + 3];
+		double originX = Float.intBitsToFloat(nodes[offset]);
+		double originY = Float.intBitsToFloat(nodes[offset + 1]);
+		double originZ = Float.intBitsToFloat(nodes[offset + 2]);
+		double scaleX = scale(header & 0xFF), scaleY = scale(header >>> 8 & 0xFF), scaleZ = scale(header >>> 16 & 0xFF);
+		int minX = nodes[offset + 4], minY = nodes[offset + 5], minZ = nodes[offset + 6];
+		int maxX = nodes[offset + 7], maxY = nodes[offset + 8], maxZ = nodes[offset + 9];
+		double startX = line.start.x, startY = line.start.y, startZ = line.start.z;
+		double inverseX = line.inverse.x, inverseY = line.inverse.y, inverseZ = line.inverse.z;
+		double squareLength = line.squareLength;
+		int count = header >>> 24;
+		for (int lane = 0; lane < count; ++lane) {
+			int shift = 8 * lane;
+			double tx1 = (originX + (minX >>> shift & 0xFF) * scaleX - startX) * inverseX;
+			double tx2 = (originX + (maxX >>> shift & 0xFF) * scaleX - startX) * inverseX;
+			double ty1 = (originY + (minY >>> shift & 0xFF) * scaleY - startY) * inverseY;
+			double ty2 = (originY + (maxY >>> shift & 0xFF) * scaleY - startY) * inverseY;
+			double tz1 = (originZ + (minZ >>> shift & 0xFF) * scaleZ - startZ) * inverseZ;
+			double tz2 = (originZ + (maxZ >>> shift & 0xFF) * scaleZ - startZ) * inverseZ;
+			double tmin = Math.max(Math.min(tx1, tx2), Math.max(Math.min(ty1, ty2), Math.min(tz1, tz2)));
+			double tmax = Math.min(Math.max(tx1, tx2), Math.min(Math.max(ty1, ty2), Math.max(tz1, tz2)));
+			entries[lane] = tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < squareLength) ? Math.max(tmin, 0)
+				: Double.POSITIVE_INFINITY;
+		}
+		return count;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+}
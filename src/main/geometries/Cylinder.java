@@ -25,6 +25,10 @@ public class Cylinder extends Geometry {
 	private final Plane bottom;
 	private final Plane top;
 	private final Boundary boundary;
+	/** The center of the sphere bounding the cylinder, which is half way along its axis. */
+	private final Point center;
+	/** The square of the radius of the sphere bounding the cylinder, which passes through the edges of the lids. */
+	private final double boundingRadiusSquared;
 
 	/**
 	 * This constructs a Cylinder.
@@ -46,11 +50,28 @@ public class Cylinder extends Geometry {
 		bottom = new Plane(material, ray.start, direction());
 		Point topPoint = ray.start.add(direction().scale(height));
 		top = new Plane(material, topPoint, direction());
-		boundary = calcBorder(ray.start, topPoint, radius);
+		boundary = calcBorder(ray.start, topPoint, direction(), middle.radius);
+		center = ray.start.add(direction().scale(height / 2));
+		boundingRadiusSquared = middle.radiusSquared + height * height / 4;
 	}
 
-	static Boundary calcBorder(Point p1, Point p2, double radius) {
-		return Sphere.calcBorder(p1, radius).union(Sphere.calcBorder(p2, radius));
+	/**
+	 * Calculates the smallest axis aligned box containing a cylinder. Each lid is a disk which extends from its center
+	 * along each axis by the radius times the sine of the angle between that axis and the axis of the cylinder, so the
+	 * box is the box of the centers of the lids expanded by those extents.
+	 *
+	 * @param p1     The center of one lid.
+	 * @param p2     The center of the other lid.
+	 * @param axis   The direction of the axis of the cylinder.
+	 * @param radius The radius of the cylinder.
+	 * @return The bounding box of the cylinder.
+	 */
+	static Boundary calcBorder(Point p1, Point p2, NormalizedVector axis, double radius) {
+		double x = radius * Math.sqrt(Math.max(0, 1 - axis.x * axis.x));
+		double y = radius * Math.sqrt(Math.max(0, 1 - axis.y * axis.y));
+		double z = radius * Math.sqrt(Math.max(0, 1 - axis.z * axis.z));
+		return new Boundary(new Point(Math.min(p1.x, p2.x) - x, Math.min(p1.y, p2.y) - y, Math.min(p1.z, p2.z) - z),
+			new Point(Math.max(p1.x, p2.x) + x, Math.max(p1.y, p2.y) + y, Math.max(p1.z, p2.z) + z));
 	}
 
 	/**
@@ -79,38 +100,104 @@ public class Cylinder extends Geometry {
 
 	@Override
 	public List<Intersection> intersect(LineSegment line) {
-		List<Intersection> intersections = new ArrayList<>(2);
-		intersections.addAll(intersectLid(line, bottom));
-		intersections.addAll(intersectLid(line, top));
-		if (intersections.size() == 2) {
-			return intersections;
+		if (missesBoundingSphere(line)) {
+			return Collections.emptyList();
 		}
-		intersections.addAll(intersectMiddle(line));
+		List<Intersection> intersections = new ArrayList<>(2);
+		intersect(line, null, intersections);
 		return intersections;
 	}
 
-	// helper function
-	private List<Intersection> intersectMiddle(LineSegment line) {
-		List<Intersection> intersections = middle.intersect(line);
-		if (intersections.isEmpty()) {
-			return intersections;
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		return !missesBoundingSphere(line) && intersect(line, hit, null);
+	}
+
+	/**
+	 * Determines whether a line passes outside the sphere bounding the cylinder, which is much cheaper to test than
+	 * the cylinder itself, and tighter than the bounding box of a slanted cylinder.
+	 */
+	private boolean missesBoundingSphere(LineSegment line) {
+		double toCenterX = center.x - line.start.x;
+		double toCenterY = center.y - line.start.y;
+		double toCenterZ = center.z - line.start.z;
+		double scalarsMid = toCenterX * line.direction.x + toCenterY * line.direction.y + toCenterZ * line.direction.z;
+		return DoubleCompare.gt(toCenterX * toCenterX + toCenterY * toCenterY + toCenterZ * toCenterZ
+			- scalarsMid * scalarsMid, boundingRadiusSquared);
+	}
+
+	/**
+	 * Finds the intersections of the line with the lids and the side of the cylinder in one pass, without allocating
+	 * any objects other than the intersections added to the list. The side is intersected like a {@link Tube}, and
+	 * its intersections are only kept if they are strictly between the lids. The lids are intersected including their
+	 * edges, and the side is not tested if the line passes through both of them.
+	 *
+	 * @param line          The intersecting {@link LineSegment}.
+	 * @param hit           The record to update with each intersection, or null to add them to the list instead.
+	 * @param intersections The list to add each intersection to, if there is no hit record.
+	 * @return true if any intersection was recorded or added.
+	 */
+	private boolean intersect(LineSegment line, HitRecord hit, List<Intersection> intersections) {
+		Point base = bottom.point;
+		NormalizedVector axis = direction();
+		double startX = line.start.x - base.x, startY = line.start.y - base.y, startZ = line.start.z - base.z;
+		double startHeight = startX * axis.x + startY * axis.y + startZ * axis.z;
+		double slope = line.direction.x * axis.x + line.direction.y * axis.y + line.direction.z * axis.z;
+
+		boolean found = false;
+		int lids = 0;
+		if (DoubleCompare.neq(slope, 0)) { // otherwise the line is parallel to the lids
+			for (int lid = 0; lid < 2; ++lid) {
+				double lidHeight = lid * height; // the bottom lid, then the top lid
+				double distance = (lidHeight - startHeight) / slope;
+				double x = startX + line.direction.x * distance - axis.x * lidHeight;
+				double y = startY + line.direction.y * distance - axis.y * lidHeight;
+				double z = startZ + line.direction.z * distance - axis.z * lidHeight;
+				if (DoubleCompare.leq(x * x + y * y + z * z, middle.radiusSquared)
+					&& add(line, distance, hit, intersections)) {
+					found = true;
+					++lids;
+				}
+			}
 		}
-		intersections.removeIf(intersection -> {
-			double intersectionHeight = direction().dot(bottom.point.vectorTo(intersection.point));
-			return DoubleCompare.leq(intersectionHeight, 0) || DoubleCompare.geq(intersectionHeight, height);
-		});
-		return intersections;
+		if (lids == 2) {
+			return found;
+		}
+
+		double a = 1 - slope * slope;
+		double halfB = startX * line.direction.x + startY * line.direction.y + startZ * line.direction.z
+			- startHeight * slope;
+		double c = startX * startX + startY * startY + startZ * startZ - startHeight * startHeight
+			- middle.radiusSquared;
+		double quarterDiscriminant = halfB * halfB - a * c;
+		if (a == 0 || DoubleCompare.leq(quarterDiscriminant, 0)) {
+			return found;
+		}
+		double sqrt = Math.sqrt(quarterDiscriminant);
+		found |= addSide(line, (-halfB - sqrt) / a, startHeight, slope, hit, intersections);
+		found |= addSide(line, (-halfB + sqrt) / a, startHeight, slope, hit, intersections);
+		return found;
 	}
 
-	// helper function
-	private List<Intersection> intersectLid(LineSegment line, Plane lid) {
-		List<Intersection> intersection = lid.intersect(line);
-		if (!intersection.isEmpty()
-			&& DoubleCompare.leq(intersection.get(0).point.squareDistance(lid.point), middle.radius * middle.radius)) {
-			return intersection;
-		} else {
-			return Collections.emptyList();
+	// helper function, to add an intersection with the side if it is between the lids
+	private boolean addSide(LineSegment line, double distance, double startHeight, double slope, HitRecord hit,
+		List<Intersection> intersections) {
+		double intersectionHeight = startHeight + slope * distance;
+		return DoubleCompare.gt(intersectionHeight, 0) && DoubleCompare.lt(intersectionHeight, height)
+			&& add(line, distance, hit, intersections);
+	}
+
+	// helper function, to record an intersection in the hit record or add it to the list
+	private boolean add(LineSegment line, double distance, HitRecord hit, List<Intersection> intersections) {
+		if (hit != null) {
+			return hit.update(this, line, distance);
+		}
+		Point p = line.travel(distance);
+		if (p == null) {
+			return false;
 		}
+		intersections.add(intersection(p));
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,97 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import primitives.LineSegment;
+
+/**
+ * The parts of some {@link InfiniteGeometry}s outside a finite region of space whose insides are intersected by
+ * {@link ClippedGeometry}s. When the region contains the camera and all the finite geometries of a scene, most line
+ * segments start inside it, and are only tested against the infinite geometries once they leave the region without
+ * having intersected anything on the way.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+class ExteriorGeometries implements Intersectible {
+	private final Boundary region;
+	private final List<InfiniteGeometry> geometries;
+
+	/**
+	 * Construct the exterior of the given region for the given geometries.
+	 *
+	 * @param region     The finite {@link Boundary} of the region.
+	 * @param geometries The infinite geometries.
+	 */
+	ExteriorGeometries(Boundary region, List<InfiniteGeometry> geometries) {
+		this.region = region;
+		this.geometries = geometries;
+	}
+
+	/**
+	 * Get the geometries whose exteriors are intersected.
+	 *
+	 * @return The infinite geometries.
+	 */
+	List<InfiniteGeometry> geometries() {
+		return Collections.unmodifiableList(geometries);
+	}
+
+	/**
+	 * Finds only the intersections outside the region, since those inside it are found by the {@link ClippedGeometry}s.
+	 */
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		for (InfiniteGeometry geometry : geometries) {
+			for (Intersection intersection : geometry.intersect(line)) {
+				if (!region.contains(intersection.point)) {
+					result.add(intersection);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the closest intersection with the geometries, unless the line segment starts inside the region and the
+	 * closest intersection found so far is before it leaves the region, in which case nothing outside the region can
+	 * be closer.
+	 */
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		if (region.contains(line.start)) {
+			double exit = region.exitDistance(line);
+			if (exit >= hit.distance || exit * exit >= line.squareLength) {
+				return false;
+			}
+		}
+		boolean found = false;
+		for (InfiniteGeometry geometry : geometries) {
+			found |= geometry.intersect(line, hit);
+		}
+		return found;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		if (region.contains(line.start)) {
+			double exit = region.exitDistance(line);
+			if (exit * exit >= line.squareLength) {
+				return false; // the whole line segment is inside the region
+			}
+		}
+		for (InfiniteGeometry geometry : geometries) {
+			if (geometry.intersects(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return Boundary.INFINITE;
+	}
+}
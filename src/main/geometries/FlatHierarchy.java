@@ -0,0 +1,622 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import geometries.TraversalStatistics.RayType;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Point;
+import primitives.Triple;
+import primitives.Vector;
+
+/**
+ * A compiled, read only copy of a hierarchy of {@link GeometryList}s. Instead of a tree of objects, the nodes are
+ * stored in flat arrays so that a ray can traverse the hierarchy with an explicit stack, reading the bounds of
+ * neighbouring nodes from contiguous memory. The children of each node are stored next to each other, in the same
+ * order as in the {@link GeometryList} the hierarchy was compiled from.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class FlatHierarchy implements Intersectible {
+	/** Six values per node: the minimum x, y, and z values followed by the maximum x, y, and z values. */
+	private final double[] bounds;
+	/** The index of the first child node of each node. */
+	private final int[] childOffsets;
+	/** The number of child nodes of each node. */
+	private final int[] childCounts;
+	/** The index in {@code primitives} of the first primitive of each node. */
+	private final int[] primitiveOffsets;
+	/** The number of primitives of each node. */
+	private final int[] primitiveCounts;
+	/** The leaves of the hierarchy, grouped by the node they belong to. */
+	private final Intersectible[] primitives;
+	/**
+	 * The children of the root with infinite boundaries, which are intersected after the rest of the hierarchy, so that
+	 * they can be skipped by line segments which have already found a closer intersection.
+	 */
+	private final Intersectible[] unbounded;
+	/** Whether some primitives are in more than one node, so that each traversal needs a {@link Mailbox}. */
+	private final boolean shared;
+	/** The mailbox of each thread for line segments traced without a {@link HitRecord}, if primitives are shared. */
+	private final ThreadLocal<Mailbox> mailboxes;
+	/** The maximum number of nodes which may be waiting on the stack during a traversal. */
+	private final int stackSize;
+	private final Boundary boundary;
+	/** Counts the work done by each ray, or null if the work isn't being counted. */
+	private TraversalStatistics statistics = null;
+
+	// Only used while compiling
+	private int nextNode = 1;
+	private int nextPrimitive = 0;
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList}. This should be done after calling
+	 * {@link GeometryList#optimize()}, and the {@link GeometryList} should not be modified afterwards, since the changes
+	 * will not be reflected in the compiled hierarchy.
+	 *
+	 * @param geometries The root of the hierarchy to compile.
+	 */
+	public FlatHierarchy(GeometryList geometries) {
+		List<Intersectible> unbounded = new ArrayList<>();
+		GeometryList root = geometries.bounded(unbounded);
+		this.unbounded = unbounded.toArray(new Intersectible[unbounded.size()]);
+		int[] sizes = count(root, new int[2]);
+		bounds = new double[6 * sizes[0]];
+		childOffsets = new int[sizes[0]];
+		childCounts = new int[sizes[0]];
+		primitiveOffsets = new int[sizes[0]];
+		primitiveCounts = new int[sizes[0]];
+		primitives = new Intersectible[sizes[1]];
+		stackSize = 1 + fill(root, 0);
+		boundary = geometries.boundary();
+		shared = geometries.shared();
+		mailboxes = shared ? ThreadLocal.withInitial(Mailbox::new) : null;
+	}
+
+	/**
+	 * Count the number of nodes and primitives in the given hierarchy.
+	 *
+	 * @param node  The root of the hierarchy.
+	 * @param sizes An array to add the number of nodes and the number of primitives to.
+	 * @return {@code sizes}.
+	 */
+	private static int[] count(GeometryList node, int[] sizes) {
+		++sizes[0];
+		for (Intersectible child : node.children()) {
+			if (child instanceof GeometryList) {
+				count((GeometryList) child, sizes);
+			} else {
+				++sizes[1];
+			}
+		}
+		return sizes;
+	}
+
+	/**
+	 * Store the given node at the given index, then store its children.
+	 *
+	 * @param node  The node to store.
+	 * @param index The index to store the node at.
+	 * @return The maximum number of nodes which may be pushed to the stack while traversing the subtree of the node.
+	 */
+	private int fill(GeometryList node, int index) {
+		Point min = node.boundary().min();
+		Point max = node.boundary().max();
+		bounds[6 * index] = min.x;
+		bounds[6 * index + 1] = min.y;
+		bounds[6 * index + 2] = min.z;
+		bounds[6 * index + 3] = max.x;
+		bounds[6 * index + 4] = max.y;
+		bounds[6 * index + 5] = max.z;
+
+		List<GeometryList> children = new ArrayList<>();
+		primitiveOffsets[index] = nextPrimitive;
+		for (Intersectible child : node.children()) {
+			if (child instanceof GeometryList) {
+				children.add((GeometryList) child);
+			} else {
+				primitives[nextPrimitive++] = child;
+			}
+		}
+		primitiveCounts[index] = nextPrimitive - primitiveOffsets[index];
+		childOffsets[index] = nextNode;
+		childCounts[index] = children.size();
+		nextNode += children.size();
+
+		int deepest = 0;
+		for (int i = 0; i < children.size(); ++i) {
+			deepest = Math.max(deepest, fill(children.get(i), childOffsets[index] + i));
+		}
+		return children.size() + deepest;
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (!intersects(node, line)) {
+				continue;
+			}
+			for (int i = primitiveOffsets[node], end = i + primitiveCounts[node]; i < end; ++i) {
+				if (mailbox == null || mailbox.add(primitives[i])) {
+					result.addAll(primitives[i].intersect(line));
+				}
+			}
+			for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+				stack[top++] = i;
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			result.addAll(primitive.intersect(line));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		int top = 0;
+		stack[top++] = 0;
+		int nodes = 0, boxTests = 0, primitiveTests = 0;
+		boolean found = false;
+		search: while (top > 0) {
+			int node = stack[--top];
+			++boxTests;
+			if (!intersects(node, line)) {
+				continue;
+			}
+			++nodes;
+			for (int i = primitiveOffsets[node], end = i + primitiveCounts[node]; i < end; ++i) {
+				if (mailbox != null && !mailbox.add(primitives[i])) {
+					continue;
+				}
+				++primitiveTests;
+				if (statistics != null) {
+					statistics.record(primitives[i], line);
+				}
+				if (primitives[i].intersects(line)) {
+					found = true;
+					break search;
+				}
+			}
+			for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+				stack[top++] = i;
+			}
+		}
+		for (int i = 0; !found && i < unbounded.length; ++i) {
+			++primitiveTests;
+			if (statistics != null) {
+				statistics.record(unbounded[i], line);
+			}
+			found = unbounded[i].intersects(line);
+		}
+		if (statistics != null) {
+			statistics.record(RayType.SHADOW, nodes, boxTests, primitiveTests);
+		}
+		return found;
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		int top = 0;
+		stack[top++] = 0;
+		int nodes = 0, boxTests = 0, primitiveTests = 0;
+		search: while (top > 0) {
+			int node = stack[--top];
+			++boxTests;
+			if (!intersects(node, line)) {
+				continue;
+			}
+			++nodes;
+			for (int i = primitiveOffsets[node], end = i + primitiveCounts[node]; i < end; ++i) {
+				if (mailbox != null && !mailbox.add(primitives[i])) {
+					continue;
+				}
+				++primitiveTests;
+				if (statistics != null) {
+					statistics.record(primitives[i], line);
+				}
+				transparency = primitives[i].transparency(line, transparency, threshold);
+				if (transparency.lt(threshold)) {
+					transparency = Factors.ZERO;
+					break search;
+				}
+			}
+			for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+				stack[top++] = i;
+			}
+		}
+		for (int i = 0; transparency != Factors.ZERO && i < unbounded.length; ++i) {
+			++primitiveTests;
+			if (statistics != null) {
+				statistics.record(unbounded[i], line);
+			}
+			transparency = unbounded[i].transparency(line, transparency, threshold);
+			if (transparency.lt(threshold)) {
+				transparency = Factors.ZERO;
+			}
+		}
+		if (statistics != null) {
+			statistics.record(RayType.SHADOW, nodes, boxTests, primitiveTests);
+		}
+		return transparency;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		int[] stack = hit.nodeStack(stackSize);
+		double[] entries = hit.entryStack(stackSize); // the entry distance of each node on the stack
+		Mailbox mailbox = shared ? hit.mailbox() : null;
+		int top = 0;
+		entries[top] = entryDistance(0, line);
+		stack[top++] = 0;
+		int nodes = 0, boxTests = 1, primitiveTests = 0;
+		boolean found = false;
+		while (top > 0) {
+			int node = stack[--top];
+			if (entries[top] >= hit.distance) {
+				continue; // the node starts after the closest intersection found so far
+			}
+			++nodes;
+			for (int i = primitiveOffsets[node], end = i + primitiveCounts[node]; i < end; ++i) {
+				if (mailbox != null && !mailbox.add(primitives[i])) {
+					continue;
+				}
+				++primitiveTests;
+				if (statistics != null) {
+					statistics.record(primitives[i], line);
+				}
+				found |= primitives[i].intersect(line, hit);
+			}
+			// push the children which start before the closest intersection, nearest on top
+			int first = top;
+			boxTests += childCounts[node];
+			for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+				double entry = entryDistance(i, line);
+				if (entry < hit.distance) {
+					int j = top++;
+					for (; j > first && entries[j - 1] < entry; --j) {
+						entries[j] = entries[j - 1];
+						stack[j] = stack[j - 1];
+					}
+					entries[j] = entry;
+					stack[j] = i;
+				}
+			}
+		}
+		primitiveTests += unbounded.length;
+		for (Intersectible primitive : unbounded) {
+			if (statistics != null) {
+				statistics.record(primitive, line);
+			}
+			found |= primitive.intersect(line, hit);
+		}
+		if (statistics != null) {
+			statistics.record(RayType.PRIMARY, nodes, boxTests, primitiveTests);
+		}
+		return found;
+	}
+
+	/**
+	 * Traces a packet of coherent line segments through the hierarchy together, such as the rays through a single
+	 * pixel. Instead of testing every line segment against the box of every node it reaches, the starts and inverse
+	 * directions of the whole packet are bounded by intervals, and interval arithmetic gives a lower bound on the
+	 * distance at which any line segment of the packet enters the box. A node is skipped for the whole packet when it
+	 * is missed by all the line segments, or is entered beyond the closest intersection found by all of them. The
+	 * line segments are only tested individually against the boxes of nodes containing primitives.
+	 *
+	 * The intervals only bound the packet if the directions of all the line segments have the same sign along each
+	 * axis. If they don't, the packet has diverged, and each line segment is traced on its own.
+	 */
+	@Override
+	public void intersect(LineSegment[] lines, HitRecord[] hits) {
+		int size = lines.length;
+		if (size == 1 || !coherent(lines)) {
+			for (int i = 0; i < size; ++i) {
+				intersect(lines[i], hits[i]);
+			}
+			return;
+		}
+		double[] packet = packet(lines);
+		double[] lengths = new double[size];
+		for (int i = 0; i < size; ++i) {
+			lengths[i] = Math.sqrt(lines[i].squareLength);
+		}
+
+		int[] stack = hits[0].nodeStack(stackSize);
+		double[] entries = hits[0].entryStack(stackSize);
+		Mailbox[] mailboxes = new Mailbox[size];
+		for (int i = 0; shared && i < size; ++i) {
+			mailboxes[i] = hits[i].mailbox();
+		}
+		int top = 0;
+		entries[top] = entryDistance(0, packet);
+		stack[top++] = 0;
+		double farthest = farthest(hits, lengths);
+		int nodes = 0, boxTests = 1, primitiveTests = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (entries[top] >= farthest) {
+				continue; // the node starts after the closest intersection of every line segment
+			}
+			++nodes;
+			if (primitiveCounts[node] > 0) {
+				boxTests += size;
+				for (int line = 0; line < size; ++line) {
+					if (entryDistance(node, lines[line]) < hits[line].distance) {
+						for (int i = primitiveOffsets[node], end = i + primitiveCounts[node]; i < end; ++i) {
+							if (mailboxes[line] != null && !mailboxes[line].add(primitives[i])) {
+								continue;
+							}
+							++primitiveTests;
+							if (statistics != null) {
+								statistics.record(primitives[i], lines[line]);
+							}
+							primitives[i].intersect(lines[line], hits[line]);
+						}
+					}
+				}
+				farthest = farthest(hits, lengths);
+			}
+			// push the children which the packet enters before the closest intersections, nearest on top
+			int first = top;
+			boxTests += childCounts[node];
+			for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+				double entry = entryDistance(i, packet);
+				if (entry < farthest) {
+					int j = top++;
+					for (; j > first && entries[j - 1] < entry; --j) {
+						entries[j] = entries[j - 1];
+						stack[j] = stack[j - 1];
+					}
+					entries[j] = entry;
+					stack[j] = i;
+				}
+			}
+		}
+		primitiveTests += size * unbounded.length;
+		for (int line = 0; line < size; ++line) {
+			for (Intersectible primitive : unbounded) {
+				if (statistics != null) {
+					statistics.record(primitive, lines[line]);
+				}
+				primitive.intersect(lines[line], hits[line]);
+			}
+		}
+		if (statistics != null) {
+			statistics.record(RayType.PRIMARY, size, nodes, boxTests, primitiveTests);
+		}
+	}
+
+	/**
+	 * Determines whether the directions of all the given line segments have the same sign along each axis.
+	 */
+	private static boolean coherent(LineSegment[] lines) {
+		Vector first = lines[0].inverse;
+		for (LineSegment line : lines) {
+			if (line.inverse.x > 0 != first.x > 0 || line.inverse.y > 0 != first.y > 0
+				|| line.inverse.z > 0 != first.z > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the intervals bounding a packet of line segments.
+	 *
+	 * @return The minimum x, y, and z values of the starts, then their maximum values, then the minimum x, y, and z
+	 *         values of the inverse directions, then their maximum values.
+	 */
+	private static double[] packet(LineSegment[] lines) {
+		double inf = Double.POSITIVE_INFINITY;
+		double[] packet = { inf, inf, inf, -inf, -inf, -inf, inf, inf, inf, -inf, -inf, -inf };
+		for (LineSegment line : lines) {
+			include(packet, 0, line.start);
+			include(packet, 6, line.inverse);
+		}
+		return packet;
+	}
+
+	private static void include(double[] intervals, int offset, Triple triple) {
+		intervals[offset] = Math.min(intervals[offset], triple.x);
+		intervals[offset + 1] = Math.min(intervals[offset + 1], triple.y);
+		intervals[offset + 2] = Math.min(intervals[offset + 2], triple.z);
+		intervals[offset + 3] = Math.max(intervals[offset + 3], triple.x);
+		intervals[offset + 4] = Math.max(intervals[offset + 4], triple.y);
+		intervals[offset + 5] = Math.max(intervals[offset + 5], triple.z);
+	}
+
+	/**
+	 * Calculate the distance beyond which no line segment of a packet can find a closer intersection.
+	 */
+	private static double farthest(HitRecord[] hits, double[] lengths) {
+		double farthest = 0;
+		for (int i = 0; i < lengths.length; ++i) {
+			farthest = Math.max(farthest, Math.min(hits[i].distance, lengths[i]));
+		}
+		return farthest;
+	}
+
+	/**
+	 * Calculates a lower bound on the distance at which any line segment of a packet enters the bounding box of the
+	 * given node, using interval arithmetic. For each axis, the distance to a plane of the box is (plane - start) *
+	 * inverse, where start and inverse each lie in an interval, so the distance lies in the product of the intervals.
+	 *
+	 * @param node   The index of the node.
+	 * @param packet The intervals bounding the packet, as calculated by {@link #packet(LineSegment[])}.
+	 * @return A lower bound on the entry distance of the line segments of the packet, or positive infinity if none of
+	 *         them can intersect the box.
+	 */
+	private double entryDistance(int node, double[] packet) {
+		int offset = 6 * node;
+		double tmin = Double.NEGATIVE_INFINITY;
+		double tmax = Double.POSITIVE_INFINITY;
+		for (int axis = 0; axis < 3; ++axis) {
+			double startMin = packet[axis], startMax = packet[axis + 3];
+			double inverseMin = packet[axis + 6], inverseMax = packet[axis + 9];
+			// the directions all have the same sign, which determines which plane is entered first
+			double near = inverseMin > 0 ? bounds[offset + axis] : bounds[offset + axis + 3];
+			double far = inverseMin > 0 ? bounds[offset + axis + 3] : bounds[offset + axis];
+			double nearMin = near - startMax, nearMax = near - startMin;
+			double farMin = far - startMax, farMax = far - startMin;
+			tmin = Math.max(tmin, Math.min(Math.min(nearMin * inverseMin, nearMin * inverseMax),
+				Math.min(nearMax * inverseMin, nearMax * inverseMax)));
+			tmax = Math.min(tmax, Math.max(Math.max(farMin * inverseMin, farMin * inverseMax),
+				Math.max(farMax * inverseMin, farMax * inverseMax)));
+		}
+		// NaN, from multiplying zero by an infinite inverse, never culls the node
+		if (tmax <= 0 || tmax < tmin) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return tmin > 0 ? tmin : 0;
+	}
+
+	/**
+	 * Get the leaves of the hierarchy.
+	 *
+	 * @return The {@link Intersectible}s which aren't nodes of the hierarchy, grouped by their nodes, followed by the
+	 *         children of the root with infinite boundaries.
+	 */
+	List<Intersectible> primitives() {
+		List<Intersectible> result = new ArrayList<>(Arrays.asList(primitives));
+		result.addAll(Arrays.asList(unbounded));
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Count the work done by every ray traced through the hierarchy from now on. Counting is disabled by default.
+	 *
+	 * @param statistics The counters to record the work in, or null to stop counting.
+	 */
+	public void count(TraversalStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Summarise the shape of the hierarchy.
+	 *
+	 * @return The {@link HierarchyStatistics} of this hierarchy.
+	 */
+	public HierarchyStatistics statistics() {
+		int nodes = childCounts.length;
+		int leaves = 0;
+		int maxDepth = 0;
+		long totalDepth = 0;
+		int maxLeafSize = 0;
+		int[] depths = new int[nodes]; // children are always stored after their parents
+		for (int node = 0; node < nodes; ++node) {
+			for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+				depths[i] = depths[node] + 1;
+			}
+			if (childCounts[node] == 0) {
+				++leaves;
+				totalDepth += depths[node];
+				maxDepth = Math.max(maxDepth, depths[node]);
+				maxLeafSize = Math.max(maxLeafSize, primitiveCounts[node]);
+			}
+		}
+		int[] leafSizes = new int[maxLeafSize + 1];
+		for (int node = 0; node < nodes; ++node) {
+			if (childCounts[node] == 0) {
+				++leafSizes[primitiveCounts[node]];
+			}
+		}
+		return new HierarchyStatistics(nodes, leaves, primitives.length + unbounded.length, maxDepth,
+			(double) totalDepth / leaves, leafSizes, cost());
+	}
+
+	/**
+	 * Estimates the cost of tracing a random ray through the hierarchy using the surface area heuristic (SAH), in units
+	 * of the cost of intersecting a single primitive. Traversing a node is assumed to cost the same as intersecting a
+	 * primitive, and the probability of a ray which passes through a node also passing through one of its children is
+	 * the ratio of their surface areas. This can be used to compare the quality of hierarchies built in different ways.
+	 *
+	 * @return The expected cost of tracing a ray which passes through the root of the hierarchy.
+	 */
+	public double cost() {
+		return cost(0) + unbounded.length;
+	}
+
+	private double cost(int node) {
+		double area = area(node);
+		double cost = 1 + primitiveCounts[node];
+		for (int i = childOffsets[node], end = i + childCounts[node]; i < end; ++i) {
+			// a child of an infinite or flat node is assumed to be visited whenever the node is
+			cost += (Double.isFinite(area) && area > 0 ? area(i) / area : 1) * cost(i);
+		}
+		return cost;
+	}
+
+	private double area(int node) {
+		int offset = 6 * node;
+		double x = bounds[offset + 3] - bounds[offset];
+		double y = bounds[offset + 4] - bounds[offset + 1];
+		double z = bounds[offset + 5] - bounds[offset + 2];
+		return 2 * (x * y + x * z + y * z);
+	}
+
+	/**
+	 * Determines if a {@link LineSegment} passes through the bounding box of the given node.
+	 *
+	 * @param node The index of the node.
+	 * @param line The {@link LineSegment}.
+	 * @return if the line intersects the bounding box of the node.
+	 */
+	private boolean intersects(int node, LineSegment line) {
+		return entryDistance(node, line) != Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters the bounding box of the given node. This
+	 * is the same test as {@link Boundary#entryDistance(LineSegment)}.
+	 *
+	 * @param node The index of the node.
+	 * @param line The {@link LineSegment}.
+	 * @return The distance from the start of the line to where it enters the box, zero if the line starts inside the
+	 *         box, or positive infinity if the line doesn't intersect the box.
+	 */
+	private double entryDistance(int node, LineSegment line) {
+		int offset = 6 * node;
+		double tmin, tmax;
+
+		double tx1 = (bounds[offset] - line.start.x) * line.inverse.x;
+		double tx2 = (bounds[offset + 3] - line.start.x) * line.inverse.x;
+
+		tmin = Math.min(tx1, tx2);
+		tmax = Math.max(tx1, tx2);
+
+		double ty1 = (bounds[offset + 1] - line.start.y) * line.inverse.y;
+		double ty2 = (bounds[offset + 4] - line.start.y) * line.inverse.y;
+
+		tmin = Math.max(tmin, Math.min(ty1, ty2));
+		tmax = Math.min(tmax, Math.max(ty1, ty2));
+
+		double tz1 = (bounds[offset + 2] - line.start.z) * line.inverse.z;
+		double tz2 = (bounds[offset + 5] - line.start.z) * line.inverse.z;
+
+		tmin = Math.max(tmin, Math.min(tz1, tz2));
+		tmax = Math.min(tmax, Math.max(tz1, tz2));
+
+		if (tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < line.squareLength)) {
+			return Math.max(tmin, 0);
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+}
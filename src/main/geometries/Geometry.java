@@ -1,5 +1,7 @@
 package geometries;
 
+import primitives.Factors;
+import primitives.LineSegment;
 import primitives.Material;
 import primitives.NormalizedVector;
 import primitives.Point;
@@ -29,6 +31,30 @@ public abstract class Geometry implements Intersectible {
 	 */
 	public abstract NormalizedVector normal(Point point);
 
+	/**
+	 * Calculates the normal to the given face of the {@link Geometry} at the given {@link Point}. Geometries made of
+	 * many faces, such as a {@link TriangleMesh}, override this to avoid searching for the face containing the point.
+	 *
+	 * @param point The {@link Point} at which to calculate the normal.
+	 * @param face  The index of the face the point is on, as recorded in the {@link Intersection}.
+	 * @return A {@link NormalizedVector} perpendicular to the surface of the shape at the given {@link Point}.
+	 */
+	NormalizedVector normal(Point point, int face) {
+		return normal(point);
+	}
+
+	/**
+	 * If a single intersection with this geometry is enough to block the light, this only checks whether there is any
+	 * intersection at all.
+	 */
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		if (transparency.scale(material.transparency).lt(threshold)) {
+			return intersects(line) ? Factors.ZERO : transparency;
+		}
+		return Intersectible.super.transparency(line, transparency, threshold);
+	}
+
 	/**
 	 * Create an intersection object with this geometry and the given {@link Point}.
 	 *
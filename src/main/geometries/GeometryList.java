@@ -1,16 +1,20 @@
 package geometries;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import primitives.Factors;
 import primitives.LineSegment;
+import primitives.Point;
 import util.EfficientIterator;
-import util.CompleteWeightedGraph;
 
 
 /**
@@ -20,9 +24,20 @@ import util.CompleteWeightedGraph;
  * @author Eli Levin
  */
 public class GeometryList implements Intersectible, Iterable<Geometry> {
+	/** A subtree is rebuilt by {@link #refit(Map)} once its surface area has grown by more than this factor. */
+	public static final double REFIT_THRESHOLD = 1.5;
 
-	private Set<Intersectible> intersectibles = new HashSet<>();
+	private List<Intersectible> intersectibles = new ArrayList<>();
 	private Boundary boundary = Boundary.EMPTY;
+	/** The surface area of the node when it was last built by a {@link HierarchyBuilder}, or NaN if it never was. */
+	private double builtArea = Double.NaN;
+	/**
+	 * Whether some of the leaves are in more than one node, as in a hierarchy built by a
+	 * {@link SpatialSplitHierarchyBuilder}, so that line segments traced through the hierarchy need a {@link Mailbox}.
+	 */
+	private boolean shared = false;
+	/** The mailbox of each thread for line segments traced without a {@link HitRecord}, if the leaves are shared. */
+	private ThreadLocal<Mailbox> mailboxes = null;
 
 	/**
 	 * Construct a collection of geometries given an array of {@link Intersectible}s or given any number of
@@ -34,11 +49,18 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 		add(geometries);
 	}
 
-	private GeometryList(Boundary boundary, Intersectible... intersectibles) {
+	/**
+	 * Construct a node of a hierarchy whose {@link Boundary} is already known.
+	 *
+	 * @param boundary       The {@link Boundary} of all the given {@link Intersectible}s.
+	 * @param intersectibles The children of the node.
+	 */
+	GeometryList(Boundary boundary, Intersectible... intersectibles) {
 		for (Intersectible intersectible : intersectibles) {
 			this.intersectibles.add(intersectible);
 		}
 		this.boundary = boundary; // #efficient
+		this.builtArea = boundary.surfaceArea();
 	}
 
 	/**
@@ -63,46 +85,223 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 	}
 
 	/**
-	 * Add all the {@link Geometry}s in the given {@link GeometryList} to the collection.
+	 * Add many {@link Instance}s to the collection.
+	 *
+	 * @param instances The {@link Instance}s to add.
+	 */
+	public void add(Instance... instances) {
+		for (Instance instance : instances) {
+			add((Intersectible) instance);
+		}
+	}
+
+	/**
+	 * Add all the {@link Geometry}s and {@link Instance}s in the given {@link GeometryList} to the collection.
 	 *
 	 * @param geometries The {@link GeometryList} whose elements to add.
 	 */
 	public void add(GeometryList geometries) {
-		geometries.forEach(intersectibles::add);
+		intersectibles.addAll(geometries.leaves());
 		boundary = boundary.union(geometries.boundary());
 	}
 
+	/**
+	 * Remove all the geometries from the collection, such as once they have been compiled into an
+	 * {@link OffHeapHierarchy}, so that the objects it no longer needs can be garbage collected.
+	 */
+	public void clear() {
+		intersectibles = new ArrayList<>();
+		boundary = Boundary.EMPTY;
+		builtArea = Double.NaN;
+		share(false);
+	}
+
 	/**
 	 * Restructures the internal structure of the geometries for optimal ray tracing. This method should be called after
-	 * all the geometries have been added, but before the ray tracing process begins.
+	 * all the geometries have been added, but before the ray tracing process begins. The hierarchy is built by a
+	 * {@link SahHierarchyBuilder}.
 	 */
 	public void optimize() {
-		GeometryList finites = intersectibles.stream().filter(g -> g.boundary().isFinite()).collect(GeometryList::new,
-			GeometryList::add, GeometryList::add);
-		if (finites.intersectibles.size() == intersectibles.size()) {
-			constructHierarchy();
+		optimize(new SahHierarchyBuilder());
+	}
+
+	/**
+	 * Restructures the internal structure of the geometries for optimal ray tracing. This method should be called after
+	 * all the geometries have been added, but before the ray tracing process begins.
+	 *
+	 * @param builder The {@link HierarchyBuilder} used to arrange the finite geometries into a hierarchy.
+	 * @see #optimize(HierarchyBuilder, Point...)
+	 */
+	public void optimize(HierarchyBuilder builder) {
+		optimize(builder, new Point[0]);
+	}
+
+	/**
+	 * Restructures the internal structure of the geometries for optimal ray tracing. This method should be called after
+	 * all the geometries have been added, but before the ray tracing process begins.
+	 *
+	 * Infinite geometries such as {@link Plane}s and {@link Tube}s are clipped to the region containing the finite
+	 * geometries and the given viewpoints. The part of each one inside the region is placed in the hierarchy with the
+	 * finite geometries, and the parts outside the region are only intersected by line segments which leave the region
+	 * before hitting anything else. The rays from the viewpoints and the rays reflected and refracted by the finite
+	 * geometries all start inside the region, so most of them never test the infinite geometries at all.
+	 *
+	 * @param builder    The {@link HierarchyBuilder} used to arrange the finite geometries into a hierarchy.
+	 * @param viewpoints The points from which rays will be traced into the scene, such as the position of the camera.
+	 */
+	public void optimize(HierarchyBuilder builder, Point... viewpoints) {
+		List<Intersectible> finites = new ArrayList<>();
+		List<Intersectible> infinites = new ArrayList<>();
+		List<InfiniteGeometry> clipped = new ArrayList<>();
+		Boundary region = Boundary.EMPTY;
+		for (Intersectible intersectible : intersectibles) {
+			if (intersectible.boundary().isFinite()) {
+				finites.add(intersectible);
+				region = region.union(intersectible.boundary());
+			} else if (intersectible instanceof InfiniteGeometry) {
+				clipped.add((InfiniteGeometry) intersectible);
+			} else {
+				infinites.add(intersectible);
+			}
+		}
+		if (finites.size() <= 2) {
+			return;
+		}
+		if (!clipped.isEmpty()) {
+			for (Point viewpoint : viewpoints) {
+				region = region.union(new Boundary(viewpoint));
+			}
+			for (InfiniteGeometry geometry : clipped) {
+				ClippedGeometry inside = new ClippedGeometry(geometry, region);
+				if (inside.boundary() != Boundary.EMPTY) {
+					finites.add(inside);
+				}
+			}
+			infinites.add(new ExteriorGeometries(region, clipped));
+		}
+		Intersectible root = builder.build(finites);
+		if (infinites.isEmpty() && root instanceof GeometryList) {
+			intersectibles = ((GeometryList) root).intersectibles;
 		} else {
-			finites.forEach(intersectibles::remove);
-			finites.constructHierarchy();
-			intersectibles.add(finites);
+			infinites.add(root);
+			intersectibles = infinites;
 		}
+		builtArea = boundary.surfaceArea();
+		share(root instanceof GeometryList && ((GeometryList) root).countLeaves() > finites.size());
 	}
 
-	private void constructHierarchy() {
-		if (intersectibles.size() <= 2) {
-			return;
+	/**
+	 * Set whether some of the leaves are in more than one node.
+	 */
+	private void share(boolean shared) {
+		this.shared = shared;
+		mailboxes = shared ? ThreadLocal.withInitial(Mailbox::new) : null;
+	}
+
+	/**
+	 * Count the leaves of the hierarchy, counting a leaf which is in several nodes once for each of them.
+	 *
+	 * @return The number of children of all the nodes which aren't nodes themselves.
+	 */
+	private int countLeaves() {
+		int count = 0;
+		for (Intersectible child : intersectibles) {
+			count += child instanceof GeometryList ? ((GeometryList) child).countLeaves() : 1;
 		}
-		CompleteWeightedGraph<Intersectible, Boundary> G =
-			new CompleteWeightedGraph<>(intersectibles, (i1, i2) -> i1.boundary().union(i2.boundary()));
-		CompleteWeightedGraph<Intersectible, Boundary>.Edge minEdge;
-		while (G.size() > 2) {
-			minEdge = G.extract();
-			G.add(new GeometryList(minEdge.weight, minEdge.vertex1, minEdge.vertex2));
+		return count;
+	}
+
+	/**
+	 * Replaces some of the geometries in the collection, such as geometries which have moved since the previous frame,
+	 * while keeping the hierarchy built by {@link #optimize()}. Subtrees which grow by more than
+	 * {@link #REFIT_THRESHOLD} times the surface area they had when built are rebuilt by a {@link SahHierarchyBuilder}.
+	 *
+	 * @param replacements Maps each geometry to replace to the geometry which replaces it.
+	 * @return The number of subtrees which were rebuilt.
+	 * @see #refit(Map, HierarchyBuilder, double)
+	 */
+	public int refit(Map<? extends Intersectible, ? extends Intersectible> replacements) {
+		return refit(replacements, new SahHierarchyBuilder(), REFIT_THRESHOLD);
+	}
+
+	/**
+	 * Replaces some of the geometries in the collection, such as geometries which have moved since the previous frame,
+	 * while keeping the hierarchy built by {@link #optimize(HierarchyBuilder)}. Instead of building the whole hierarchy
+	 * again, the {@link Boundary}s of the nodes containing the replaced geometries are recalculated from the bottom up.
+	 * This keeps the hierarchy correct, but the boxes of the nodes may grow until they overlap so much that the
+	 * hierarchy is hardly any use, so a subtree whose surface area has grown by more than the given factor since it
+	 * was built is then rebuilt with the given builder. Only the largest such subtrees are rebuilt.
+	 *
+	 * Any {@link FlatHierarchy} compiled from the collection must be compiled again afterwards.
+	 *
+	 * @param replacements Maps each geometry to replace to the geometry which replaces it. Finite geometries should
+	 *                     only be replaced by finite geometries, and infinite geometries which were clipped by
+	 *                     {@link #optimize(HierarchyBuilder, Point...)} cannot be replaced.
+	 * @param builder      The {@link HierarchyBuilder} used to rebuild degraded subtrees.
+	 * @param threshold    The factor by which the surface area of a subtree may grow before it is rebuilt.
+	 * @return The number of subtrees which were rebuilt.
+	 */
+	public int refit(Map<? extends Intersectible, ? extends Intersectible> replacements, HierarchyBuilder builder,
+		double threshold) {
+		Set<GeometryList> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+		refitBoundaries(replacements, changed);
+		int rebuilt = rebuildDegraded(changed, builder, threshold);
+		if (rebuilt > 0) {
+			share(countLeaves() > leaves().size());
 		}
-		minEdge = G.extract();
-		intersectibles = new HashSet<>(2);
-		intersectibles.add(minEdge.vertex1);
-		intersectibles.add(minEdge.vertex2);
+		return rebuilt;
+	}
+
+	/**
+	 * Replace the leaves of this subtree and recalculate the boundaries of the nodes containing them.
+	 *
+	 * @param changed The set to add each node whose {@link Boundary} was recalculated to.
+	 * @return true if anything in this subtree was replaced.
+	 */
+	private boolean refitBoundaries(Map<? extends Intersectible, ? extends Intersectible> replacements,
+		Set<GeometryList> changed) {
+		boolean replaced = false;
+		for (ListIterator<Intersectible> iterator = intersectibles.listIterator(); iterator.hasNext();) {
+			Intersectible child = iterator.next();
+			if (child instanceof GeometryList) {
+				replaced |= ((GeometryList) child).refitBoundaries(replacements, changed);
+			} else if (replacements.containsKey(child)) {
+				iterator.set(replacements.get(child));
+				replaced = true;
+			}
+		}
+		if (replaced) {
+			boundary = Boundary.EMPTY;
+			for (Intersectible child : intersectibles) {
+				boundary = boundary.union(child.boundary());
+			}
+			changed.add(this);
+		}
+		return replaced;
+	}
+
+	/**
+	 * Rebuild this subtree if it has grown too much since it was built, otherwise look for changed subtrees within it
+	 * which have.
+	 *
+	 * @return The number of subtrees which were rebuilt.
+	 */
+	private int rebuildDegraded(Set<GeometryList> changed, HierarchyBuilder builder, double threshold) {
+		if (boundary.surfaceArea() > threshold * builtArea) {
+			Intersectible root = builder.build(leaves());
+			intersectibles = root instanceof GeometryList ? ((GeometryList) root).intersectibles
+				: new ArrayList<>(List.of(root));
+			boundary = root.boundary();
+			builtArea = boundary.surfaceArea();
+			return 1;
+		}
+		int rebuilt = 0;
+		for (Intersectible child : intersectibles) {
+			if (changed.contains(child)) {
+				rebuilt += ((GeometryList) child).rebuildDegraded(changed, builder, threshold);
+			}
+		}
+		return rebuilt;
 	}
 
 	@Override
@@ -111,10 +310,127 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 			return Collections.emptyList();
 		}
 		List<Intersection> result = new LinkedList<>();
+		intersect(line, result, shared ? mailboxes.get().clear() : null);
+		return result;
+	}
+
+	/**
+	 * Add the intersections with the children of this node to the given list, assuming the line is already known to
+	 * intersect the {@link Boundary} of this node.
+	 *
+	 * @param mailbox The primitives already intersected, or null if no primitive is in more than one leaf.
+	 */
+	private void intersect(LineSegment line, List<Intersection> result, Mailbox mailbox) {
 		for (Intersectible intersectible : intersectibles) {
-			result.addAll(intersectible.intersect(line));
+			if (intersectible instanceof GeometryList) {
+				GeometryList child = (GeometryList) intersectible;
+				if (child.boundary().intersects(line)) {
+					child.intersect(line, result, mailbox);
+				}
+			} else if (mailbox == null || mailbox.add(intersectible)) {
+				result.addAll(intersectible.intersect(line));
+			}
 		}
-		return result;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		return boundary().intersects(line) && intersects(line, shared ? mailboxes.get().clear() : null);
+	}
+
+	private boolean intersects(LineSegment line, Mailbox mailbox) {
+		for (Intersectible intersectible : intersectibles) {
+			if (intersectible instanceof GeometryList) {
+				GeometryList child = (GeometryList) intersectible;
+				if (child.boundary().intersects(line) && child.intersects(line, mailbox)) {
+					return true;
+				}
+			} else if ((mailbox == null || mailbox.add(intersectible)) && intersectible.intersects(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		if (!boundary().intersects(line)) {
+			return transparency;
+		}
+		return transparency(line, transparency, threshold, shared ? mailboxes.get().clear() : null);
+	}
+
+	private Factors transparency(LineSegment line, Factors transparency, double threshold, Mailbox mailbox) {
+		for (Intersectible intersectible : intersectibles) {
+			if (intersectible instanceof GeometryList) {
+				GeometryList child = (GeometryList) intersectible;
+				if (child.boundary().intersects(line)) {
+					transparency = child.transparency(line, transparency, threshold, mailbox);
+				}
+			} else if (mailbox == null || mailbox.add(intersectible)) {
+				transparency = intersectible.transparency(line, transparency, threshold);
+			}
+			if (transparency.lt(threshold)) {
+				return Factors.ZERO;
+			}
+		}
+		return transparency;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		return boundary().entryDistance(line) < hit.distance
+			&& intersectWithin(line, hit, shared ? hit.mailbox() : null);
+	}
+
+	/**
+	 * Find the closest intersection with the children of this node, assuming the line is already known to intersect
+	 * the {@link Boundary} of this node. The children are visited from front to back, so children which are entered
+	 * after the closest intersection found so far are skipped.
+	 *
+	 * @param line    The {@link LineSegment} to check for intersections.
+	 * @param hit     The closest intersection found so far, which is updated if a closer one is found.
+	 * @param mailbox The primitives already intersected, or null if no primitive is in more than one leaf.
+	 * @return true if a closer intersection was recorded.
+	 */
+	private boolean intersectWithin(LineSegment line, HitRecord hit, Mailbox mailbox) {
+		int size = intersectibles.size();
+		int[] order = new int[size];
+		double[] entries = new double[size];
+		boolean unbounded = false;
+		for (int i = 0; i < size; ++i) { // insertion sort the children by entry distance
+			Boundary box = intersectibles.get(i).boundary();
+			double entry = Double.POSITIVE_INFINITY; // infinite children are visited after all the others
+			if (box.isFinite()) {
+				entry = box.entryDistance(line);
+			} else {
+				unbounded = true;
+			}
+			int j = i;
+			for (; j > 0 && entries[j - 1] > entry; --j) {
+				entries[j] = entries[j - 1];
+				order[j] = order[j - 1];
+			}
+			entries[j] = entry;
+			order[j] = i;
+		}
+
+		boolean found = false;
+		for (int i = 0; i < size && entries[i] < hit.distance; ++i) {
+			Intersectible child = intersectibles.get(order[i]);
+			if (child instanceof GeometryList) {
+				found |= ((GeometryList) child).intersectWithin(line, hit, mailbox);
+			} else if (mailbox == null || mailbox.add(child)) {
+				found |= child.intersect(line, hit);
+			}
+		}
+		for (int i = 0; unbounded && i < size; ++i) {
+			Intersectible child = intersectibles.get(i);
+			if (!child.boundary().isFinite()) {
+				found |= child.intersect(line, hit);
+			}
+		}
+		return found;
 	}
 
 	@Override
@@ -122,6 +438,80 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 		return boundary;
 	}
 
+	/**
+	 * Get the direct children of this node of the hierarchy.
+	 *
+	 * @return The {@link Intersectible}s directly contained in this collection.
+	 */
+	List<Intersectible> children() {
+		return intersectibles;
+	}
+
+	/**
+	 * Determines whether some of the leaves of the hierarchy are in more than one node, so that line segments traced
+	 * through it need a {@link Mailbox} to avoid intersecting them more than once.
+	 *
+	 * @return true if some leaf is in more than one node.
+	 */
+	boolean shared() {
+		return shared;
+	}
+
+	/**
+	 * Separate the children of this node which have infinite {@link Boundary}s, other than nodes, from the rest, so
+	 * that a hierarchy compiled from the node can intersect them after everything else.
+	 *
+	 * @param unbounded The list to add the children with infinite boundaries to.
+	 * @return A node containing the rest of the children, which is this node if none of them are infinite.
+	 */
+	GeometryList bounded(List<Intersectible> unbounded) {
+		List<Intersectible> bounded = new ArrayList<>();
+		Boundary boundary = Boundary.EMPTY;
+		for (Intersectible child : intersectibles) {
+			if (child instanceof GeometryList || child.boundary().isFinite()) {
+				bounded.add(child);
+				boundary = boundary.union(child.boundary());
+			} else {
+				unbounded.add(child);
+			}
+		}
+		return bounded.size() == intersectibles.size() ? this
+			: new GeometryList(boundary, bounded.toArray(new Intersectible[bounded.size()]));
+	}
+
+	/**
+	 * Get the leaves of the hierarchy, that is, all the {@link Intersectible}s in the collection which aren't
+	 * themselves {@link GeometryList}s.
+	 *
+	 * @return The {@link Geometry}s and {@link Instance}s in the collection, each of them once even if it is in more
+	 *         than one node.
+	 */
+	List<Intersectible> leaves() {
+		List<Intersectible> leaves = new ArrayList<>();
+		addLeaves(leaves, Collections.newSetFromMap(new IdentityHashMap<>()));
+		return leaves;
+	}
+
+	/**
+	 * Add the leaves of the hierarchy which haven't been seen yet to the given list.
+	 *
+	 * @param leaves The list of leaves to add to.
+	 * @param seen   The leaves already added, since a leaf may be in more than one node.
+	 */
+	private void addLeaves(List<Intersectible> leaves, Set<Intersectible> seen) {
+		for (Intersectible child : intersectibles) {
+			if (child instanceof GeometryList) {
+				((GeometryList) child).addLeaves(leaves, seen);
+			} else if (seen.add(child)) {
+				leaves.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the {@link Geometry}s in the collection. The geometries of any {@link Instance}s are not included,
+	 * since they are shared and are not in the coordinates of the scene.
+	 */
 	@Override
 	public Iterator<Geometry> iterator() {
 		return new GeometriesIterator(this);
@@ -133,6 +523,8 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 	public class GeometriesIterator extends EfficientIterator<Geometry> {
 
 		private Deque<Iterator<Intersectible>> iterators;
+		/** The geometries already iterated over, or null if no geometry is in more than one node. */
+		private Set<Geometry> seen;
 
 		/**
 		 * Construct an iterator which iterates over the geometries in the given {@link GeometryList}.
@@ -141,6 +533,7 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 		 */
 		GeometriesIterator(GeometryList geometries) {
 			this.iterators = new ArrayDeque<>();
+			this.seen = geometries.shared ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
 			iterators.add(geometries.intersectibles.iterator());
 			setNext();
 		}
@@ -154,7 +547,17 @@ public class GeometryList implements Intersectible, Iterable<Geometry> {
 				if (top.hasNext()) {
 					Intersectible node = top.next();
 					if (node instanceof Geometry) { // node is a leaf
-						next = (Geometry) node;
+						if (seen == null || seen.add((Geometry) node)) {
+							next = (Geometry) node;
+						} else {
+							setNext();
+						}
+					} else if (node instanceof Instance || node instanceof ClippedGeometry) {
+						setNext(); // the clipped geometries are iterated over through their exterior
+					} else if (node instanceof ExteriorGeometries) {
+						List<Intersectible> exterior = new ArrayList<>(((ExteriorGeometries) node).geometries());
+						iterators.add(exterior.iterator());
+						setNext();
 					} else { // intermediate node
 						iterators.add(((GeometryList) node).intersectibles.iterator());
 						setNext();
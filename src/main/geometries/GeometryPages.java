@@ -0,0 +1,304 @@
+package geometries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A memory mapped file in which {@link OffHeapArray}s keep their pages, so that an {@link OffHeapHierarchy} may be
+ * larger than the memory of the machine. Each page is mapped when it is first accessed, and the operating system reads
+ * it from the file on demand, so only the pages which rays actually reach take up memory.
+ *
+ * The number of bytes of the pages in use is limited by a budget. An unmapped page is only released by the garbage
+ * collector once no thread is still reading from it, so threads never need to lock to access a page which is mapped,
+ * and until it is released, it is mapped again by reusing it rather than by mapping the file again. Collections are
+ * never requested nor waited for, so a thread which maps a page is never held up, and the unmapped pages stay mapped
+ * beyond the budget until the JVM collects them on its own. This costs address space, but not memory which the
+ * operating system can't reclaim, since the pages are backed by the file.
+ *
+ * When mapping another page would exceed the budget, pages are unmapped in the order of a clock: each page is marked
+ * when it is accessed, and the clock passes over marked pages once, clearing their marks, before unmapping the first
+ * page it finds unmarked, so that the pages near the root of the hierarchy, which every ray accesses, stay mapped.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class GeometryPages implements Closeable {
+	/** The smallest and largest numbers of bytes in a page. */
+	private static final int MIN_PAGE_SIZE = 1 << 12, MAX_PAGE_SIZE = 1 << 18;
+	/** The number of pages which fit in the budget, unless they would be smaller than {@link #MIN_PAGE_SIZE}. */
+	private static final int BUDGET_PAGES = 128;
+
+	private final FileChannel channel;
+	/** The maximum number of bytes of pages which are in use at once. */
+	private final long budget;
+	/** The maximum number of bytes in each page. */
+	private final int pageSize;
+	/** The number of bytes of the file allocated to pages so far. */
+	private long size = 0;
+	/** The number of bytes of the pages which are mapped and in use. */
+	private long resident = 0;
+	/** The number of bytes of the pages which were unmapped but are not yet released. */
+	private long unreleasedBytes = 0;
+	/** The largest number of bytes of pages which were in use at once. */
+	private long peakResident = 0;
+	/** The largest number of bytes of pages which were in use or waiting to be released at once. */
+	private long peakMapped = 0;
+	private long faults = 0;
+	private long evictions = 0;
+	/** The mapped pages, in the order the hand of the clock passes over them. */
+	private final Deque<Page> clock = new ArrayDeque<>();
+	/** The pages which were unmapped but are not yet released. */
+	private final Set<Unmapped> unreleased = new HashSet<>();
+	private final ReferenceQueue<ByteBuffer> released = new ReferenceQueue<>();
+	/** The number of times a page had to be mapped from the file, rather than reusing a page not yet released. */
+	private long mappings = 0;
+
+	/** A mapped page of an array. */
+	private static class Page {
+		final OffHeapArray array;
+		final int index;
+		final int bytes;
+
+		Page(OffHeapArray array, int index, int bytes) {
+			this.array = array;
+			this.index = index;
+			this.bytes = bytes;
+		}
+	}
+
+	/** A page which was unmapped, which is cleared once the garbage collector releases it. */
+	static final class Unmapped extends WeakReference<ByteBuffer> {
+		final int bytes;
+
+		Unmapped(ByteBuffer page, int bytes, ReferenceQueue<ByteBuffer> queue) {
+			super(page, queue);
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Create a temporary file for the pages, which is deleted when it is closed.
+	 *
+	 * @param budget The maximum number of bytes of pages to keep in use at once. At least one page is always in use.
+	 * @throws IOException if the file cannot be created.
+	 */
+	public GeometryPages(long budget) throws IOException {
+		this(Files.createTempFile("geometry", ".pages"), budget, StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	/**
+	 * Create a file for the pages at the given path, replacing it if it exists.
+	 *
+	 * @param file   The path of the file.
+	 * @param budget The maximum number of bytes of pages to keep in use at once. At least one page is always in use.
+	 * @throws IOException if the file cannot be created.
+	 */
+	public GeometryPages(Path file, long budget) throws IOException {
+		this(file, budget, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private GeometryPages(Path file, long budget, StandardOpenOption option) throws IOException {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("Error: The budget of the geometry pages must be positive.");
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE, option);
+		this.budget = budget;
+		this.pageSize =
+			(int) Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, Long.highestOneBit(budget / BUDGET_PAGES)));
+	}
+
+	/**
+	 * Get the maximum number of bytes in each page, which is small enough that many pages fit in the budget, so that
+	 * the pages which every ray accesses are not unmapped along with the rest.
+	 *
+	 * @return The page size.
+	 */
+	int pageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Allocate a region of the file for a new page.
+	 *
+	 * @param bytes The size of the page.
+	 * @return The position of the page in the file.
+	 */
+	synchronized long allocate(int bytes) {
+		long position = size;
+		size += bytes;
+		return position;
+	}
+
+	/**
+	 * Map a page of an array, unmapping other pages first if the budget would be exceeded. The page is stored in the
+	 * array, unless another thread already mapped it.
+	 *
+	 * @param array    The array the page belongs to.
+	 * @param index    The index of the page in the array.
+	 * @param position The position of the page in the file.
+	 * @param bytes    The size of the page.
+	 * @return The mapped page.
+	 * @throws UncheckedIOException if the page cannot be mapped.
+	 */
+	synchronized ByteBuffer map(OffHeapArray array, int index, long position, int bytes) {
+		ByteBuffer page = array.mapped(index);
+		if (page != null) {
+			return page; // mapped by another thread while this one was waiting
+		}
+		poll();
+		while (resident + bytes > budget && !clock.isEmpty()) {
+			Page oldest = clock.poll();
+			if (oldest.array.accessed(oldest.index)) {
+				clock.add(oldest); // give the page a second chance
+			} else {
+				Unmapped unmapped = new Unmapped(oldest.array.unmap(oldest.index), oldest.bytes, released);
+				oldest.array.unmapped(oldest.index, unmapped);
+				unreleased.add(unmapped);
+				resident -= oldest.bytes;
+				unreleasedBytes += oldest.bytes;
+				++evictions;
+			}
+		}
+		Unmapped unmapped = array.unmapped(index);
+		page = unmapped == null ? null : unmapped.get();
+		if (page != null) {
+			unreleased.remove(unmapped); // reuse the page rather than mapping the file again
+			unreleasedBytes -= unmapped.bytes;
+		} else {
+			try {
+				page = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes).order(ByteOrder.nativeOrder());
+			} catch (IOException e) {
+				throw new UncheckedIOException("Error: Could not map a page of geometry.", e);
+			}
+			++mappings;
+		}
+		array.unmapped(index, null);
+		array.store(index, page);
+		clock.add(new Page(array, index, bytes));
+		resident += bytes;
+		peakResident = Math.max(peakResident, resident);
+		peakMapped = Math.max(peakMapped, resident + unreleasedBytes);
+		++faults;
+		return page;
+	}
+
+	private void poll() {
+		for (Reference<? extends ByteBuffer> reference; (reference = released.poll()) != null;) {
+			release(reference);
+		}
+	}
+
+	/**
+	 * Forget a page which the garbage collector released, unless it was reused before it was released.
+	 */
+	private void release(Reference<? extends ByteBuffer> reference) {
+		if (unreleased.remove(reference)) {
+			unreleasedBytes -= ((Unmapped) reference).bytes;
+		}
+	}
+
+	/**
+	 * Get the number of bytes of the file allocated to pages.
+	 *
+	 * @return The size of the file.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Get the number of bytes of the pages which are mapped and in use, not counting pages waiting to be released.
+	 *
+	 * @return The number of bytes in use.
+	 */
+	public synchronized long resident() {
+		return resident;
+	}
+
+	/**
+	 * Get the number of bytes of the pages which are mapped, which are the pages in use and the pages waiting to be
+	 * released.
+	 *
+	 * @return The number of bytes mapped.
+	 */
+	public synchronized long mapped() {
+		poll();
+		return resident + unreleasedBytes;
+	}
+
+	/**
+	 * Get the largest number of bytes of pages which were in use at once, not counting pages waiting to be released.
+	 *
+	 * @return The peak number of bytes in use.
+	 */
+	public synchronized long peakResident() {
+		return peakResident;
+	}
+
+	/**
+	 * Get the largest number of bytes of pages which were mapped at once, including pages waiting to be released.
+	 *
+	 * @return The peak number of bytes mapped.
+	 */
+	public synchronized long peakMapped() {
+		return peakMapped;
+	}
+
+	/**
+	 * Get the number of times a page was mapped because it was accessed while it was not mapped.
+	 *
+	 * @return The number of page faults.
+	 */
+	public synchronized long faults() {
+		return faults;
+	}
+
+	/**
+	 * Get the number of times a page had to be mapped from the file, because it was accessed for the first time or
+	 * because it had been released since it was unmapped.
+	 *
+	 * @return The number of mappings.
+	 */
+	public synchronized long mappings() {
+		return mappings;
+	}
+
+	/**
+	 * Get the number of times a page was unmapped to stay within the budget.
+	 *
+	 * @return The number of evictions.
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Geometry pages: %.1f MB in file, budget %.1f MB, peak %.1f MB in use and %.1f MB mapped, "
+			+ "%d faults (%d mapped from the file), %d evictions%n", size / 1e6, budget / 1e6, peakResident / 1e6,
+			peakMapped / 1e6, faults, mappings, evictions);
+	}
+
+	/**
+	 * Close the file. Pages which are already mapped stay readable, but no more pages can be mapped.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,25 @@
+package geometries;
+
+import java.util.List;
+
+/**
+ * Classes which implement this interface are able to arrange a collection of finite {@link Intersectible}s into a
+ * bounding volume hierarchy of nested {@link GeometryList}s.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public interface HierarchyBuilder {
+
+	/**
+	 * Arrange the given {@link Intersectible}s into a hierarchy and return its root. The leaves of the hierarchy are
+	 * exactly the given {@link Intersectible}s, though a builder may place an {@link Intersectible} in more than one
+	 * node, as a {@link SpatialSplitHierarchyBuilder} does.
+	 *
+	 * @param intersectibles The {@link Intersectible}s to arrange. They must all have a finite {@link Boundary}, and
+	 *                       there must be at least one of them.
+	 * @return The root of the hierarchy. This is either a {@link GeometryList} or, if only one {@link Intersectible}
+	 *         was given, that {@link Intersectible} itself.
+	 */
+	Intersectible build(List<Intersectible> intersectibles);
+}
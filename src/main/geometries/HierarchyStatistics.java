@@ -0,0 +1,74 @@
+package geometries;
+
+/**
+ * A summary of the shape of a {@link FlatHierarchy}, used to compare the quality of hierarchies built in different
+ * ways.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class HierarchyStatistics {
+	/** The number of nodes in the hierarchy. */
+	public final int nodes;
+	/** The number of nodes with no child nodes. */
+	public final int leaves;
+	/** The number of primitives in the hierarchy. */
+	public final int primitives;
+	/** The depth of the deepest leaf, where the root is at depth zero. */
+	public final int maxDepth;
+	/** The average depth of the leaves. */
+	public final double averageDepth;
+	/** The number of leaves containing each number of primitives, indexed by the number of primitives. */
+	private final int[] leafSizes;
+	/** The cost of the hierarchy, as estimated by {@link FlatHierarchy#cost()}. */
+	public final double cost;
+
+	/**
+	 * Construct the statistics of a hierarchy.
+	 *
+	 * @param nodes        The number of nodes in the hierarchy.
+	 * @param leaves       The number of nodes with no child nodes.
+	 * @param primitives   The number of primitives in the hierarchy.
+	 * @param maxDepth     The depth of the deepest leaf.
+	 * @param averageDepth The average depth of the leaves.
+	 * @param leafSizes    The number of leaves containing each number of primitives.
+	 * @param cost         The estimated cost of the hierarchy.
+	 */
+	HierarchyStatistics(int nodes, int leaves, int primitives, int maxDepth, double averageDepth, int[] leafSizes,
+		double cost) {
+		this.nodes = nodes;
+		this.leaves = leaves;
+		this.primitives = primitives;
+		this.maxDepth = maxDepth;
+		this.averageDepth = averageDepth;
+		this.leafSizes = leafSizes.clone();
+		this.cost = cost;
+	}
+
+	/**
+	 * Get the number of leaves containing the given number of primitives.
+	 *
+	 * @param size The number of primitives.
+	 * @return The number of leaves containing exactly {@code size} primitives.
+	 */
+	public int leaves(int size) {
+		return size < leafSizes.length ? leafSizes[size] : 0;
+	}
+
+	/**
+	 * Summarises the statistics as a few lines of text.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sizes = new StringBuilder();
+		for (int size = 0; size < leafSizes.length; ++size) {
+			if (leafSizes[size] > 0) {
+				sizes.append(sizes.length() == 0 ? "" : ", ").append(size).append(": ").append(leafSizes[size]);
+			}
+		}
+		return String.format("Nodes: %d (%d leaves), primitives: %d%n", nodes, leaves, primitives)
+			+ String.format("Depth: max %d, average %.2f%n", maxDepth, averageDepth)
+			+ String.format("Leaf sizes: %s%n", sizes)
+			+ String.format("SAH cost: %.2f%n", cost);
+	}
+}
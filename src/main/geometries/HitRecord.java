@@ -0,0 +1,230 @@
+package geometries;
+
+import primitives.LineSegment;
+import primitives.Point;
+
+/**
+ * A mutable record of the closest intersection found so far along a {@link LineSegment}. Unlike
+ * {@link Intersectible#intersect(LineSegment)}, which allocates a list of {@link Intersection}s for every test,
+ * {@link Intersectible#intersect(LineSegment, HitRecord)} writes the closest intersection into a record supplied by
+ * the caller, so a single record can be reused for every ray traced by a thread.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class HitRecord {
+	double distance;
+	Geometry geometry;
+	/** The {@link Instance} the geometry was intersected in, or null if the geometry is directly in the scene. */
+	Instance instance;
+	/** The index of the intersected face of a geometry made of many faces, such as a {@link TriangleMesh}. */
+	int face;
+	double x, y, z;
+	/** The barycentric coordinates of the intersection, if the intersected geometry is a {@link Triangle}. */
+	double u, v;
+
+	// Scratch space for traversing hierarchies, kept here so that it is reused along with the record
+	private int[] nodeStack = new int[0];
+	private double[] entryStack = new double[0];
+	private double[] laneEntries = new double[0];
+	private Mailbox mailbox = null;
+	private HitRecord nested = null;
+
+	/**
+	 * Construct an empty hit record.
+	 */
+	public HitRecord() {
+		reset();
+	}
+
+	/**
+	 * Clear the record so that it can be reused for another line segment.
+	 *
+	 * @return This record.
+	 */
+	public HitRecord reset() {
+		distance = Double.POSITIVE_INFINITY;
+		geometry = null;
+		instance = null;
+		return this;
+	}
+
+	/**
+	 * Record an intersection at the given distance along the line segment, if it is on the line segment and closer
+	 * than the intersection already recorded. The point of the intersection is calculated from the distance.
+	 *
+	 * @param geometry The intersected {@link Geometry}.
+	 * @param line     The intersecting {@link LineSegment}.
+	 * @param distance The distance from the start of the line segment to the intersection.
+	 * @return true if the intersection was recorded.
+	 */
+	boolean update(Geometry geometry, LineSegment line, double distance) {
+		return update(geometry, line, distance, 0);
+	}
+
+	/**
+	 * Record an intersection with a face of a geometry made of many faces at the given distance along the line
+	 * segment, if it is on the line segment and closer than the intersection already recorded.
+	 *
+	 * @param geometry The intersected {@link Geometry}.
+	 * @param line     The intersecting {@link LineSegment}.
+	 * @param distance The distance from the start of the line segment to the intersection.
+	 * @param face     The index of the intersected face of the geometry.
+	 * @return true if the intersection was recorded.
+	 */
+	boolean update(Geometry geometry, LineSegment line, double distance, int face) {
+		if (!(distance < this.distance) || !line.withinDistance(distance)) {
+			return false;
+		}
+		this.distance = distance;
+		this.geometry = geometry;
+		this.face = face;
+		instance = null;
+		x = line.start.x + line.direction.x * distance;
+		y = line.start.y + line.direction.y * distance;
+		z = line.start.z + line.direction.z * distance;
+		return true;
+	}
+
+	/**
+	 * Record an intersection at the given point, if it is closer than the intersection already recorded.
+	 *
+	 * @param intersection The {@link Intersection}.
+	 * @param distance     The distance from the start of the line segment to the intersection.
+	 * @return true if the intersection was recorded.
+	 */
+	boolean update(Intersection intersection, double distance) {
+		if (!(distance < this.distance)) {
+			return false;
+		}
+		this.distance = distance;
+		this.geometry = intersection.geometry;
+		instance = intersection.instance;
+		face = intersection.face;
+		x = intersection.point.x;
+		y = intersection.point.y;
+		z = intersection.point.z;
+		return true;
+	}
+
+	/**
+	 * Get an array to use as the stack of nodes while traversing a hierarchy.
+	 *
+	 * @param size The minimum size of the array.
+	 * @return An array of at least the given size, whose contents are undefined.
+	 */
+	int[] nodeStack(int size) {
+		if (nodeStack.length < size) {
+			nodeStack = new int[size];
+		}
+		return nodeStack;
+	}
+
+	/**
+	 * Get an array to use as the stack of entry distances while traversing a hierarchy.
+	 *
+	 * @param size The minimum size of the array.
+	 * @return An array of at least the given size, whose contents are undefined.
+	 */
+	double[] entryStack(int size) {
+		if (entryStack.length < size) {
+			entryStack = new double[size];
+		}
+		return entryStack;
+	}
+
+	/**
+	 * Get an array to hold the entry distances of the children of a wide node while traversing a hierarchy.
+	 *
+	 * @param width The number of children of each node.
+	 * @return An array of at least the given size, whose contents are undefined.
+	 */
+	double[] laneEntries(int width) {
+		if (laneEntries.length < width) {
+			laneEntries = new double[width];
+		}
+		return laneEntries;
+	}
+
+	/**
+	 * Get a {@link Mailbox} to use while traversing a hierarchy in which a primitive may be in more than one leaf.
+	 *
+	 * @return The mailbox of this record, emptied.
+	 */
+	Mailbox mailbox() {
+		if (mailbox == null) {
+			mailbox = new Mailbox();
+		}
+		return mailbox.clear();
+	}
+
+	/**
+	 * Get a record to use while tracing a line segment through the object of an {@link Instance}. The object is traced
+	 * in its own coordinates, so its intersections are recorded separately, and it may also be a hierarchy which needs
+	 * stacks of its own while the hierarchy containing the instance is part way through its traversal.
+	 *
+	 * @return A record belonging to this record, whose contents are undefined.
+	 */
+	HitRecord nested() {
+		if (nested == null) {
+			nested = new HitRecord();
+		}
+		return nested;
+	}
+
+	/**
+	 * Determines whether an intersection has been recorded since the record was last reset.
+	 *
+	 * @return true if an intersection has been recorded.
+	 */
+	public boolean found() {
+		return geometry != null;
+	}
+
+	/**
+	 * Get the distance from the start of the line segment to the recorded intersection.
+	 *
+	 * @return The distance to the recorded intersection, or positive infinity if none has been recorded.
+	 */
+	public double distance() {
+		return distance;
+	}
+
+	/**
+	 * Get the intersected {@link Geometry}.
+	 *
+	 * @return The geometry of the recorded intersection, or null if none has been recorded.
+	 */
+	public Geometry geometry() {
+		return geometry;
+	}
+
+	/**
+	 * Get the first barycentric coordinate of the recorded intersection, which is the weight of the second vertex of
+	 * the intersected {@link Triangle}.
+	 *
+	 * @return The weight of the second vertex, or an undefined value if the intersected geometry is not a triangle.
+	 */
+	public double u() {
+		return u;
+	}
+
+	/**
+	 * Get the second barycentric coordinate of the recorded intersection, which is the weight of the third vertex of
+	 * the intersected {@link Triangle}.
+	 *
+	 * @return The weight of the third vertex, or an undefined value if the intersected geometry is not a triangle.
+	 */
+	public double v() {
+		return v;
+	}
+
+	/**
+	 * Create an {@link Intersection} object from the record.
+	 *
+	 * @return The recorded intersection, or null if none has been recorded.
+	 */
+	public Intersection intersection() {
+		return found() ? new Intersection(geometry, new Point(x, y, z), instance, face) : null;
+	}
+}
@@ -23,4 +23,14 @@ abstract class InfiniteGeometry extends Geometry {
 	public Boundary boundary() {
 		return Boundary.INFINITE;
 	}
+
+	/**
+	 * Calculates a finite bounding box of the part of the geometry inside the given region, so that the geometry can
+	 * be placed in a hierarchy of a scene whose rays start inside the region.
+	 *
+	 * @param region The finite {@link Boundary} of the region.
+	 * @return A {@link Boundary} which is within the region and contains every point of the geometry which is in the
+	 *         region, or {@link Boundary#EMPTY} if the geometry does not pass through the region.
+	 */
+	abstract Boundary clip(Boundary region);
 }
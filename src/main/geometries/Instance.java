@@ -0,0 +1,197 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.List;
+import math.matrices.Matrix;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.NonZeroVector;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * A copy of some shared object placed in the scene by an affine transformation, which maps each point p of the object
+ * to {@code matrix * p + translation} in the scene. Many instances can share a single object, such as an optimized
+ * {@link GeometryList} or the {@link FlatHierarchy} compiled from it, so a sub-assembly which is repeated throughout a
+ * scene is stored and built only once, and the hierarchy of the scene only needs to contain the instances.
+ *
+ * Instead of transforming the object, each line segment is transformed into the coordinates of the object, where it
+ * is traced through the shared object. The transformed line segment is normalized, so distances along it are scaled
+ * back to distances in the scene. The geometries of the object stay in the coordinates of the object, so the
+ * {@link Intersection}s found in an instance remember the instance in order to transform their normals into the
+ * scene.
+ *
+ * Instances cannot be nested, so the object of an instance must not contain any instances itself.
+ *
+ * In a scene file, an {@code <instance>} element places copies of the {@code <geometries>} it contains, as described
+ * in {@link xml.factories.element.XmlInstanceFactory}.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class Instance implements Intersectible {
+	private final Intersectible object;
+	private final Matrix matrix;
+	private final Vector translation;
+	/** Maps the scene to the object. */
+	private final Matrix inverse;
+	/** Maps normals in the object to normals in the scene. */
+	private final Matrix normalMatrix;
+	private final Boundary boundary;
+
+	/**
+	 * Construct an instance of the given object which is moved by the given translation.
+	 *
+	 * @param object      The shared object to place in the scene.
+	 * @param translation The vector by which the object is moved.
+	 * @throws IllegalArgumentException if the object contains an instance.
+	 */
+	public Instance(Intersectible object, Vector translation) {
+		this(object, Matrix.IDENTITY, translation);
+	}
+
+	/**
+	 * Construct an instance of the given object which is transformed by the given matrix and then moved by the given
+	 * translation.
+	 *
+	 * @param object      The shared object to place in the scene.
+	 * @param matrix      The linear part of the transformation, such as a {@link math.matrices.RotationMatrix}, which
+	 *                    may also scale or shear the object.
+	 * @param translation The vector by which the object is moved after being transformed by the matrix.
+	 * @throws IllegalArgumentException if the matrix is singular, or if the object contains an instance.
+	 */
+	public Instance(Intersectible object, Matrix matrix, Vector translation) {
+		if (matrix.determinant() == 0) {
+			throw new IllegalArgumentException("Error: The matrix of an instance must not be singular.");
+		}
+		if (containsInstance(object)) {
+			throw new IllegalArgumentException("Error: Instances cannot be nested.");
+		}
+		this.object = object;
+		this.matrix = matrix;
+		this.translation = translation;
+		this.inverse = matrix.inverse();
+		this.normalMatrix = inverse.transposed();
+		this.boundary = transform(object.boundary());
+	}
+
+	private static boolean containsInstance(Intersectible object) {
+		if (object instanceof Instance) {
+			return true;
+		}
+		List<Intersectible> children = object instanceof GeometryList ? ((GeometryList) object).children()
+			: object instanceof FlatHierarchy ? ((FlatHierarchy) object).primitives() : List.of();
+		for (Intersectible child : children) {
+			if (containsInstance(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Calculate the bounding box of the transformed corners of the given box.
+	 */
+	private Boundary transform(Boundary box) {
+		if (!box.isFinite()) {
+			return Boundary.INFINITE;
+		}
+		Boundary result = Boundary.EMPTY;
+		Point min = box.min();
+		Point max = box.max();
+		for (int corner = 0; corner < 8; ++corner) {
+			Point point = new Point((corner & 1) == 0 ? min.x : max.x, (corner & 2) == 0 ? min.y : max.y,
+				(corner & 4) == 0 ? min.z : max.z);
+			result = result.union(new Boundary(toScene(point)));
+		}
+		return result;
+	}
+
+	private Point toScene(Point point) {
+		return matrix.multiply(point).add(translation);
+	}
+
+	private Point toObject(Point point) {
+		return inverse.multiply(point.subtract(translation));
+	}
+
+	/**
+	 * Transform a line segment into the coordinates of the object. The length of the direction of the transformed line
+	 * segment before it is normalized is the factor by which distances along it are scaled.
+	 */
+	private LineSegment toObject(LineSegment line, NonZeroVector direction) {
+		Point start = toObject(line.start);
+		NormalizedVector normalized = direction.normalized();
+		if (line instanceof Ray) {
+			return new Ray(start, normalized);
+		}
+		return new LineSegment(start, normalized, line.squareLength * direction.squareLength());
+	}
+
+	private LineSegment toObject(LineSegment line) {
+		return toObject(line, inverse.multiply(line.direction));
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		if (!boundary.intersects(line)) {
+			return List.of();
+		}
+		List<Intersection> result = new ArrayList<>();
+		for (Intersection intersection : object.intersect(toObject(line))) {
+			result.add(new Intersection(intersection.geometry, toScene(intersection.point), this, intersection.face));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		if (!(boundary.entryDistance(line) < hit.distance)) {
+			return false;
+		}
+		NonZeroVector direction = inverse.multiply(line.direction);
+		double scale = direction.length(); // distance in the object per unit of distance in the scene
+		HitRecord local = hit.nested().reset();
+		local.distance = hit.distance * scale;
+		if (!object.intersect(toObject(line, direction), local)) {
+			return false;
+		}
+		hit.distance = local.distance / scale;
+		hit.geometry = local.geometry;
+		hit.instance = this;
+		hit.face = local.face;
+		hit.x = line.start.x + line.direction.x * hit.distance;
+		hit.y = line.start.y + line.direction.y * hit.distance;
+		hit.z = line.start.z + line.direction.z * hit.distance;
+		return true;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		return boundary.intersects(line) && object.intersects(toObject(line));
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		return boundary.intersects(line) ? object.transparency(toObject(line), transparency, threshold) : transparency;
+	}
+
+	/**
+	 * Calculate the normal to a geometry of the object at a point in the scene.
+	 *
+	 * @param geometry The geometry of the object.
+	 * @param point    A point on the surface of the geometry once transformed into the scene.
+	 * @param face     The index of the face of the geometry the point is on.
+	 * @return The normal to the transformed geometry at the given point.
+	 */
+	NormalizedVector normal(Geometry geometry, Point point, int face) {
+		return normalMatrix.multiply(geometry.normal(toObject(point), face)).normalized();
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+}
@@ -1,6 +1,7 @@
 package geometries;
 
 import java.util.List;
+import primitives.Factors;
 import primitives.LineSegment;
 
 /**
@@ -19,6 +20,85 @@ public interface Intersectible {
 	 */
 	public List<Intersection> intersect(LineSegment line);
 
+	/**
+	 * Calculates the intersection between a given {@link LineSegment} and this object which is closest to the start of
+	 * the {@link LineSegment}.
+	 *
+	 * @param line The {@link LineSegment} to check for intersections.
+	 * @return The closest intersection with the given {@link LineSegment}, or null if there are none.
+	 */
+	public default Intersection closestIntersection(LineSegment line) {
+		HitRecord hit = new HitRecord();
+		intersect(line, hit);
+		return hit.intersection();
+	}
+
+	/**
+	 * Finds the intersection between a given {@link LineSegment} and this object which is closest to the start of the
+	 * {@link LineSegment}, and writes it to the given {@link HitRecord} if it is closer than the intersection already
+	 * recorded there. Implementations should not allocate any objects, so that a single record can be reused for many
+	 * tests. The default implementation falls back on {@link #intersect(LineSegment)}.
+	 *
+	 * @param line The {@link LineSegment} to check for intersections.
+	 * @param hit  The closest intersection found so far, which is updated if a closer one is found.
+	 * @return true if a closer intersection was recorded.
+	 */
+	public default boolean intersect(LineSegment line, HitRecord hit) {
+		boolean found = false;
+		for (Intersection intersection : intersect(line)) {
+			found |= hit.update(intersection, line.start.distance(intersection.point));
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the closest intersection with this object of each of a packet of {@link LineSegment}s, such as the rays
+	 * through a single pixel, writing each to the {@link HitRecord} at the same index. Implementations may take
+	 * advantage of the line segments being close together to trace them together. The default implementation traces
+	 * each line segment on its own.
+	 *
+	 * @param lines The {@link LineSegment}s to check for intersections.
+	 * @param hits  The closest intersection found so far for each line segment, at least as many as there are line
+	 *              segments, each of which is updated if a closer intersection is found.
+	 */
+	public default void intersect(LineSegment[] lines, HitRecord[] hits) {
+		for (int i = 0; i < lines.length; ++i) {
+			intersect(lines[i], hits[i]);
+		}
+	}
+
+	/**
+	 * Determines whether a given {@link LineSegment} intersects this object at all. Unlike
+	 * {@link #intersect(LineSegment)}, implementations may return as soon as any intersection is found.
+	 *
+	 * @param line The {@link LineSegment} to check for intersections.
+	 * @return true if there is at least one intersection with the given {@link LineSegment}.
+	 */
+	public default boolean intersects(LineSegment line) {
+		return !intersect(line).isEmpty();
+	}
+
+	/**
+	 * Calculates how much light passes through this object along a given {@link LineSegment}, such as a shadow ray.
+	 * Each intersection scales the transparency by the transparency of the material of the intersected geometry.
+	 * Implementations return as soon as the transparency drops below the given threshold.
+	 *
+	 * @param line         The {@link LineSegment} the light travels along.
+	 * @param transparency The transparency accumulated along the line before reaching this object.
+	 * @param threshold    The transparency below which the light is considered to be blocked entirely.
+	 * @return The transparency accumulated after passing through this object, or {@link Factors#ZERO} if it dropped
+	 *         below the threshold.
+	 */
+	public default Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		for (Intersection blocker : intersect(line)) {
+			transparency = transparency.scale(blocker.geometry.material.transparency);
+			if (transparency.lt(threshold)) {
+				return Factors.ZERO;
+			}
+		}
+		return transparency;
+	}
+
 	/**
 	 * Get the {@link Boundary} of this intersectible.
 	 *
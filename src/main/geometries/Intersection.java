@@ -14,6 +14,10 @@ public class Intersection {
 	public final Geometry geometry;
 	/** The point at which the intersection occurs. */
 	public final Point point;
+	/** The {@link Instance} the geometry was intersected in, or null if the geometry is directly in the scene. */
+	final Instance instance;
+	/** The index of the intersected face of a geometry made of many faces, such as a {@link TriangleMesh}. */
+	final int face;
 
 	/**
 	 * Construct an intersection at some point with some geometry.
@@ -22,8 +26,23 @@ public class Intersection {
 	 * @param point    The point at which the intersection occurs.
 	 */
 	public Intersection(Geometry geometry, Point point) {
+		this(geometry, point, null, 0);
+	}
+
+	/**
+	 * Construct an intersection at some point with a geometry in an {@link Instance}.
+	 *
+	 * @param geometry The geometry which the ray intersects, in the coordinates of the object of the instance.
+	 * @param point    The point at which the intersection occurs, in the coordinates of the scene.
+	 * @param instance The instance in which the geometry was intersected, or null if it is directly in the scene.
+	 * @param face     The index of the intersected face of the geometry, which is zero unless the geometry is made of
+	 *                 many faces.
+	 */
+	Intersection(Geometry geometry, Point point, Instance instance, int face) {
 		this.geometry = geometry;
 		this.point = point;
+		this.instance = instance;
+		this.face = face;
 	}
 
 	/**
@@ -32,6 +51,6 @@ public class Intersection {
 	 * @return The normal of the intersection.
 	 */
 	public NormalizedVector normal() {
-		return geometry.normal(point);
+		return instance == null ? geometry.normal(point, face) : instance.normal(geometry, point, face);
 	}
 }
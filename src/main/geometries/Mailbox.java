@@ -0,0 +1,112 @@
+package geometries;
+
+/**
+ * Remembers which primitives a single line segment has already been tested against while it is traced through a
+ * hierarchy in which a primitive may be in more than one leaf, such as one built by a
+ * {@link SpatialSplitHierarchyBuilder}, so that each primitive is intersected at most once per line segment.
+ *
+ * The primitives are compared by identity in an open addressing hash table. Primitives which are not objects, such
+ * as those stored by an {@link OffHeapHierarchy}, are identified by an int instead. Each slot is stamped with the line
+ * segment it was filled for, so the mailbox is emptied for the next line segment by changing the stamp, without
+ * clearing the table.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+final class Mailbox {
+	private Object[] primitives = new Object[16];
+	/** The int identifying the primitive in each slot whose object is null. */
+	private int[] references = new int[16];
+	private int[] stamps = new int[16];
+	/** The stamp of the slots filled for the current line segment. Slots with any other stamp are empty. */
+	private int stamp = 1;
+	private int size = 0;
+
+	/**
+	 * Empty the mailbox for a new line segment.
+	 *
+	 * @return This mailbox.
+	 */
+	Mailbox clear() {
+		size = 0;
+		if (++stamp == Integer.MAX_VALUE) {
+			stamps = new int[stamps.length];
+			stamp = 1;
+		}
+		return this;
+	}
+
+	/**
+	 * Record that the current line segment is tested against the given primitive.
+	 *
+	 * @param primitive The primitive to test.
+	 * @return true if the line segment was not already tested against the primitive, in which case it should be.
+	 */
+	boolean add(Object primitive) {
+		int mask = primitives.length - 1;
+		int i = hash(primitive) & mask;
+		for (; stamps[i] == stamp; i = (i + 1) & mask) {
+			if (primitives[i] == primitive) {
+				return false;
+			}
+		}
+		primitives[i] = primitive;
+		stamps[i] = stamp;
+		if (++size * 2 > primitives.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Record that the current line segment is tested against the primitive identified by the given int.
+	 *
+	 * @param reference The int identifying the primitive to test.
+	 * @return true if the line segment was not already tested against the primitive, in which case it should be.
+	 */
+	boolean add(int reference) {
+		int mask = primitives.length - 1;
+		int i = hash(reference) & mask;
+		for (; stamps[i] == stamp; i = (i + 1) & mask) {
+			if (primitives[i] == null && references[i] == reference) {
+				return false;
+			}
+		}
+		primitives[i] = null;
+		references[i] = reference;
+		stamps[i] = stamp;
+		if (++size * 2 > primitives.length) {
+			grow();
+		}
+		return true;
+	}
+
+	private void grow() {
+		Object[] oldPrimitives = primitives;
+		int[] oldReferences = references;
+		int[] oldStamps = stamps;
+		primitives = new Object[2 * oldPrimitives.length];
+		references = new int[2 * oldReferences.length];
+		stamps = new int[2 * oldStamps.length];
+		size = 0;
+		for (int i = 0; i < oldPrimitives.length; ++i) {
+			if (oldStamps[i] == stamp) {
+				if (oldPrimitives[i] != null) {
+					add(oldPrimitives[i]);
+				} else {
+					add(oldReferences[i]);
+				}
+			}
+		}
+	}
+
+	private static int hash(Object primitive) {
+		int hash = System.identityHashCode(primitive);
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int hash(int reference) {
+		int hash = reference * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,40 @@
+package geometries;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import primitives.Material;
+
+/**
+ * A mesh which is still in its OBJ or PLY file, along with the {@link Material} it is made from. It may be loaded
+ * into a {@link TriangleMesh}, or streamed into an {@link OffHeapHierarchy} without ever being loaded onto the heap.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class MeshFile {
+	/** The path of the file, whose format is determined by its extension, as in {@link MeshLoader}. */
+	public final Path file;
+	/** The {@link Material} the mesh is made from. */
+	public final Material material;
+
+	/**
+	 * Constructor for a mesh file.
+	 *
+	 * @param file     The path of the file.
+	 * @param material The {@link Material} the mesh is made from.
+	 */
+	public MeshFile(Path file, Material material) {
+		this.file = file;
+		this.material = material;
+	}
+
+	/**
+	 * Load the mesh from the file.
+	 *
+	 * @return The mesh.
+	 * @throws IOException if the file cannot be read, is not a valid OBJ or PLY file, or has another extension.
+	 */
+	public TriangleMesh load() throws IOException {
+		return MeshLoader.load(file, material);
+	}
+}
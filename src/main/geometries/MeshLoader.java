@@ -0,0 +1,645 @@
+package geometries;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import primitives.Material;
+
+/**
+ * Loads a {@link TriangleMesh} from a Wavefront OBJ file or a binary PLY file. The file is memory mapped and parsed
+ * straight from the mapped buffer into growing primitive arrays, without creating an object for each line, vertex, or
+ * face, so the memory taken while loading is little more than the memory taken by the mesh itself. Faces with more
+ * than three vertices are split into fans of triangles. The vertices and triangles are passed to a {@link Sink} as
+ * they are read, which stores them in the arrays of a {@link TriangleMesh}, unless they are streamed elsewhere.
+ *
+ * Only the positions of the vertices and the faces are read. Texture coordinates, normals, groups, and materials are
+ * ignored, since the whole mesh has a single {@link Material}.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class MeshLoader {
+	private MeshLoader() {
+	}
+
+	/**
+	 * Load a mesh from a file, whose format is determined by its extension, which is either {@code .obj} or
+	 * {@code .ply}.
+	 *
+	 * @param file     The path of the file.
+	 * @param material The {@link Material} of the mesh.
+	 * @return The mesh.
+	 * @throws IOException if the file cannot be read, is not a valid OBJ or PLY file, or has another extension.
+	 */
+	public static TriangleMesh load(Path file, Material material) throws IOException {
+		return isObj(file) ? loadObj(file, material) : loadPly(file, material);
+	}
+
+	/**
+	 * Read a mesh from a file into a {@link Sink}, as {@link #load(Path, Material)} does.
+	 *
+	 * @param file The path of the file.
+	 * @param sink The {@link Sink} to pass the vertices and triangles to.
+	 * @throws IOException if the file cannot be read, is not a valid OBJ or PLY file, or has another extension.
+	 */
+	static void read(Path file, Sink sink) throws IOException {
+		if (isObj(file)) {
+			readObj(file, sink);
+		} else {
+			readPly(file, sink);
+		}
+	}
+
+	/**
+	 * Determines the format of a mesh file from its extension.
+	 *
+	 * @return true if it is an OBJ file, or false if it is a PLY file.
+	 * @throws IOException if the extension is neither.
+	 */
+	private static boolean isObj(Path file) throws IOException {
+		String name = file.getFileName().toString().toLowerCase();
+		if (name.endsWith(".obj") || name.endsWith(".ply")) {
+			return name.endsWith(".obj");
+		}
+		throw new IOException("Error: Unknown mesh format \"" + file + "\", only .obj and .ply files are supported.");
+	}
+
+	/**
+	 * Receives the vertices and triangles of a mesh as they are read from its file.
+	 */
+	interface Sink {
+		/**
+		 * Called before the vertices of a PLY file, whose number is known in advance.
+		 *
+		 * @param count   The number of vertices.
+		 * @param doubles Whether the coordinates are doubles in the file. Otherwise they are rounded to floats.
+		 * @throws IOException if there are too many vertices.
+		 */
+		void vertices(long count, boolean doubles) throws IOException;
+
+		/**
+		 * Add the next vertex.
+		 *
+		 * @param x The x coordinate.
+		 * @param y The y coordinate.
+		 * @param z The z coordinate.
+		 */
+		void vertex(double x, double y, double z);
+
+		/**
+		 * Add a triangle. The indices of an OBJ file are checked before they are passed on, but those of a PLY file
+		 * may not be the indices of vertices.
+		 *
+		 * @param a The index of the first vertex.
+		 * @param b The index of the second vertex.
+		 * @param c The index of the third vertex.
+		 * @throws IOException if the triangle cannot be added.
+		 */
+		void triangle(int a, int b, int c) throws IOException;
+	}
+
+	/**
+	 * Load a mesh from a Wavefront OBJ file. The vertices are stored as floats.
+	 *
+	 * @param file     The path of the file.
+	 * @param material The {@link Material} of the mesh.
+	 * @return The mesh.
+	 * @throws IOException if the file cannot be read or is not a valid OBJ file.
+	 */
+	public static TriangleMesh loadObj(Path file, Material material) throws IOException {
+		MeshArrays mesh = new MeshArrays();
+		readObj(file, mesh);
+		try {
+			return mesh.toMesh(material);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Error: Invalid OBJ file \"" + file + "\".", e);
+		}
+	}
+
+	/**
+	 * Read an OBJ file into a {@link Sink}, as {@link #loadObj(Path, Material)} does.
+	 */
+	private static void readObj(Path file, Sink sink) throws IOException {
+		ByteBuffer buffer = map(file);
+		int vertices = 0;
+		IntArray face = new IntArray();
+		int line = 1;
+		try {
+			while (buffer.hasRemaining()) {
+				skipSpaces(buffer);
+				if (!buffer.hasRemaining()) {
+					break;
+				}
+				byte first = buffer.get(buffer.position());
+				byte second = buffer.position() + 1 < buffer.limit() ? buffer.get(buffer.position() + 1) : 0;
+				if (first == 'v' && (second == ' ' || second == '\t')) {
+					buffer.position(buffer.position() + 2);
+					float x = (float) parseDouble(buffer), y = (float) parseDouble(buffer);
+					sink.vertex(x, y, (float) parseDouble(buffer));
+					++vertices;
+				} else if (first == 'f' && (second == ' ' || second == '\t')) {
+					buffer.position(buffer.position() + 2);
+					face.clear();
+					while (skipSpaces(buffer)) {
+						int index = parseInt(buffer);
+						// indices start from one, and negative indices count back from the last vertex
+						index = index > 0 ? index - 1 : vertices + index;
+						if (index < 0 || index >= vertices) {
+							throw new IOException("Error: Face refers to a vertex which is not defined.");
+						}
+						face.add(index);
+						while (buffer.hasRemaining() && !isSpace(buffer.get(buffer.position()))
+							&& !isEndOfLine(buffer.get(buffer.position()))) {
+							buffer.get(); // skip the indices of the texture coordinates and normal
+						}
+					}
+					addFan(sink, face);
+				}
+				skipLine(buffer);
+				++line;
+			}
+		} catch (IOException | NumberFormatException | BufferUnderflowException e) {
+			throw new IOException("Error: Invalid OBJ file \"" + file + "\" at line " + line + ".", e);
+		}
+	}
+
+	/**
+	 * The types of the properties of PLY elements, with their names and sizes in bytes.
+	 */
+	private enum PlyType {
+		CHAR(1, "char", "int8"), UCHAR(1, "uchar", "uint8"), SHORT(2, "short", "int16"), USHORT(2, "ushort", "uint16"),
+		INT(4, "int", "int32"), UINT(4, "uint", "uint32"), FLOAT(4, "float", "float32"),
+		DOUBLE(8, "double", "float64");
+
+		final int size;
+		final List<String> names;
+
+		PlyType(int size, String... names) {
+			this.size = size;
+			this.names = List.of(names);
+		}
+
+		static PlyType of(String name) throws IOException {
+			for (PlyType type : values()) {
+				if (type.names.contains(name)) {
+					return type;
+				}
+			}
+			throw new IOException("Error: Unknown PLY property type \"" + name + "\".");
+		}
+
+		double read(ByteBuffer buffer) {
+			switch (this) {
+				case CHAR:
+					return buffer.get();
+				case UCHAR:
+					return buffer.get() & 0xff;
+				case SHORT:
+					return buffer.getShort();
+				case USHORT:
+					return buffer.getShort() & 0xffff;
+				case INT:
+					return buffer.getInt();
+				case UINT:
+					return buffer.getInt() & 0xffffffffL;
+				case FLOAT:
+					return buffer.getFloat();
+				default:
+					return buffer.getDouble();
+			}
+		}
+	}
+
+	/**
+	 * A property of a PLY element, which is either a single value or a list of values preceded by its length.
+	 */
+	private static class PlyProperty {
+		final String name;
+		final PlyType type;
+		/** The type of the length of the list, or null if the property is not a list. */
+		final PlyType lengthType;
+
+		PlyProperty(String name, PlyType type, PlyType lengthType) {
+			this.name = name;
+			this.type = type;
+			this.lengthType = lengthType;
+		}
+	}
+
+	/**
+	 * An element of a PLY file, such as the vertices or the faces, with the number of them and their properties.
+	 */
+	private static class PlyElement {
+		final String name;
+		final long count;
+		final List<PlyProperty> properties = new ArrayList<>();
+
+		PlyElement(String name, long count) {
+			this.name = name;
+			this.count = count;
+		}
+
+		int index(String property) {
+			for (int i = 0; i < properties.size(); ++i) {
+				if (properties.get(i).name.equals(property)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Load a mesh from a binary PLY file, in either byte order. The vertices are stored as doubles if their coordinates
+	 * are doubles in the file, or as floats otherwise. The positions of the vertices are read from the {@code x},
+	 * {@code y}, and {@code z} properties of the {@code vertex} element, and the faces from the
+	 * {@code vertex_indices} or {@code vertex_index} property of the {@code face} element. Any other elements and
+	 * properties are skipped.
+	 *
+	 * @param file     The path of the file.
+	 * @param material The {@link Material} of the mesh.
+	 * @return The mesh.
+	 * @throws IOException if the file cannot be read, is not a valid PLY file, or is an ASCII PLY file.
+	 */
+	public static TriangleMesh loadPly(Path file, Material material) throws IOException {
+		MeshArrays mesh = new MeshArrays();
+		readPly(file, mesh);
+		try {
+			return mesh.toMesh(material);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Error: Invalid PLY file \"" + file + "\".", e);
+		}
+	}
+
+	/**
+	 * Read a PLY file into a {@link Sink}, as {@link #loadPly(Path, Material)} does.
+	 */
+	private static void readPly(Path file, Sink sink) throws IOException {
+		ByteBuffer buffer = map(file);
+		try {
+			List<PlyElement> elements = readPlyHeader(buffer);
+			boolean anyVertices = false;
+			IntArray face = new IntArray();
+			for (PlyElement element : elements) {
+				int[] axes = { element.index("x"), element.index("y"), element.index("z") };
+				int list = Math.max(element.index("vertex_indices"), element.index("vertex_index"));
+				boolean vertices = element.name.equals("vertex") && axes[0] >= 0 && axes[1] >= 0 && axes[2] >= 0;
+				boolean faces = element.name.equals("face") && list >= 0;
+				boolean doubles = false;
+				if (vertices) {
+					doubles = element.properties.get(axes[0]).type == PlyType.DOUBLE
+						|| element.properties.get(axes[1]).type == PlyType.DOUBLE
+						|| element.properties.get(axes[2]).type == PlyType.DOUBLE;
+					sink.vertices(element.count, doubles);
+					anyVertices = true;
+				}
+				double[] values = new double[element.properties.size()];
+				for (long record = 0; record < element.count; ++record) {
+					for (int i = 0; i < values.length; ++i) {
+						PlyProperty property = element.properties.get(i);
+						if (property.lengthType == null) {
+							values[i] = property.type.read(buffer);
+							continue;
+						}
+						int length = (int) property.lengthType.read(buffer);
+						if (faces && i == list) {
+							face.clear();
+							for (int j = 0; j < length; ++j) {
+								face.add((int) property.type.read(buffer));
+							}
+						} else {
+							buffer.position(buffer.position() + length * property.type.size);
+						}
+					}
+					if (vertices && doubles) {
+						sink.vertex(values[axes[0]], values[axes[1]], values[axes[2]]);
+					} else if (vertices) {
+						sink.vertex((float) values[axes[0]], (float) values[axes[1]], (float) values[axes[2]]);
+					} else if (faces) {
+						addFan(sink, face);
+					}
+				}
+			}
+			if (!anyVertices) {
+				throw new IOException("Error: No vertices.");
+			}
+		} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Error: Invalid PLY file \"" + file + "\".", e);
+		}
+	}
+
+	/**
+	 * Read the header of a PLY file, leaving the buffer at the start of the data, in the byte order of the data.
+	 */
+	private static List<PlyElement> readPlyHeader(ByteBuffer buffer) throws IOException {
+		if (!readLine(buffer).equals("ply")) {
+			throw new IOException("Error: Missing \"ply\" magic number.");
+		}
+		List<PlyElement> elements = new ArrayList<>();
+		for (String line = readLine(buffer); !line.equals("end_header"); line = readLine(buffer)) {
+			String[] words = line.split("\\s+");
+			switch (words[0]) {
+				case "format":
+					checkWords(words, 2, line);
+					if (words[1].equals("binary_little_endian")) {
+						buffer.order(ByteOrder.LITTLE_ENDIAN);
+					} else if (words[1].equals("binary_big_endian")) {
+						buffer.order(ByteOrder.BIG_ENDIAN);
+					} else {
+						throw new IOException("Error: Only binary PLY files are supported.");
+					}
+					break;
+				case "element":
+					checkWords(words, 3, line);
+					elements.add(new PlyElement(words[1], Long.parseLong(words[2])));
+					break;
+				case "property":
+					if (elements.isEmpty()) {
+						throw new IOException("Error: Property outside of an element.");
+					}
+					checkWords(words, 3, line);
+					if (words[1].equals("list")) {
+						checkWords(words, 5, line);
+					}
+					PlyProperty property = words[1].equals("list")
+						? new PlyProperty(words[4], PlyType.of(words[3]), PlyType.of(words[2]))
+						: new PlyProperty(words[2], PlyType.of(words[1]), null);
+					elements.get(elements.size() - 1).properties.add(property);
+					break;
+				default:
+					break; // comments and obj_info
+			}
+		}
+		return elements;
+	}
+
+	/**
+	 * Check that a line of a PLY header has at least the given number of words.
+	 */
+	private static void checkWords(String[] words, int count, String line) throws IOException {
+		if (words.length < count) {
+			throw new IOException("Error: Malformed PLY header line \"" + line + "\".");
+		}
+	}
+
+	/**
+	 * Read a line of ASCII text from the buffer, without the line terminator.
+	 */
+	private static String readLine(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		while (buffer.hasRemaining() && buffer.get(buffer.position()) != '\n') {
+			buffer.get();
+		}
+		if (!buffer.hasRemaining()) {
+			throw new IOException("Error: Unexpected end of header.");
+		}
+		byte[] bytes = new byte[buffer.position() - start];
+		buffer.position(start);
+		buffer.get(bytes);
+		buffer.get(); // the line feed
+		return new String(bytes, StandardCharsets.US_ASCII).trim();
+	}
+
+	/**
+	 * Map the whole of the given file into memory.
+	 */
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Error: Mesh files larger than 2GB are not supported.");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Split a face into a fan of triangles around its first vertex, and add their indices.
+	 */
+	private static void addFan(Sink sink, IntArray face) throws IOException {
+		if (face.size < 3) {
+			throw new IOException("Error: A face must have at least three vertices.");
+		}
+		for (int i = 2; i < face.size; ++i) {
+			sink.triangle(face.values[0], face.values[i - 1], face.values[i]);
+		}
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	private static boolean isEndOfLine(byte b) {
+		return b == '\n' || b == '\r' || b == '#';
+	}
+
+	/**
+	 * Skip spaces and tabs.
+	 *
+	 * @return true if there is anything left on the line.
+	 */
+	private static boolean skipSpaces(ByteBuffer buffer) {
+		while (buffer.hasRemaining() && isSpace(buffer.get(buffer.position()))) {
+			buffer.get();
+		}
+		return buffer.hasRemaining() && !isEndOfLine(buffer.get(buffer.position()));
+	}
+
+	/**
+	 * Skip the rest of the line, including the line feed.
+	 */
+	private static void skipLine(ByteBuffer buffer) {
+		while (buffer.hasRemaining() && buffer.get() != '\n') {
+			// skip
+		}
+	}
+
+	private static int parseInt(ByteBuffer buffer) {
+		if (!buffer.hasRemaining()) {
+			throw new NumberFormatException("Error: Expected an integer.");
+		}
+		boolean negative = buffer.get(buffer.position()) == '-';
+		if (negative || buffer.get(buffer.position()) == '+') {
+			buffer.get();
+		}
+		long value = 0;
+		int digits = 0;
+		while (buffer.hasRemaining() && Character.isDigit(buffer.get(buffer.position()))) {
+			value = 10 * value + buffer.get() - '0';
+			if (++digits > 10) {
+				throw new NumberFormatException("Error: Integer too long.");
+			}
+		}
+		if (digits == 0) {
+			throw new NumberFormatException("Error: Expected an integer.");
+		}
+		return Math.toIntExact(negative ? -value : value);
+	}
+
+	/**
+	 * Parse a decimal number, optionally with an exponent, from the buffer.
+	 */
+	private static double parseDouble(ByteBuffer buffer) {
+		skipSpaces(buffer);
+		if (!buffer.hasRemaining()) {
+			throw new NumberFormatException("Error: Expected a number.");
+		}
+		boolean negative = buffer.get(buffer.position()) == '-';
+		if (negative || buffer.get(buffer.position()) == '+') {
+			buffer.get();
+		}
+		long mantissa = 0;
+		int exponent = 0, digits = 0;
+		boolean point = false;
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get(buffer.position());
+			if (b == '.' && !point) {
+				point = true;
+			} else if (b >= '0' && b <= '9') {
+				if (mantissa < Long.MAX_VALUE / 10 - 9) {
+					mantissa = 10 * mantissa + b - '0';
+					exponent -= point ? 1 : 0;
+				} else {
+					exponent += point ? 0 : 1; // drop digits beyond the precision of a long
+				}
+				++digits;
+			} else {
+				break;
+			}
+			buffer.get();
+		}
+		if (digits == 0) {
+			throw new NumberFormatException("Error: Expected a number.");
+		}
+		if (buffer.hasRemaining() && (buffer.get(buffer.position()) | 0x20) == 'e') {
+			buffer.get();
+			exponent += parseInt(buffer);
+		}
+		double value = exponent < 0 ? mantissa / Math.pow(10, -exponent) : mantissa * Math.pow(10, exponent);
+		return negative ? -value : value;
+	}
+
+	/**
+	 * A {@link Sink} which stores the mesh in arrays, from which a {@link TriangleMesh} is constructed. The vertices
+	 * are stored as doubles if they are doubles in the file, or as floats otherwise.
+	 */
+	private static class MeshArrays implements Sink {
+		FloatArray floatVertices = new FloatArray();
+		DoubleArray doubleVertices = null;
+		IntArray indices = new IntArray();
+
+		@Override
+		public void vertices(long count, boolean doubles) throws IOException {
+			if (count > Integer.MAX_VALUE / 3) {
+				throw new IOException("Error: Too many vertices.");
+			}
+			floatVertices = doubles ? null : new FloatArray((int) (3 * count));
+			doubleVertices = doubles ? new DoubleArray((int) (3 * count)) : null;
+		}
+
+		@Override
+		public void vertex(double x, double y, double z) {
+			if (floatVertices != null) {
+				floatVertices.add((float) x);
+				floatVertices.add((float) y);
+				floatVertices.add((float) z);
+			} else {
+				doubleVertices.add(x);
+				doubleVertices.add(y);
+				doubleVertices.add(z);
+			}
+		}
+
+		@Override
+		public void triangle(int a, int b, int c) {
+			indices.add(a);
+			indices.add(b);
+			indices.add(c);
+		}
+
+		TriangleMesh toMesh(Material material) {
+			return floatVertices != null ? new TriangleMesh(material, floatVertices.toArray(), indices.toArray())
+				: new TriangleMesh(material, doubleVertices.toArray(), indices.toArray());
+		}
+	}
+
+	/**
+	 * A growing array of floats.
+	 */
+	private static class FloatArray {
+		float[] values;
+		int size = 0;
+
+		FloatArray() {
+			this(1024);
+		}
+
+		FloatArray(int capacity) {
+			values = new float[Math.max(capacity, 1)];
+		}
+
+		void add(float value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+
+		float[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * A growing array of doubles.
+	 */
+	private static class DoubleArray {
+		double[] values;
+		int size = 0;
+
+		DoubleArray(int capacity) {
+			values = new double[Math.max(capacity, 1)];
+		}
+
+		void add(double value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+
+		double[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * A growing array of ints.
+	 */
+	private static class IntArray {
+		int[] values = new int[1024];
+		int size = 0;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import primitives.Point;
+import util.ChunkedReduction;
+
+/**
+ * Builds a linear bounding volume hierarchy (LBVH). The centroids of the {@link Boundary}s are quantised to a 1024^3
+ * grid, and the {@link Intersectible}s are sorted by the Morton code of their quantised centroids, which interleaves
+ * the bits of the three coordinates so that nearby intersectibles end up near each other in the sorted order. The
+ * hierarchy is then emitted by recursively splitting the sorted range where the highest bit of the Morton code
+ * changes. Apart from the sort, every step takes linear time and runs in parallel on a {@link ForkJoinPool}.
+ *
+ * This builds much faster than a {@link SahHierarchyBuilder}, at the cost of a hierarchy which is usually somewhat
+ * slower to traverse.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class MortonHierarchyBuilder implements HierarchyBuilder {
+	/** The number of bits of each quantised coordinate. */
+	private static final int BITS = 10;
+	/** Ranges of at most this many intersectibles become leaves. */
+	private static final int MAX_LEAF_SIZE = 4;
+	/** Larger ranges are processed in parallel, in chunks of this many intersectibles. */
+	private static final int CHUNK_SIZE = 1024;
+
+	private final int threads;
+
+	/**
+	 * Construct a builder which builds the hierarchy on a single thread.
+	 */
+	public MortonHierarchyBuilder() {
+		this(1);
+	}
+
+	/**
+	 * Construct a builder which builds the hierarchy on the given number of threads.
+	 *
+	 * @param threads The number of threads to build the hierarchy on.
+	 * @throws IllegalArgumentException if the number of threads is not positive.
+	 */
+	public MortonHierarchyBuilder(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Error: The number of threads must be positive.");
+		}
+		this.threads = threads;
+	}
+
+	@Override
+	public Intersectible build(List<Intersectible> intersectibles) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new RecursiveTask<Intersectible>() {
+				@Override
+				protected Intersectible compute() {
+					Build build = new Build(intersectibles);
+					return build.new Node(0, intersectibles.size()).invoke();
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The state of a single build.
+	 */
+	private class Build {
+		private final Intersectible[] items;
+		/** The Morton code of each item in the upper 32 bits, and its index in {@code items} in the lower 32 bits. */
+		private final long[] keys;
+
+		Build(List<Intersectible> intersectibles) {
+			int size = intersectibles.size();
+			items = intersectibles.toArray(new Intersectible[size]);
+			double[] centroids = new double[3 * size];
+			double[] bounds = ChunkedReduction.reduce(0, size, CHUNK_SIZE, (start, end) -> {
+				double inf = Double.POSITIVE_INFINITY;
+				double[] result = { inf, inf, inf, -inf, -inf, -inf };
+				for (int i = start; i < end; ++i) {
+					Point min = items[i].boundary().min();
+					Point max = items[i].boundary().max();
+					centroids[3 * i] = (min.x + max.x) / 2;
+					centroids[3 * i + 1] = (min.y + max.y) / 2;
+					centroids[3 * i + 2] = (min.z + max.z) / 2;
+					for (int axis = 0; axis < 3; ++axis) {
+						result[axis] = Math.min(result[axis], centroids[3 * i + axis]);
+						result[axis + 3] = Math.max(result[axis + 3], centroids[3 * i + axis]);
+					}
+				}
+				return result;
+			}, (left, right) -> {
+				for (int axis = 0; axis < 3; ++axis) {
+					left[axis] = Math.min(left[axis], right[axis]);
+					left[axis + 3] = Math.max(left[axis + 3], right[axis + 3]);
+				}
+				return left;
+			});
+
+			keys = new long[size];
+			ChunkedReduction.reduce(0, size, CHUNK_SIZE, (start, end) -> {
+				for (int i = start; i < end; ++i) {
+					int code = 0;
+					for (int axis = 0; axis < 3; ++axis) {
+						code |= spread(quantise(centroids[3 * i + axis], bounds[axis], bounds[axis + 3])) << (2 - axis);
+					}
+					keys[i] = (long) code << 32 | i;
+				}
+				return null;
+			}, (a, b) -> null);
+			if (threads > 1) {
+				Arrays.parallelSort(keys);
+			} else {
+				Arrays.sort(keys);
+			}
+		}
+
+		/**
+		 * Builds the subtree containing the items whose keys are in {@code keys[start:end]}.
+		 */
+		private class Node extends RecursiveTask<Intersectible> {
+			private static final long serialVersionUID = 1L;
+
+			private final int start; // The first position in keys (inclusive)
+			private final int end; // The last position in keys (exclusive)
+
+			Node(int start, int end) {
+				this.start = start;
+				this.end = end;
+			}
+
+			@Override
+			protected Intersectible compute() {
+				int count = end - start;
+				if (count == 1) {
+					return item(start);
+				}
+				if (count <= MAX_LEAF_SIZE) {
+					Intersectible[] leafItems = new Intersectible[count];
+					Boundary boundary = Boundary.EMPTY;
+					for (int i = start; i < end; ++i) {
+						leafItems[i - start] = item(i);
+						boundary = boundary.union(item(i).boundary());
+					}
+					return new GeometryList(boundary, leafItems);
+				}
+				int mid = split(start, end);
+				Node left = new Node(start, mid);
+				Node right = new Node(mid, end);
+				Intersectible leftRoot, rightRoot;
+				if (count > CHUNK_SIZE) {
+					left.fork();
+					rightRoot = right.compute();
+					leftRoot = left.join();
+				} else {
+					leftRoot = left.compute();
+					rightRoot = right.compute();
+				}
+				return new GeometryList(leftRoot.boundary().union(rightRoot.boundary()), leftRoot, rightRoot);
+			}
+		}
+
+		private Intersectible item(int position) {
+			return items[(int) keys[position]];
+		}
+
+		private int code(int position) {
+			return (int) (keys[position] >>> 32);
+		}
+
+		/**
+		 * Find where the highest bit of the Morton code changes in the given range, by binary search.
+		 *
+		 * @return The first position in {@code keys} whose code has that bit set, or the middle of the range if all
+		 *         the codes are equal.
+		 */
+		private int split(int start, int end) {
+			int first = code(start);
+			int last = code(end - 1);
+			if (first == last) {
+				return (start + end) >>> 1;
+			}
+			int prefix = Integer.numberOfLeadingZeros(first ^ last);
+			// find the last position whose code shares more than the common prefix with the first code
+			int split = start;
+			int step = end - 1 - start;
+			do {
+				step = (step + 1) >>> 1;
+				int candidate = split + step;
+				if (candidate < end - 1 && Integer.numberOfLeadingZeros(first ^ code(candidate)) > prefix) {
+					split = candidate;
+				}
+			} while (step > 1);
+			return split + 1;
+		}
+	}
+
+	/**
+	 * Quantise a coordinate to an integer of {@link #BITS} bits, relative to the given range.
+	 */
+	private static int quantise(double coordinate, double min, double max) {
+		double extent = max - min;
+		if (!(extent > 0)) {
+			return 0;
+		}
+		return Math.min((1 << BITS) - 1, (int) ((coordinate - min) / extent * (1 << BITS)));
+	}
+
+	/**
+	 * Spread the lower 10 bits of the given integer so that there are two zero bits between each of them.
+	 */
+	private static int spread(int bits) {
+		bits = (bits * 0x00010001) & 0xFF0000FF;
+		bits = (bits * 0x00000101) & 0x0F00F00F;
+		bits = (bits * 0x00000011) & 0xC30C30C3;
+		bits = (bits * 0x00000005) & 0x49249249;
+		return bits;
+	}
+}
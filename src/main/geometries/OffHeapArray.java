@@ -0,0 +1,237 @@
+package geometries;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A growable array of fixed size records stored outside the Java heap, in direct {@link ByteBuffer}s, so that neither
+ * the garbage collector nor the object headers of the heap see the records. A single buffer is limited to two
+ * gigabytes, so the records are split into pages of {@value #PAGE_RECORDS} records, each of which is a buffer of its
+ * own, and an array may hold as many records as an int can index.
+ *
+ * The pages may instead be kept in the file of some {@link GeometryPages}, in which case they are no larger than the
+ * page size of the file, so that only the parts of the array which are accessed need to be mapped, and each page is
+ * mapped when it is first accessed after it was unmapped to stay within the budget of the file.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+final class OffHeapArray {
+	private static final int PAGE_BITS = 16;
+	/** The number of records in each page. */
+	private static final int PAGE_RECORDS = 1 << PAGE_BITS;
+	private static final VarHandle PAGE = MethodHandles.arrayElementVarHandle(ByteBuffer[].class);
+
+	/** The number of bytes in each record. */
+	private final int recordSize;
+	private final int pageBits;
+	private final int pageMask;
+	private ByteBuffer[] pages = new ByteBuffer[0];
+	private int size = 0;
+
+	/** The file the pages are kept in, or null if they are direct buffers. */
+	private final GeometryPages file;
+	/** The position of each page in the file. */
+	private long[] positions = new long[0];
+	/** Whether each page was accessed since the clock of the file last passed it. */
+	private boolean[] accessed = new boolean[0];
+	/** Each page which was unmapped but may not have been released yet, or null. */
+	private GeometryPages.Unmapped[] unmapped = new GeometryPages.Unmapped[0];
+
+	/**
+	 * Construct an empty array whose pages are direct buffers.
+	 *
+	 * @param recordSize The number of bytes in each record.
+	 */
+	OffHeapArray(int recordSize) {
+		this(recordSize, null);
+	}
+
+	/**
+	 * Construct an empty array whose pages are kept in the given file.
+	 *
+	 * @param recordSize The number of bytes in each record.
+	 * @param file       The file to keep the pages in, or null to keep them in direct buffers.
+	 */
+	OffHeapArray(int recordSize, GeometryPages file) {
+		this.recordSize = recordSize;
+		this.file = file;
+		int records = PAGE_RECORDS;
+		while (file != null && records > 1 && recordSize * records > file.pageSize()) {
+			records /= 2;
+		}
+		this.pageBits = Integer.numberOfTrailingZeros(records);
+		this.pageMask = records - 1;
+	}
+
+	/**
+	 * Append a record whose bytes are all zero.
+	 *
+	 * @return The index of the new record.
+	 */
+	int add() {
+		if (size == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Error: An off heap array cannot hold any more records.");
+		}
+		if ((size & pageMask) == 0) {
+			pages = Arrays.copyOf(pages, pages.length + 1);
+			if (file == null) {
+				pages[pages.length - 1] =
+					ByteBuffer.allocateDirect(recordSize << pageBits).order(ByteOrder.nativeOrder());
+			} else {
+				positions = Arrays.copyOf(positions, pages.length);
+				positions[pages.length - 1] = file.allocate(recordSize << pageBits);
+				accessed = Arrays.copyOf(accessed, pages.length);
+				unmapped = Arrays.copyOf(unmapped, pages.length);
+			}
+		}
+		return size++;
+	}
+
+	/**
+	 * Get the number of records in the array.
+	 *
+	 * @return The number of records.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Get an int from a record.
+	 *
+	 * @param record The index of the record.
+	 * @param offset The offset of the int in the record, in bytes.
+	 * @return The int.
+	 */
+	int getInt(int record, int offset) {
+		return page(record).getInt((record & pageMask) * recordSize + offset);
+	}
+
+	/**
+	 * Get a double from a record.
+	 *
+	 * @param record The index of the record.
+	 * @param offset The offset of the double in the record, in bytes.
+	 * @return The double.
+	 */
+	double getDouble(int record, int offset) {
+		return page(record).getDouble((record & pageMask) * recordSize + offset);
+	}
+
+	/**
+	 * Store an int in a record.
+	 *
+	 * @param record The index of the record.
+	 * @param offset The offset of the int in the record, in bytes.
+	 * @param value  The int to store.
+	 */
+	void putInt(int record, int offset, int value) {
+		page(record).putInt((record & pageMask) * recordSize + offset, value);
+	}
+
+	/**
+	 * Store a double in a record.
+	 *
+	 * @param record The index of the record.
+	 * @param offset The offset of the double in the record, in bytes.
+	 * @param value  The double to store.
+	 */
+	void putDouble(int record, int offset, double value) {
+		page(record).putDouble((record & pageMask) * recordSize + offset, value);
+	}
+
+	/**
+	 * Get the page of a record, mapping it if it is kept in a file and is not mapped.
+	 */
+	private ByteBuffer page(int record) {
+		int index = record >>> pageBits;
+		if (file == null) {
+			return pages[index];
+		}
+		ByteBuffer page = mapped(index);
+		if (page == null) {
+			page = file.map(this, index, positions[index], recordSize << pageBits);
+		}
+		if (!accessed[index]) {
+			accessed[index] = true; // only written when it changes, so that threads don't contend for it
+		}
+		return page;
+	}
+
+	/**
+	 * Determines whether the page of a record can be accessed without mapping it.
+	 *
+	 * @param record The index of the record.
+	 * @return True if the page is in a direct buffer or is mapped, or if there is no such record.
+	 */
+	boolean resident(int record) {
+		int index = record >>> pageBits;
+		return file == null || index >= pages.length || pages[index] != null;
+	}
+
+	/**
+	 * Get a page of the file if it is mapped.
+	 *
+	 * @param index The index of the page.
+	 * @return The page, or null if it is not mapped.
+	 */
+	ByteBuffer mapped(int index) {
+		return (ByteBuffer) PAGE.getAcquire(pages, index);
+	}
+
+	/**
+	 * Store a page which was mapped from the file.
+	 *
+	 * @param index The index of the page.
+	 * @param page  The mapped page.
+	 */
+	void store(int index, ByteBuffer page) {
+		PAGE.setRelease(pages, index, page);
+	}
+
+	/**
+	 * Release a page of the file. It is unmapped by the garbage collector once no thread is using it.
+	 *
+	 * @param index The index of the page.
+	 * @return The page.
+	 */
+	ByteBuffer unmap(int index) {
+		return (ByteBuffer) PAGE.getAndSetRelease(pages, index, (ByteBuffer) null);
+	}
+
+	/**
+	 * Get a page of the file which was unmapped but may not have been released yet.
+	 *
+	 * @param index The index of the page.
+	 * @return The reference to the unmapped page, or null if the page is mapped or was never mapped.
+	 */
+	GeometryPages.Unmapped unmapped(int index) {
+		return unmapped[index];
+	}
+
+	/**
+	 * Set the reference to a page of the file which was unmapped.
+	 *
+	 * @param index     The index of the page.
+	 * @param reference The reference to the unmapped page, or null if the page is mapped.
+	 */
+	void unmapped(int index, GeometryPages.Unmapped reference) {
+		unmapped[index] = reference;
+	}
+
+	/**
+	 * Determines whether a page was accessed since this method was last called for it, and clears the mark.
+	 *
+	 * @param index The index of the page.
+	 * @return True if the page was accessed.
+	 */
+	boolean accessed(int index) {
+		boolean result = accessed[index];
+		accessed[index] = false;
+		return result;
+	}
+}
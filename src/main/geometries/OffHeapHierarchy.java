@@ -0,0 +1,1136 @@
+package geometries;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import math.compare.DoubleCompare;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Material;
+import primitives.NormalizedVector;
+import primitives.Point;
+
+/**
+ * A compiled, read only copy of a hierarchy of {@link GeometryList}s which is stored outside the Java heap, for scenes
+ * so large that the objects of their primitives and hierarchy drive the size of the heap and the pauses of the garbage
+ * collector.
+ *
+ * The nodes are encoded like those of a {@link CompressedHierarchy}, and the {@link Sphere}s and {@link Triangle}s are
+ * copied into records of their coordinates and the index of their {@link Material}, all in {@link OffHeapArray}s, so
+ * that once the objects they were compiled from are released, the heap only holds a {@link Geometry} for each distinct
+ * material. That geometry is the geometry of every intersection with a sphere or triangle of its material, and the
+ * face of the intersection is the reference to the primitive, from which its normal is calculated. The intersections
+ * are calculated from the records by the same calculations as the methods of the spheres and triangles, so they are
+ * exactly the same. Other primitives stay on the heap and are intersected through their own methods. Each node and
+ * primitive is written to its record as soon as it is compiled, so no copy of the whole hierarchy is built on the heap
+ * first.
+ *
+ * Meshes may also be streamed from their files straight into the records of their triangles, and their hierarchy is
+ * built over those records rather than over objects, so that even the loading of the scene needs no heap in proportion
+ * to the size of the meshes.
+ *
+ * The records are allocated as direct buffers, whose total size is limited by {@code -XX:MaxDirectMemorySize}, which
+ * is the maximum size of the heap by default, or are kept in the memory mapped file of some {@link GeometryPages},
+ * for scenes which don't fit in memory at all. The nodes are stored depth first, and the primitives in the order of
+ * the leaves which first reference them, so each subtree and its primitives take up a few neighbouring pages. When
+ * testing whether there is any intersection, whose result doesn't depend on the order of the children, the children
+ * whose pages are mapped are visited first, so that a ray which is blocked by geometry which is already in memory
+ * never maps the pages of the rest. The other traversals keep their order, since the order in which the factors of
+ * the transparency are multiplied, and the order of the intersections, would otherwise depend on which pages happen
+ * to be mapped, and rendering would not be repeatable.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class OffHeapHierarchy implements Intersectible {
+	/** The number of children of each node. */
+	public static final int WIDTH = CompressedHierarchy.WIDTH;
+	/**
+	 * The kinds of primitive a reference may refer to, which are stored in the lowest two bits of the reference. The
+	 * triangles of streamed meshes are stored like other triangles, but as in a {@link TriangleMesh}, their edges are
+	 * part of them, since each is shared with a neighbouring triangle.
+	 */
+	private static final int SPHERE = 0, TRIANGLE = 1, OTHER = 2, MESH = 3;
+	private static final int KIND_BITS = 2;
+	private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+	/** The index of the material, followed by the center and the square of the radius. */
+	private static final int SPHERE_SIZE = 40;
+	/** The index of the material, followed by the three vertices and the reciprocal of the length of the normal. */
+	private static final int TRIANGLE_SIZE = 88;
+	/** The coordinates of a vertex of a streamed mesh. */
+	private static final int VERTEX_SIZE = 24;
+
+	/** The nodes, each of which is a record of the ints of a node of a {@link CompressedHierarchy}. */
+	private final OffHeapArray nodes;
+	/** The index in {@code references} of the first primitive of each leaf, followed by the number of primitives. */
+	private final OffHeapArray leafOffsets;
+	/**
+	 * The references to the primitives of the leaves, grouped by leaf. Each is the index of a record of its kind
+	 * shifted left past the kind, so a primitive in more than one leaf has the same reference in each.
+	 */
+	private final OffHeapArray references;
+	private final OffHeapArray spheres;
+	private final OffHeapArray triangles;
+	/** The file the records are kept in, or null if they are in direct buffers. */
+	private final GeometryPages pages;
+	/** The primitives which are neither spheres nor triangles, which are intersected through their own methods. */
+	private final Intersectible[] others;
+	/** The geometry of the intersections with the spheres and triangles of each material. */
+	private final Primitives[] palette;
+	/** The children of the root with infinite boundaries, which are intersected after the rest of the hierarchy. */
+	private final Intersectible[] unbounded;
+	/** Whether some primitives are in more than one leaf, so that each traversal needs a {@link Mailbox}. */
+	private final boolean shared;
+	/** The mailbox of each thread for line segments traced without a {@link HitRecord}, if primitives are shared. */
+	private final ThreadLocal<Mailbox> mailboxes;
+	/** The maximum number of children which may be waiting on the stack during a traversal. */
+	private final int stackSize;
+	private final Boundary boundary;
+
+	// Only used while compiling
+	private List<Intersectible> otherList = new ArrayList<>();
+	private List<Primitives> paletteList = new ArrayList<>();
+	private Map<Material, Integer> materials = new IdentityHashMap<>();
+	/** The reference to each primitive which was stored, if primitives are shared, or else null. */
+	private Map<Intersectible, Integer> stored;
+	/** The ints of the node being compiled, which are copied into its record. */
+	private int[] encoded = new int[CompressedHierarchy.NODE_SIZE];
+	/** The records of the streamed triangles, whose material is the index of their mesh. */
+	private OffHeapArray streamed;
+	/** The indices of the streamed triangles, which are partitioned in place as their hierarchy is built. */
+	private OffHeapArray order;
+	/** The index in the palette of the material of each streamed mesh. */
+	private int[] meshMaterials;
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList}. This should be done after calling
+	 * {@link GeometryList#optimize()}. The hierarchy keeps no references to the spheres and triangles it copies, so
+	 * the {@link GeometryList} may be cleared afterwards to release them.
+	 *
+	 * @param geometries The root of the hierarchy to compile.
+	 * @throws IllegalArgumentException if the geometries are too far from the origin for their boxes to be stored in
+	 *                                  floats, or if there are too many primitives of one kind to reference.
+	 */
+	public OffHeapHierarchy(GeometryList geometries) {
+		this(geometries, null);
+	}
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList} into the file of the given {@link GeometryPages}, of
+	 * which only the pages which are accessed are mapped. The file must stay open while the hierarchy is used.
+	 *
+	 * @param geometries The root of the hierarchy to compile.
+	 * @param pages      The file to keep the records in, or null to keep them in direct buffers.
+	 * @throws IllegalArgumentException if the geometries are too far from the origin for their boxes to be stored in
+	 *                                  floats, or if there are too many primitives of one kind to reference.
+	 * @throws java.io.UncheckedIOException if a page of the file cannot be mapped.
+	 */
+	public OffHeapHierarchy(GeometryList geometries, GeometryPages pages) {
+		this(geometries, null, pages);
+	}
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList} together with the triangles of the given mesh files. The
+	 * meshes are read from their files straight into the records of their triangles, and their hierarchy is built over
+	 * those records as a {@link TriangleMesh} builds its own, so no object is made for any of their triangles. Their
+	 * triangles are intersected as those of a {@link TriangleMesh} are, but the triangles with no area, which no line
+	 * intersects, are left out.
+	 *
+	 * @param geometries The root of the hierarchy of the other geometries, which should be optimized first.
+	 * @param meshes     The files of the meshes.
+	 * @param pages      The file to keep the records in, or null to keep them in direct buffers.
+	 * @return The hierarchy.
+	 * @throws IOException              if a mesh file cannot be read, or is not a valid OBJ or PLY file.
+	 * @throws IllegalArgumentException if the geometries are too far from the origin for their boxes to be stored in
+	 *                                  floats, or if there are too many primitives of one kind to reference.
+	 * @throws java.io.UncheckedIOException if a page of the file cannot be mapped.
+	 */
+	public static OffHeapHierarchy stream(GeometryList geometries, List<MeshFile> meshes, GeometryPages pages)
+		throws IOException {
+		StreamedMeshes streamed = new StreamedMeshes(pages);
+		for (MeshFile mesh : meshes) {
+			streamed.read(mesh);
+		}
+		return new OffHeapHierarchy(geometries, streamed, pages);
+	}
+
+	private OffHeapHierarchy(GeometryList geometries, StreamedMeshes meshes, GeometryPages pages) {
+		this.pages = pages;
+		nodes = new OffHeapArray(4 * CompressedHierarchy.NODE_SIZE, pages);
+		leafOffsets = new OffHeapArray(4, pages);
+		references = new OffHeapArray(4, pages);
+		spheres = new OffHeapArray(SPHERE_SIZE, pages);
+		triangles = new OffHeapArray(TRIANGLE_SIZE, pages);
+		shared = geometries.shared();
+		mailboxes = shared ? ThreadLocal.withInitial(Mailbox::new) : null;
+		stored = shared ? new IdentityHashMap<>() : null;
+		List<Intersectible> unbounded = new ArrayList<>();
+		GeometryList bounded = geometries.bounded(unbounded);
+		if (meshes == null || meshes.triangles.size() == 0) {
+			stackSize = 1 + compile(WideHierarchy.collapse(bounded), unbounded);
+			boundary = geometries.boundary();
+		} else {
+			double[] box = prepare(meshes);
+			stackSize = 1 + compile(bounded, box, unbounded);
+			boundary = boundary(box).union(geometries.boundary());
+		}
+		leafOffsets.putInt(leafOffsets.add(), 0, references.size());
+		this.unbounded = unbounded.toArray(new Intersectible[unbounded.size()]);
+		others = otherList.toArray(new Intersectible[otherList.size()]);
+		palette = paletteList.toArray(new Primitives[paletteList.size()]);
+		otherList = null;
+		paletteList = null;
+		materials = null;
+		stored = null;
+		encoded = null;
+		streamed = null;
+		order = null;
+		meshMaterials = null;
+	}
+
+	/**
+	 * Compile a node with the given children into the next record, as {@link CompressedHierarchy} does, then compile
+	 * the children, storing the primitives of each leaf as it is reached.
+	 *
+	 * @param children  The children of the node, collapsed from the binary hierarchy.
+	 * @param unbounded The list to add the children with infinite boxes to.
+	 * @return The maximum number of children which may be pushed to the stack while traversing the subtree of the node.
+	 */
+	private int compile(List<WideHierarchy.Lane> children, List<Intersectible> unbounded) {
+		Arrays.fill(encoded, 0);
+		List<WideHierarchy.Lane> lanes = CompressedHierarchy.encode(children, unbounded, encoded, 0);
+		int node = nodes.add();
+		for (int i = 0; i < 10; ++i) {
+			nodes.putInt(node, 4 * i, encoded[i]);
+		}
+		int deepest = 0;
+		for (int lane = 0; lane < lanes.size(); ++lane) {
+			WideHierarchy.Lane child = lanes.get(lane);
+			if (child.node == null) {
+				int leaf = leafOffsets.add();
+				leafOffsets.putInt(leaf, 0, references.size());
+				nodes.putInt(node, 4 * (10 + lane), ~leaf);
+				for (Intersectible primitive : child.primitives) {
+					int reference = stored == null ? store(primitive) : stored.computeIfAbsent(primitive, this::store);
+					references.putInt(references.add(), 0, reference);
+				}
+			} else {
+				nodes.putInt(node, 4 * (10 + lane), nodes.size());
+				deepest = Math.max(deepest, compile(WideHierarchy.collapse(child.node), unbounded));
+			}
+		}
+		return WIDTH + deepest;
+	}
+
+	/**
+	 * Prepare to compile the hierarchy of the streamed triangles, with all of them in {@code order}.
+	 *
+	 * @return The bounds of the triangles, followed by the bounds of their centroids.
+	 */
+	private double[] prepare(StreamedMeshes meshes) {
+		streamed = meshes.triangles;
+		meshMaterials = new int[meshes.materials.size()];
+		for (int mesh = 0; mesh < meshMaterials.length; ++mesh) {
+			meshMaterials[mesh] = material(meshes.materials.get(mesh));
+		}
+		order = new OffHeapArray(4, pages);
+		for (int triangle = 0; triangle < streamed.size(); ++triangle) {
+			order.putInt(order.add(), 0, triangle);
+		}
+		return bounds(0, streamed.size());
+	}
+
+	/**
+	 * Compile a root with a child for the bounded geometries, if there are any, and a child for the streamed
+	 * triangles, then compile the hierarchy of each.
+	 *
+	 * @param geometries The bounded geometries.
+	 * @param box        The bounds of the streamed triangles, followed by the bounds of their centroids.
+	 * @param unbounded  The list to add the children with infinite boxes to.
+	 * @return The maximum number of children which may be pushed to the stack while traversing the hierarchy.
+	 */
+	private int compile(GeometryList geometries, double[] box, List<Intersectible> unbounded) {
+		Range triangles = range(0, streamed.size(), box);
+		Boundary other = geometries.boundary();
+		if (other != Boundary.EMPTY && !other.isFinite()) {
+			unbounded.add(geometries);
+			other = Boundary.EMPTY;
+		}
+		if (other == Boundary.EMPTY) {
+			return compile(triangles);
+		}
+		Arrays.fill(encoded, 0);
+		CompressedHierarchy.encode(List.of(other, boundary(box)), encoded, 0);
+		int node = nodes.add();
+		for (int i = 0; i < 10; ++i) {
+			nodes.putInt(node, 4 * i, encoded[i]);
+		}
+		nodes.putInt(node, 4 * 10, nodes.size());
+		int deepest = compile(WideHierarchy.collapse(geometries), unbounded);
+		nodes.putInt(node, 4 * 11, nodes.size());
+		return WIDTH + Math.max(deepest, compile(triangles));
+	}
+
+	/**
+	 * A range of {@code order} which is a child of a node of the hierarchy of the streamed triangles.
+	 */
+	private static class Range {
+		final int start;
+		final int end;
+		/** The bounds of the triangles, followed by the bounds of their centroids. */
+		final double[] box;
+		/** Where the range is split into two, or -1 if it is a leaf. */
+		final int mid;
+
+		Range(int start, int end, double[] box, int mid) {
+			this.start = start;
+			this.end = end;
+			this.box = box;
+			this.mid = mid;
+		}
+	}
+
+	/**
+	 * Create a range of the streamed triangles, deciding whether to split it, and partitioning it if so.
+	 */
+	private Range range(int start, int end, double[] box) {
+		return new Range(start, end, box, split(start, end, box));
+	}
+
+	/**
+	 * Compile a node of the hierarchy of the streamed triangles into the next record, then compile its children. The
+	 * range is split as a {@link TriangleMesh} splits a node, then the child with the largest surface area is split
+	 * again until the node has {@link #WIDTH} children or no child should be split. The triangles of each leaf are
+	 * copied into the records of the hierarchy as it is reached.
+	 *
+	 * @param range The range of the triangles of the node.
+	 * @return The maximum number of children which may be pushed to the stack while traversing the subtree of the node.
+	 */
+	private int compile(Range range) {
+		List<Range> lanes = new ArrayList<>();
+		lanes.add(range);
+		while (lanes.size() < WIDTH) {
+			int largest = -1;
+			double largestArea = 0;
+			for (int lane = 0; lane < lanes.size(); ++lane) {
+				Range child = lanes.get(lane);
+				double area = TriangleMesh.area(child.box);
+				if (child.mid >= 0 && (largest < 0 || area > largestArea)) {
+					largest = lane;
+					largestArea = area;
+				}
+			}
+			if (largest < 0) {
+				break;
+			}
+			Range child = lanes.get(largest);
+			lanes.set(largest, range(child.start, child.mid, bounds(child.start, child.mid)));
+			lanes.add(largest + 1, range(child.mid, child.end, bounds(child.mid, child.end)));
+		}
+		List<Boundary> boxes = new ArrayList<>();
+		for (Range lane : lanes) {
+			boxes.add(boundary(lane.box));
+		}
+		Arrays.fill(encoded, 0);
+		CompressedHierarchy.encode(boxes, encoded, 0);
+		int node = nodes.add();
+		for (int i = 0; i < 10; ++i) {
+			nodes.putInt(node, 4 * i, encoded[i]);
+		}
+		int deepest = 0;
+		for (int lane = 0; lane < lanes.size(); ++lane) {
+			Range child = lanes.get(lane);
+			if (child.mid < 0) {
+				int leaf = leafOffsets.add();
+				leafOffsets.putInt(leaf, 0, references.size());
+				nodes.putInt(node, 4 * (10 + lane), ~leaf);
+				for (int i = child.start; i < child.end; ++i) {
+					references.putInt(references.add(), 0, copy(order.getInt(i, 0)));
+				}
+			} else {
+				nodes.putInt(node, 4 * (10 + lane), nodes.size());
+				deepest = Math.max(deepest, compile(child));
+			}
+		}
+		return WIDTH + deepest;
+	}
+
+	/**
+	 * Decide where to split a range of the streamed triangles, as {@link TriangleMesh} does, and partition the range
+	 * if it is split.
+	 *
+	 * @param box The bounds of the triangles, followed by the bounds of their centroids.
+	 * @return The start of the second part of the range, or -1 if the range should be a leaf.
+	 */
+	private int split(int start, int end, double[] box) {
+		int count = end - start;
+		int axis = 0;
+		for (int other = 1; other < 3; ++other) {
+			if (box[other + 9] - box[other + 6] > box[axis + 9] - box[axis + 6]) {
+				axis = other;
+			}
+		}
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestBin = -1;
+		if (box[axis + 9] > box[axis + 6]) {
+			int[] binCounts = new int[TriangleMesh.BINS];
+			double[] binBoxes = TriangleMesh.empty(TriangleMesh.BINS);
+			double[] triangleBox = new double[6];
+			for (int i = start; i < end; ++i) {
+				int triangle = order.getInt(i, 0);
+				triangleBox(triangle, triangleBox);
+				int bin = bin(triangleBox, axis, box);
+				++binCounts[bin];
+				TriangleMesh.union(binBoxes, 6 * bin, triangleBox, 0);
+			}
+
+			// the cost of each plane is the area of the box on each side times the number of triangles on that side
+			double[] rightCosts = new double[TriangleMesh.BINS];
+			double[] right = TriangleMesh.empty(1);
+			int rightCount = 0;
+			for (int bin = TriangleMesh.BINS - 1; bin > 0; --bin) {
+				TriangleMesh.union(right, 0, binBoxes, 6 * bin);
+				rightCount += binCounts[bin];
+				rightCosts[bin] = rightCount == 0 ? 0 : rightCount * TriangleMesh.area(right);
+			}
+			double[] left = TriangleMesh.empty(1);
+			int leftCount = 0;
+			for (int bin = 0; bin < TriangleMesh.BINS - 1; ++bin) {
+				TriangleMesh.union(left, 0, binBoxes, 6 * bin);
+				leftCount += binCounts[bin];
+				double cost = (leftCount == 0 ? 0 : leftCount * TriangleMesh.area(left)) + rightCosts[bin + 1];
+				if (leftCount > 0 && leftCount < count && cost < bestCost) {
+					bestCost = cost;
+					bestBin = bin;
+				}
+			}
+		}
+		double area = TriangleMesh.area(box);
+		bestCost = TriangleMesh.TRAVERSAL_COST + (area > 0 ? bestCost / area : 0);
+		if (count == 1 || count <= TriangleMesh.MAX_LEAF_SIZE && (bestBin < 0 || bestCost >= count)) {
+			return -1;
+		}
+		if (bestBin < 0) {
+			return start + count / 2; // all the centroids coincide
+		}
+		int mid = start;
+		double[] triangleBox = new double[6];
+		for (int i = start; i < end; ++i) {
+			int triangle = order.getInt(i, 0);
+			triangleBox(triangle, triangleBox);
+			if (bin(triangleBox, axis, box) <= bestBin) {
+				order.putInt(i, 0, order.getInt(mid, 0));
+				order.putInt(mid++, 0, triangle);
+			}
+		}
+		return mid;
+	}
+
+	/**
+	 * Find the bin along the given axis of the centroid of a triangle with the given bounds, given the bounds of the
+	 * triangles of its range followed by the bounds of their centroids.
+	 */
+	private static int bin(double[] triangleBox, int axis, double[] box) {
+		double centroid = (triangleBox[axis] + triangleBox[axis + 3]) / 2;
+		int bin = (int) (TriangleMesh.BINS * (centroid - box[axis + 6]) / (box[axis + 9] - box[axis + 6]));
+		return Math.min(bin, TriangleMesh.BINS - 1);
+	}
+
+	/**
+	 * Calculates the bounds of the streamed triangles in {@code order[start:end]}.
+	 *
+	 * @return The bounds of the triangles, followed by the bounds of their centroids.
+	 */
+	private double[] bounds(int start, int end) {
+		double[] box = TriangleMesh.empty(2);
+		double[] triangleBox = new double[6];
+		for (int i = start; i < end; ++i) {
+			triangleBox(order.getInt(i, 0), triangleBox);
+			for (int axis = 0; axis < 3; ++axis) {
+				double centroid = (triangleBox[axis] + triangleBox[axis + 3]) / 2;
+				box[axis] = Math.min(box[axis], triangleBox[axis]);
+				box[axis + 3] = Math.max(box[axis + 3], triangleBox[axis + 3]);
+				box[axis + 6] = Math.min(box[axis + 6], centroid);
+				box[axis + 9] = Math.max(box[axis + 9], centroid);
+			}
+		}
+		return box;
+	}
+
+	/**
+	 * Calculates the bounds of a streamed triangle, as the minimum x, y, and z values followed by the maximum.
+	 */
+	private void triangleBox(int triangle, double[] box) {
+		for (int axis = 0; axis < 3; ++axis) {
+			double a = streamed.getDouble(triangle, 8 + 8 * axis), b = streamed.getDouble(triangle, 32 + 8 * axis);
+			double c = streamed.getDouble(triangle, 56 + 8 * axis);
+			box[axis] = Math.min(a, Math.min(b, c));
+			box[axis + 3] = Math.max(a, Math.max(b, c));
+		}
+	}
+
+	private static Boundary boundary(double[] box) {
+		return new Boundary(new Point(box[0], box[1], box[2]), new Point(box[3], box[4], box[5]));
+	}
+
+	/**
+	 * Copy a streamed triangle into the records of the triangles of the hierarchy.
+	 *
+	 * @return The reference to the triangle.
+	 */
+	private int copy(int triangle) {
+		int index = triangles.add();
+		triangles.putInt(index, 0, meshMaterials[streamed.getInt(triangle, 0)]);
+		for (int offset = 8; offset < TRIANGLE_SIZE; offset += 8) {
+			triangles.putDouble(index, offset, streamed.getDouble(triangle, offset));
+		}
+		return reference(index, MESH);
+	}
+
+	/**
+	 * Copy a primitive into the record of its kind, or into the array of other primitives.
+	 *
+	 * @param primitive The primitive.
+	 * @return The reference to the primitive.
+	 */
+	private int store(Intersectible primitive) {
+		int index;
+		int kind;
+		if (primitive instanceof Sphere) {
+			Sphere sphere = (Sphere) primitive;
+			index = spheres.add();
+			spheres.putInt(index, 0, material(sphere.material));
+			putPoint(spheres, index, 8, sphere.center());
+			spheres.putDouble(index, 32, sphere.radiusSquared());
+			kind = SPHERE;
+		} else if (primitive instanceof Triangle) {
+			Triangle triangle = (Triangle) primitive;
+			List<Point> vertices = triangle.vertices();
+			Point p1 = vertices.get(0), p2 = vertices.get(1), p3 = vertices.get(2);
+			double e1x = p2.x - p1.x, e1y = p2.y - p1.y, e1z = p2.z - p1.z;
+			double e2x = p3.x - p1.x, e2y = p3.y - p1.y, e2z = p3.z - p1.z;
+			double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+			index = triangles.add();
+			triangles.putInt(index, 0, material(triangle.material));
+			putPoint(triangles, index, 8, p1);
+			putPoint(triangles, index, 32, p2);
+			putPoint(triangles, index, 56, p3);
+			triangles.putDouble(index, 80, 1 / Math.sqrt(nx * nx + ny * ny + nz * nz));
+			kind = TRIANGLE;
+		} else {
+			index = otherList.size();
+			otherList.add(primitive);
+			kind = OTHER;
+		}
+		return reference(index, kind);
+	}
+
+	/**
+	 * Get the reference to the primitive with the given index in the records of its kind.
+	 *
+	 * @throws IllegalArgumentException if the index is too large to reference.
+	 */
+	private static int reference(int index, int kind) {
+		if (index >= 1 << (Integer.SIZE - 1 - KIND_BITS)) {
+			throw new IllegalArgumentException("Error: There are too many primitives to store off the heap.");
+		}
+		return index << KIND_BITS | kind;
+	}
+
+	/**
+	 * Get the index in the palette of the geometry of the given material, adding it if it is not there yet.
+	 */
+	private int material(Material material) {
+		return materials.computeIfAbsent(material, m -> {
+			paletteList.add(new Primitives(m));
+			return paletteList.size() - 1;
+		});
+	}
+
+	private static void putPoint(OffHeapArray array, int record, int offset, Point point) {
+		array.putDouble(record, offset, point.x);
+		array.putDouble(record, offset + 8, point.y);
+		array.putDouble(record, offset + 16, point.z);
+	}
+
+	private static Point getPoint(OffHeapArray array, int record, int offset) {
+		return new Point(array.getDouble(record, offset), array.getDouble(record, offset + 8),
+			array.getDouble(record, offset + 16));
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		double[] distances = new double[2];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets.getInt(~child, 0), end = leafOffsets.getInt(~child + 1, 0); i < end; ++i) {
+					int reference = references.getInt(i, 0);
+					if (mailbox != null && !mailbox.add(reference)) {
+						continue;
+					}
+					if ((reference & KIND_MASK) == OTHER) {
+						result.addAll(others[reference >>> KIND_BITS].intersect(line));
+						continue;
+					}
+					Geometry geometry = geometry(reference);
+					for (int j = 0, count = distances(reference, line, distances); j < count; ++j) {
+						Point point = line.travel(distances[j]);
+						if (point != null) {
+							result.add(new Intersection(geometry, point, null, reference));
+						}
+					}
+				}
+				continue;
+			}
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = childOf(child, lane);
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			result.addAll(primitive.intersect(line));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		double[] distances = new double[2];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets.getInt(~child, 0), end = leafOffsets.getInt(~child + 1, 0); i < end; ++i) {
+					int reference = references.getInt(i, 0);
+					if ((mailbox == null || mailbox.add(reference)) && intersects(reference, line, distances)) {
+						return true;
+					}
+				}
+				continue;
+			}
+			top = push(child, line, entries, stack, top);
+		}
+		for (Intersectible primitive : unbounded) {
+			if (primitive.intersects(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether a line segment intersects the given primitive.
+	 */
+	private boolean intersects(int reference, LineSegment line, double[] distances) {
+		if ((reference & KIND_MASK) == OTHER) {
+			return others[reference >>> KIND_BITS].intersects(line);
+		}
+		for (int j = 0, count = distances(reference, line, distances); j < count; ++j) {
+			if (line.withinDistance(distances[j])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		double[] distances = new double[2];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets.getInt(~child, 0), end = leafOffsets.getInt(~child + 1, 0); i < end; ++i) {
+					int reference = references.getInt(i, 0);
+					if (mailbox != null && !mailbox.add(reference)) {
+						continue;
+					}
+					transparency = transparency(reference, line, transparency, threshold, distances);
+					if (transparency.lt(threshold)) {
+						return Factors.ZERO;
+					}
+				}
+				continue;
+			}
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = childOf(child, lane);
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			transparency = primitive.transparency(line, transparency, threshold);
+			if (transparency.lt(threshold)) {
+				return Factors.ZERO;
+			}
+		}
+		return transparency;
+	}
+
+	/**
+	 * Calculates how much light passes through the given primitive, as in
+	 * {@link Geometry#transparency(LineSegment, Factors, double)}.
+	 */
+	private Factors transparency(int reference, LineSegment line, Factors transparency, double threshold,
+		double[] distances) {
+		if ((reference & KIND_MASK) == OTHER) {
+			return others[reference >>> KIND_BITS].transparency(line, transparency, threshold);
+		}
+		Factors factors = geometry(reference).material.transparency;
+		if (transparency.scale(factors).lt(threshold)) {
+			return intersects(reference, line, distances) ? Factors.ZERO : transparency;
+		}
+		for (int j = 0, count = distances(reference, line, distances); j < count; ++j) {
+			if (line.withinDistance(distances[j])) {
+				transparency = transparency.scale(factors);
+				if (transparency.lt(threshold)) {
+					return Factors.ZERO;
+				}
+			}
+		}
+		return transparency;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		int[] stack = hit.nodeStack(stackSize);
+		double[] distances = hit.entryStack(stackSize); // the entry distance of each child on the stack
+		double[] entries = hit.laneEntries(WIDTH);
+		Mailbox mailbox = shared ? hit.mailbox() : null;
+		int top = 0;
+		distances[top] = 0;
+		stack[top++] = 0;
+		boolean found = false;
+		while (top > 0) {
+			int child = stack[--top];
+			if (distances[top] >= hit.distance) {
+				continue; // the child starts after the closest intersection found so far
+			}
+			if (child < 0) {
+				for (int i = leafOffsets.getInt(~child, 0), end = leafOffsets.getInt(~child + 1, 0); i < end; ++i) {
+					int reference = references.getInt(i, 0);
+					if (mailbox == null || mailbox.add(reference)) {
+						found |= intersect(reference, line, hit);
+					}
+				}
+				continue;
+			}
+			// push the children which start before the closest intersection, nearest on top
+			int first = top;
+			for (int lane = 0, count = entryDistances(child, line, entries); lane < count; ++lane) {
+				double entry = entries[lane];
+				if (entry < hit.distance) {
+					int j = top++;
+					for (; j > first && distances[j - 1] < entry; --j) {
+						distances[j] = distances[j - 1];
+						stack[j] = stack[j - 1];
+					}
+					distances[j] = entry;
+					stack[j] = childOf(child, lane);
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			found |= primitive.intersect(line, hit);
+		}
+		return found;
+	}
+
+	/**
+	 * Find the closest intersection with the given primitive, as in
+	 * {@link Sphere#intersect(LineSegment, HitRecord)} and {@link Triangle#intersect(LineSegment, HitRecord)}.
+	 */
+	private boolean intersect(int reference, LineSegment line, HitRecord hit) {
+		int index = reference >>> KIND_BITS;
+		switch (reference & KIND_MASK) {
+		case SPHERE:
+			double toCenterX = spheres.getDouble(index, 8) - line.start.x;
+			double toCenterY = spheres.getDouble(index, 16) - line.start.y;
+			double toCenterZ = spheres.getDouble(index, 24) - line.start.z;
+			double scalarsMid =
+				toCenterX * line.direction.x + toCenterY * line.direction.y + toCenterZ * line.direction.z;
+			double perpendicularDistanceSquared =
+				toCenterX * toCenterX + toCenterY * toCenterY + toCenterZ * toCenterZ - scalarsMid * scalarsMid;
+			double radiusSquared = spheres.getDouble(index, 32);
+			if (DoubleCompare.geq(perpendicularDistanceSquared, radiusSquared)) {
+				return false;
+			}
+			double scalarsOffset = Math.sqrt(radiusSquared - perpendicularDistanceSquared);
+			Geometry sphere = palette[spheres.getInt(index, 0)];
+			return hit.update(sphere, line, scalarsMid - scalarsOffset, reference)
+				|| hit.update(sphere, line, scalarsMid + scalarsOffset, reference);
+		case TRIANGLE:
+		case MESH:
+			return !Double.isNaN(triangleDistance(index, line, hit, reference));
+		default:
+			return others[index].intersect(line, hit);
+		}
+	}
+
+	/**
+	 * Calculates the distances along a line segment to its intersections with the given sphere or triangle, in the
+	 * order in which {@link Sphere#intersect(LineSegment)} and {@link Triangle#intersect(LineSegment)} list them.
+	 *
+	 * @param reference The reference to the sphere or triangle.
+	 * @param line      The {@link LineSegment}.
+	 * @param distances The array to write the distances to, which may be negative or beyond the end of the line
+	 *                  segment.
+	 * @return The number of distances written.
+	 */
+	private int distances(int reference, LineSegment line, double[] distances) {
+		int index = reference >>> KIND_BITS;
+		if ((reference & KIND_MASK) != SPHERE) {
+			distances[0] = triangleDistance(index, line, null, reference);
+			return Double.isNaN(distances[0]) ? 0 : 1;
+		}
+		double toCenterX = spheres.getDouble(index, 8) - line.start.x;
+		double toCenterY = spheres.getDouble(index, 16) - line.start.y;
+		double toCenterZ = spheres.getDouble(index, 24) - line.start.z;
+		double scalarsMid = toCenterX * line.direction.x + toCenterY * line.direction.y + toCenterZ * line.direction.z;
+		double perpendicularDistanceSquared =
+			toCenterX * toCenterX + toCenterY * toCenterY + toCenterZ * toCenterZ - scalarsMid * scalarsMid;
+		double radiusSquared = spheres.getDouble(index, 32);
+		if (DoubleCompare.geq(perpendicularDistanceSquared, radiusSquared)) {
+			return 0;
+		}
+		double scalarsOffset = Math.sqrt(radiusSquared - perpendicularDistanceSquared);
+		distances[0] = scalarsMid + scalarsOffset;
+		distances[1] = scalarsMid - scalarsOffset;
+		return 2;
+	}
+
+	/**
+	 * Calculates the distance along a line segment to its intersection with the given triangle, and records it in the
+	 * hit record if one is given, as in {@link Triangle}, or as in {@link TriangleMesh} if it is from a mesh.
+	 *
+	 * @param reference The reference to the triangle, which is recorded as the face of the intersection.
+	 * @return The distance from the start of the line to the intersection, which may be negative or beyond the end of
+	 *         the line segment, or NaN if the line does not pass through the inside of the triangle or if the
+	 *         intersection was not recorded in the given hit record.
+	 */
+	private double triangleDistance(int triangle, LineSegment line, HitRecord hit, int reference) {
+		double x0 = triangles.getDouble(triangle, 8), y0 = triangles.getDouble(triangle, 16),
+			z0 = triangles.getDouble(triangle, 24);
+		double e1x = triangles.getDouble(triangle, 32) - x0, e1y = triangles.getDouble(triangle, 40) - y0,
+			e1z = triangles.getDouble(triangle, 48) - z0;
+		double e2x = triangles.getDouble(triangle, 56) - x0, e2y = triangles.getDouble(triangle, 64) - y0,
+			e2z = triangles.getDouble(triangle, 72) - z0;
+		double dx = line.direction.x, dy = line.direction.y, dz = line.direction.z;
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double determinant = e1x * px + e1y * py + e1z * pz;
+		// the determinant divided by the length of the normal is the cosine of the angle between the line and normal
+		if (DoubleCompare.eq(determinant * triangles.getDouble(triangle, 80), 0)) {
+			return Double.NaN; // the line is parallel to the triangle
+		}
+		double inverse = 1 / determinant;
+		double sx = line.start.x - x0, sy = line.start.y - y0, sz = line.start.z - z0;
+		boolean edges = (reference & KIND_MASK) == MESH;
+		double u = (sx * px + sy * py + sz * pz) * inverse;
+		if (edges ? u < 0 || u > 1 : !DoubleCompare.gt(u, 0) || !DoubleCompare.lt(u, 1)) {
+			return Double.NaN;
+		}
+		double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (edges ? v < 0 || u + v > 1 : !DoubleCompare.gt(v, 0) || !DoubleCompare.lt(u + v, 1)) {
+			return Double.NaN;
+		}
+		double distance = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+		if (hit != null) {
+			if (!hit.update(palette[triangles.getInt(triangle, 0)], line, distance, reference)) {
+				return Double.NaN;
+			}
+			hit.u = u;
+			hit.v = v;
+		}
+		return distance;
+	}
+
+	/**
+	 * Get the geometry of the intersections with the given sphere or triangle.
+	 */
+	private Geometry geometry(int reference) {
+		int index = reference >>> KIND_BITS;
+		return palette[(reference & KIND_MASK) == SPHERE ? spheres.getInt(index, 0) : triangles.getInt(index, 0)];
+	}
+
+	private int childOf(int node, int lane) {
+		return nodes.getInt(node, 4 * (10 + lane));
+	}
+
+	/**
+	 * Push the children of a node which a line segment enters onto a stack, in an order in which the children whose
+	 * pages are mapped are popped first.
+	 *
+	 * @return The new top of the stack.
+	 */
+	private int push(int node, LineSegment line, double[] entries, int[] stack, int top) {
+		int count = entryDistances(node, line, entries);
+		for (int pass = 0; pass < (pages == null ? 1 : 2); ++pass) {
+			for (int lane = 0; lane < count; ++lane) {
+				if (entries[lane] == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int child = childOf(node, lane);
+				if (pages == null || resident(child) == (pass == 1)) {
+					stack[top++] = child;
+				}
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Determines whether the node or the references of the leaf of a child are mapped, without mapping anything.
+	 */
+	private boolean resident(int child) {
+		if (child >= 0) {
+			return nodes.resident(child);
+		}
+		return leafOffsets.resident(~child) && references.resident(leafOffsets.getInt(~child, 0));
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters the box of each child of the given node,
+	 * by the same calculation as the {@link CompressedHierarchy} the nodes were copied from.
+	 *
+	 * @param node    The index of the node.
+	 * @param line    The {@link LineSegment}.
+	 * @param entries The array to write the distance for each child to. The distance is zero if the line starts inside
+	 *                the box, or positive infinity if the line doesn't intersect the box.
+	 * @return The number of children of the node.
+	 */
+	private int entryDistances(int node, LineSegment line, double[] entries) {
+		int header = nodes.getInt(node, 12);
+		double originX = Float.intBitsToFloat(nodes.getInt(node, 0));
+		double originY = Float.intBitsToFloat(nodes.getInt(node, 4));
+		double originZ = Float.intBitsToFloat(nodes.getInt(node, 8));
+		double scaleX = CompressedHierarchy.scale(header & 0xFF);
+		double scaleY = CompressedHierarchy.scale(header >>> 8 & 0xFF);
+		double scaleZ = CompressedHierarchy.scale(header >>> 16 & 0xFF);
+		int minX = nodes.getInt(node, 16), minY = nodes.getInt(node, 20), minZ = nodes.getInt(node, 24);
+		int maxX = nodes.getInt(node, 28), maxY = nodes.getInt(node, 32), maxZ = nodes.getInt(node, 36);
+		double startX = line.start.x, startY = line.start.y, startZ = line.start.z;
+		double inverseX = line.inverse.x, inverseY = line.inverse.y, inverseZ = line.inverse.z;
+		double squareLength = line.squareLength;
+		int count = header >>> 24;
+		for (int lane = 0; lane < count; ++lane) {
+			int shift = 8 * lane;
+			double tx1 = (originX + (minX >>> shift & 0xFF) * scaleX - startX) * inverseX;
+			double tx2 = (originX + (maxX >>> shift & 0xFF) * scaleX - startX) * inverseX;
+			double ty1 = (originY + (minY >>> shift & 0xFF) * scaleY - startY) * inverseY;
+			double ty2 = (originY + (maxY >>> shift & 0xFF) * scaleY - startY) * inverseY;
+			double tz1 = (originZ + (minZ >>> shift & 0xFF) * scaleZ - startZ) * inverseZ;
+			double tz2 = (originZ + (maxZ >>> shift & 0xFF) * scaleZ - startZ) * inverseZ;
+			double tmin = Math.max(Math.min(tx1, tx2), Math.max(Math.min(ty1, ty2), Math.min(tz1, tz2)));
+			double tmax = Math.min(Math.max(tx1, tx2), Math.min(Math.max(ty1, ty2), Math.max(tz1, tz2)));
+			entries[lane] = tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < squareLength) ? Math.max(tmin, 0)
+				: Double.POSITIVE_INFINITY;
+		}
+		return count;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+
+	/**
+	 * Get the file the records of the hierarchy are kept in, from which the statistics of its pages may be read.
+	 *
+	 * @return The file, or null if the records are in direct buffers.
+	 */
+	public GeometryPages pages() {
+		return pages;
+	}
+
+	/**
+	 * The triangles of meshes read from their files, in records like those of the triangles of a hierarchy, whose
+	 * material is the index of their mesh.
+	 */
+	private static class StreamedMeshes implements MeshLoader.Sink {
+		final OffHeapArray vertices;
+		final OffHeapArray triangles;
+		/** The material of each mesh. */
+		final List<Material> materials = new ArrayList<>();
+		/** The mesh being read, and the index of its first vertex. */
+		private MeshFile mesh;
+		private int firstVertex;
+
+		StreamedMeshes(GeometryPages pages) {
+			vertices = new OffHeapArray(VERTEX_SIZE, pages);
+			triangles = new OffHeapArray(TRIANGLE_SIZE, pages);
+		}
+
+		/**
+		 * Read the triangles of a mesh.
+		 *
+		 * @throws IOException if the file cannot be read, or is not a valid OBJ or PLY file.
+		 */
+		void read(MeshFile mesh) throws IOException {
+			this.mesh = mesh;
+			firstVertex = vertices.size();
+			materials.add(mesh.material);
+			MeshLoader.read(mesh.file, this);
+		}
+
+		@Override
+		public void vertices(long count, boolean doubles) throws IOException {
+			if (count > Integer.MAX_VALUE - vertices.size()) {
+				throw new IOException("Error: There are too many vertices in " + mesh.file + " to stream.");
+			}
+		}
+
+		@Override
+		public void vertex(double x, double y, double z) {
+			int vertex = vertices.add();
+			vertices.putDouble(vertex, 0, x);
+			vertices.putDouble(vertex, 8, y);
+			vertices.putDouble(vertex, 16, z);
+		}
+
+		/**
+		 * Add a triangle, unless it has no area, with its reciprocal normal length rounded to a float as in
+		 * {@link TriangleMesh}.
+		 */
+		@Override
+		public void triangle(int a, int b, int c) throws IOException {
+			int p1 = vertex(a), p2 = vertex(b), p3 = vertex(c);
+			double x0 = vertices.getDouble(p1, 0), y0 = vertices.getDouble(p1, 8), z0 = vertices.getDouble(p1, 16);
+			double e1x = vertices.getDouble(p2, 0) - x0, e1y = vertices.getDouble(p2, 8) - y0,
+				e1z = vertices.getDouble(p2, 16) - z0;
+			double e2x = vertices.getDouble(p3, 0) - x0, e2y = vertices.getDouble(p3, 8) - y0,
+				e2z = vertices.getDouble(p3, 16) - z0;
+			double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+			float inverse = (float) (1 / Math.sqrt(nx * nx + ny * ny + nz * nz));
+			if (Float.isInfinite(inverse)) {
+				return;
+			}
+			int triangle = triangles.add();
+			triangles.putInt(triangle, 0, materials.size() - 1);
+			copyVertex(p1, triangle, 8);
+			copyVertex(p2, triangle, 32);
+			copyVertex(p3, triangle, 56);
+			triangles.putDouble(triangle, 80, inverse);
+		}
+
+		private void copyVertex(int vertex, int triangle, int offset) {
+			for (int axis = 0; axis < 3; ++axis) {
+				triangles.putDouble(triangle, offset + 8 * axis, vertices.getDouble(vertex, 8 * axis));
+			}
+		}
+
+		/**
+		 * Get the record of a vertex of the mesh being read.
+		 *
+		 * @throws IOException if the index is not the index of a vertex of the mesh.
+		 */
+		private int vertex(int index) throws IOException {
+			if (index < 0 || index >= vertices.size() - firstVertex) {
+				throw new IOException(
+					"Error: The index " + index + " in " + mesh.file + " is not the index of a vertex.");
+			}
+			return firstVertex + index;
+		}
+	}
+
+	/**
+	 * The spheres and triangles of the hierarchy which are made from a single {@link Material}, which is the
+	 * {@link Geometry} of their intersections. The face of each intersection is the reference to the intersected
+	 * primitive.
+	 */
+	private class Primitives extends Geometry {
+		Primitives(Material material) {
+			super(material);
+		}
+
+		/**
+		 * Calculates the normal to the primitive of this material whose surface is closest to the given point. Since
+		 * this has to search all the primitives, the normal of an {@link Intersection} is calculated from the primitive
+		 * recorded in the intersection instead.
+		 */
+		@Override
+		public NormalizedVector normal(Point point) {
+			int material = paletteIndex();
+			int closest = -1;
+			double closestDistance = Double.POSITIVE_INFINITY;
+			for (int sphere = 0; sphere < spheres.size(); ++sphere) {
+				if (spheres.getInt(sphere, 0) == material) {
+					double distance = Math.abs(getPoint(spheres, sphere, 8).distance(point)
+						- Math.sqrt(spheres.getDouble(sphere, 32)));
+					if (distance < closestDistance) {
+						closest = sphere << KIND_BITS | SPHERE;
+						closestDistance = distance;
+					}
+				}
+			}
+			for (int triangle = 0; triangle < triangles.size(); ++triangle) {
+				if (triangles.getInt(triangle, 0) == material) {
+					NormalizedVector normal = normal(point, triangle << KIND_BITS | TRIANGLE);
+					double distance = Math.abs(getPoint(triangles, triangle, 8).vectorTo(point).dot(normal));
+					if (distance < closestDistance) {
+						closest = triangle << KIND_BITS | TRIANGLE;
+						closestDistance = distance;
+					}
+				}
+			}
+			return normal(point, closest);
+		}
+
+		@Override
+		NormalizedVector normal(Point point, int face) {
+			int index = face >>> KIND_BITS;
+			if ((face & KIND_MASK) == SPHERE) {
+				return getPoint(spheres, index, 8).nonZeroVectorTo(point).normalized();
+			}
+			Point p1 = getPoint(triangles, index, 8), p2 = getPoint(triangles, index, 32);
+			Point p3 = getPoint(triangles, index, 56);
+			return p1.nonZeroVectorTo(p2).cross(p2.nonZeroVectorTo(p3)).normalized();
+		}
+
+		private int paletteIndex() {
+			for (int i = 0;; ++i) {
+				if (palette[i] == this) {
+					return i;
+				}
+			}
+		}
+
+		/**
+		 * Finds the intersections with the spheres and triangles of this material, by intersecting the whole hierarchy.
+		 */
+		@Override
+		public List<Intersection> intersect(LineSegment line) {
+			List<Intersection> result = new ArrayList<>();
+			for (Intersection intersection : OffHeapHierarchy.this.intersect(line)) {
+				if (intersection.geometry == this) {
+					result.add(intersection);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public Boundary boundary() {
+			return boundary;
+		}
+	}
+}
@@ -75,13 +75,70 @@ public class Plane extends InfiniteGeometry {
 
 	@Override
 	public List<Intersection> intersect(LineSegment line) {
-		double ray_dot_normal = line.direction.dot(normal);
-		if (DoubleCompare.eq(ray_dot_normal, 0)) {
+		double distance = distance(line);
+		if (Double.isNaN(distance)) {
 			return Collections.emptyList(); // ray is parallel to plane
 		}
-		double distance = (line.start.vectorTo(point)).dot(normal) / ray_dot_normal;
 		Point intersectionPoint = line.travel(distance);
 		return intersectionPoint != null ? List.of(intersection(intersectionPoint)) : Collections.emptyList();
 	}
 
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		double distance = distance(line);
+		return !Double.isNaN(distance) && hit.update(this, line, distance);
+	}
+
+	/**
+	 * The part of the plane inside a box is a polygon whose vertices are where the plane crosses the edges of the box,
+	 * so its bounding box is the bounding box of those points.
+	 */
+	@Override
+	Boundary clip(Boundary region) {
+		double[] low = { region.min().x, region.min().y, region.min().z };
+		double[] high = { region.max().x, region.max().y, region.max().z };
+		double[] n = { normal.x, normal.y, normal.z };
+		double offset = normal.x * point.x + normal.y * point.y + normal.z * point.z;
+		double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		double[] corner = new double[3];
+		for (int axis = 0; axis < 3; ++axis) {
+			if (n[axis] == 0) {
+				continue; // the edges along this axis are parallel to the plane
+			}
+			int u = (axis + 1) % 3, v = (axis + 2) % 3;
+			for (int edge = 0; edge < 4; ++edge) { // the four edges of the box along this axis
+				corner[u] = (edge & 1) == 0 ? low[u] : high[u];
+				corner[v] = (edge & 2) == 0 ? low[v] : high[v];
+				corner[axis] = (offset - n[u] * corner[u] - n[v] * corner[v]) / n[axis];
+				if (corner[axis] >= low[axis] && corner[axis] <= high[axis]) {
+					for (int i = 0; i < 3; ++i) {
+						min[i] = Math.min(min[i], corner[i]);
+						max[i] = Math.max(max[i], corner[i]);
+					}
+				}
+			}
+		}
+		if (min[0] > max[0]) {
+			return Boundary.EMPTY;
+		}
+		return new Boundary(new Point(min[0], min[1], min[2]), new Point(max[0], max[1], max[2]));
+	}
+
+	/**
+	 * Calculates the distance along the given line to where it intersects the plane, without allocating any objects.
+	 *
+	 * @param line The {@link LineSegment} to intersect with the plane.
+	 * @return The distance from the start of the line to the plane, which may be negative, or NaN if the line is
+	 *         parallel to the plane.
+	 */
+	double distance(LineSegment line) {
+		double ray_dot_normal = line.direction.x * normal.x + line.direction.y * normal.y + line.direction.z * normal.z;
+		if (DoubleCompare.eq(ray_dot_normal, 0)) {
+			return Double.NaN; // ray is parallel to plane
+		}
+		return ((point.x - line.start.x) * normal.x + (point.y - line.start.y) * normal.y
+			+ (point.z - line.start.z) * normal.z) / ray_dot_normal;
+	}
+
 }
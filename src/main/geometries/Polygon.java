@@ -9,7 +9,6 @@ import primitives.LineSegment;
 import primitives.Material;
 import primitives.NormalizedVector;
 import primitives.Point;
-import primitives.NonZeroVector;
 import primitives.ZeroVectorException;
 
 /**
@@ -25,6 +24,17 @@ public class Polygon extends Geometry {
 	private final Plane plane; // The plane which all the points must reside on.
 	private final Boundary boundary;
 	private final int size;
+	/**
+	 * The axis dropped when projecting the polygon onto a plane of two axes, which is the axis in which its normal is
+	 * largest. The remaining axes follow it cyclically, so if the x axis is dropped the points are projected to their
+	 * y and z coordinates.
+	 */
+	private final int droppedAxis;
+	/**
+	 * The coefficients a, b, and c of the line through each edge of the projected polygon, such that a point (u, v)
+	 * is inside the polygon if a u + b v + c is positive for every edge, and the value is its distance from the line.
+	 */
+	private final double[] edges;
 
 	/**
 	 * This constructor accepts a list of the vertices of the polygon.
@@ -74,6 +84,26 @@ public class Polygon extends Geometry {
 		this.boundary = calcBorder(vertices);
 		// Construct the plane from the first three vertices (not in a straight line).
 		this.plane = new Plane(material, this.vertices.get(0), this.vertices.get(1), this.vertices.get(2));
+
+		double nx = Math.abs(plane.normal.x), ny = Math.abs(plane.normal.y), nz = Math.abs(plane.normal.z);
+		droppedAxis = nx >= ny && nx >= nz ? 0 : ny >= nz ? 1 : 2;
+		edges = new double[3 * size];
+		double area = 0; // twice the signed area of the projected polygon, which is positive if it is anticlockwise
+		for (int i = 0; i < size; ++i) {
+			Point p1 = this.vertices.get(i), p2 = this.vertices.get((i + 1) % size);
+			double u1 = projectU(p1.x, p1.y, p1.z), v1 = projectV(p1.x, p1.y, p1.z);
+			double u2 = projectU(p2.x, p2.y, p2.z), v2 = projectV(p2.x, p2.y, p2.z);
+			double length = Math.sqrt((u2 - u1) * (u2 - u1) + (v2 - v1) * (v2 - v1));
+			edges[3 * i] = (v1 - v2) / length;
+			edges[3 * i + 1] = (u2 - u1) / length;
+			edges[3 * i + 2] = (u1 * v2 - u2 * v1) / length;
+			area += u1 * v2 - u2 * v1;
+		}
+		if (area < 0) { // clockwise, so the lines as calculated are positive outside the polygon
+			for (int i = 0; i < edges.length; ++i) {
+				edges[i] = -edges[i];
+			}
+		}
 	}
 
 	static Boundary calcBorder(Point[] vertices) {
@@ -97,27 +127,82 @@ public class Polygon extends Geometry {
 
 	@Override
 	public List<Intersection> intersect(LineSegment line) {
-		List<Intersection> candidates = plane.intersect(line);
-		if (candidates.isEmpty()) { // The ray doesn't intersect the plane
-			return candidates;
+		double distance = distance(line);
+		if (Double.isNaN(distance)) {
+			return Collections.emptyList();
 		}
+		Point intersectionPoint = line.travel(distance);
+		return intersectionPoint != null ? List.of(intersection(intersectionPoint)) : Collections.emptyList();
+	}
 
-		// Check if the plane intersection is within the polygon
-		Point p1 = vertices.get(0);
-		Point p2 = vertices.get(1);
-		NonZeroVector normal = line.start.nonZeroVectorTo(p1).cross(p1.nonZeroVectorTo(p2)); // No zero vectors bc ray
-																								// intersects the
-		// plane
-		int comparison = DoubleCompare.compare(normal.dot(line.direction), 0);
-		for (int i = 2; i <= size; ++i) { // Loop through consecutive points
-			p1 = p2;
-			p2 = vertices.get(i % size);
-			normal = line.start.nonZeroVectorTo(p1).cross(p1.nonZeroVectorTo(p2));
-			if (comparison != DoubleCompare.compare(normal.dot(line.direction), 0)) {
-				return Collections.emptyList();
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		return hit.update(this, line, distance(line));
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		double distance = distance(line);
+		return !Double.isNaN(distance) && line.withinDistance(distance);
+	}
+
+	/**
+	 * Calculates the distance along the line to its intersection with the polygon, without allocating any objects.
+	 * The intersection with the plane is projected onto the plane of two axes in which the polygon is largest, where
+	 * it is inside the polygon if it is on the inner side of the line through every edge. A line which is parallel to
+	 * the polygon or which meets it on its boundary does not intersect it.
+	 *
+	 * @param line The {@link LineSegment} to intersect.
+	 * @return The distance from the start of the line to the intersection, which may be negative or beyond the end of
+	 *         the line segment, or NaN if the line does not pass through the inside of the polygon.
+	 */
+	private double distance(LineSegment line) {
+		double distance = plane.distance(line);
+		if (Double.isNaN(distance)) {
+			return distance;
+		}
+		double x = line.start.x + line.direction.x * distance;
+		double y = line.start.y + line.direction.y * distance;
+		double z = line.start.z + line.direction.z * distance;
+		double u = projectU(x, y, z), v = projectV(x, y, z);
+		for (int i = 0; i < edges.length; i += 3) {
+			if (!DoubleCompare.gt(edges[i] * u + edges[i + 1] * v + edges[i + 2], 0)) {
+				return Double.NaN;
 			}
 		}
-		return candidates;
+		return distance;
+	}
+
+	/**
+	 * Get the first coordinate of a point projected onto the plane of the two axes other than the dropped axis.
+	 */
+	private double projectU(double x, double y, double z) {
+		return droppedAxis == 0 ? y : droppedAxis == 1 ? z : x;
+	}
+
+	/**
+	 * Get the second coordinate of a point projected onto the plane of the two axes other than the dropped axis.
+	 */
+	private double projectV(double x, double y, double z) {
+		return droppedAxis == 0 ? z : droppedAxis == 1 ? x : y;
+	}
+
+	/**
+	 * Get the significant vertices of the polygon, which excludes any vertices given in the middle of an edge.
+	 *
+	 * @return The vertices of the polygon, in order.
+	 */
+	List<Point> vertices() {
+		return Collections.unmodifiableList(vertices);
+	}
+
+	/**
+	 * Get the plane containing the polygon.
+	 *
+	 * @return The plane which all the vertices reside on.
+	 */
+	Plane plane() {
+		return plane;
 	}
 
 	@Override
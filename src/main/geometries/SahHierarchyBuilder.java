@@ -0,0 +1,378 @@
+package geometries;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import primitives.Point;
+import util.ChunkedReduction;
+
+/**
+ * Builds a hierarchy top down by recursively splitting the {@link Intersectible}s in two along the plane which
+ * minimises the surface area heuristic (SAH). Rather than evaluating every possible plane, the centroids of the
+ * {@link Boundary}s are sorted into a fixed number of equally sized bins along each axis and only the planes between
+ * bins are considered. This way each level of the hierarchy is built in linear time, and the whole hierarchy in
+ * O(n log n).
+ *
+ * The build runs on a {@link ForkJoinPool}. Large subtrees are built in parallel, and the bounds, bins, and partition
+ * of large ranges are computed in parallel over chunks of a fixed size. Since the chunks don't depend on the number of
+ * threads and the partition is stable, the same hierarchy is built no matter how many threads are used.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class SahHierarchyBuilder implements HierarchyBuilder {
+	/** The number of bins the centroids are sorted into along each axis. */
+	private static final int BINS = 16;
+	/** Ranges of at most this many intersectibles become leaves if splitting them doesn't reduce the cost. */
+	private static final int MAX_LEAF_SIZE = 4;
+	/** The cost of traversing a node relative to the cost of intersecting a single intersectible. */
+	private static final double TRAVERSAL_COST = 1;
+	/** Larger ranges are processed in parallel, in chunks of this many intersectibles. */
+	private static final int CHUNK_SIZE = 1024;
+
+	private final int threads;
+
+	/**
+	 * Construct a builder which builds the hierarchy on a single thread.
+	 */
+	public SahHierarchyBuilder() {
+		this(1);
+	}
+
+	/**
+	 * Construct a builder which builds the hierarchy on the given number of threads.
+	 *
+	 * @param threads The number of threads to build the hierarchy on.
+	 * @throws IllegalArgumentException if the number of threads is not positive.
+	 */
+	public SahHierarchyBuilder(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Error: The number of threads must be positive.");
+		}
+		this.threads = threads;
+	}
+
+	@Override
+	public Intersectible build(List<Intersectible> intersectibles) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new RecursiveTask<Intersectible>() {
+				@Override
+				protected Intersectible compute() {
+					Build build = new Build(intersectibles);
+					return build.new Node(0, intersectibles.size()).invoke();
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The state of a single build. The intersectibles themselves are never moved, instead their indices in
+	 * {@code order} are partitioned in place as the hierarchy is built.
+	 */
+	private static class Build {
+		private final Intersectible[] items;
+		private final double[] boxes; // six values per item: min x, y, z then max x, y, z
+		private final double[] centroids; // three values per item
+		private final int[] order;
+		private final int[] scratch; // space to partition order into
+
+		Build(List<Intersectible> intersectibles) {
+			int size = intersectibles.size();
+			items = intersectibles.toArray(new Intersectible[size]);
+			boxes = new double[6 * size];
+			centroids = new double[3 * size];
+			order = new int[size];
+			scratch = new int[size];
+			reduce(0, size, (start, end) -> {
+				for (int i = start; i < end; ++i) {
+					Boundary boundary = items[i].boundary();
+					Point min = boundary.min();
+					Point max = boundary.max();
+					boxes[6 * i] = min.x;
+					boxes[6 * i + 1] = min.y;
+					boxes[6 * i + 2] = min.z;
+					boxes[6 * i + 3] = max.x;
+					boxes[6 * i + 4] = max.y;
+					boxes[6 * i + 5] = max.z;
+					for (int axis = 0; axis < 3; ++axis) {
+						centroids[3 * i + axis] = (boxes[6 * i + axis] + boxes[6 * i + axis + 3]) / 2;
+					}
+					order[i] = i;
+				}
+				return null;
+			}, (a, b) -> null);
+		}
+
+		/**
+		 * Builds the subtree containing the items whose indices are in {@code order[start:end]}.
+		 */
+		private class Node extends RecursiveTask<Intersectible> {
+			private static final long serialVersionUID = 1L;
+
+			private final int start; // The first position in order (inclusive)
+			private final int end; // The last position in order (exclusive)
+
+			Node(int start, int end) {
+				this.start = start;
+				this.end = end;
+			}
+
+			@Override
+			protected Intersectible compute() {
+				int count = end - start;
+				if (count == 1) {
+					return items[order[start]];
+				}
+				double[] bounds = reduce(start, end, Build.this::bounds, SahHierarchyBuilder::union);
+				double[] box = { bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5] };
+				double[] centroidBox = { bounds[6], bounds[7], bounds[8], bounds[9], bounds[10], bounds[11] };
+				Split split = bestSplit(start, end, box, centroidBox);
+				if (count <= MAX_LEAF_SIZE && (split == null || split.cost >= count * area(box))) {
+					return leaf(start, end, box);
+				}
+				int mid = split == null ? start + count / 2 : partition(start, end, split);
+				Node left = new Node(start, mid);
+				Node right = new Node(mid, end);
+				if (count > CHUNK_SIZE) {
+					left.fork();
+					Intersectible rightRoot = right.compute();
+					return new GeometryList(boundary(box), left.join(), rightRoot);
+				}
+				return new GeometryList(boundary(box), left.compute(), right.compute());
+			}
+		}
+
+		private GeometryList leaf(int start, int end, double[] box) {
+			Intersectible[] leafItems = new Intersectible[end - start];
+			for (int i = start; i < end; ++i) {
+				leafItems[i - start] = items[order[i]];
+			}
+			return new GeometryList(boundary(box), leafItems);
+		}
+
+		/**
+		 * Calculate the box bounding the items whose indices are in {@code order[start:end]}, and the box bounding
+		 * their centroids.
+		 *
+		 * @return The bounding box followed by the box bounding the centroids.
+		 */
+		private double[] bounds(int start, int end) {
+			double inf = Double.POSITIVE_INFINITY;
+			double[] bounds = { inf, inf, inf, -inf, -inf, -inf, inf, inf, inf, -inf, -inf, -inf };
+			for (int i = start; i < end; ++i) {
+				for (int axis = 0; axis < 3; ++axis) {
+					bounds[axis] = Math.min(bounds[axis], boxes[6 * order[i] + axis]);
+					bounds[axis + 3] = Math.max(bounds[axis + 3], boxes[6 * order[i] + axis + 3]);
+					bounds[axis + 6] = Math.min(bounds[axis + 6], centroids[3 * order[i] + axis]);
+					bounds[axis + 9] = Math.max(bounds[axis + 9], centroids[3 * order[i] + axis]);
+				}
+			}
+			return bounds;
+		}
+
+		/**
+		 * Find the plane between bins which minimises the SAH cost of splitting the given range.
+		 *
+		 * @return The best split, or null if the centroids of the range all coincide.
+		 */
+		private Split bestSplit(int start, int end, double[] box, double[] centroidBox) {
+			double[] scales = new double[3];
+			for (int axis = 0; axis < 3; ++axis) {
+				double extent = centroidBox[axis + 3] - centroidBox[axis];
+				scales[axis] = extent > 0 ? BINS / extent : 0;
+			}
+			Bins bins = reduce(start, end, (from, to) -> {
+				Bins result = new Bins();
+				for (int i = from; i < to; ++i) {
+					for (int axis = 0; axis < 3; ++axis) {
+						int bin = bin(centroids[3 * order[i] + axis], centroidBox[axis], scales[axis]);
+						++result.counts[axis][bin];
+						grow(result.boxes[axis][bin], boxes, 6 * order[i]);
+					}
+				}
+				return result;
+			}, Bins::add);
+
+			Split best = null;
+			for (int axis = 0; axis < 3; ++axis) {
+				if (scales[axis] == 0) {
+					continue;
+				}
+				int[] counts = bins.counts[axis];
+				double[][] binBoxes = bins.boxes[axis];
+
+				// rightCosts[bin] is the cost of all the bins from bin onwards
+				double[] rightCosts = new double[BINS];
+				double[] accumulated = emptyBox();
+				int accumulatedCount = 0;
+				for (int bin = BINS - 1; bin > 0; --bin) {
+					grow(accumulated, binBoxes[bin], 0);
+					accumulatedCount += counts[bin];
+					rightCosts[bin] = accumulatedCount == 0 ? 0 : accumulatedCount * area(accumulated);
+				}
+				accumulated = emptyBox();
+				accumulatedCount = 0;
+				for (int bin = 1; bin < BINS; ++bin) {
+					grow(accumulated, binBoxes[bin - 1], 0);
+					accumulatedCount += counts[bin - 1];
+					if (accumulatedCount == 0 || accumulatedCount == end - start) {
+						continue;
+					}
+					double cost = TRAVERSAL_COST * area(box) + accumulatedCount * area(accumulated) + rightCosts[bin];
+					if (best == null || cost < best.cost) {
+						best = new Split(axis, bin, centroidBox[axis], scales[axis], cost);
+					}
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Reorder {@code order[start:end]} so that the items left of the split come first, keeping the relative order
+		 * of the items on each side. Each chunk of the range counts its items on the left of the split, from which
+		 * the position each chunk copies its items to is known in advance.
+		 *
+		 * @return The position in {@code order} of the first item right of the split.
+		 */
+		private int partition(int start, int end, Split split) {
+			int[] lefts = new int[ChunkedReduction.chunks(start, end, CHUNK_SIZE)]; // the number of left items per chunk
+			reduce(start, end, (from, to) -> {
+				int count = 0;
+				for (int i = from; i < to; ++i) {
+					count += isLeft(order[i], split) ? 1 : 0;
+				}
+				lefts[(from - start) / CHUNK_SIZE] = count;
+				return null;
+			}, (a, b) -> null);
+
+			int[] leftOffsets = new int[lefts.length];
+			int[] rightOffsets = new int[lefts.length];
+			int left = start;
+			for (int chunk = 0; chunk < lefts.length; ++chunk) {
+				leftOffsets[chunk] = left;
+				left += lefts[chunk];
+			}
+			int right = left;
+			for (int chunk = 0; chunk < lefts.length; ++chunk) {
+				rightOffsets[chunk] = right;
+				right += Math.min(CHUNK_SIZE, end - start - chunk * CHUNK_SIZE) - lefts[chunk];
+			}
+
+			reduce(start, end, (from, to) -> {
+				int leftOffset = leftOffsets[(from - start) / CHUNK_SIZE];
+				int rightOffset = rightOffsets[(from - start) / CHUNK_SIZE];
+				for (int i = from; i < to; ++i) {
+					scratch[isLeft(order[i], split) ? leftOffset++ : rightOffset++] = order[i];
+				}
+				return null;
+			}, (a, b) -> null);
+			System.arraycopy(scratch, start, order, start, end - start);
+			return left;
+		}
+
+		private boolean isLeft(int item, Split split) {
+			return bin(centroids[3 * item + split.axis], split.min, split.scale) < split.bin;
+		}
+	}
+
+	/**
+	 * The number of items and the box bounding them in each bin along each axis.
+	 */
+	private static class Bins {
+		final int[][] counts = new int[3][BINS];
+		final double[][][] boxes = new double[3][BINS][];
+
+		Bins() {
+			for (int axis = 0; axis < 3; ++axis) {
+				for (int bin = 0; bin < BINS; ++bin) {
+					boxes[axis][bin] = emptyBox();
+				}
+			}
+		}
+
+		/**
+		 * Add the items in the other bins to these bins.
+		 *
+		 * @return These bins.
+		 */
+		Bins add(Bins other) {
+			for (int axis = 0; axis < 3; ++axis) {
+				for (int bin = 0; bin < BINS; ++bin) {
+					counts[axis][bin] += other.counts[axis][bin];
+					grow(boxes[axis][bin], other.boxes[axis][bin], 0);
+				}
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * A candidate plane to split a range of intersectibles along.
+	 */
+	private static class Split {
+		final int axis;
+		final int bin; // items in bins before this one go left
+		final double min;
+		final double scale;
+		final double cost;
+
+		Split(int axis, int bin, double min, double scale, double cost) {
+			this.axis = axis;
+			this.bin = bin;
+			this.min = min;
+			this.scale = scale;
+			this.cost = cost;
+		}
+	}
+
+	private static <T> T reduce(int start, int end, ChunkedReduction.RangeFunction<T> function,
+		BinaryOperator<T> combine) {
+		return ChunkedReduction.reduce(start, end, CHUNK_SIZE, function, combine);
+	}
+
+	private static int bin(double centroid, double min, double scale) {
+		return Math.min(BINS - 1, (int) ((centroid - min) * scale));
+	}
+
+	private static double[] emptyBox() {
+		double inf = Double.POSITIVE_INFINITY;
+		return new double[] { inf, inf, inf, -inf, -inf, -inf };
+	}
+
+	/**
+	 * Grow the given box to contain the box stored at the given offset of the given array.
+	 */
+	private static void grow(double[] box, double[] boxes, int offset) {
+		for (int axis = 0; axis < 3; ++axis) {
+			box[axis] = Math.min(box[axis], boxes[offset + axis]);
+			box[axis + 3] = Math.max(box[axis + 3], boxes[offset + axis + 3]);
+		}
+	}
+
+	/**
+	 * Combine two sets of bounds calculated by {@link Build#bounds(int, int)}.
+	 */
+	private static double[] union(double[] bounds, double[] other) {
+		grow(bounds, other, 0);
+		for (int axis = 6; axis < 9; ++axis) {
+			bounds[axis] = Math.min(bounds[axis], other[axis]);
+			bounds[axis + 3] = Math.max(bounds[axis + 3], other[axis + 3]);
+		}
+		return bounds;
+	}
+
+	private static double area(double[] box) {
+		double x = box[3] - box[0];
+		double y = box[4] - box[1];
+		double z = box[5] - box[2];
+		return 2 * (x * y + x * z + y * z);
+	}
+
+	private static Boundary boundary(double[] box) {
+		return new Boundary(new Point(box[0], box[1], box[2]), new Point(box[3], box[4], box[5]));
+	}
+}
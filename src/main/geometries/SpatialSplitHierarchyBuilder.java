@@ -0,0 +1,439 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.List;
+import primitives.Point;
+
+/**
+ * Builds a split bounding volume hierarchy (SBVH) top down. Like a {@link SahHierarchyBuilder}, each node is split in
+ * two along the binned plane which minimises the surface area heuristic (SAH), but besides splitting the
+ * {@link Intersectible}s by their centroids, a node may also be split spatially, by a plane which cuts through some of
+ * them. An intersectible which straddles such a plane is referenced from both children, each reference bounded only by
+ * the part of it on its own side of the plane, so large or long intersectibles, such as big triangles and long
+ * cylinders, no longer force the boxes of the nodes containing them to overlap.
+ *
+ * Spatial splits are only tried where the children of the best split by centroids would overlap significantly, and
+ * the number of references is limited, since every extra reference costs memory. The parts of {@link Polygon}s on
+ * either side of a plane are bounded exactly, while the boxes of other intersectibles are simply cut by the plane.
+ *
+ * Unlike other builders, an intersectible may be a leaf of more than one node, so the hierarchies built by this
+ * builder are traced with a {@link Mailbox}, which makes sure each intersectible is intersected at most once per line
+ * segment. The build runs on a single thread.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class SpatialSplitHierarchyBuilder implements HierarchyBuilder {
+	/** The number of bins along each axis, both for the centroids and for spatial splits. */
+	private static final int BINS = 16;
+	/** Nodes of at most this many references become leaves if splitting them doesn't reduce the cost. */
+	private static final int MAX_LEAF_SIZE = 4;
+	/** The cost of traversing a node relative to the cost of intersecting a single intersectible. */
+	private static final double TRAVERSAL_COST = 1;
+	/**
+	 * Spatial splits are only tried in nodes whose best split by centroids has children overlapping by more than this
+	 * fraction of the surface area of the root.
+	 */
+	private static final double OVERLAP_THRESHOLD = 1e-5;
+	/** The number of references may grow to at most this many times the number of intersectibles. */
+	private static final double MAX_REFERENCES = 2;
+	/** Nodes this deep are never split spatially, which guarantees that the build ends. */
+	private static final int MAX_DEPTH = 64;
+
+	@Override
+	public Intersectible build(List<Intersectible> intersectibles) {
+		List<Reference> references = new ArrayList<>(intersectibles.size());
+		for (Intersectible intersectible : intersectibles) {
+			Boundary boundary = intersectible.boundary();
+			Point min = boundary.min();
+			Point max = boundary.max();
+			references.add(new Reference(intersectible, new double[] { min.x, min.y, min.z, max.x, max.y, max.z }));
+		}
+		Build build = new Build(references.size());
+		double[] box = build.bounds(references);
+		build.rootArea = area(box);
+		return build.node(references, box, 0);
+	}
+
+	/**
+	 * A reference to an intersectible from a node, bounded by the part of the intersectible inside the node.
+	 */
+	private static class Reference {
+		final Intersectible item;
+		final double[] box; // min x, y, z then max x, y, z
+
+		Reference(Intersectible item, double[] box) {
+			this.item = item;
+			this.box = box;
+		}
+
+		double centroid(int axis) {
+			return (box[axis] + box[axis + 3]) / 2;
+		}
+	}
+
+	/**
+	 * A candidate plane to split a node along, either between bins of centroids or between bins of space.
+	 */
+	private static class Split {
+		final boolean spatial;
+		final int axis;
+		final double position; // the centroids or the space left of this value go left
+		final double cost;
+		final double[] left; // the boxes and numbers of references of the children
+		final double[] right;
+		final int leftCount;
+		final int rightCount;
+
+		Split(boolean spatial, int axis, double position, double cost, double[] left, double[] right, int leftCount,
+			int rightCount) {
+			this.spatial = spatial;
+			this.axis = axis;
+			this.position = position;
+			this.cost = cost;
+			this.left = left;
+			this.right = right;
+			this.leftCount = leftCount;
+			this.rightCount = rightCount;
+		}
+	}
+
+	/**
+	 * The state of a single build.
+	 */
+	private static class Build {
+		double rootArea;
+		/** The number of references which may still be added by splitting references. */
+		int budget;
+
+		Build(int size) {
+			budget = (int) ((MAX_REFERENCES - 1) * size);
+		}
+
+		/**
+		 * Build the subtree containing the given references, which are bounded by the given box.
+		 */
+		Intersectible node(List<Reference> references, double[] box, int depth) {
+			int count = references.size();
+			if (count == 1) {
+				return references.get(0).item;
+			}
+			Split split = objectSplit(references, box);
+			if (budget > 0 && depth < MAX_DEPTH
+				&& (split == null || overlap(split.left, split.right) > OVERLAP_THRESHOLD * rootArea)) {
+				Split spatial = spatialSplit(references, box);
+				if (spatial != null && (split == null || spatial.cost < split.cost)) {
+					split = spatial;
+				}
+			}
+			if (count <= MAX_LEAF_SIZE && (split == null || split.cost >= count * area(box))) {
+				Intersectible[] items = new Intersectible[count];
+				for (int i = 0; i < count; ++i) {
+					items[i] = references.get(i).item;
+				}
+				return new GeometryList(boundary(box), items);
+			}
+
+			List<Reference> left = new ArrayList<>();
+			List<Reference> right = new ArrayList<>();
+			if (split != null && split.spatial) {
+				partitionSpace(references, split, left, right);
+				if (left.isEmpty() || right.isEmpty()) {
+					left.clear();
+					right.clear();
+					split = objectSplit(references, box);
+				}
+			}
+			if (left.isEmpty() && split != null) {
+				for (Reference reference : references) {
+					(reference.centroid(split.axis) < split.position ? left : right).add(reference);
+				}
+			}
+			if (left.isEmpty() || right.isEmpty()) { // the centroids all coincide, so split in the middle
+				left = new ArrayList<>(references.subList(0, count / 2));
+				right = new ArrayList<>(references.subList(count / 2, count));
+			}
+			return new GeometryList(boundary(box), node(left, bounds(left), depth + 1),
+				node(right, bounds(right), depth + 1));
+		}
+
+		/**
+		 * Find the plane between bins of centroids which minimises the SAH cost of splitting the node.
+		 *
+		 * @return The best split, or null if the centroids of the references all coincide.
+		 */
+		private Split objectSplit(List<Reference> references, double[] box) {
+			double[] centroidBox = emptyBox();
+			for (Reference reference : references) {
+				for (int axis = 0; axis < 3; ++axis) {
+					centroidBox[axis] = Math.min(centroidBox[axis], reference.centroid(axis));
+					centroidBox[axis + 3] = Math.max(centroidBox[axis + 3], reference.centroid(axis));
+				}
+			}
+			Split best = null;
+			for (int axis = 0; axis < 3; ++axis) {
+				double extent = centroidBox[axis + 3] - centroidBox[axis];
+				if (!(extent > 0)) {
+					continue;
+				}
+				double width = extent / BINS;
+				int[] counts = new int[BINS];
+				double[][] binBoxes = emptyBoxes();
+				for (Reference reference : references) {
+					int bin = Math.min(BINS - 1, (int) ((reference.centroid(axis) - centroidBox[axis]) / width));
+					++counts[bin];
+					grow(binBoxes[bin], reference.box);
+				}
+				best = cheapest(best, false, axis, centroidBox[axis], width, box, binBoxes, counts, counts);
+			}
+			return best;
+		}
+
+		/**
+		 * Find the plane between bins of space which minimises the SAH cost of splitting the node, where each
+		 * reference is clipped to every bin it passes through.
+		 *
+		 * @return The best split, or null if the node is flat along every axis.
+		 */
+		private Split spatialSplit(List<Reference> references, double[] box) {
+			Split best = null;
+			for (int axis = 0; axis < 3; ++axis) {
+				double min = box[axis];
+				double extent = box[axis + 3] - min;
+				if (!(extent > 0)) {
+					continue;
+				}
+				double width = extent / BINS;
+				int[] entries = new int[BINS];
+				int[] exits = new int[BINS];
+				double[][] binBoxes = emptyBoxes();
+				for (Reference reference : references) {
+					int first = Math.min(BINS - 1, (int) ((reference.box[axis] - min) / width));
+					int last = Math.max(first, Math.min(BINS - 1, (int) ((reference.box[axis + 3] - min) / width)));
+					++entries[first];
+					++exits[last];
+					for (int bin = first; bin <= last; ++bin) {
+						double[] part = clip(reference, axis, min + bin * width,
+							bin == BINS - 1 ? box[axis + 3] : min + (bin + 1) * width);
+						if (part != null) {
+							grow(binBoxes[bin], part);
+						}
+					}
+				}
+				best = cheapest(best, true, axis, min, width, box, binBoxes, entries, exits);
+			}
+			return best;
+		}
+
+		/**
+		 * Evaluate the splits between each pair of consecutive bins along an axis.
+		 *
+		 * @param best     The best split found so far, or null.
+		 * @param spatial  Whether the bins are bins of space rather than of centroids.
+		 * @param min      The position of the start of the first bin along the axis.
+		 * @param width    The width of each bin.
+		 * @param binBoxes The box bounding the references in each bin.
+		 * @param entries  The number of references starting in each bin.
+		 * @param exits    The number of references ending in each bin.
+		 * @return The best of the given split and the splits along this axis.
+		 */
+		private Split cheapest(Split best, boolean spatial, int axis, double min, double width, double[] box,
+			double[][] binBoxes, int[] entries, int[] exits) {
+			double[][] rightBoxes = new double[BINS][];
+			int[] rightCounts = new int[BINS];
+			double[] accumulated = emptyBox();
+			int accumulatedCount = 0;
+			for (int bin = BINS - 1; bin > 0; --bin) {
+				grow(accumulated, binBoxes[bin]);
+				accumulatedCount += exits[bin];
+				rightBoxes[bin] = accumulated.clone();
+				rightCounts[bin] = accumulatedCount;
+			}
+			int total = 0;
+			for (int entry : entries) {
+				total += entry;
+			}
+			accumulated = emptyBox();
+			accumulatedCount = 0;
+			for (int bin = 1; bin < BINS; ++bin) {
+				grow(accumulated, binBoxes[bin - 1]);
+				accumulatedCount += entries[bin - 1];
+				int rightCount = rightCounts[bin];
+				if (accumulatedCount == 0 || rightCount == 0 || accumulatedCount == total && rightCount == total) {
+					continue;
+				}
+				double cost = TRAVERSAL_COST * area(box) + accumulatedCount * area(accumulated)
+					+ rightCount * area(rightBoxes[bin]);
+				if (best == null || cost < best.cost) {
+					best = new Split(spatial, axis, min + bin * width, cost, accumulated.clone(),
+						rightBoxes[bin], accumulatedCount, rightCount);
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Divide the references between the sides of a spatial split. A reference which straddles the plane is split
+		 * into a reference on each side, unless the budget of references is spent or it is cheaper to put the whole
+		 * reference on one side, which is judged by the boxes and numbers of references of the split.
+		 */
+		private void partitionSpace(List<Reference> references, Split split, List<Reference> left,
+			List<Reference> right) {
+			int axis = split.axis;
+			double plane = split.position;
+			double leftArea = area(split.left), rightArea = area(split.right);
+			for (Reference reference : references) {
+				if (reference.box[axis + 3] <= plane) {
+					left.add(reference);
+					continue;
+				}
+				if (reference.box[axis] >= plane) {
+					right.add(reference);
+					continue;
+				}
+				double[] leftPart = clip(reference, axis, reference.box[axis], plane);
+				double[] rightPart = clip(reference, axis, plane, reference.box[axis + 3]);
+				if (leftPart == null || rightPart == null) { // the bounds were loose and it is only on one side
+					(leftPart == null ? right : left).add(new Reference(reference.item,
+						leftPart == null ? rightPart : leftPart));
+					continue;
+				}
+				double allLeft = area(union(split.left, reference.box)) * split.leftCount
+					+ rightArea * (split.rightCount - 1);
+				double allRight = leftArea * (split.leftCount - 1)
+					+ area(union(split.right, reference.box)) * split.rightCount;
+				double both = leftArea * split.leftCount + rightArea * split.rightCount;
+				if (budget > 0 && both < allLeft && both < allRight) {
+					--budget;
+					left.add(new Reference(reference.item, leftPart));
+					right.add(new Reference(reference.item, rightPart));
+				} else {
+					(allLeft <= allRight ? left : right).add(reference);
+				}
+			}
+		}
+
+		/**
+		 * Calculate the box bounding the given references.
+		 */
+		double[] bounds(List<Reference> references) {
+			double[] box = emptyBox();
+			for (Reference reference : references) {
+				grow(box, reference.box);
+			}
+			return box;
+		}
+	}
+
+	/**
+	 * Bound the part of a reference between two planes perpendicular to the given axis. The part of a {@link Polygon}
+	 * is bounded by the vertices between the planes and the points where its edges cross them, and the part of
+	 * anything else by its box cut by the planes.
+	 *
+	 * @return The box bounding the part of the reference between the planes, or null if there is no such part.
+	 */
+	private static double[] clip(Reference reference, int axis, double low, double high) {
+		double[] box = reference.box.clone();
+		box[axis] = Math.max(box[axis], low);
+		box[axis + 3] = Math.min(box[axis + 3], high);
+		if (box[axis] > box[axis + 3]) {
+			return null;
+		}
+		if (!(reference.item instanceof Polygon)) {
+			return box;
+		}
+		List<Point> vertices = ((Polygon) reference.item).vertices();
+		double[] part = emptyBox();
+		double[] point = new double[3];
+		for (int i = 0; i < vertices.size(); ++i) {
+			Point p = vertices.get(i), q = vertices.get((i + 1) % vertices.size());
+			double[] from = { p.x, p.y, p.z }, to = { q.x, q.y, q.z };
+			if (from[axis] >= low && from[axis] <= high) {
+				include(part, from);
+			}
+			for (double plane : new double[] { low, high }) {
+				if ((from[axis] - plane) * (to[axis] - plane) < 0) { // the edge crosses the plane
+					double t = (plane - from[axis]) / (to[axis] - from[axis]);
+					for (int k = 0; k < 3; ++k) {
+						point[k] = from[k] + t * (to[k] - from[k]);
+					}
+					point[axis] = plane;
+					include(part, point);
+				}
+			}
+		}
+		if (part[0] > part[3]) {
+			return null;
+		}
+		for (int k = 0; k < 3; ++k) { // the reference may already have been clipped along other axes
+			part[k] = Math.max(part[k], box[k]);
+			part[k + 3] = Math.min(part[k + 3], box[k + 3]);
+			if (part[k] > part[k + 3]) {
+				return null;
+			}
+		}
+		return part;
+	}
+
+	private static void include(double[] box, double[] point) {
+		for (int axis = 0; axis < 3; ++axis) {
+			box[axis] = Math.min(box[axis], point[axis]);
+			box[axis + 3] = Math.max(box[axis + 3], point[axis]);
+		}
+	}
+
+	private static double[] emptyBox() {
+		double inf = Double.POSITIVE_INFINITY;
+		return new double[] { inf, inf, inf, -inf, -inf, -inf };
+	}
+
+	private static double[][] emptyBoxes() {
+		double[][] boxes = new double[BINS][];
+		for (int bin = 0; bin < BINS; ++bin) {
+			boxes[bin] = emptyBox();
+		}
+		return boxes;
+	}
+
+	/**
+	 * Grow the first box to contain the second.
+	 */
+	private static void grow(double[] box, double[] other) {
+		for (int axis = 0; axis < 3; ++axis) {
+			box[axis] = Math.min(box[axis], other[axis]);
+			box[axis + 3] = Math.max(box[axis + 3], other[axis + 3]);
+		}
+	}
+
+	private static double[] union(double[] box, double[] other) {
+		double[] result = box.clone();
+		grow(result, other);
+		return result;
+	}
+
+	/**
+	 * Calculate the surface area of the space inside both boxes.
+	 */
+	private static double overlap(double[] box, double[] other) {
+		double[] both = new double[6];
+		for (int axis = 0; axis < 3; ++axis) {
+			both[axis] = Math.max(box[axis], other[axis]);
+			both[axis + 3] = Math.min(box[axis + 3], other[axis + 3]);
+			if (both[axis] > both[axis + 3]) {
+				return 0;
+			}
+		}
+		return area(both);
+	}
+
+	private static double area(double[] box) {
+		double x = box[3] - box[0];
+		double y = box[4] - box[1];
+		double z = box[5] - box[2];
+		return 2 * (x * y + x * z + y * z);
+	}
+
+	private static Boundary boundary(double[] box) {
+		return new Boundary(new Point(box[0], box[1], box[2]), new Point(box[3], box[4], box[5]));
+	}
+}
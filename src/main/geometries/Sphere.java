@@ -76,6 +76,22 @@ public class Sphere extends Geometry {
 		return result;
 	}
 
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		double toCenterX = center.x - line.start.x;
+		double toCenterY = center.y - line.start.y;
+		double toCenterZ = center.z - line.start.z;
+		double scalarsMid = toCenterX * line.direction.x + toCenterY * line.direction.y + toCenterZ * line.direction.z;
+		double perpendicularDistanceSquared =
+			toCenterX * toCenterX + toCenterY * toCenterY + toCenterZ * toCenterZ - scalarsMid * scalarsMid;
+		if (DoubleCompare.geq(perpendicularDistanceSquared, radiusSquared)) {
+			return false;
+		}
+		double scalarsOffset = Math.sqrt(radiusSquared - perpendicularDistanceSquared);
+		// the far intersection can only be closer if the near one is not on the line segment
+		return hit.update(this, line, scalarsMid - scalarsOffset) || hit.update(this, line, scalarsMid + scalarsOffset);
+	}
+
 	private void addIfIntersection(List<Intersection> result, LineSegment line, double distance) {
 		Point p = line.travel(distance);
 		if (p != null) {
@@ -83,6 +99,24 @@ public class Sphere extends Geometry {
 		}
 	}
 
+	/**
+	 * Get the center of the sphere.
+	 *
+	 * @return The center of the sphere.
+	 */
+	Point center() {
+		return center;
+	}
+
+	/**
+	 * Get the square of the radius of the sphere.
+	 *
+	 * @return The square of the radius.
+	 */
+	double radiusSquared() {
+		return radiusSquared;
+	}
+
 	@Override
 	public Boundary boundary() {
 		return boundary;
@@ -0,0 +1,188 @@
+package geometries;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import primitives.LineSegment;
+
+/**
+ * Counts the work done by an acceleration structure while tracing rays: the number of rays, the number of nodes
+ * visited, the number of bounding box tests, and the number of primitive intersection tests. Closest hit queries
+ * (rays from the camera and their reflections and refractions) are counted separately from shadow rays. The primitive
+ * tests are also counted by the class of the primitive, along with how many of them were false positives of the boxes
+ * of the leaves, which tested a primitive that the ray does not intersect at all.
+ *
+ * Each thread increments its own counters, so counting doesn't cause any contention between threads. The counters of
+ * all the threads are summed when read, which should only be done once tracing has finished.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class TraversalStatistics {
+
+	/**
+	 * The kinds of rays which are counted separately.
+	 */
+	public enum RayType {
+		/** Rays for which the closest intersection is found, such as rays from the camera. */
+		PRIMARY,
+		/** Rays which only need to know what lies between a point and a light source. */
+		SHADOW
+	}
+
+	private static final int RAYS = 0;
+	private static final int NODES = 1;
+	private static final int BOX_TESTS = 2;
+	private static final int PRIMITIVE_TESTS = 3;
+	private static final int COUNTERS = 4;
+
+	/** The counters of each thread which has recorded a ray. */
+	private final List<long[]> threads = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<long[]> counters = ThreadLocal.withInitial(() -> {
+		long[] counters = new long[COUNTERS * RayType.values().length];
+		threads.add(counters);
+		return counters;
+	});
+	/** The number of tests and of false positives of each class of primitive, counted by each thread. */
+	private final List<Map<Class<?>, long[]>> primitiveThreads = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Map<Class<?>, long[]>> primitiveCounters = ThreadLocal.withInitial(() -> {
+		Map<Class<?>, long[]> counters = new HashMap<>();
+		primitiveThreads.add(counters);
+		return counters;
+	});
+
+	/**
+	 * Record the work done to trace a single ray.
+	 *
+	 * @param type           The kind of ray.
+	 * @param nodes          The number of nodes visited.
+	 * @param boxTests       The number of bounding box tests.
+	 * @param primitiveTests The number of primitive intersection tests.
+	 */
+	void record(RayType type, int nodes, int boxTests, int primitiveTests) {
+		record(type, 1, nodes, boxTests, primitiveTests);
+	}
+
+	/**
+	 * Record the work done to trace a packet of rays together.
+	 *
+	 * @param type           The kind of rays.
+	 * @param rays           The number of rays in the packet.
+	 * @param nodes          The number of nodes visited by the packet.
+	 * @param boxTests       The number of bounding box tests, where testing a box against the whole packet counts once.
+	 * @param primitiveTests The number of primitive intersection tests.
+	 */
+	void record(RayType type, int rays, int nodes, int boxTests, int primitiveTests) {
+		long[] counters = this.counters.get();
+		int offset = COUNTERS * type.ordinal();
+		counters[offset + RAYS] += rays;
+		counters[offset + NODES] += nodes;
+		counters[offset + BOX_TESTS] += boxTests;
+		counters[offset + PRIMITIVE_TESTS] += primitiveTests;
+	}
+
+	/**
+	 * Record a test of a line segment against a primitive in a leaf whose box it entered. The primitive is tested
+	 * again here to find whether the test was a false positive, so this should only be called while counting.
+	 *
+	 * @param primitive The tested primitive.
+	 * @param line      The line segment it was tested against.
+	 */
+	void record(Intersectible primitive, LineSegment line) {
+		long[] counters = primitiveCounters.get().computeIfAbsent(primitive.getClass(), __ -> new long[2]);
+		++counters[0];
+		if (!primitive.intersects(line)) {
+			++counters[1];
+		}
+	}
+
+	private long sum(RayType type, int counter) {
+		long sum = 0;
+		for (long[] counters : threads) {
+			sum += counters[COUNTERS * type.ordinal() + counter];
+		}
+		return sum;
+	}
+
+	/**
+	 * Get the number of rays traced.
+	 *
+	 * @param type The kind of ray.
+	 * @return The number of rays of the given kind.
+	 */
+	public long rays(RayType type) {
+		return sum(type, RAYS);
+	}
+
+	/**
+	 * Get the number of nodes visited.
+	 *
+	 * @param type The kind of ray.
+	 * @return The number of nodes visited by rays of the given kind.
+	 */
+	public long nodes(RayType type) {
+		return sum(type, NODES);
+	}
+
+	/**
+	 * Get the number of bounding box tests.
+	 *
+	 * @param type The kind of ray.
+	 * @return The number of bounding boxes tested against rays of the given kind.
+	 */
+	public long boxTests(RayType type) {
+		return sum(type, BOX_TESTS);
+	}
+
+	/**
+	 * Get the number of primitive intersection tests.
+	 *
+	 * @param type The kind of ray.
+	 * @return The number of primitives tested against rays of the given kind.
+	 */
+	public long primitiveTests(RayType type) {
+		return sum(type, PRIMITIVE_TESTS);
+	}
+
+	/**
+	 * Get the number of tests and of false positives of each class of primitive, for rays of both kinds.
+	 *
+	 * @return The number of tests followed by the number of those which were false positives, by the simple name of
+	 *         the class of the primitives, in alphabetical order.
+	 */
+	public Map<String, long[]> primitiveTypes() {
+		Map<String, long[]> result = new TreeMap<>();
+		for (Map<Class<?>, long[]> counters : primitiveThreads) {
+			for (Map.Entry<Class<?>, long[]> entry : counters.entrySet()) {
+				long[] sum = result.computeIfAbsent(entry.getKey().getSimpleName(), __ -> new long[2]);
+				sum[0] += entry.getValue()[0];
+				sum[1] += entry.getValue()[1];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Summarises the counters, including the average of each per ray, and the false positive rate of each class of
+	 * primitive.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (RayType type : RayType.values()) {
+			long rays = rays(type);
+			double perRay = Math.max(rays, 1);
+			result.append(String.format("%s rays: %d, per ray: %.2f nodes, %.2f box tests, %.2f primitive tests%n",
+				type.name().charAt(0) + type.name().substring(1).toLowerCase(), rays, nodes(type) / perRay,
+				boxTests(type) / perRay, primitiveTests(type) / perRay));
+		}
+		for (Map.Entry<String, long[]> entry : primitiveTypes().entrySet()) {
+			long[] counters = entry.getValue();
+			result.append(String.format("%s: %d tests, %.1f%% false positives%n", entry.getKey(), counters[0],
+				100.0 * counters[1] / Math.max(counters[0], 1)));
+		}
+		return result.toString();
+	}
+}
@@ -1,13 +1,27 @@
 package geometries;
 
+import java.util.Collections;
+import java.util.List;
+
+import math.compare.DoubleCompare;
+import primitives.LineSegment;
 import primitives.Material;
 import primitives.Point;
 
 /**
  * This class represents a triangle in three dimensional space. It is a polygon with specifically three vertices.
+ * Rather than intersecting its plane and then testing each edge like a {@link Polygon}, a triangle is intersected by
+ * the Moller-Trumbore algorithm, from its first vertex and the two edges from it which are calculated when it is
+ * constructed.
  */
 public class Triangle extends Polygon {
 
+	private final double x0, y0, z0; // The first vertex
+	private final double e1x, e1y, e1z; // The edge from the first vertex to the second
+	private final double e2x, e2y, e2z; // The edge from the first vertex to the third
+	/** The reciprocal of the length of the cross product of the edges, which is twice the area of the triangle. */
+	private final double inverseNormalLength;
+
 	/**
 	 * Constructs a triangle from three {@link Point}s.
 	 *
@@ -19,6 +33,80 @@ public class Triangle extends Polygon {
 	 */
 	public Triangle(Material material, Point p1, Point p2, Point p3) {
 		super(material, p1, p2, p3);
+		x0 = p1.x;
+		y0 = p1.y;
+		z0 = p1.z;
+		e1x = p2.x - p1.x;
+		e1y = p2.y - p1.y;
+		e1z = p2.z - p1.z;
+		e2x = p3.x - p1.x;
+		e2y = p3.y - p1.y;
+		e2z = p3.z - p1.z;
+		double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+		inverseNormalLength = 1 / Math.sqrt(nx * nx + ny * ny + nz * nz);
+	}
+
+	/**
+	 * Calculates the distance along the line to its intersection with the triangle, without allocating any objects.
+	 * Like a {@link Polygon}, a line which is parallel to the triangle or which meets it on its boundary does not
+	 * intersect it. If a hit record is given, the intersection is recorded in it if it is closer than the one already
+	 * recorded, along with the barycentric coordinates which the algorithm calculates along the way.
+	 *
+	 * @param line The {@link LineSegment} to intersect.
+	 * @param hit  The {@link HitRecord} to record the intersection in, or null.
+	 * @return The distance from the start of the line to the intersection, which may be negative or beyond the end of
+	 *         the line segment, or NaN if the line does not pass through the inside of the triangle or if the
+	 *         intersection was not recorded in the given hit record.
+	 */
+	private double distance(LineSegment line, HitRecord hit) {
+		double dx = line.direction.x, dy = line.direction.y, dz = line.direction.z;
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double determinant = e1x * px + e1y * py + e1z * pz;
+		// the determinant divided by the length of the normal is the cosine of the angle between the line and normal
+		if (DoubleCompare.eq(determinant * inverseNormalLength, 0)) {
+			return Double.NaN; // the line is parallel to the triangle
+		}
+		double inverse = 1 / determinant;
+		double sx = line.start.x - x0, sy = line.start.y - y0, sz = line.start.z - z0;
+		double u = (sx * px + sy * py + sz * pz) * inverse;
+		if (!DoubleCompare.gt(u, 0) || !DoubleCompare.lt(u, 1)) {
+			return Double.NaN;
+		}
+		double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (!DoubleCompare.gt(v, 0) || !DoubleCompare.lt(u + v, 1)) {
+			return Double.NaN;
+		}
+		double distance = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+		if (hit != null) {
+			if (!hit.update(this, line, distance)) {
+				return Double.NaN;
+			}
+			hit.u = u;
+			hit.v = v;
+		}
+		return distance;
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		double distance = distance(line, null);
+		if (Double.isNaN(distance)) {
+			return Collections.emptyList();
+		}
+		Point intersectionPoint = line.travel(distance);
+		return intersectionPoint != null ? List.of(intersection(intersectionPoint)) : Collections.emptyList();
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		return !Double.isNaN(distance(line, hit));
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		double distance = distance(line, null);
+		return !Double.isNaN(distance) && line.withinDistance(distance);
 	}
 
 }
@@ -0,0 +1,512 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import math.compare.DoubleCompare;
+import primitives.LineSegment;
+import primitives.Material;
+import primitives.NormalizedVector;
+import primitives.Point;
+
+/**
+ * A surface made of many triangles which share their vertices and a single {@link Material}. Instead of a
+ * {@link Triangle} object for each face, the coordinates of the vertices are stored in a single primitive array, and
+ * each triangle is three indices into it, so a mesh of millions of triangles takes a few arrays. The vertices may be
+ * stored as floats, which halves the memory they take, or as doubles.
+ *
+ * The mesh has a hierarchy of its own, built over the indices of its triangles when the mesh is constructed, and it
+ * is a single finite primitive as far as the hierarchy of the scene is concerned. Each {@link Intersection} with the
+ * mesh records which triangle was intersected, so that its normal can be calculated.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class TriangleMesh extends Geometry {
+	/** The number of bins the centroids are sorted into when building the hierarchy. */
+	static final int BINS = 16;
+	/** Ranges of at most this many triangles become leaves if splitting them doesn't reduce the cost. */
+	static final int MAX_LEAF_SIZE = 4;
+	/** The cost of traversing a node relative to the cost of intersecting a single triangle. */
+	static final double TRAVERSAL_COST = 1;
+
+	/** The x, y, and z coordinates of each vertex, or null if they are stored as doubles. */
+	private final float[] floatVertices;
+	/** The x, y, and z coordinates of each vertex, or null if they are stored as floats. */
+	private final double[] doubleVertices;
+	/** The indices of the three vertices of each triangle. */
+	private final int[] indices;
+	/** The reciprocal of the length of the cross product of the edges of each triangle, or zero if it is degenerate. */
+	private final float[] inverseNormalLengths;
+
+	/**
+	 * Six values per node: the minimum x, y, and z values followed by the maximum x, y, and z values. They are stored as
+	 * floats, rounded outwards, which halves the memory taken by the hierarchy.
+	 */
+	private float[] bounds;
+	/** The index of the left child of each node, whose right child follows it, or of the first triangle of a leaf. */
+	private int[] firsts;
+	/** The number of triangles of each leaf, or zero if the node is not a leaf. */
+	private int[] counts;
+	/** The indices of the triangles, grouped by the leaf they belong to. */
+	private final int[] order;
+	/** The maximum number of nodes which may be waiting on the stack during a traversal. */
+	private final int stackSize;
+	private final Boundary boundary;
+
+	// Only used while building
+	private int nextNode = 1;
+	/** The bounds of each triangle. */
+	private double[] boxes;
+	/** The number of triangles in each bin, reused by every node. */
+	private final int[] binCounts = new int[BINS];
+	/** The bounds of the triangles in each bin, reused by every node. */
+	private final double[] binBoxes = new double[6 * BINS];
+	private final double[] rightCosts = new double[BINS];
+
+	/**
+	 * Construct a mesh whose vertices are stored as floats.
+	 *
+	 * @param material The {@link Material} the mesh is made from.
+	 * @param vertices The x, y, and z coordinates of each vertex. The array is used by the mesh, not copied.
+	 * @param indices  The indices of the three vertices of each triangle. The array is used by the mesh, not copied.
+	 * @throws IllegalArgumentException if the arrays are not made of triples, if there are no triangles, or if an index
+	 *                                  is not the index of a vertex.
+	 */
+	public TriangleMesh(Material material, float[] vertices, int[] indices) {
+		this(material, vertices, null, vertices.length, indices);
+	}
+
+	/**
+	 * Construct a mesh whose vertices are stored as doubles.
+	 *
+	 * @param material The {@link Material} the mesh is made from.
+	 * @param vertices The x, y, and z coordinates of each vertex. The array is used by the mesh, not copied.
+	 * @param indices  The indices of the three vertices of each triangle. The array is used by the mesh, not copied.
+	 * @throws IllegalArgumentException if the arrays are not made of triples, if there are no triangles, or if an index
+	 *                                  is not the index of a vertex.
+	 */
+	public TriangleMesh(Material material, double[] vertices, int[] indices) {
+		this(material, null, vertices, vertices.length, indices);
+	}
+
+	private TriangleMesh(Material material, float[] floatVertices, double[] doubleVertices, int length,
+		int[] indices) {
+		super(material);
+		if (length % 3 != 0 || indices.length % 3 != 0) {
+			throw new IllegalArgumentException("Error: The vertices and indices of a mesh must be triples.");
+		}
+		if (indices.length == 0) {
+			throw new IllegalArgumentException("Error: A mesh must have at least one triangle.");
+		}
+		for (int index : indices) {
+			if (index < 0 || index >= length / 3) {
+				throw new IllegalArgumentException("Error: The index " + index + " is not the index of a vertex.");
+			}
+		}
+		this.floatVertices = floatVertices;
+		this.doubleVertices = doubleVertices;
+		this.indices = indices;
+
+		int triangles = indices.length / 3;
+		bounds = new float[6 * (2 * triangles - 1)];
+		firsts = new int[2 * triangles - 1];
+		counts = new int[2 * triangles - 1];
+		order = new int[triangles];
+		boxes = new double[6 * triangles];
+		inverseNormalLengths = new float[triangles];
+		for (int triangle = 0; triangle < triangles; ++triangle) {
+			order[triangle] = triangle;
+			inverseNormalLengths[triangle] = inverseNormalLength(triangle);
+			for (int axis = 0; axis < 3; ++axis) {
+				double a = coordinate(triangle, 0, axis), b = coordinate(triangle, 1, axis);
+				double c = coordinate(triangle, 2, axis);
+				boxes[6 * triangle + axis] = Math.min(a, Math.min(b, c));
+				boxes[6 * triangle + axis + 3] = Math.max(a, Math.max(b, c));
+			}
+		}
+		stackSize = 1 + build(0, 0, triangles);
+		boxes = null;
+		bounds = Arrays.copyOf(bounds, 6 * nextNode);
+		firsts = Arrays.copyOf(firsts, nextNode);
+		counts = Arrays.copyOf(counts, nextNode);
+		boundary = new Boundary(new Point(bounds[0], bounds[1], bounds[2]), new Point(bounds[3], bounds[4], bounds[5]));
+	}
+
+	/**
+	 * Get a coordinate of a vertex of a triangle.
+	 *
+	 * @param triangle The index of the triangle.
+	 * @param vertex   Which of the three vertices of the triangle.
+	 * @param axis     Zero, one, or two, for the x, y, or z coordinate.
+	 * @return The coordinate.
+	 */
+	private double coordinate(int triangle, int vertex, int axis) {
+		int index = 3 * indices[3 * triangle + vertex] + axis;
+		return floatVertices != null ? floatVertices[index] : doubleVertices[index];
+	}
+
+	/**
+	 * Get the number of triangles in the mesh.
+	 *
+	 * @return The number of triangles.
+	 */
+	public int size() {
+		return order.length;
+	}
+
+	/**
+	 * Build the subtree of the hierarchy containing the triangles in {@code order[start:end]}, storing its root at the
+	 * given index. The triangles are split by the plane between bins of centroids which minimises the surface area
+	 * heuristic, as in {@link SahHierarchyBuilder}, but only along the axis the centroids are most spread along, which
+	 * builds large meshes three times faster.
+	 *
+	 * @return The maximum number of nodes which may be pushed to the stack while traversing the subtree.
+	 */
+	private int build(int node, int start, int end) {
+		// the bounds of the triangles, followed by the bounds of their centroids
+		double[] box = empty(2);
+		for (int i = start; i < end; ++i) {
+			int offset = 6 * order[i];
+			for (int axis = 0; axis < 3; ++axis) {
+				double centroid = (boxes[offset + axis] + boxes[offset + axis + 3]) / 2;
+				box[axis] = Math.min(box[axis], boxes[offset + axis]);
+				box[axis + 3] = Math.max(box[axis + 3], boxes[offset + axis + 3]);
+				box[axis + 6] = Math.min(box[axis + 6], centroid);
+				box[axis + 9] = Math.max(box[axis + 9], centroid);
+			}
+		}
+		for (int axis = 0; axis < 3; ++axis) {
+			float min = (float) box[axis], max = (float) box[axis + 3];
+			bounds[6 * node + axis] = min > box[axis] ? Math.nextDown(min) : min;
+			bounds[6 * node + axis + 3] = max < box[axis + 3] ? Math.nextUp(max) : max;
+		}
+		int count = end - start;
+
+		// sort the triangles into bins along the axis the centroids are most spread along
+		int axis = 0;
+		for (int other = 1; other < 3; ++other) {
+			if (box[other + 9] - box[other + 6] > box[axis + 9] - box[axis + 6]) {
+				axis = other;
+			}
+		}
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestBin = -1;
+		if (box[axis + 9] > box[axis + 6]) {
+			Arrays.fill(binCounts, 0);
+			for (int bin = 0; bin < BINS; ++bin) {
+				Arrays.fill(binBoxes, 6 * bin, 6 * bin + 3, Double.POSITIVE_INFINITY);
+				Arrays.fill(binBoxes, 6 * bin + 3, 6 * bin + 6, Double.NEGATIVE_INFINITY);
+			}
+			for (int i = start; i < end; ++i) {
+				int bin = bin(order[i], axis, box);
+				++binCounts[bin];
+				union(binBoxes, 6 * bin, boxes, 6 * order[i]);
+			}
+
+			// the cost of each plane is the area of the box on each side times the number of triangles on that side
+			double[] right = empty(1);
+			int rightCount = 0;
+			for (int bin = BINS - 1; bin > 0; --bin) {
+				union(right, 0, binBoxes, 6 * bin);
+				rightCount += binCounts[bin];
+				rightCosts[bin] = rightCount == 0 ? 0 : rightCount * area(right);
+			}
+			double[] left = empty(1);
+			int leftCount = 0;
+			for (int bin = 0; bin < BINS - 1; ++bin) {
+				union(left, 0, binBoxes, 6 * bin);
+				leftCount += binCounts[bin];
+				double cost = (leftCount == 0 ? 0 : leftCount * area(left)) + rightCosts[bin + 1];
+				if (leftCount > 0 && leftCount < count && cost < bestCost) {
+					bestCost = cost;
+					bestBin = bin;
+				}
+			}
+		}
+		double area = area(box);
+		bestCost = TRAVERSAL_COST + (area > 0 ? bestCost / area : 0);
+		if (count == 1 || count <= MAX_LEAF_SIZE && (bestBin < 0 || bestCost >= count)) {
+			firsts[node] = start;
+			counts[node] = count;
+			return 0;
+		}
+
+		int mid;
+		if (bestBin < 0) {
+			mid = start + count / 2; // all the centroids coincide
+		} else {
+			mid = start;
+			for (int i = start; i < end; ++i) {
+				if (bin(order[i], axis, box) <= bestBin) {
+					int swap = order[mid];
+					order[mid++] = order[i];
+					order[i] = swap;
+				}
+			}
+		}
+		int left = nextNode;
+		nextNode += 2;
+		firsts[node] = left;
+		counts[node] = 0;
+		return 2 + Math.max(build(left, start, mid), build(left + 1, mid, end));
+	}
+
+	/**
+	 * Find the bin along the given axis of the centroid of a triangle, given the bounds of the triangles followed by the
+	 * bounds of their centroids.
+	 */
+	private int bin(int triangle, int axis, double[] box) {
+		double centroid = (boxes[6 * triangle + axis] + boxes[6 * triangle + axis + 3]) / 2;
+		int bin = (int) (BINS * (centroid - box[axis + 6]) / (box[axis + 9] - box[axis + 6]));
+		return Math.min(bin, BINS - 1);
+	}
+
+	/**
+	 * Create the given number of empty boxes, each of which is six values: the minimum x, y, and z values followed by
+	 * the maximum x, y, and z values.
+	 */
+	static double[] empty(int count) {
+		double[] result = new double[6 * count];
+		for (int box = 0; box < count; ++box) {
+			Arrays.fill(result, 6 * box, 6 * box + 3, Double.POSITIVE_INFINITY);
+			Arrays.fill(result, 6 * box + 3, 6 * box + 6, Double.NEGATIVE_INFINITY);
+		}
+		return result;
+	}
+
+	/**
+	 * Grow the box at the given offset to contain the box at another offset.
+	 */
+	static void union(double[] box, int offset, double[] other, int otherOffset) {
+		for (int axis = 0; axis < 3; ++axis) {
+			box[offset + axis] = Math.min(box[offset + axis], other[otherOffset + axis]);
+			box[offset + axis + 3] = Math.max(box[offset + axis + 3], other[otherOffset + axis + 3]);
+		}
+	}
+
+	static double area(double[] box) {
+		double x = box[3] - box[0], y = box[4] - box[1], z = box[5] - box[2];
+		return 2 * (x * y + y * z + z * x);
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters the box of the given node, as in
+	 * {@link Boundary#entryDistance(LineSegment)}.
+	 */
+	private double entryDistance(int node, LineSegment line) {
+		int offset = 6 * node;
+		double tx1 = (bounds[offset] - line.start.x) * line.inverse.x;
+		double tx2 = (bounds[offset + 3] - line.start.x) * line.inverse.x;
+		double ty1 = (bounds[offset + 1] - line.start.y) * line.inverse.y;
+		double ty2 = (bounds[offset + 4] - line.start.y) * line.inverse.y;
+		double tz1 = (bounds[offset + 2] - line.start.z) * line.inverse.z;
+		double tz2 = (bounds[offset + 5] - line.start.z) * line.inverse.z;
+		double tmin = Math.max(Math.min(tx1, tx2), Math.max(Math.min(ty1, ty2), Math.min(tz1, tz2)));
+		double tmax = Math.min(Math.max(tx1, tx2), Math.min(Math.max(ty1, ty2), Math.max(tz1, tz2)));
+		return tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < line.squareLength) ? Math.max(tmin, 0)
+			: Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Calculates the reciprocal of the length of the cross product of the edges of a triangle.
+	 *
+	 * @param triangle The index of the triangle.
+	 * @return The reciprocal of the length, or zero if it is too large for a float, so that a degenerate triangle is
+	 *         parallel to every line.
+	 */
+	private float inverseNormalLength(int triangle) {
+		double e1x = coordinate(triangle, 1, 0) - coordinate(triangle, 0, 0);
+		double e1y = coordinate(triangle, 1, 1) - coordinate(triangle, 0, 1);
+		double e1z = coordinate(triangle, 1, 2) - coordinate(triangle, 0, 2);
+		double e2x = coordinate(triangle, 2, 0) - coordinate(triangle, 0, 0);
+		double e2y = coordinate(triangle, 2, 1) - coordinate(triangle, 0, 1);
+		double e2z = coordinate(triangle, 2, 2) - coordinate(triangle, 0, 2);
+		double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+		float inverse = (float) (1 / Math.sqrt(nx * nx + ny * ny + nz * nz));
+		return Float.isInfinite(inverse) ? 0 : inverse;
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} to where it intersects the given triangle, using the
+	 * Moller-Trumbore algorithm.
+	 *
+	 * @return The distance from the start of the line to the triangle, which may be negative, or NaN if the line
+	 *         misses the triangle or is parallel to it.
+	 */
+	private double distance(int triangle, LineSegment line) {
+		double x0 = coordinate(triangle, 0, 0), y0 = coordinate(triangle, 0, 1), z0 = coordinate(triangle, 0, 2);
+		double e1x = coordinate(triangle, 1, 0) - x0, e1y = coordinate(triangle, 1, 1) - y0,
+			e1z = coordinate(triangle, 1, 2) - z0;
+		double e2x = coordinate(triangle, 2, 0) - x0, e2y = coordinate(triangle, 2, 1) - y0,
+			e2z = coordinate(triangle, 2, 2) - z0;
+		double dx = line.direction.x, dy = line.direction.y, dz = line.direction.z;
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double determinant = e1x * px + e1y * py + e1z * pz;
+		// the determinant divided by the length of the normal is the cosine of the angle between the line and normal
+		if (DoubleCompare.eq(determinant * inverseNormalLengths[triangle], 0)) {
+			return Double.NaN; // the line is parallel to the triangle, or the triangle is degenerate
+		}
+		double inverse = 1 / determinant;
+		double sx = line.start.x - x0, sy = line.start.y - y0, sz = line.start.z - z0;
+		double u = (sx * px + sy * py + sz * pz) * inverse;
+		if (u < 0 || u > 1) {
+			return Double.NaN;
+		}
+		double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (v < 0 || u + v > 1) {
+			return Double.NaN;
+		}
+		return (e2x * qx + e2y * qy + e2z * qz) * inverse;
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		int[] stack = new int[stackSize];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (entryDistance(node, line) == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			if (counts[node] == 0) {
+				stack[top++] = firsts[node];
+				stack[top++] = firsts[node] + 1;
+				continue;
+			}
+			for (int i = firsts[node], end = i + counts[node]; i < end; ++i) {
+				double distance = distance(order[i], line);
+				Point point = Double.isNaN(distance) ? null : line.travel(distance);
+				if (point != null) {
+					result.add(new Intersection(this, point, null, order[i]));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		int[] stack = hit.nodeStack(stackSize);
+		double[] entries = hit.entryStack(stackSize);
+		int top = 0;
+		entries[top] = entryDistance(0, line);
+		stack[top++] = 0;
+		boolean found = false;
+		while (top > 0) {
+			int node = stack[--top];
+			if (entries[top] >= hit.distance) {
+				continue; // the node starts after the closest intersection found so far
+			}
+			if (counts[node] > 0) {
+				for (int i = firsts[node], end = i + counts[node]; i < end; ++i) {
+					found |= hit.update(this, line, distance(order[i], line), order[i]);
+				}
+				continue;
+			}
+			// push the children which start before the closest intersection, nearest on top
+			int near = firsts[node], far = near + 1;
+			double nearEntry = entryDistance(near, line), farEntry = entryDistance(far, line);
+			if (farEntry < nearEntry) {
+				near = far--;
+				double swap = nearEntry;
+				nearEntry = farEntry;
+				farEntry = swap;
+			}
+			if (farEntry < hit.distance) {
+				entries[top] = farEntry;
+				stack[top++] = far;
+			}
+			if (nearEntry < hit.distance) {
+				entries[top] = nearEntry;
+				stack[top++] = near;
+			}
+		}
+		return found;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		int[] stack = new int[stackSize];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (entryDistance(node, line) == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			if (counts[node] == 0) {
+				stack[top++] = firsts[node];
+				stack[top++] = firsts[node] + 1;
+				continue;
+			}
+			for (int i = firsts[node], end = i + counts[node]; i < end; ++i) {
+				double distance = distance(order[i], line);
+				if (!Double.isNaN(distance) && line.withinDistance(distance)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Calculates the normal to the triangle of the mesh containing the given point. Since this has to search the mesh
+	 * for the triangle, the normal of an {@link Intersection} with the mesh is calculated from the triangle recorded in
+	 * the intersection instead.
+	 */
+	@Override
+	public NormalizedVector normal(Point point) {
+		int closest = 0;
+		double closestDistance = Double.POSITIVE_INFINITY;
+		for (int triangle = 0; triangle < order.length; ++triangle) {
+			double distance = squareDistance(triangle, point);
+			if (distance < closestDistance) {
+				closest = triangle;
+				closestDistance = distance;
+			}
+		}
+		return normal(point, closest);
+	}
+
+	@Override
+	NormalizedVector normal(Point point, int face) {
+		double x0 = coordinate(face, 0, 0), y0 = coordinate(face, 0, 1), z0 = coordinate(face, 0, 2);
+		double e1x = coordinate(face, 1, 0) - x0, e1y = coordinate(face, 1, 1) - y0, e1z = coordinate(face, 1, 2) - z0;
+		double e2x = coordinate(face, 2, 0) - x0, e2y = coordinate(face, 2, 1) - y0, e2z = coordinate(face, 2, 2) - z0;
+		return new NormalizedVector(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x);
+	}
+
+	/**
+	 * Calculates an upper bound on the square of the distance from a point to a triangle, which is exact when the
+	 * point is on the plane of the triangle, or when it is closest to a vertex.
+	 */
+	private double squareDistance(int triangle, Point point) {
+		double x0 = coordinate(triangle, 0, 0), y0 = coordinate(triangle, 0, 1), z0 = coordinate(triangle, 0, 2);
+		double e1x = coordinate(triangle, 1, 0) - x0, e1y = coordinate(triangle, 1, 1) - y0,
+			e1z = coordinate(triangle, 1, 2) - z0;
+		double e2x = coordinate(triangle, 2, 0) - x0, e2y = coordinate(triangle, 2, 1) - y0,
+			e2z = coordinate(triangle, 2, 2) - z0;
+		double px = point.x - x0, py = point.y - y0, pz = point.z - z0;
+		// barycentric coordinates of the projection of the point onto the plane of the triangle
+		double d11 = e1x * e1x + e1y * e1y + e1z * e1z, d12 = e1x * e2x + e1y * e2y + e1z * e2z,
+			d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+		double dp1 = px * e1x + py * e1y + pz * e1z, dp2 = px * e2x + py * e2y + pz * e2z;
+		double denominator = d11 * d22 - d12 * d12;
+		if (denominator == 0) {
+			return Double.POSITIVE_INFINITY; // degenerate triangle
+		}
+		double u = Math.min(Math.max((d22 * dp1 - d12 * dp2) / denominator, 0), 1);
+		double v = Math.min(Math.max((d11 * dp2 - d12 * dp1) / denominator, 0), 1 - u);
+		double dx = px - u * e1x - v * e2x, dy = py - u * e1y - v * e2y, dz = pz - u * e1z - v * e2z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+}
@@ -1,7 +1,6 @@
 package geometries;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import primitives.LineSegment;
 import primitives.Material;
@@ -12,11 +11,6 @@ import primitives.NonZeroVector;
 import primitives.Vector;
 import primitives.ZeroVectorException;
 import math.compare.DoubleCompare;
-import math.equations.Linear;
-import math.equations.Polynomial;
-import math.equations.Quadratic;
-import math.matrices.FastMatrixMult;
-import math.matrices.FastMatrixMultSelf;
 
 /**
  * A Tube is a 3D tube object that goes on to infinity.
@@ -29,8 +23,8 @@ public class Tube extends InfiniteGeometry {
 	final Ray axis;
 	/** The radius of the tube. */
 	final double radius;
-
-	private Vector toOrigin = null, fromOrigin = null;
+	/** The square of the radius of the tube. */
+	final double radiusSquared;
 
 	/**
 	 * Constructs a {@link Tube} with the source at the same source and direction as
@@ -48,9 +42,7 @@ public class Tube extends InfiniteGeometry {
 		}
 		this.axis = axis;
 		this.radius = Math.abs(radius);
-
-		toOrigin = axis.start.vectorTo(Point.ORIGIN);
-		fromOrigin = toOrigin.reversed();
+		radiusSquared = radius * radius;
 	}
 
 	/**
@@ -71,54 +63,91 @@ public class Tube extends InfiniteGeometry {
 
 	@Override
 	public List<Intersection> intersect(LineSegment line) {
-		Point source = line.start.add(toOrigin);
-		FastMatrixMultSelf a = new FastMatrixMultSelf(axis.direction);
-		FastMatrixMultSelf p = new FastMatrixMultSelf(source); // p for point
-		FastMatrixMultSelf v = new FastMatrixMultSelf(line.direction); // v for vector
-		FastMatrixMult pv = new FastMatrixMult(source, line.direction); // pv for...
-		// @formatter:off
-		double A =
-			(a.yy * v.xx) - 2*(a.xy * v.xy) + (a.xx * v.yy) +
-			(a.zz * v.yy) - 2*(a.yz * v.yz) + (a.yy * v.zz) +
-			(a.xx * v.zz) - 2*(a.xz * v.xz) + (a.zz * v.xx);
-		double B = 2 * (
-			(a.yy * pv.xx) - a.xy*(pv.yx + pv.xy) + (a.xx * pv.yy) +
-			(a.zz * pv.yy) - a.yz*(pv.zy + pv.yz) + (a.yy * pv.zz) +
-			(a.xx * pv.zz) - a.xz*(pv.xz + pv.zx) + (a.zz * pv.xx));
-		double C =
-			(a.yy * p.xx) - 2*(a.xy * p.xy) + (a.xx * p.yy) +
-			(a.zz * p.yy) - 2*(a.yz * p.yz) + (a.yy * p.zz) +
-			(a.xx * p.zz) - 2*(a.xz * p.xz) + (a.zz * p.xx) -
-			(radius * radius);
-		// @formatter:on
-		Polynomial equation;
-		if (A == 0) {
-			if (DoubleCompare.eq(B, 0)) {
-				return Collections.emptyList();
-			}
-			equation = new Linear(B, C);
-		} else {
-			Quadratic quadratic = new Quadratic(A, B, C);
-			if (DoubleCompare.leq(quadratic.discriminant, 0)) {
-				return Collections.emptyList();
+		List<Intersection> result = new ArrayList<>(2);
+		intersect(line, null, result);
+		return result;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		return intersect(line, hit, null);
+	}
+
+	/**
+	 * Finds the intersections of the line with the tube, without allocating any objects other than the intersections
+	 * added to the list. The square of the distance from the axis minus the square of the radius is a quadratic in the
+	 * distance along the line, whose coefficients come from the start of the line relative to the start of the axis
+	 * and from the components along the axis of that and of the direction of the line.
+	 *
+	 * @param line          The intersecting {@link LineSegment}.
+	 * @param hit           The record to update with each intersection, or null to add them to the list instead.
+	 * @param intersections The list to add each intersection to, if there is no hit record.
+	 * @return true if any intersection was recorded or added.
+	 */
+	private boolean intersect(LineSegment line, HitRecord hit, List<Intersection> intersections) {
+		double startX = line.start.x - axis.start.x, startY = line.start.y - axis.start.y;
+		double startZ = line.start.z - axis.start.z;
+		double startHeight = startX * axis.direction.x + startY * axis.direction.y + startZ * axis.direction.z;
+		double slope = line.direction.x * axis.direction.x + line.direction.y * axis.direction.y
+			+ line.direction.z * axis.direction.z;
+		double a = 1 - slope * slope;
+		double halfB = startX * line.direction.x + startY * line.direction.y + startZ * line.direction.z
+			- startHeight * slope;
+		double c = startX * startX + startY * startY + startZ * startZ - startHeight * startHeight - radiusSquared;
+		double quarterDiscriminant = halfB * halfB - a * c;
+		if (a == 0 || DoubleCompare.leq(quarterDiscriminant, 0)) {
+			return false; // parallel to the axis, or missing or touching the tube
+		}
+		double sqrt = Math.sqrt(quarterDiscriminant);
+		boolean near = add(line, (-halfB - sqrt) / a, hit, intersections);
+		if (near && hit != null) {
+			return true; // the far intersection can only be closer if the near one is not on the line segment
+		}
+		return add(line, (-halfB + sqrt) / a, hit, intersections) || near;
+	}
+
+	/**
+	 * The part of the tube inside a box is within the finite cylinder around the part of the axis which is inside the
+	 * box enlarged by the radius, since every point of the tube is within the radius of the axis along each axis.
+	 */
+	@Override
+	Boundary clip(Boundary region) {
+		Boundary enlarged = region.expand(radius);
+		double[] low = { enlarged.min().x, enlarged.min().y, enlarged.min().z };
+		double[] high = { enlarged.max().x, enlarged.max().y, enlarged.max().z };
+		double[] start = { axis.start.x, axis.start.y, axis.start.z };
+		double[] direction = { axis.direction.x, axis.direction.y, axis.direction.z };
+		double near = Double.NEGATIVE_INFINITY, far = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < 3; ++i) {
+			if (direction[i] == 0) {
+				if (start[i] < low[i] || start[i] > high[i]) {
+					return Boundary.EMPTY;
+				}
+				continue;
 			}
-			equation = quadratic;
+			double t1 = (low[i] - start[i]) / direction[i], t2 = (high[i] - start[i]) / direction[i];
+			near = Math.max(near, Math.min(t1, t2));
+			far = Math.min(far, Math.max(t1, t2));
 		}
-		List<Intersection> intersections = new ArrayList<>(2);
-		LineSegment shiftedLine = new Ray(source, line.direction);
-		for (double t : equation.solutions()) {
-			fillList(intersections, shiftedLine, t);
+		if (near > far) {
+			return Boundary.EMPTY;
 		}
-		return intersections;
+		Point p1 = axis.start.add(axis.direction.scale(near, Vector::new));
+		Point p2 = axis.start.add(axis.direction.scale(far, Vector::new));
+		return Cylinder.calcBorder(p1, p2, axis.direction, radius).intersection(region);
 	}
 
-	// helper function for intersection
-	private void fillList(List<Intersection> intersections, LineSegment line, double t) {
-		Point p = line.travel(t);
-		if (p != null) {
-			p = p.add(fromOrigin);
-			intersections.add(intersection(p));
+	// helper function, to record an intersection in the hit record or add it to the list
+	private boolean add(LineSegment line, double distance, HitRecord hit, List<Intersection> intersections) {
+		if (hit != null) {
+			return hit.update(this, line, distance);
+		}
+		Point p = line.travel(distance);
+		if (p == null) {
+			return false;
 		}
+		intersections.add(intersection(p));
+		return true;
 	}
 
 }
@@ -0,0 +1,328 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Triple;
+
+/**
+ * An acceleration structure which divides the {@link Boundary} of the finite geometries into a regular grid of
+ * equally sized cells, each of which lists the geometries overlapping it. A line segment is traced through the cells
+ * it passes through in order, using a 3D digital differential analyser (3D-DDA), so only the geometries near the line
+ * are tested. This tends to outperform a hierarchy when the geometries are spread evenly through the scene.
+ *
+ * A geometry which overlaps several cells is tested at most once per line segment, by marking it with a stamp which
+ * is unique to the line segment the first time it is tested (mailboxing). Infinite geometries cannot be placed in a
+ * grid, so they are tested against every line segment.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class UniformGrid implements Intersectible {
+	/** The number of cells per geometry along the longest axis is this times the cube root of the geometry count. */
+	private static final double DENSITY = 3;
+	/** The maximum number of cells along each axis. */
+	private static final int MAX_RESOLUTION = 64;
+
+	/** The finite geometries, indexed by the entries of {@code cellItems}. */
+	private final Intersectible[] items;
+	/** The geometries which must be tested against every line segment. */
+	private final Intersectible[] infinites;
+	/** The {@link Boundary} of the finite geometries, which is the space divided into cells. */
+	private final Boundary grid;
+	private final Boundary boundary;
+	private final double[] min = new double[3];
+	private final double[] cellSize = new double[3];
+	private final int[] resolution = new int[3];
+	/** The geometries in cell i are listed in {@code cellItems} from {@code cellOffsets[i]} to cellOffsets[i+1]. */
+	private final int[] cellOffsets;
+	/** The indices in {@code items} of the geometries in each cell. */
+	private final int[] cellItems;
+	private final ThreadLocal<Traversal> traversals = ThreadLocal.withInitial(Traversal::new);
+
+	/**
+	 * Construct a grid containing all the geometries in the given {@link GeometryList}, where each {@link Instance} is
+	 * placed in the grid as a single item. The number of cells along each axis is chosen automatically from the size of
+	 * their {@link Boundary} and the number of geometries.
+	 *
+	 * @param geometries The geometries to place in the grid.
+	 */
+	public UniformGrid(GeometryList geometries) {
+		List<Intersectible> finites = new ArrayList<>();
+		List<Intersectible> infinites = new ArrayList<>();
+		Boundary grid = Boundary.EMPTY;
+		Boundary boundary = Boundary.EMPTY;
+		for (Intersectible geometry : geometries.leaves()) {
+			if (geometry.boundary().isFinite()) {
+				finites.add(geometry);
+				grid = grid.union(geometry.boundary());
+			} else {
+				infinites.add(geometry);
+			}
+			boundary = boundary.union(geometry.boundary());
+		}
+		this.items = finites.toArray(new Intersectible[finites.size()]);
+		this.infinites = infinites.toArray(new Intersectible[infinites.size()]);
+		this.grid = grid;
+		this.boundary = boundary;
+
+		if (items.length > 0) {
+			double[] extent = { grid.max().x - grid.min().x, grid.max().y - grid.min().y, grid.max().z - grid.min().z };
+			double maxExtent = Math.max(extent[0], Math.max(extent[1], extent[2]));
+			double cellsPerUnit = maxExtent > 0 ? DENSITY * Math.cbrt(items.length) / maxExtent : 0;
+			for (int axis = 0; axis < 3; ++axis) {
+				min[axis] = coordinate(grid.min(), axis);
+				resolution[axis] = (int) Math.max(1, Math.min(MAX_RESOLUTION, Math.round(extent[axis] * cellsPerUnit)));
+				cellSize[axis] = extent[axis] / resolution[axis];
+			}
+		}
+
+		// Count the geometries in each cell, then fill the cells in a second pass
+		int cells = resolution[0] * resolution[1] * resolution[2];
+		cellOffsets = new int[cells + 1];
+		int[][] ranges = new int[items.length][];
+		for (int i = 0; i < items.length; ++i) {
+			ranges[i] = cellRange(items[i].boundary());
+			forEachCell(ranges[i], cell -> ++cellOffsets[cell + 1]);
+		}
+		for (int cell = 0; cell < cells; ++cell) {
+			cellOffsets[cell + 1] += cellOffsets[cell];
+		}
+		cellItems = new int[cellOffsets[cells]];
+		int[] filled = new int[cells];
+		for (int i = 0; i < items.length; ++i) {
+			int item = i;
+			forEachCell(ranges[i], cell -> cellItems[cellOffsets[cell] + filled[cell]++] = item);
+		}
+	}
+
+	/**
+	 * Calculate the range of cells overlapping the given {@link Boundary}.
+	 *
+	 * @return The lowest cell index along each axis followed by the highest cell index along each axis.
+	 */
+	private int[] cellRange(Boundary boundary) {
+		int[] range = new int[6];
+		for (int axis = 0; axis < 3; ++axis) {
+			range[axis] = cell(coordinate(boundary.min(), axis), axis);
+			range[axis + 3] = cell(coordinate(boundary.max(), axis), axis);
+		}
+		return range;
+	}
+
+	private void forEachCell(int[] range, IntConsumer action) {
+		for (int z = range[2]; z <= range[5]; ++z) {
+			for (int y = range[1]; y <= range[4]; ++y) {
+				for (int x = range[0]; x <= range[3]; ++x) {
+					action.accept(index(x, y, z));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the index along the given axis of the cell containing the given coordinate, clamped to the grid.
+	 */
+	private int cell(double coordinate, int axis) {
+		int cell = (int) ((coordinate - min[axis]) / cellSize[axis]); // NaN if the grid is flat, which casts to 0
+		return Math.max(0, Math.min(resolution[axis] - 1, cell));
+	}
+
+	private int index(int x, int y, int z) {
+		return x + resolution[0] * (y + resolution[1] * z);
+	}
+
+	private static double coordinate(Triple triple, int axis) {
+		return axis == 0 ? triple.x : axis == 1 ? triple.y : triple.z;
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		for (Intersectible geometry : infinites) {
+			result.addAll(geometry.intersect(line));
+		}
+		Traversal traversal = traversals.get();
+		if (traversal.start(line)) {
+			do {
+				for (int i = cellOffsets[traversal.cell], end = cellOffsets[traversal.cell + 1]; i < end; ++i) {
+					if (traversal.visit(cellItems[i])) {
+						result.addAll(items[cellItems[i]].intersect(line));
+					}
+				}
+			} while (traversal.advance());
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		boolean found = false;
+		for (Intersectible geometry : infinites) {
+			found |= geometry.intersect(line, hit);
+		}
+		Traversal traversal = traversals.get();
+		if (traversal.start(line)) {
+			do {
+				for (int i = cellOffsets[traversal.cell], end = cellOffsets[traversal.cell + 1]; i < end; ++i) {
+					if (traversal.visit(cellItems[i])) {
+						found |= items[cellItems[i]].intersect(line, hit);
+					}
+				}
+				// intersections beyond this cell may still be beaten by geometries in later cells
+			} while (hit.distance > traversal.exit() && traversal.advance());
+		}
+		return found;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		for (Intersectible geometry : infinites) {
+			if (geometry.intersects(line)) {
+				return true;
+			}
+		}
+		Traversal traversal = traversals.get();
+		if (traversal.start(line)) {
+			do {
+				for (int i = cellOffsets[traversal.cell], end = cellOffsets[traversal.cell + 1]; i < end; ++i) {
+					if (traversal.visit(cellItems[i]) && items[cellItems[i]].intersects(line)) {
+						return true;
+					}
+				}
+			} while (traversal.advance());
+		}
+		return false;
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		for (Intersectible geometry : infinites) {
+			transparency = geometry.transparency(line, transparency, threshold);
+			if (transparency.lt(threshold)) {
+				return Factors.ZERO;
+			}
+		}
+		Traversal traversal = traversals.get();
+		if (traversal.start(line)) {
+			do {
+				for (int i = cellOffsets[traversal.cell], end = cellOffsets[traversal.cell + 1]; i < end; ++i) {
+					if (traversal.visit(cellItems[i])) {
+						transparency = items[cellItems[i]].transparency(line, transparency, threshold);
+						if (transparency.lt(threshold)) {
+							return Factors.ZERO;
+						}
+					}
+				}
+			} while (traversal.advance());
+		}
+		return transparency;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+
+	/**
+	 * The state of a line segment walking through the cells of the grid. Each thread reuses a single traversal for all
+	 * its line segments, so that tracing a line segment through the grid doesn't allocate any objects.
+	 */
+	private class Traversal {
+		/** The index of the current cell. */
+		int cell;
+		private final int[] position = new int[3];
+		private final int[] step = new int[3];
+		/** The distance along the line segment at which it crosses into the next cell along each axis. */
+		private final double[] next = new double[3];
+		/** The distance along the line segment between crossings into consecutive cells along each axis. */
+		private final double[] delta = new double[3];
+		private double length;
+		/** The stamp of each geometry, which equals {@code ray} if it has already been tested. */
+		private final int[] stamps = new int[items.length];
+		private int ray = 0;
+
+		/**
+		 * Start walking the given line segment through the grid, from the first cell it enters.
+		 *
+		 * @param line The {@link LineSegment} to walk through the grid.
+		 * @return false if the line segment doesn't pass through the grid.
+		 */
+		boolean start(LineSegment line) {
+			double entry = grid.entryDistance(line);
+			if (entry == Double.POSITIVE_INFINITY) {
+				return false;
+			}
+			if (++ray == 0) { // the stamps have wrapped around, so old stamps may be mistaken for the new one
+				Arrays.fill(stamps, 0);
+				ray = 1;
+			}
+			length = Math.sqrt(line.squareLength);
+			for (int axis = 0; axis < 3; ++axis) {
+				double start = coordinate(line.start, axis);
+				double direction = coordinate(line.direction, axis);
+				position[axis] = cell(start + direction * entry, axis);
+				if (direction > 0) {
+					step[axis] = 1;
+					next[axis] = (min[axis] + (position[axis] + 1) * cellSize[axis] - start) / direction;
+					delta[axis] = cellSize[axis] / direction;
+				} else if (direction < 0) {
+					step[axis] = -1;
+					next[axis] = (min[axis] + position[axis] * cellSize[axis] - start) / direction;
+					delta[axis] = -cellSize[axis] / direction;
+				} else {
+					step[axis] = 0;
+					next[axis] = Double.POSITIVE_INFINITY;
+					delta[axis] = Double.POSITIVE_INFINITY;
+				}
+			}
+			cell = index(position[0], position[1], position[2]);
+			return true;
+		}
+
+		/**
+		 * Mark the given geometry as tested by the current line segment.
+		 *
+		 * @param item The index of the geometry.
+		 * @return false if the geometry has already been tested by the current line segment.
+		 */
+		boolean visit(int item) {
+			if (stamps[item] == ray) {
+				return false;
+			}
+			stamps[item] = ray;
+			return true;
+		}
+
+		/**
+		 * Get the distance along the line segment at which it leaves the current cell.
+		 *
+		 * @return The distance from the start of the line segment to where it leaves the current cell.
+		 */
+		double exit() {
+			return Math.min(next[0], Math.min(next[1], next[2]));
+		}
+
+		/**
+		 * Move on to the next cell the line segment passes through.
+		 *
+		 * @return false if the line segment ends or leaves the grid before reaching another cell.
+		 */
+		boolean advance() {
+			int axis = next[0] < next[1] ? (next[0] < next[2] ? 0 : 2) : (next[1] < next[2] ? 1 : 2);
+			if (next[axis] >= length) {
+				return false;
+			}
+			position[axis] += step[axis];
+			if (position[axis] < 0 || position[axis] >= resolution[axis]) {
+				return false;
+			}
+			next[axis] += delta[axis];
+			cell = index(position[0], position[1], position[2]);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,607 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import math.compare.DoubleCompare;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Point;
+
+/**
+ * A compiled, read only copy of a hierarchy of {@link GeometryList}s in which every node has {@value #WIDTH} children,
+ * so that a line segment is tested against the boxes of all the children of a node at once. The binary hierarchy
+ * built by a {@link HierarchyBuilder} is collapsed by repeatedly replacing the child with the largest surface area by
+ * its own children, until the node is full.
+ *
+ * The boxes of the children of each node are stored as a structure of arrays, with the minimum x values of all the
+ * children next to each other, then the minimum y values, and so on, so the slab test is the same calculation on
+ * {@value #WIDTH} lanes of contiguous values. {@link Sphere}s and triangles in the leaves are likewise copied into
+ * arrays of their coordinates, which are intersected without going through the geometry objects. Other primitives are
+ * intersected through their own methods.
+ *
+ * The slab test of each node and the tests of the spheres and triangles of each leaf can be done by a
+ * {@link WideKernel} written with the Vector API, if it is asked for and available, rather than by the scalar loops of
+ * this class. Either way, the same intersections are found.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class WideHierarchy implements Intersectible {
+	/** The number of children of each node. */
+	public static final int WIDTH = 4;
+	/** The kernel written with the Vector API, or null if it was not compiled or its module was not added. */
+	private static final WideKernel VECTOR_KERNEL = loadVectorKernel();
+
+	/**
+	 * The boxes of the children of each node. Bound b of lane l of node n, where the bounds are the minimum x, y, and z
+	 * values followed by the maximum x, y, and z values, is at {@code (6 * n + b) * WIDTH + l}. The bounds of unused
+	 * lanes are NaN, which no line segment enters.
+	 */
+	private final double[] bounds;
+	/**
+	 * The child in each lane of each node, which is the index of a node if it is not negative, or the bitwise
+	 * complement of the index of a leaf.
+	 */
+	private final int[] lanes;
+	/** The index in {@code primitives} of the first primitive of each leaf. */
+	private final int[] leafOffsets;
+	/** The number of spheres of each leaf, which are its first primitives. */
+	private final int[] leafSpheres;
+	/** The number of triangles of each leaf, which follow its spheres. */
+	private final int[] leafTriangles;
+	/** The number of primitives of each leaf. */
+	private final int[] leafCounts;
+	/** The primitives of the leaves, grouped by leaf. */
+	private final Intersectible[] primitives;
+	/** The x, y, and z values of the center and the square of the radius of each sphere, indexed like the primitives. */
+	private final double[][] spheres = new double[4][];
+	/**
+	 * The coordinates of the first vertex of each {@link Triangle}, followed by the components of the edges from it to
+	 * the second and third vertices and the reciprocal of the length of their cross product, indexed like the
+	 * primitives.
+	 */
+	private final double[][] triangles = new double[10][];
+	/**
+	 * The children of the root with infinite boundaries, which are intersected after the rest of the hierarchy, so that
+	 * they can be skipped by line segments which have already found a closer intersection.
+	 */
+	private final Intersectible[] unbounded;
+	/** Whether some primitives are in more than one leaf, so that each traversal needs a {@link Mailbox}. */
+	private final boolean shared;
+	/** The mailbox of each thread for line segments traced without a {@link HitRecord}, if primitives are shared. */
+	private final ThreadLocal<Mailbox> mailboxes;
+	/** The maximum number of lanes which may be waiting on the stack during a traversal. */
+	private final int stackSize;
+	private final Boundary boundary;
+	/** The kernel which does the calculations on many values at once, or null to do them in scalar loops. */
+	private final WideKernel kernel;
+
+	// Only used while compiling
+	private final List<double[]> nodeBounds = new ArrayList<>();
+	private final List<int[]> nodeLanes = new ArrayList<>();
+	private final List<List<Intersectible>> leaves = new ArrayList<>();
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList}. This should be done after calling
+	 * {@link GeometryList#optimize()}, and the {@link GeometryList} should not be modified afterwards.
+	 *
+	 * @param geometries The root of the hierarchy to compile.
+	 */
+	public WideHierarchy(GeometryList geometries) {
+		this(geometries, false);
+	}
+
+	/**
+	 * Compile the hierarchy of the given {@link GeometryList}, and choose whether to intersect it with the Vector API.
+	 *
+	 * @param geometries The root of the hierarchy to compile.
+	 * @param vector     Whether to use the Vector API, if it is available. Otherwise the scalar loops are used.
+	 */
+	public WideHierarchy(GeometryList geometries, boolean vector) {
+		kernel = vector ? VECTOR_KERNEL : null;
+		List<Intersectible> unbounded = new ArrayList<>();
+		stackSize = 1 + compile(geometries.bounded(unbounded));
+		this.unbounded = unbounded.toArray(new Intersectible[unbounded.size()]);
+		boundary = geometries.boundary();
+		shared = geometries.shared();
+		mailboxes = shared ? ThreadLocal.withInitial(Mailbox::new) : null;
+
+		bounds = new double[6 * WIDTH * nodeBounds.size()];
+		lanes = new int[WIDTH * nodeLanes.size()];
+		for (int node = 0; node < nodeBounds.size(); ++node) {
+			System.arraycopy(nodeBounds.get(node), 0, bounds, 6 * WIDTH * node, 6 * WIDTH);
+			System.arraycopy(nodeLanes.get(node), 0, lanes, WIDTH * node, WIDTH);
+		}
+
+		leafOffsets = new int[leaves.size()];
+		leafSpheres = new int[leaves.size()];
+		leafTriangles = new int[leaves.size()];
+		leafCounts = new int[leaves.size()];
+		List<Intersectible> all = new ArrayList<>();
+		for (int leaf = 0; leaf < leaves.size(); ++leaf) {
+			leafOffsets[leaf] = all.size();
+			List<Intersectible> others = new ArrayList<>();
+			for (Intersectible primitive : leaves.get(leaf)) {
+				if (primitive instanceof Sphere) {
+					all.add(primitive);
+					++leafSpheres[leaf];
+				} else {
+					others.add(primitive);
+				}
+			}
+			for (Intersectible primitive : leaves.get(leaf)) {
+				if (isTriangle(primitive)) {
+					all.add(primitive);
+					++leafTriangles[leaf];
+				}
+			}
+			for (Intersectible primitive : others) {
+				if (!isTriangle(primitive)) {
+					all.add(primitive);
+				}
+			}
+			leafCounts[leaf] = all.size() - leafOffsets[leaf];
+		}
+		primitives = all.toArray(new Intersectible[all.size()]);
+		store();
+	}
+
+	/**
+	 * Load the kernel written with the Vector API, which is only on the class path if the {@code vector} profile of the
+	 * build compiled it, and can only be loaded if the {@code jdk.incubator.vector} module was added.
+	 *
+	 * @return The kernel, or null if it cannot be loaded.
+	 */
+	private static WideKernel loadVectorKernel() {
+		try {
+			return (WideKernel) Class.forName("geometries.VectorWideKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Determines whether the hierarchy is intersected with the Vector API, which is only the case if it was asked for
+	 * and is available.
+	 *
+	 * @return true if the hierarchy is intersected with the Vector API, or false if it uses the scalar loops.
+	 */
+	public boolean vectorized() {
+		return kernel != null;
+	}
+
+	private static boolean isTriangle(Intersectible primitive) {
+		return primitive instanceof Triangle;
+	}
+
+	/**
+	 * Copy the coordinates of the spheres and triangles into their arrays.
+	 */
+	private void store() {
+		for (int component = 0; component < spheres.length; ++component) {
+			spheres[component] = new double[primitives.length];
+		}
+		for (int component = 0; component < triangles.length; ++component) {
+			triangles[component] = new double[primitives.length];
+		}
+		for (int i = 0; i < primitives.length; ++i) {
+			if (primitives[i] instanceof Sphere) {
+				Sphere sphere = (Sphere) primitives[i];
+				Point center = sphere.center();
+				spheres[0][i] = center.x;
+				spheres[1][i] = center.y;
+				spheres[2][i] = center.z;
+				spheres[3][i] = sphere.radiusSquared();
+			} else if (isTriangle(primitives[i])) {
+				List<Point> vertices = ((Triangle) primitives[i]).vertices();
+				Point p1 = vertices.get(0), p2 = vertices.get(1), p3 = vertices.get(2);
+				double e1x = p2.x - p1.x, e1y = p2.y - p1.y, e1z = p2.z - p1.z;
+				double e2x = p3.x - p1.x, e2y = p3.y - p1.y, e2z = p3.z - p1.z;
+				double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+				double[] values = { p1.x, p1.y, p1.z, e1x, e1y, e1z, e2x, e2y, e2z,
+					1 / Math.sqrt(nx * nx + ny * ny + nz * nz) };
+				for (int component = 0; component < values.length; ++component) {
+					triangles[component][i] = values[component];
+				}
+			}
+		}
+	}
+
+	/**
+	 * A child of a node while it is being collapsed, which is either a {@link GeometryList} or a group of primitives.
+	 */
+	static class Lane {
+		final GeometryList node;
+		final List<Intersectible> primitives;
+		final Boundary boundary;
+
+		Lane(GeometryList node) {
+			this.node = node;
+			this.primitives = null;
+			this.boundary = node.boundary();
+		}
+
+		Lane(List<Intersectible> primitives) {
+			this.node = null;
+			this.primitives = primitives;
+			Boundary boundary = Boundary.EMPTY;
+			for (Intersectible primitive : primitives) {
+				boundary = boundary.union(primitive.boundary());
+			}
+			this.boundary = boundary;
+		}
+	}
+
+	/**
+	 * Split a node of the binary hierarchy into lanes, with one lane per child {@link GeometryList}, and a single lane
+	 * for all its other children. A child whose children are all primitives becomes a single lane of primitives.
+	 */
+	private static List<Lane> split(GeometryList node) {
+		List<Lane> result = new ArrayList<>();
+		List<Intersectible> primitives = new ArrayList<>();
+		for (Intersectible child : node.children()) {
+			if (!(child instanceof GeometryList)) {
+				primitives.add(child);
+			} else if (((GeometryList) child).children().stream().anyMatch(GeometryList.class::isInstance)) {
+				result.add(new Lane((GeometryList) child));
+			} else {
+				result.add(new Lane(((GeometryList) child).children()));
+			}
+		}
+		if (!primitives.isEmpty()) {
+			result.add(new Lane(primitives));
+		}
+		return result;
+	}
+
+	/**
+	 * Collapse the given node of the binary hierarchy into the children of a wide node, by repeatedly replacing the
+	 * child with the largest surface area by its own children, while they fit.
+	 *
+	 * @param node The node of the binary hierarchy.
+	 * @return The lanes of the wide node, of which there are at most {@value #WIDTH}.
+	 */
+	static List<Lane> collapse(GeometryList node) {
+		List<Lane> children = split(node);
+		while (children.size() < WIDTH) {
+			int best = -1;
+			List<Lane> expansion = null;
+			for (int i = 0; i < children.size(); ++i) {
+				Lane lane = children.get(i);
+				if (lane.node == null
+					|| best >= 0 && lane.boundary.surfaceArea() <= children.get(best).boundary.surfaceArea()) {
+					continue;
+				}
+				List<Lane> split = split(lane.node);
+				if (children.size() - 1 + split.size() <= WIDTH) {
+					best = i;
+					expansion = split;
+				}
+			}
+			if (best < 0) {
+				break;
+			}
+			children.remove(best);
+			children.addAll(best, expansion);
+		}
+		return children;
+	}
+
+	/**
+	 * Collapse the given node of the binary hierarchy into a wide node, then compile its children.
+	 *
+	 * @return The maximum number of lanes which may be pushed to the stack while traversing the subtree of the node.
+	 */
+	private int compile(GeometryList node) {
+		List<Lane> children = collapse(node);
+		int index = nodeBounds.size();
+		double[] boxes = new double[6 * WIDTH];
+		Arrays.fill(boxes, Double.NaN);
+		int[] childLanes = new int[WIDTH];
+		nodeBounds.add(boxes);
+		nodeLanes.add(childLanes);
+		int deepest = 0;
+		for (int lane = 0; lane < children.size(); ++lane) {
+			Lane child = children.get(lane);
+			if (child.boundary != Boundary.EMPTY) { // the bounds of an empty lane are left as NaN
+				Point min = child.boundary.min();
+				Point max = child.boundary.max();
+				double[] values = { min.x, min.y, min.z, max.x, max.y, max.z };
+				for (int bound = 0; bound < 6; ++bound) {
+					boxes[bound * WIDTH + lane] = values[bound];
+				}
+			}
+			if (child.node == null) {
+				childLanes[lane] = ~leaves.size();
+				leaves.add(child.primitives);
+			} else {
+				childLanes[lane] = nodeBounds.size();
+				deepest = Math.max(deepest, compile(child.node));
+			}
+		}
+		return WIDTH + deepest;
+	}
+
+	@Override
+	public List<Intersection> intersect(LineSegment line) {
+		List<Intersection> result = new ArrayList<>();
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = i + leafCounts[~child]; i < end; ++i) {
+					if (mailbox == null || mailbox.add(primitives[i])) {
+						result.addAll(primitives[i].intersect(line));
+					}
+				}
+				continue;
+			}
+			entryDistances(child, line, entries);
+			for (int lane = 0; lane < WIDTH; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = lanes[WIDTH * child + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			result.addAll(primitive.intersect(line));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean intersects(LineSegment line) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = i + leafCounts[~child]; i < end; ++i) {
+					if ((mailbox == null || mailbox.add(primitives[i])) && primitives[i].intersects(line)) {
+						return true;
+					}
+				}
+				continue;
+			}
+			entryDistances(child, line, entries);
+			for (int lane = 0; lane < WIDTH; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = lanes[WIDTH * child + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			if (primitive.intersects(line)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Factors transparency(LineSegment line, Factors transparency, double threshold) {
+		Mailbox mailbox = shared ? mailboxes.get().clear() : null;
+		int[] stack = new int[stackSize];
+		double[] entries = new double[WIDTH];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int child = stack[--top];
+			if (child < 0) {
+				for (int i = leafOffsets[~child], end = i + leafCounts[~child]; i < end; ++i) {
+					if (mailbox != null && !mailbox.add(primitives[i])) {
+						continue;
+					}
+					transparency = primitives[i].transparency(line, transparency, threshold);
+					if (transparency.lt(threshold)) {
+						return Factors.ZERO;
+					}
+				}
+				continue;
+			}
+			entryDistances(child, line, entries);
+			for (int lane = 0; lane < WIDTH; ++lane) {
+				if (entries[lane] != Double.POSITIVE_INFINITY) {
+					stack[top++] = lanes[WIDTH * child + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			transparency = primitive.transparency(line, transparency, threshold);
+			if (transparency.lt(threshold)) {
+				return Factors.ZERO;
+			}
+		}
+		return transparency;
+	}
+
+	@Override
+	public boolean intersect(LineSegment line, HitRecord hit) {
+		int[] stack = hit.nodeStack(stackSize);
+		double[] distances = hit.entryStack(stackSize); // the entry distance of each lane on the stack
+		double[] entries = hit.laneEntries(WIDTH);
+		Mailbox mailbox = shared ? hit.mailbox() : null;
+		int top = 0;
+		distances[top] = 0;
+		stack[top++] = 0;
+		boolean found = false;
+		while (top > 0) {
+			int child = stack[--top];
+			if (distances[top] >= hit.distance) {
+				continue; // the lane starts after the closest intersection found so far
+			}
+			if (child < 0) {
+				found |= intersectLeaf(~child, line, hit, mailbox);
+				continue;
+			}
+			// push the lanes which start before the closest intersection, nearest on top
+			entryDistances(child, line, entries);
+			int first = top;
+			for (int lane = 0; lane < WIDTH; ++lane) {
+				double entry = entries[lane];
+				if (entry < hit.distance) {
+					int j = top++;
+					for (; j > first && distances[j - 1] < entry; --j) {
+						distances[j] = distances[j - 1];
+						stack[j] = stack[j - 1];
+					}
+					distances[j] = entry;
+					stack[j] = lanes[WIDTH * child + lane];
+				}
+			}
+		}
+		for (Intersectible primitive : unbounded) {
+			found |= primitive.intersect(line, hit);
+		}
+		return found;
+	}
+
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters the box in each lane of the given node.
+	 * This is the same test as {@link Boundary#entryDistance(LineSegment)}, done on every lane.
+	 *
+	 * @param node    The index of the node.
+	 * @param line    The {@link LineSegment}.
+	 * @param entries The array to write the distance for each lane to. The distance is zero if the line starts inside
+	 *                the box, or positive infinity if the line doesn't intersect the box.
+	 */
+	private void entryDistances(int node, LineSegment line, double[] entries) {
+		int offset = 6 * WIDTH * node;
+		if (kernel != null) {
+			kernel.entryDistances(bounds, offset, line, entries);
+			return;
+		}
+		double startX = line.start.x, startY = line.start.y, startZ = line.start.z;
+		double inverseX = line.inverse.x, inverseY = line.inverse.y, inverseZ = line.inverse.z;
+		double squareLength = line.squareLength;
+		for (int lane = 0; lane < WIDTH; ++lane) {
+			double tx1 = (bounds[offset + lane] - startX) * inverseX;
+			double tx2 = (bounds[offset + 3 * WIDTH + lane] - startX) * inverseX;
+			double ty1 = (bounds[offset + WIDTH + lane] - startY) * inverseY;
+			double ty2 = (bounds[offset + 4 * WIDTH + lane] - startY) * inverseY;
+			double tz1 = (bounds[offset + 2 * WIDTH + lane] - startZ) * inverseZ;
+			double tz2 = (bounds[offset + 5 * WIDTH + lane] - startZ) * inverseZ;
+			double tmin = Math.max(Math.min(tx1, tx2), Math.max(Math.min(ty1, ty2), Math.min(tz1, tz2)));
+			double tmax = Math.min(Math.max(tx1, tx2), Math.min(Math.max(ty1, ty2), Math.max(tz1, tz2)));
+			entries[lane] = tmax > 0 && tmax >= tmin && (tmin < 0 || tmin * tmin < squareLength) ? Math.max(tmin, 0)
+				: Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Find the closest intersection with the primitives of a leaf. The spheres and triangles are intersected from
+	 * their arrays, by the same calculations as {@link Sphere#intersect(LineSegment, HitRecord)} and
+	 * {@link Triangle#intersect(LineSegment, HitRecord)}. Primitives already in the mailbox, if there is one, are
+	 * skipped.
+	 */
+	private boolean intersectLeaf(int leaf, LineSegment line, HitRecord hit, Mailbox mailbox) {
+		boolean found = false;
+		int i = leafOffsets[leaf];
+		int triangleOffset = i + leafSpheres[leaf], otherOffset = triangleOffset + leafTriangles[leaf];
+		if (kernel != null) {
+			found |= intersectCandidates(false, i, triangleOffset, line, hit, mailbox);
+			found |= intersectCandidates(true, triangleOffset, otherOffset, line, hit, mailbox);
+			i = otherOffset;
+		}
+		for (; i < triangleOffset; ++i) {
+			if (mailbox == null || mailbox.add(primitives[i])) {
+				found |= intersectSphere(i, line, hit);
+			}
+		}
+		for (; i < otherOffset; ++i) {
+			if (mailbox == null || mailbox.add(primitives[i])) {
+				found |= intersectTriangle(i, line, hit);
+			}
+		}
+		for (int end = leafOffsets[leaf] + leafCounts[leaf]; i < end; ++i) {
+			if (mailbox == null || mailbox.add(primitives[i])) {
+				found |= primitives[i].intersect(line, hit);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the closest intersection with the spheres or the triangles in a range of a leaf, by letting the kernel find
+	 * the ones which the line may intersect, then intersecting just those, in order, like {@link #intersectLeaf}.
+	 *
+	 * @param triangles Whether the range holds triangles, or spheres.
+	 * @param start     The index of the first primitive in the range.
+	 * @param end       The index after the last primitive in the range.
+	 */
+	private boolean intersectCandidates(boolean triangles, int start, int end, LineSegment line, HitRecord hit,
+		Mailbox mailbox) {
+		boolean found = false;
+		for (int i = start; i < end; i += Long.SIZE) {
+			int count = Math.min(Long.SIZE, end - i);
+			long candidates = triangles ? kernel.triangles(this.triangles, i, count, line)
+				: kernel.spheres(spheres, i, count, line);
+			for (; candidates != 0; candidates &= candidates - 1) {
+				int j = i + Long.numberOfTrailingZeros(candidates);
+				if (mailbox == null || mailbox.add(primitives[j])) {
+					found |= triangles ? intersectTriangle(j, line, hit) : intersectSphere(j, line, hit);
+				}
+			}
+		}
+		return found;
+	}
+
+	private boolean intersectSphere(int i, LineSegment line, HitRecord hit) {
+		double toCenterX = spheres[0][i] - line.start.x;
+		double toCenterY = spheres[1][i] - line.start.y;
+		double toCenterZ = spheres[2][i] - line.start.z;
+		double scalarsMid = toCenterX * line.direction.x + toCenterY * line.direction.y + toCenterZ * line.direction.z;
+		double perpendicularDistanceSquared =
+			toCenterX * toCenterX + toCenterY * toCenterY + toCenterZ * toCenterZ - scalarsMid * scalarsMid;
+		double radiusSquared = spheres[3][i];
+		if (DoubleCompare.geq(perpendicularDistanceSquared, radiusSquared)) {
+			return false;
+		}
+		double scalarsOffset = Math.sqrt(radiusSquared - perpendicularDistanceSquared);
+		Geometry sphere = (Geometry) primitives[i];
+		return hit.update(sphere, line, scalarsMid - scalarsOffset)
+			|| hit.update(sphere, line, scalarsMid + scalarsOffset);
+	}
+
+	private boolean intersectTriangle(int i, LineSegment line, HitRecord hit) {
+		double[][] t = triangles;
+		double e1x = t[3][i], e1y = t[4][i], e1z = t[5][i];
+		double e2x = t[6][i], e2y = t[7][i], e2z = t[8][i];
+		double dx = line.direction.x, dy = line.direction.y, dz = line.direction.z;
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double determinant = e1x * px + e1y * py + e1z * pz;
+		if (DoubleCompare.eq(determinant * t[9][i], 0)) {
+			return false; // the line is parallel to the triangle
+		}
+		double inverse = 1 / determinant;
+		double sx = line.start.x - t[0][i], sy = line.start.y - t[1][i], sz = line.start.z - t[2][i];
+		double u = (sx * px + sy * py + sz * pz) * inverse;
+		if (!DoubleCompare.gt(u, 0) || !DoubleCompare.lt(u, 1)) {
+			return false;
+		}
+		double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (!DoubleCompare.gt(v, 0) || !DoubleCompare.lt(u + v, 1)) {
+			return false;
+		}
+		if (!hit.update((Triangle) primitives[i], line, (e2x * qx + e2y * qy + e2z * qz) * inverse)) {
+			return false;
+		}
+		hit.u = u;
+		hit.v = v;
+		return true;
+	}
+
+	@Override
+	public Boundary boundary() {
+		return boundary;
+	}
+}
@@ -0,0 +1,52 @@
+package geometries;
+
+import primitives.LineSegment;
+
+/**
+ * The calculations of a {@link WideHierarchy} which are done on many values at once, for an implementation written
+ * with the incubating Vector API. That implementation is in {@code src/vector}, which is only compiled by the
+ * {@code vector} profile of the build, and only runs if the {@code jdk.incubator.vector} module is added, so the
+ * hierarchy falls back on its own scalar loops whenever it is not available.
+ *
+ * Each method must give exactly the same results as the scalar calculation it replaces, so that the images rendered
+ * do not depend on which of them is used.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+interface WideKernel {
+	/**
+	 * Calculates the distance along a {@link LineSegment} at which it enters the box in each lane of a node, as
+	 * described in {@link WideHierarchy}.
+	 *
+	 * @param bounds  The bounds of the boxes of the children of all the nodes.
+	 * @param offset  The index of the first bound of the node.
+	 * @param line    The {@link LineSegment}.
+	 * @param entries The array to write the distance for each lane to, which is positive infinity if the line doesn't
+	 *                intersect the box.
+	 */
+	void entryDistances(double[] bounds, int offset, LineSegment line, double[] entries);
+
+	/**
+	 * Finds the spheres which a {@link LineSegment} may intersect. Every sphere which the line intersects is found, but
+	 * some which it only passes close to may be found too.
+	 *
+	 * @param spheres The x, y, and z values of the center and the square of the radius of each sphere.
+	 * @param from    The index of the first sphere to test.
+	 * @param count   The number of spheres to test, which is at most {@value Long#SIZE}.
+	 * @return A mask with the bit {@code i} set if the line may intersect the sphere at index {@code from + i}.
+	 */
+	long spheres(double[][] spheres, int from, int count, LineSegment line);
+
+	/**
+	 * Finds the triangles which a {@link LineSegment} may intersect. Every triangle which the line intersects is found,
+	 * but some which it only passes close to may be found too.
+	 *
+	 * @param triangles The coordinates of the first vertex of each triangle, followed by the components of the edges
+	 *                  from it to the second and third vertices.
+	 * @param from      The index of the first triangle to test.
+	 * @param count     The number of triangles to test, which is at most {@value Long#SIZE}.
+	 * @return A mask with the bit {@code i} set if the line may intersect the triangle at index {@code from + i}.
+	 */
+	long triangles(double[][] triangles, int from, int count, LineSegment line);
+}
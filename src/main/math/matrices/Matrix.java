@@ -12,6 +12,8 @@ import util.DoubleTriFunction;
  * @author Eli Levin
  */
 public class Matrix {
+	/** The identity matrix. */
+	public static final Matrix IDENTITY = new Matrix(new Vector(1, 0, 0), new Vector(0, 1, 0), new Vector(0, 0, 1));
 
 	// rows of matrix
 	private final Vector r1;
@@ -75,6 +77,39 @@ public class Matrix {
 		return multiply(v, NonZeroVector::new);
 	}
 
+	/**
+	 * Calculate the determinant of the matrix.
+	 *
+	 * @return The determinant of the matrix.
+	 */
+	public double determinant() {
+		return r1.dot(r2.cross(r3));
+	}
+
+	/**
+	 * Calculate the transpose of the matrix.
+	 *
+	 * @return A new matrix whose rows are the columns of this matrix.
+	 */
+	public Matrix transposed() {
+		return new Matrix(new Vector(r1.x, r2.x, r3.x), new Vector(r1.y, r2.y, r3.y), new Vector(r1.z, r2.z, r3.z));
+	}
+
+	/**
+	 * Calculate the inverse of the matrix. The columns of the inverse are the cross products of pairs of rows, divided
+	 * by the determinant.
+	 *
+	 * @return A new matrix which is the inverse of this matrix.
+	 * @throws ArithmeticException if the matrix is singular.
+	 */
+	public Matrix inverse() {
+		double determinant = determinant();
+		if (determinant == 0) {
+			throw new ArithmeticException("Error: A singular matrix has no inverse.");
+		}
+		return new Matrix(r2.cross(r3), r3.cross(r1), r1.cross(r2)).transposed().scale(1 / determinant);
+	}
+
 	@Override
 	public String toString() {
 		return "Matrix3x3 [r1=" + r1 + ", r2=" + r2 + ", r3=" + r3 + "]";
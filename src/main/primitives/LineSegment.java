@@ -1,5 +1,9 @@
 package primitives;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import geometries.Intersection;
 import math.compare.DoubleCompare;
 
 /**
@@ -45,6 +49,28 @@ public class LineSegment {
 		this.inverse = direction.transform(c -> 1 / c, NonZeroVector::new);
 	}
 
+	/**
+	 * Returns the closest intersection to the start of this line segment from the given intersections.
+	 *
+	 * @param intersections The intersections from which to get the closest one.
+	 * @return The closest intersection to the start of the line segment.
+	 * @throws NoSuchElementException if the list is empty.
+	 */
+	public Intersection closest(List<Intersection> intersections) {
+		Iterator<Intersection> iterator = intersections.iterator();
+		Intersection closest = iterator.next(); // this will throw if empty
+		double distance = start.squareDistance(closest.point);
+		while (iterator.hasNext()) {
+			Intersection next = iterator.next();
+			double nextDistance = start.squareDistance(next.point);
+			if (nextDistance < distance) {
+				distance = nextDistance; // save for future checks
+				closest = next;
+			}
+		}
+		return closest;
+	}
+
 	/**
 	 * Calculate the point along the line segment after traveling "distance" units in the line segment's direction. If
 	 * the given distance squared is greater than {@code squareDistance} then null is returned.
@@ -68,7 +94,7 @@ public class LineSegment {
 	 * @param distance The distance traveled from the start along the direction.
 	 * @return whether or not the distance squared is less than squareDistance.
 	 */
-	protected boolean withinDistance(double distance) {
+	public boolean withinDistance(double distance) {
 		return DoubleCompare.gt(distance, 0) && distance * distance < squareLength;
 	}
 }
@@ -1,10 +1,6 @@
 package primitives;
 
-import java.util.Iterator;
-import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Objects;
-import geometries.Intersection;
 import math.compare.DoubleCompare;
 
 /**
@@ -27,30 +23,8 @@ public class Ray extends LineSegment {
 		super(start, direction, Double.POSITIVE_INFINITY);
 	}
 
-	/**
-	 * Returns the closest intersection to this ray's source from the given intersections.
-	 *
-	 * @param intersections The intersections from which to get the closest one.
-	 * @return The closest intersection to the source of the ray.
-	 * @throws NoSuchElementException if the list is empty.
-	 */
-	public Intersection closest(List<Intersection> intersections) {
-		Iterator<Intersection> iterator = intersections.iterator();
-		Intersection closest = iterator.next(); // this will throw if empty
-		double distance = start.squareDistance(closest.point);
-		while (iterator.hasNext()) {
-			Intersection next = iterator.next();
-			double nextDistance = start.squareDistance(next.point);
-			if (nextDistance < distance) {
-				distance = nextDistance; // save for future checks
-				closest = next;
-			}
-		}
-		return closest;
-	}
-
 	@Override
-	protected boolean withinDistance(double distance) {
+	public boolean withinDistance(double distance) {
 		return DoubleCompare.gt(distance, 0);
 	}
 
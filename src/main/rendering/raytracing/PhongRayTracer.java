@@ -1,7 +1,8 @@
 package rendering.raytracing;
 
-import java.util.List;
+import java.util.Arrays;
 import java.util.function.Supplier;
+import geometries.HitRecord;
 import geometries.Intersection;
 import lighting.LightSource;
 import primitives.Colour;
@@ -21,9 +22,22 @@ import scene.Scene;
  * @author Abraham Murciano
  */
 public class PhongRayTracer extends RayTracer {
+	/** The maximum number of rays traced together as a packet. Pixels with more rays are traced in several packets. */
+	private static final int PACKET_SIZE = 16;
 
 	private int maxRecursionLevel;
 	private double minEffectCoefficient;
+	private boolean packets = true;
+	/** Each rendering thread reuses a single hit record for all the rays it traces. */
+	private final ThreadLocal<HitRecord> hits = ThreadLocal.withInitial(HitRecord::new);
+	/** Each rendering thread reuses the same hit records for all the packets it traces. */
+	private final ThreadLocal<HitRecord[]> packetHits = ThreadLocal.withInitial(() -> {
+		HitRecord[] hits = new HitRecord[PACKET_SIZE];
+		for (int i = 0; i < hits.length; ++i) {
+			hits[i] = new HitRecord();
+		}
+		return hits;
+	});
 
 	/**
 	 * Construct a new PhongRayTracer for the given scene.
@@ -38,17 +52,57 @@ public class PhongRayTracer extends RayTracer {
 		this.minEffectCoefficient = minEffectCoefficient;
 	}
 
+	/**
+	 * Choose whether the rays of each pixel are traced together as packets, which is the default. Otherwise each ray
+	 * is traced on its own. Either way the resulting colours are the same.
+	 *
+	 * @param packets Whether to trace packets of rays.
+	 * @return This ray tracer.
+	 */
+	public PhongRayTracer packets(boolean packets) {
+		this.packets = packets;
+		return this;
+	}
+
 	@Override
 	public Colour trace(Ray ray) {
 		return trace(ray, maxRecursionLevel, Factors.ONE);
 	}
 
+	/**
+	 * The rays through a pixel start close together and point in almost the same direction, so the closest
+	 * intersections of the rays from the camera are found for packets of up to {@value #PACKET_SIZE} rays together.
+	 * The colour at each intersection is then calculated for each ray on its own.
+	 */
+	@Override
+	public Colour trace(Ray... rays) {
+		if (!packets || rays.length == 1) {
+			return super.trace(rays);
+		}
+		Colour[] colours = new Colour[rays.length];
+		HitRecord[] hits = packetHits.get();
+		for (int start = 0; start < rays.length; start += PACKET_SIZE) {
+			Ray[] packet = rays.length <= PACKET_SIZE ? rays
+				: Arrays.copyOfRange(rays, start, Math.min(start + PACKET_SIZE, rays.length));
+			for (int i = 0; i < packet.length; ++i) {
+				hits[i].reset();
+			}
+			scene.accelerator().intersect(packet, hits);
+			for (int i = 0; i < packet.length; ++i) {
+				colours[start + i] = hits[i].found()
+					? colour(hits[i].intersection(), packet[i], maxRecursionLevel, Factors.ONE)
+					: scene.background;
+			}
+		}
+		return Colour.average(colours);
+	}
+
 	private Colour trace(Ray ray, int level, Factors effectCoefficient) {
-		List<Intersection> intersections = scene.geometries.intersect(ray);
-		if (intersections.isEmpty()) {
+		HitRecord hit = hits.get().reset();
+		if (!scene.accelerator().intersect(ray, hit)) {
 			return scene.background;
 		} else {
-			return colour(ray.closest(intersections), ray, level, effectCoefficient);
+			return colour(hit.intersection(), ray, level, effectCoefficient);
 		}
 	}
 
@@ -137,15 +191,7 @@ public class PhongRayTracer extends RayTracer {
 	 * @return the transparency the ray encounters between its source and the light source.
 	 */
 	private Factors transparency(LineSegment shadow) {
-		Factors transparency = Factors.ONE;
-		List<Intersection> blockers = scene.geometries.intersect(shadow);
-		for (Intersection blocker : blockers) {
-			transparency = transparency.scale(blocker.geometry.material.transparency);
-			if (transparency.lt(minEffectCoefficient)) {
-				return Factors.ZERO;
-			}
-		}
-		return transparency;
+		return scene.accelerator().transparency(shadow, Factors.ONE, minEffectCoefficient);
 	}
 
 }
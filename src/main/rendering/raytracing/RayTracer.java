@@ -33,7 +33,8 @@ public abstract class RayTracer {
 	public abstract Colour trace(Ray ray);
 
 	/**
-	 * Trace the given rays to calculate the average {@link Colour} the rays result in.
+	 * Trace the given rays to calculate the average {@link Colour} the rays result in. This is called with all the rays
+	 * through a single pixel, so subclasses may override it to take advantage of the rays being coherent.
 	 *
 	 * @param rays The rays to trace in the scene.
 	 * @return The {@link Colour} resulting from the trace of the ray.
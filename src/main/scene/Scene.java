@@ -1,8 +1,11 @@
 package scene;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import geometries.GeometryList;
+import geometries.Intersectible;
+import geometries.MeshFile;
 import lighting.AmbientLight;
 import lighting.LightSource;
 import primitives.Colour;
@@ -22,10 +25,16 @@ public class Scene {
 	public final AmbientLight ambient;
 	/** The collection of geometries in the scene. */
 	public final GeometryList geometries;
+	/**
+	 * The meshes which were left in their files rather than loaded into {@link #geometries}, so that they may be
+	 * streamed into the acceleration structure. They are only rendered if the acceleration structure includes them.
+	 */
+	public final List<MeshFile> meshes;
 	/** The light source of the scene. */
 	public final List<LightSource> lights;
 
 	private Camera camera;
+	private Intersectible accelerator;
 
 	/**
 	 * Constructor for the scene with no geometries.
@@ -48,11 +57,28 @@ public class Scene {
 	 */
 	public Scene(Colour background, AmbientLight ambient, GeometryList geometries, List<LightSource> lights,
 		Camera camera) {
+		this(background, ambient, geometries, Collections.emptyList(), lights, camera);
+	}
+
+	/**
+	 * Constructor for a scene with meshes which are still in their files.
+	 *
+	 * @param background The background colour of the scene.
+	 * @param ambient    The ambient colour of the scene.
+	 * @param geometries The geometries to initialise the scene with.
+	 * @param meshes     The meshes which were not loaded into the geometries.
+	 * @param lights     The list of light sources
+	 * @param camera     The camera to use to render the scene.
+	 */
+	public Scene(Colour background, AmbientLight ambient, GeometryList geometries, List<MeshFile> meshes,
+		List<LightSource> lights, Camera camera) {
 		this.background = background;
 		this.ambient = ambient;
 		this.geometries = geometries;
+		this.meshes = meshes;
 		this.lights = lights;
 		this.camera = camera;
+		this.accelerator = geometries;
 	}
 
 	/**
@@ -63,4 +89,25 @@ public class Scene {
 	public Camera camera() {
 		return camera;
 	}
+
+	/**
+	 * Get the {@link Intersectible} which rays should be traced against. This is {@link #geometries} itself, unless an
+	 * acceleration structure was set with {@link #accelerate(Intersectible)}.
+	 *
+	 * @return The {@link Intersectible} which rays should be traced against.
+	 */
+	public Intersectible accelerator() {
+		return accelerator;
+	}
+
+	/**
+	 * Trace rays against the given acceleration structure instead of directly against {@link #geometries}. The
+	 * acceleration structure must contain exactly the same geometries as {@link #geometries}, along with the triangles
+	 * of the {@link #meshes}.
+	 *
+	 * @param accelerator The acceleration structure built from {@link #geometries}.
+	 */
+	public void accelerate(Intersectible accelerator) {
+		this.accelerator = accelerator;
+	}
 }
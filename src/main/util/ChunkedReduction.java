@@ -0,0 +1,100 @@
+package util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Applies a function to consecutive chunks of a range of indices in parallel and combines the results. The range is
+ * always divided into the same chunks, and the results are always combined in the same order, so the result doesn't
+ * depend on the number of threads doing the work. When called from within a {@link ForkJoinPool} the chunks are
+ * processed by the threads of that pool.
+ *
+ * @param <T> The type of the result.
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class ChunkedReduction<T> extends RecursiveTask<T> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * A computation over a range of indices.
+	 *
+	 * @param <T> The type of the result.
+	 */
+	@FunctionalInterface
+	public static interface RangeFunction<T> {
+		/**
+		 * Compute the result for the given range.
+		 *
+		 * @param start The start of the range (inclusive).
+		 * @param end   The end of the range (exclusive).
+		 * @return The result for the range.
+		 */
+		T apply(int start, int end);
+	}
+
+	private final int start;
+	private final int end;
+	private final int chunkSize;
+	private final int first;
+	private final int last;
+	private final RangeFunction<T> function;
+	private final BinaryOperator<T> combine;
+
+	private ChunkedReduction(int start, int end, int chunkSize, int first, int last, RangeFunction<T> function,
+		BinaryOperator<T> combine) {
+		this.start = start;
+		this.end = end;
+		this.chunkSize = chunkSize;
+		this.first = first;
+		this.last = last;
+		this.function = function;
+		this.combine = combine;
+	}
+
+	/**
+	 * Apply a function to each chunk of the given range and combine the results. If the range fits in a single chunk
+	 * the function is applied directly on the calling thread.
+	 *
+	 * @param <T>       The type of the result.
+	 * @param start     The start of the range (inclusive).
+	 * @param end       The end of the range (exclusive).
+	 * @param chunkSize The number of indices in each chunk, except perhaps the last.
+	 * @param function  The function to apply to each chunk.
+	 * @param combine   A function to combine the results of two neighbouring ranges, the earlier one first.
+	 * @return The combined result of all the chunks.
+	 */
+	public static <T> T reduce(int start, int end, int chunkSize, RangeFunction<T> function,
+		BinaryOperator<T> combine) {
+		if (end - start <= chunkSize) {
+			return function.apply(start, end);
+		}
+		return new ChunkedReduction<>(start, end, chunkSize, 0, chunks(start, end, chunkSize), function, combine)
+			.invoke();
+	}
+
+	/**
+	 * Calculate the number of chunks a range is divided into.
+	 *
+	 * @param start     The start of the range (inclusive).
+	 * @param end       The end of the range (exclusive).
+	 * @param chunkSize The number of indices in each chunk, except perhaps the last.
+	 * @return The number of chunks.
+	 */
+	public static int chunks(int start, int end, int chunkSize) {
+		return (end - start + chunkSize - 1) / chunkSize;
+	}
+
+	@Override
+	protected T compute() {
+		if (last - first == 1) {
+			return function.apply(start + first * chunkSize, Math.min(end, start + last * chunkSize));
+		}
+		int mid = (first + last) >>> 1;
+		ChunkedReduction<T> left = new ChunkedReduction<>(start, end, chunkSize, first, mid, function, combine);
+		left.fork();
+		T right = new ChunkedReduction<>(start, end, chunkSize, mid, last, function, combine).compute();
+		return combine.apply(left.join(), right);
+	}
+}
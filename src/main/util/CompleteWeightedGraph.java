@@ -1,6 +1,7 @@
 package util;
 
 import java.util.HashSet;
+import java.util.PriorityQueue;
 import java.util.function.BiFunction;
 import java.util.NoSuchElementException;
 
@@ -8,21 +9,98 @@ import java.util.NoSuchElementException;
  * This class represents a complete weighted graph and provides an interface to add vertices and extract the edge with
  * minimal weight.
  *
+ * Rather than storing every edge, the graph keeps a priority queue holding one edge per vertex, from that vertex to its
+ * nearest neighbor, which is found when the vertex is added. When a vertex is extracted, the edges of the vertices
+ * whose nearest neighbor it was are left in the queue, and are only replaced by an edge to the new nearest neighbor
+ * when they reach the front of the queue. Every edge of the graph weighs at least as much as the queued edge of its
+ * more recently added (or replaced) vertex, so the first edge in the queue whose vertices are both still in the graph
+ * is always an edge of minimal weight. This needs linear memory, and the time is dominated by the searches for nearest
+ * neighbors, which may be sped up by providing a {@link NearestNeighbors} index.
+ *
  * @author Eli Levin
  * @author Abraham Murciano
  */
 public class CompleteWeightedGraph<V, W extends Comparable<W>> {
-	private final HashSet<Edge> edges = new HashSet<>();
+	private final PriorityQueue<Edge> edges = new PriorityQueue<>((e1, e2) -> e1.weight.compareTo(e2.weight));
 	private final HashSet<V> vertices = new HashSet<>();
 	private final BiFunction<V, V, W> getWeight;
+	private final NearestNeighbors<V> neighbors;
+
+	/**
+	 * An index of the vertices of a graph which finds the nearest neighbor of a vertex, which is the vertex the edge to
+	 * which has the minimal weight.
+	 *
+	 * @param <V> The type of the vertices.
+	 */
+	public static interface NearestNeighbors<V> {
+		/**
+		 * Add a vertex to the index.
+		 *
+		 * @param vertex The vertex to add.
+		 */
+		void add(V vertex);
+
+		/**
+		 * Remove a vertex from the index.
+		 *
+		 * @param vertex The vertex to remove, which must have been added.
+		 */
+		void remove(V vertex);
+
+		/**
+		 * Find the vertex in the index whose edge to the given vertex has the minimal weight.
+		 *
+		 * @param vertex The vertex whose nearest neighbor to find, which is in the index.
+		 * @return The nearest vertex other than the given vertex itself, or null if it is the only vertex in the index.
+		 */
+		V nearest(V vertex);
+	}
 
 	/**
 	 * Construct a complete weighted graph which uses the given function to compute weghts of edges between vertices.
+	 * Nearest neighbors are found by calculating the weights of the edges to every other vertex.
 	 *
 	 * @param getWeight A function which computes the weight between two given vertices.
 	 */
 	public CompleteWeightedGraph(BiFunction<V, V, W> getWeight) {
 		this.getWeight = getWeight;
+		this.neighbors = new NearestNeighbors<>() {
+			@Override
+			public void add(V vertex) {
+			}
+
+			@Override
+			public void remove(V vertex) {
+			}
+
+			@Override
+			public V nearest(V vertex) {
+				V nearest = null;
+				W min = null;
+				for (V other : vertices) {
+					if (other != vertex) {
+						W weight = getWeight.apply(vertex, other);
+						if (min == null || weight.compareTo(min) < 0) {
+							nearest = other;
+							min = weight;
+						}
+					}
+				}
+				return nearest;
+			}
+		};
+	}
+
+	/**
+	 * Construct a complete weighted graph which uses the given function to compute weghts of edges between vertices,
+	 * and the given index to find the nearest neighbors of vertices.
+	 *
+	 * @param getWeight A function which computes the weight between two given vertices.
+	 * @param neighbors An empty index which finds the nearest neighbors by the same weights.
+	 */
+	public CompleteWeightedGraph(BiFunction<V, V, W> getWeight, NearestNeighbors<V> neighbors) {
+		this.getWeight = getWeight;
+		this.neighbors = neighbors;
 	}
 
 	/**
@@ -40,16 +118,29 @@ public class CompleteWeightedGraph<V, W extends Comparable<W>> {
 	}
 
 	/**
-	 * Add a vertex to the complete graph, adding an edge to each existing vertex and calculating the weight of each of
-	 * these.
+	 * Construct a complete weighted graph with the given vertices, the given function which calculates the weights
+	 * between them, and the given index to find the nearest neighbors of vertices.
+	 *
+	 * @param vertices  The vertices to add to the graph.
+	 * @param getWeight A function which computes the weight between two given vertices.
+	 * @param neighbors An empty index which finds the nearest neighbors by the same weights.
+	 */
+	public CompleteWeightedGraph(Iterable<V> vertices, BiFunction<V, V, W> getWeight, NearestNeighbors<V> neighbors) {
+		this(getWeight, neighbors);
+		for (V vertex : vertices) {
+			add(vertex);
+		}
+	}
+
+	/**
+	 * Add a vertex to the complete graph, finding its nearest neighbor among the existing vertices.
 	 *
 	 * @param vertex The vertex to add to the graph.
 	 */
 	public void add(V vertex) {
-		for (V existing : vertices) {
-			edges.add(new Edge(existing, vertex)); // no edges with self
-		}
 		vertices.add(vertex);
+		neighbors.add(vertex);
+		enqueue(vertex);
 	}
 
 	/**
@@ -60,11 +151,34 @@ public class CompleteWeightedGraph<V, W extends Comparable<W>> {
 	 * @throws NoSuchElementException if the graph has no edges, i.e. when it has less than 2 vertices.
 	 */
 	public Edge extract() {
-		Edge min = edges.stream().min((e1, e2) -> e1.weight.compareTo(e2.weight)).get();
-		vertices.remove(min.vertex1);
-		vertices.remove(min.vertex2);
-		edges.removeIf(e -> e.contains(min.vertex1) || e.contains(min.vertex2));
-		return min;
+		while (!edges.isEmpty()) {
+			Edge min = edges.poll();
+			if (!vertices.contains(min.vertex1)) {
+				continue; // the edge of a vertex which was already extracted
+			}
+			if (!vertices.contains(min.vertex2)) {
+				enqueue(min.vertex1); // the nearest neighbor was extracted, so find the next nearest
+				continue;
+			}
+			vertices.remove(min.vertex1);
+			vertices.remove(min.vertex2);
+			neighbors.remove(min.vertex1);
+			neighbors.remove(min.vertex2);
+			return min;
+		}
+		throw new NoSuchElementException("Error: The graph has no edges.");
+	}
+
+	/**
+	 * Queue the edge from a vertex to its nearest neighbor, if it has any.
+	 *
+	 * @param vertex The vertex whose edge to queue.
+	 */
+	private void enqueue(V vertex) {
+		V nearest = neighbors.nearest(vertex);
+		if (nearest != null) {
+			edges.add(new Edge(vertex, nearest));
+		}
 	}
 
 	/**
@@ -18,14 +18,25 @@ import xml.factories.element.XmlSceneFactory;
  * @author Eli Levin
  */
 public class XmlSceneParser {
-	private static final XmlSceneFactory SCENE_FACTORY = new XmlSceneFactory();
 	private static final DocumentBuilderFactory DOC_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
 	private DocumentBuilder docBuilder;
+	private final XmlSceneFactory sceneFactory;
 
 	/**
-	 * Default constructor for the XML scene parser.
+	 * Default constructor for the XML scene parser, which loads the meshes into the geometries of the scene.
 	 */
 	public XmlSceneParser() {
+		this(false);
+	}
+
+	/**
+	 * Constructor for the XML scene parser.
+	 *
+	 * @param streamMeshes Whether the meshes are left in their files, in {@link Scene#meshes}, rather than loaded into
+	 *                     the geometries of the scene.
+	 */
+	public XmlSceneParser(boolean streamMeshes) {
+		sceneFactory = new XmlSceneFactory(streamMeshes);
 		// Security stuff
 		DOC_BUILDER_FACTORY.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
 		DOC_BUILDER_FACTORY.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
@@ -54,6 +65,6 @@ public class XmlSceneParser {
 			throw new XmlParserException(e);
 		}
 
-		return SCENE_FACTORY.create(root);
+		return sceneFactory.create(root);
 	}
 }
@@ -1,24 +1,29 @@
 package xml.factories.element;
 
+import java.util.List;
 import java.util.Map;
 import org.w3c.dom.Element;
 import geometries.GeometryList;
 import geometries.Geometry;
+import geometries.MeshFile;
 import xml.Util;
 import xml.XmlParserException;
 import static java.util.Map.entry;
 
 
 /**
- * Constructs a {@link GeometryList} object from an XML {@link Element}.
+ * Constructs a {@link GeometryList} object from an XML {@link Element}. The meshes may be left in their files and
+ * collected in a list instead, except for those of instances.
  *
  * @author Abraham Murciano
  * @author Eli Levin
  */
 public class XmlGeometriesFactory extends XmlFactoryFromElement<GeometryList> {
 	//@formatter:off
+	private static final XmlMeshFactory MESH_FACTORY = new XmlMeshFactory();
 	private static final Map<String, XmlFactoryFromElement<? extends Geometry>> FACTORIES = Map.ofEntries(
 		entry("cylinder", new XmlCylinderFactory()),
+		entry("mesh", MESH_FACTORY),
 		entry("plane", new XmlPlaneFactory()),
 		entry("polygon", new XmlPolygonFactory()),
 		entry("sphere", new XmlSphereFactory()),
@@ -27,6 +32,25 @@ public class XmlGeometriesFactory extends XmlFactoryFromElement<GeometryList> {
 	);
 	//@formatter:on
 
+	/** The list to add the files of the meshes to, or null if the meshes are loaded. */
+	private final List<MeshFile> meshes;
+
+	/**
+	 * Construct a factory which loads the meshes into the {@link GeometryList}.
+	 */
+	public XmlGeometriesFactory() {
+		this(null);
+	}
+
+	/**
+	 * Construct a factory which leaves the meshes in their files.
+	 *
+	 * @param meshes The list to add the files of the meshes to, or null to load the meshes.
+	 */
+	public XmlGeometriesFactory(List<MeshFile> meshes) {
+		this.meshes = meshes;
+	}
+
 	@Override
 	protected GeometryList createHelper(Element element) {
 		GeometryList geometries = new GeometryList();
@@ -34,6 +58,10 @@ public class XmlGeometriesFactory extends XmlFactoryFromElement<GeometryList> {
 			try {
 				if (child.getNodeName().equals("geometries")) {
 					geometries.add(create(child));
+				} else if (child.getNodeName().equals("instance")) {
+					geometries.add(new XmlInstanceFactory().create(child));
+				} else if (meshes != null && child.getNodeName().equals("mesh")) {
+					meshes.add(MESH_FACTORY.file(child));
 				} else {
 					geometries.add(FACTORIES.get(child.getNodeName()).create(child));
 				}
@@ -0,0 +1,62 @@
+package xml.factories.element;
+
+import java.util.List;
+import org.w3c.dom.Element;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.Instance;
+import math.matrices.Matrix;
+import math.matrices.RotationMatrix;
+import primitives.Vector;
+import xml.Util;
+import xml.XmlParserException;
+import xml.factories.attribute.XmlDoubleFactory;
+import xml.factories.attribute.XmlTripleFactory;
+
+
+/**
+ * Constructs {@link Instance}s of a shared object from an XML {@link Element}. The object is the {@code <geometries>}
+ * child of the element, which is optimized and compiled once, and each {@code <transform>} child places a copy of it
+ * in the scene. A transform rotates the object by its {@code pitch}, {@code yaw} and {@code roll} in degrees, then
+ * scales it by its {@code scale}, and then moves it by its {@code translation}, all of which are optional.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class XmlInstanceFactory extends XmlFactoryFromElement<GeometryList> {
+
+	private static final XmlTripleFactory<Vector> VECTOR_FACTORY = new XmlTripleFactory<>(Vector::new);
+	private static final XmlDoubleFactory DOUBLE_FACTORY = new XmlDoubleFactory();
+	private static final Vector NO_TRANSLATION = new Vector(0, 0, 0);
+
+	@Override
+	protected GeometryList createHelper(Element element) {
+		GeometryList object = new XmlGeometriesFactory().create(Util.getChild(element, "geometries"));
+		object.optimize();
+		FlatHierarchy shared = new FlatHierarchy(object);
+		List<Element> transforms = Util.getChildren(element, "transform");
+		if (transforms.isEmpty()) {
+			throw new XmlParserException("Child element \"transform\" is missing");
+		}
+		GeometryList instances = new GeometryList();
+		for (Element transform : transforms) {
+			double pitch = DOUBLE_FACTORY.create(transform, "pitch", 0d);
+			double yaw = DOUBLE_FACTORY.create(transform, "yaw", 0d);
+			double roll = DOUBLE_FACTORY.create(transform, "roll", 0d);
+			Matrix matrix = new RotationMatrix(toRadians(pitch), toRadians(yaw), toRadians(roll))
+				.scale(DOUBLE_FACTORY.create(transform, "scale", 1d));
+			Vector translation = VECTOR_FACTORY.create(transform, "translation", NO_TRANSLATION);
+			try {
+				instances.add(new Instance(shared, matrix, translation));
+			} catch (IllegalArgumentException e) {
+				throw new XmlParserException("Invalid <transform> of an instance.", e);
+			}
+		}
+		return instances;
+	}
+
+	private static double toRadians(double degrees) {
+		return degrees * Math.PI / 180;
+	}
+
+}
@@ -0,0 +1,62 @@
+package xml.factories.element;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.w3c.dom.Element;
+import geometries.MeshFile;
+import geometries.TriangleMesh;
+import xml.XmlParserException;
+
+
+/**
+ * Constructs a {@link TriangleMesh} from an XML {@link Element}, by loading the OBJ or PLY file given by its
+ * {@code file} attribute. A relative path is relative to the directory of the XML file.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class XmlMeshFactory extends XmlGeometryFactory {
+
+	@Override
+	protected TriangleMesh createHelper(Element element) {
+		MeshFile mesh = fileHelper(element);
+		try {
+			return mesh.load();
+		} catch (IOException e) {
+			throw new XmlParserException("Unable to load the mesh \"" + element.getAttribute("file") + "\".", e);
+		}
+	}
+
+	/**
+	 * Construct a {@link MeshFile} from an XML {@link Element}, without loading the file, so that the mesh may be
+	 * streamed from it later.
+	 *
+	 * @param element The XML {@link Element} representing the mesh.
+	 * @return The file of the mesh, and its material.
+	 * @throws XmlParserException if the element has no file, or its material is unable to be parsed.
+	 */
+	public MeshFile file(Element element) {
+		try {
+			return fileHelper(element);
+		} catch (XmlParserException e) {
+			e.addToTrace(element);
+			throw e;
+		}
+	}
+
+	private MeshFile fileHelper(Element element) {
+		String name = element.getAttribute("file");
+		if (name.isEmpty()) {
+			throw new XmlParserException("Attribute \"file\" is required.");
+		}
+		Path file = Paths.get(name);
+		String document = element.getOwnerDocument().getDocumentURI();
+		if (!file.isAbsolute() && document != null) {
+			file = Paths.get(URI.create(document)).resolveSibling(file);
+		}
+		return new MeshFile(file, material(element));
+	}
+
+}
@@ -4,13 +4,15 @@ import java.util.LinkedList;
 import java.util.List;
 import org.w3c.dom.Element;
 import geometries.Polygon;
+import geometries.Triangle;
 import primitives.Point;
 import xml.XmlParserException;
 import xml.factories.attribute.XmlTripleFactory;
 
 
 /**
- * Constructs a {@link Polygon} from an XML {@link Element}.
+ * Constructs a {@link Polygon} from an XML {@link Element}. A polygon with three vertices is constructed as a
+ * {@link Triangle}, which is faster to intersect.
  *
  * @author Abraham Murciano
  * @author Eli Levin
@@ -26,7 +28,9 @@ public class XmlPolygonFactory extends XmlGeometryFactory {
 			points.add(FACTORY.create(element, "p" + i));
 		}
 		try {
-			return new Polygon(material(element), points.toArray(new Point[0]));
+			Point[] vertices = points.toArray(new Point[0]);
+			return vertices.length == 3 ? new Triangle(material(element), vertices[0], vertices[1], vertices[2])
+				: new Polygon(material(element), vertices);
 		} catch (IllegalArgumentException e) {
 			throw new XmlParserException("The given points cannot form a valid convex polygon.", e);
 		}
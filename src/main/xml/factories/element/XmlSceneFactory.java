@@ -1,9 +1,11 @@
 package xml.factories.element;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.w3c.dom.Element;
 import geometries.GeometryList;
+import geometries.MeshFile;
 import lighting.AmbientLight;
 import lighting.LightSource;
 import primitives.Colour;
@@ -20,6 +22,26 @@ import xml.factories.attribute.XmlColourFactory;
  * @author Eli Levin
  */
 public class XmlSceneFactory extends XmlFactoryFromElement<Scene> {
+	/** Whether the meshes are left in their files, in {@link Scene#meshes}, rather than loaded. */
+	private final boolean streamMeshes;
+
+	/**
+	 * Construct a factory which loads the meshes into the geometries of the scene.
+	 */
+	public XmlSceneFactory() {
+		this(false);
+	}
+
+	/**
+	 * Construct a factory for scenes.
+	 *
+	 * @param streamMeshes Whether the meshes are left in their files, in {@link Scene#meshes}, so that they may be
+	 *                     streamed into the acceleration structure, rather than loaded into the geometries.
+	 */
+	public XmlSceneFactory(boolean streamMeshes) {
+		this.streamMeshes = streamMeshes;
+	}
+
 	@Override
 	protected Scene createHelper(Element element) {
 		Colour background = new XmlColourFactory().create(element, "background-colour");
@@ -31,7 +53,9 @@ public class XmlSceneFactory extends XmlFactoryFromElement<Scene> {
 			ambient = new AmbientLight(Colour.BLACK);
 		}
 
-		GeometryList geometries = new XmlGeometriesFactory().create(Util.getChild(element, "geometries"));
+		List<MeshFile> meshes = streamMeshes ? new ArrayList<>() : Collections.emptyList();
+		GeometryList geometries = new XmlGeometriesFactory(streamMeshes ? meshes : null)
+			.create(Util.getChild(element, "geometries"));
 
 		List<LightSource> lights =
 			Util.hasChild(element, "lights") ? new XmlLightSourcesFactory().create(Util.getChild(element, "lights"))
@@ -44,6 +68,6 @@ public class XmlSceneFactory extends XmlFactoryFromElement<Scene> {
 			camera = new Camera();
 		}
 
-		return new Scene(background, ambient, geometries, lights, camera);
+		return new Scene(background, ambient, geometries, meshes, lights, camera);
 	}
 }
@@ -0,0 +1,142 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import geometries.CompressedHierarchy;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.GeometryPages;
+import geometries.HitRecord;
+import geometries.Intersectible;
+import geometries.OffHeapHierarchy;
+import geometries.Sphere;
+import geometries.WideHierarchy;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+
+/**
+ * Compares the memory taken by the hierarchy of a generated scene of random spheres, and the time taken to find the
+ * closest intersections of random rays with it, between the {@link GeometryList} hierarchy, the
+ * {@link FlatHierarchy}, the {@link WideHierarchy}, the {@link CompressedHierarchy}, and the
+ * {@link OffHeapHierarchy}, both in direct buffers and in a memory mapped file of which only a limited number of
+ * megabytes may be mapped at once. The memory is measured as the growth of the used heap after garbage collection,
+ * and of the direct buffers, so the benchmark should be run with a heap large enough for all of them, such as
+ * {@code -Xmx4g} for a million spheres. The garbage collections during the intersections are counted too. Finally,
+ * the heap is measured again after the spheres are released, which only the off heap hierarchy allows.
+ *
+ * Usage: {@code CompressedHierarchyBenchmark [spheres] [rays] [megabytes]}
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class CompressedHierarchyBenchmark {
+	/**
+	 * Run the benchmark.
+	 *
+	 * @param args The number of spheres, which is a million by default, the number of rays, which is a million by
+	 *             default, and the budget of the memory mapped file in megabytes, which is 16 by default.
+	 * @throws IOException if the memory mapped file cannot be created.
+	 */
+	public static void main(String[] args) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int rayCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		long budget = (args.length > 2 ? Long.parseLong(args[2]) : 16) << 20;
+		Random random = new Random(0);
+		double size = 10 * Math.cbrt(count); // about one sphere in every thousand cubic units
+		GeometryList geometries = new GeometryList();
+		for (int i = 0; i < count; ++i) {
+			geometries.add(new Sphere(null,
+				new Point(random.nextDouble() * size, random.nextDouble() * size, random.nextDouble() * size),
+				0.5 + random.nextDouble() * 1.5));
+		}
+		List<Ray> rays = new ArrayList<>();
+		for (int i = 0; i < rayCount; ++i) {
+			Point start = new Point(random.nextDouble() * size, random.nextDouble() * size, random.nextDouble() * size);
+			rays.add(new Ray(start,
+				new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5)));
+		}
+
+		long before = usedMemory();
+		geometries.optimize();
+		report("binary tree of lists", usedMemory() - before, count);
+		measure("flat", () -> new FlatHierarchy(geometries), count, rays);
+		measure("wide", () -> new WideHierarchy(geometries), count, rays);
+		measure("compressed", () -> new CompressedHierarchy(geometries), count, rays);
+		Intersectible offHeap = measure("off heap", () -> new OffHeapHierarchy(geometries), count, rays);
+		try (GeometryPages pages = new GeometryPages(budget)) {
+			measure("paged", () -> new OffHeapHierarchy(geometries, pages), count, rays);
+			System.out.print(pages);
+		}
+		before = usedMemory();
+		geometries.clear();
+		System.out.printf("releasing the spheres and the binary tree freed %.1f MB of heap%n",
+			(before - usedMemory()) / 1e6);
+		time(offHeap, rays);
+	}
+
+	private static Intersectible measure(String name, Supplier<Intersectible> compile, int count, List<Ray> rays) {
+		long before = usedMemory(), directBefore = directMemory();
+		Intersectible hierarchy = compile.get();
+		report(name, usedMemory() - before, count);
+		long direct = directMemory() - directBefore;
+		if (direct > 0) {
+			report(name + " (direct buffers)", direct, count);
+		}
+		time(hierarchy, rays);
+		return hierarchy;
+	}
+
+	private static void time(Intersectible hierarchy, List<Ray> rays) {
+		HitRecord hit = new HitRecord();
+		for (int repetition = 0; repetition < 3; ++repetition) {
+			long collections = collections();
+			long start = System.nanoTime();
+			int hits = 0;
+			for (Ray ray : rays) {
+				if (hierarchy.intersect(ray, hit.reset())) {
+					++hits;
+				}
+			}
+			long time = System.nanoTime() - start;
+			System.out.printf("  %d ms, %d hits, %d garbage collections%n", time / 1000000, hits,
+				collections() - collections);
+		}
+	}
+
+	private static void report(String name, long bytes, int count) {
+		System.out.printf("%s: %.1f MB, %.1f bytes per sphere%n", name, bytes / 1e6, (double) bytes / count);
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long collections() {
+		long collections = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collections += collector.getCollectionCount();
+		}
+		return collections;
+	}
+
+	private static long directMemory() {
+		long used = 0;
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				used += pool.getMemoryUsed();
+			}
+		}
+		return used;
+	}
+}
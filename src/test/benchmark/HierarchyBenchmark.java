@@ -0,0 +1,64 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import geometries.FlatHierarchy;
+import geometries.HitRecord;
+import geometries.Intersectible;
+import geometries.WideHierarchy;
+import primitives.Ray;
+import scene.Scene;
+import scene.camera.Pixel;
+import xml.XmlSceneParser;
+
+/**
+ * Compares the time taken to find the closest intersections of the camera rays of a scene with the binary
+ * {@link FlatHierarchy} and with the {@link WideHierarchy}. Only the visibility of the camera rays is measured, without
+ * any shading, so the difference is not hidden by the rest of the rendering.
+ *
+ * Usage: {@code HierarchyBenchmark <scene.xml> [repetitions]}
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class HierarchyBenchmark {
+	/**
+	 * Run the benchmark.
+	 *
+	 * @param args The path of the XML file of the scene, optionally followed by the number of repetitions.
+	 * @throws IOException if the scene cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: HierarchyBenchmark <scene.xml> [repetitions]");
+			System.exit(1);
+		}
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Scene scene = new XmlSceneParser().parse(args[0]);
+		scene.geometries.optimize();
+		List<Ray> rays = new ArrayList<>();
+		for (Iterator<Pixel<Ray[]>> pixels = scene.camera().iterator(); pixels.hasNext();) {
+			rays.addAll(List.of(pixels.next().data));
+		}
+
+		Intersectible flat = new FlatHierarchy(scene.geometries);
+		Intersectible wide = new WideHierarchy(scene.geometries);
+		HitRecord hit = new HitRecord();
+		System.out.printf("%d rays%n", rays.size());
+		for (int repetition = 0; repetition < repetitions; ++repetition) {
+			long flatTime = time(flat, rays, hit);
+			long wideTime = time(wide, rays, hit);
+			System.out.printf("binary: %d ms, wide: %d ms%n", flatTime / 1000000, wideTime / 1000000);
+		}
+	}
+
+	private static long time(Intersectible hierarchy, List<Ray> rays, HitRecord hit) {
+		long start = System.nanoTime();
+		for (Ray ray : rays) {
+			hierarchy.intersect(ray, hit.reset());
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import geometries.Geometry;
+import geometries.HitRecord;
+import primitives.Ray;
+import scene.Scene;
+import scene.camera.Pixel;
+import xml.XmlSceneParser;
+
+/**
+ * Measures the time taken to intersect the camera rays of a scene with each of its geometries, grouped by the class of
+ * the geometry, both by finding the closest intersection in a {@link HitRecord} and by listing all the intersections as
+ * shadow rays do. Every ray is tested against every geometry, without a hierarchy, so the times are those of the
+ * intersection calculations themselves.
+ *
+ * Usage: {@code PrimitiveBenchmark <scene.xml> [repetitions]}
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class PrimitiveBenchmark {
+	/**
+	 * Run the benchmark.
+	 *
+	 * @param args The path of the XML file of the scene, optionally followed by the number of repetitions.
+	 * @throws IOException if the scene cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: PrimitiveBenchmark <scene.xml> [repetitions]");
+			System.exit(1);
+		}
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Scene scene = new XmlSceneParser().parse(args[0]);
+		List<Ray> rays = new ArrayList<>();
+		for (Iterator<Pixel<Ray[]>> pixels = scene.camera().iterator(); pixels.hasNext();) {
+			rays.addAll(List.of(pixels.next().data));
+		}
+		Map<Class<?>, List<Geometry>> classes = new LinkedHashMap<>();
+		for (Geometry geometry : scene.geometries) {
+			classes.computeIfAbsent(geometry.getClass(), __ -> new ArrayList<>()).add(geometry);
+		}
+
+		HitRecord hit = new HitRecord();
+		System.out.printf("%d rays%n", rays.size());
+		for (int repetition = 0; repetition < repetitions; ++repetition) {
+			for (Map.Entry<Class<?>, List<Geometry>> entry : classes.entrySet()) {
+				List<Geometry> geometries = entry.getValue();
+				double tests = (double) rays.size() * geometries.size();
+				long start = System.nanoTime();
+				for (Ray ray : rays) {
+					for (Geometry geometry : geometries) {
+						geometry.intersect(ray, hit.reset());
+					}
+				}
+				long closest = System.nanoTime() - start;
+				start = System.nanoTime();
+				for (Ray ray : rays) {
+					for (Geometry geometry : geometries) {
+						geometry.intersect(ray);
+					}
+				}
+				long all = System.nanoTime() - start;
+				System.out.printf("%s: closest %.1f ns, all %.1f ns%n", entry.getKey().getSimpleName(),
+					closest / tests, all / tests);
+			}
+		}
+	}
+}
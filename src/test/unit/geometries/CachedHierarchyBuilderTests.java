@@ -0,0 +1,120 @@
+package unit.geometries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.CachedHierarchyBuilder;
+import geometries.FlatHierarchy;
+import geometries.Geometry;
+import geometries.GeometryList;
+import geometries.SahHierarchyBuilder;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Point;
+
+/**
+ * Tests the methods of the CachedHierarchyBuilder class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class CachedHierarchyBuilderTests {
+	/** The size of the magic number and the hash at the start of the file. */
+	private static final int HEADER_SIZE = 36;
+	/** The size of a node with a single child node. */
+	private static final int NODE_SIZE = 56;
+	/** The depth of the nodes in the corrupt file. */
+	private static final int DEPTH = 1 << 20;
+
+	/**
+	 * Tests that a hierarchy is loaded from the file only if it was built from the same geometries, and that the
+	 * loaded hierarchy is the same as the one which was built.
+	 *
+	 * @throws IOException if the temporary file could not be created.
+	 */
+	@Test
+	public void testBuild() throws IOException {
+		Path file = Files.createTempFile("hierarchy", ".bvh");
+		try {
+			Files.delete(file);
+			CachedHierarchyBuilder builder = new CachedHierarchyBuilder(new SahHierarchyBuilder(), file);
+			GeometryList built = FlatHierarchyTests.scene();
+			built.optimize(builder);
+			Assert.assertFalse("Loaded a hierarchy which was never saved.", builder.loaded());
+
+			GeometryList loaded = FlatHierarchyTests.scene();
+			loaded.optimize(builder);
+			Assert.assertTrue("Didn't load the saved hierarchy.", builder.loaded());
+			Assert.assertEquals("The loaded hierarchy is different.", new FlatHierarchy(built).cost(),
+				new FlatHierarchy(loaded).cost(), 0);
+			Iterator<Geometry> expected = built.iterator();
+			Iterator<Geometry> actual = loaded.iterator();
+			while (expected.hasNext()) {
+				Assert.assertEquals("The loaded hierarchy is different.", expected.next().boundary(),
+					actual.next().boundary());
+			}
+
+			// Different geometries
+			GeometryList changed = FlatHierarchyTests.scene();
+			changed.add(new Sphere(null, new Point(100, 100, 100), 1));
+			changed.optimize(builder);
+			Assert.assertFalse("Loaded a hierarchy built from different geometries.", builder.loaded());
+
+			// A vertex moved without changing the boundary of the triangle
+			GeometryList moved = FlatHierarchyTests.scene();
+			moved.add(new Triangle(null, new Point(0, 0, 50), new Point(2, 0, 50), new Point(0, 2, 51)));
+			moved.optimize(builder);
+			moved = FlatHierarchyTests.scene();
+			moved.add(new Triangle(null, new Point(0, 0, 50), new Point(2, 0, 51), new Point(0, 2, 50)));
+			moved.optimize(builder);
+			Assert.assertFalse("Loaded a hierarchy built from a different triangle.", builder.loaded());
+
+			// Corrupt file
+			Files.write(file, new byte[] { 1, 2, 3 });
+			FlatHierarchyTests.scene().optimize(builder);
+			Assert.assertFalse("Loaded a corrupt hierarchy.", builder.loaded());
+
+			// Nodes nested deeper than the call stack, in a file with the right header
+			ByteBuffer nested = ByteBuffer.allocate(HEADER_SIZE + DEPTH * NODE_SIZE);
+			nested.put(Arrays.copyOf(Files.readAllBytes(file), HEADER_SIZE));
+			for (int i = 0; i < DEPTH; ++i) {
+				nested.putDouble(0).putDouble(0).putDouble(0).putDouble(1).putDouble(1).putDouble(1);
+				nested.putInt(1).putInt(-1); // a single child, which is a node
+			}
+			Files.write(file, nested.array());
+			FlatHierarchyTests.scene().optimize(builder);
+			Assert.assertFalse("Loaded a corrupt hierarchy.", builder.loaded());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Tests that a hierarchy which can't be saved is still built and used.
+	 *
+	 * @throws IOException if the temporary directory could not be created.
+	 */
+	@Test
+	public void testUnwritable() throws IOException {
+		Path directory = Files.createTempDirectory("hierarchy");
+		try {
+			Path file = directory.resolve("missing").resolve("hierarchy.bvh");
+			CachedHierarchyBuilder builder = new CachedHierarchyBuilder(new SahHierarchyBuilder(), file);
+			GeometryList expected = FlatHierarchyTests.scene();
+			expected.optimize(new SahHierarchyBuilder());
+			GeometryList built = FlatHierarchyTests.scene();
+			built.optimize(builder);
+			Assert.assertFalse("Loaded a hierarchy which was never saved.", builder.loaded());
+			Assert.assertFalse("Saved a hierarchy into a missing directory.", Files.exists(file));
+			Assert.assertEquals("The hierarchy which wasn't saved is different.", new FlatHierarchy(expected).cost(),
+				new FlatHierarchy(built).cost(), 0);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+}
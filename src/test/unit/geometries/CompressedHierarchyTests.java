@@ -0,0 +1,80 @@
+package unit.geometries;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.CompressedHierarchy;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.Intersection;
+import geometries.Polygon;
+import geometries.Sphere;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the CompressedHierarchy class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class CompressedHierarchyTests {
+
+	/**
+	 * Tests that the compressed hierarchy finds exactly the same intersections as the binary hierarchy it was compiled
+	 * from, despite the rounding of its boxes.
+	 */
+	@Test
+	public void testIntersect() {
+		GeometryList geometries = FlatHierarchyTests.scene();
+		geometries.add(new Polygon(null, new Point(-5, -5, -12), new Point(5, -5, -12), new Point(5, 5, -12),
+			new Point(-5, 5, -12)));
+		geometries.optimize();
+		assertLikeBinary(geometries, new Point(-10, -10, 10), 40, new Random(0));
+
+		// Spheres far from the origin compared to their size, whose boxes are rounded to steps of a few thousandths
+		geometries = new GeometryList();
+		Random random = new Random(1);
+		for (int i = 0; i < 300; ++i) {
+			geometries.add(new Sphere(null,
+				new Point(1000 + random.nextDouble(), 1000 + random.nextDouble(), random.nextDouble()), 0.05));
+		}
+		geometries.optimize();
+		assertLikeBinary(geometries, new Point(1000, 1000, 10), 1, random);
+
+		// Empty hierarchy
+		CompressedHierarchy compressed = new CompressedHierarchy(new GeometryList());
+		Assert.assertTrue("Empty hierarchy returned intersections.",
+			compressed.intersect(new Ray(Point.ORIGIN, NormalizedVector.I)).isEmpty());
+		Assert.assertNull("Empty hierarchy found an intersection.",
+			compressed.closestIntersection(new Ray(Point.ORIGIN, NormalizedVector.I)));
+
+		// Geometries beyond the range of floats
+		GeometryList far = new GeometryList(new Sphere(null, new Point(1e39, 0, 0), 1));
+		far.optimize();
+		Assert.assertThrows("Compressed geometries which are too far from the origin.", IllegalArgumentException.class,
+			() -> new CompressedHierarchy(far));
+	}
+
+	/**
+	 * Compare the intersections of random line segments starting in a square above the geometries with those of the
+	 * binary hierarchy.
+	 */
+	private static void assertLikeBinary(GeometryList geometries, Point corner, double size, Random random) {
+		FlatHierarchy binary = new FlatHierarchy(geometries);
+		CompressedHierarchy compressed = new CompressedHierarchy(geometries);
+		for (LineSegment line : RandomLines.lines(1000, 150,
+			i -> new Point(corner.x + random.nextDouble() * size, corner.y + random.nextDouble() * size, corner.z),
+			i -> new NormalizedVector((random.nextDouble() - 0.5) * size / 10, (random.nextDouble() - 0.5) * size / 10,
+				-random.nextDouble() * 10))) {
+			RandomLines.assertSameIntersections("Compressed hierarchy", binary, compressed, line);
+			Intersection expected = binary.closestIntersection(line);
+			Intersection actual = compressed.closestIntersection(line);
+			Assert.assertEquals("Compressed hierarchy found the wrong geometry.",
+				expected == null ? null : expected.geometry, actual == null ? null : actual.geometry);
+		}
+	}
+}
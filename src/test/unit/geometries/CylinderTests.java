@@ -1,14 +1,22 @@
 package unit.geometries;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
 import geometries.Cylinder;
+import geometries.GeometryList;
+import geometries.Intersection;
+import geometries.Triangle;
+import primitives.LineSegment;
 import primitives.NormalizedVector;
 import primitives.Point;
 import primitives.Ray;
 import unit.geometries.util.NormalCompare;
 import unit.geometries.util.PointExtractor;
+import unit.geometries.util.RandomLines;
 
 /**
  * Tests the methods of the Polygon class.
@@ -177,4 +185,66 @@ public class CylinderTests {
 		Assert.assertEquals("Starts outside and hist corner near base", Set.of(new Point(0, 1, 0)),
 			PointExtractor.extractPoints(cyl.intersect(ray)));
 	}
+
+	/**
+	 * Tests that the closest intersection recorded in a hit record is the closest of all the intersections, and that
+	 * line segments only intersect the cylinder before their end.
+	 */
+	@Test
+	public void testClosestIntersection() {
+		Cylinder cyl = new Cylinder(null, new Ray(new Point(1, 0, 0), new NormalizedVector(1, 1, 1)), Math.sqrt(2),
+			5 * Math.sqrt(3));
+		Random random = new Random(0);
+		for (LineSegment line : RandomLines.lines(1000, 6,
+			i -> new Point(random.nextDouble() * 12 - 4, random.nextDouble() * 12 - 4, random.nextDouble() * 12 - 4),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+				random.nextDouble() - 0.5))) {
+			List<Intersection> intersections = cyl.intersect(line);
+			for (Intersection intersection : intersections) {
+				Assert.assertTrue("Intersection beyond the end of the line segment.",
+					line.withinDistance(line.start.distance(intersection.point)));
+			}
+			Point expected = intersections.stream().map(intersection -> intersection.point)
+				.min(Comparator.comparingDouble(line.start::distance)).orElse(null);
+			Intersection actual = cyl.closestIntersection(line);
+			Assert.assertEquals("Wrong closest intersection.", expected, actual == null ? null : actual.point);
+		}
+	}
+
+	/**
+	 * Tests that the bounding box of a tilted cylinder is exactly the box of its lids, which extend from their centers
+	 * by the radius times {@code sqrt(1 - a*a)} along each axis, where {@code a} is the component of the axis of the
+	 * cylinder, and that rays which pass just outside the sphere bounding the cylinder miss it.
+	 */
+	@Test
+	public void testBoundary() {
+		Point start = new Point(1, 2, 3);
+		NormalizedVector axis = new NormalizedVector(1, 2, 2);
+		double radius = 3, height = 6;
+		Cylinder cyl = new Cylinder(null, new Ray(start, axis), radius, height);
+
+		Point end = start.add(axis.scale(height));
+		double x = radius * Math.sqrt(1 - axis.x * axis.x);
+		double y = radius * Math.sqrt(1 - axis.y * axis.y);
+		double z = radius * Math.sqrt(1 - axis.z * axis.z);
+		Point min = new Point(Math.min(start.x, end.x) - x, Math.min(start.y, end.y) - y, Math.min(start.z, end.z) - z);
+		Point max = new Point(Math.max(start.x, end.x) + x, Math.max(start.y, end.y) + y, Math.max(start.z, end.z) + z);
+		// boxes are only compared by their surface area, so the box of the cylinder is the expected box if it has the
+		// same surface area and does not grow the expected box when they are combined
+		Triangle expected = new Triangle(null, min, max, new Point(min.x, min.y, max.z));
+		Assert.assertEquals("Wrong bounding box.", expected.boundary(), cyl.boundary());
+		Assert.assertEquals("Wrong bounding box.", expected.boundary(), new GeometryList(cyl, expected).boundary());
+
+		// the bounding sphere is centered at (2, 4, 5) and passes through the edge of the top lid at (5, 4, 8), where
+		// its normal is (1, 0, 1) and the line in the direction (2, 1, -2) is tangent to both the sphere and the lid
+		NormalizedVector normal = new NormalizedVector(1, 0, 1);
+		NormalizedVector tangent = new NormalizedVector(2, 1, -2);
+		Point edge = new Point(5, 4, 8);
+		Ray outside = new Ray(edge.add(normal.scale(0.01)).subtract(tangent.scale(10)), tangent);
+		Assert.assertTrue("Ray outside the bounding sphere intersects.", cyl.intersect(outside).isEmpty());
+		Assert.assertNull("Ray outside the bounding sphere intersects.", cyl.closestIntersection(outside));
+		Ray inside = new Ray(edge.subtract(normal.scale(0.01)).subtract(tangent.scale(10)), tangent);
+		Assert.assertEquals("Ray inside the bounding sphere misses.", 2, cyl.intersect(inside).size());
+		Assert.assertNotNull("Ray inside the bounding sphere misses.", cyl.closestIntersection(inside));
+	}
 }
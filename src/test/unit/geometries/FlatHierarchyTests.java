@@ -0,0 +1,233 @@
+package unit.geometries;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.HierarchyBuilder;
+import geometries.HierarchyStatistics;
+import geometries.HitRecord;
+import geometries.Intersectible;
+import geometries.Intersection;
+import geometries.MortonHierarchyBuilder;
+import geometries.Plane;
+import geometries.SahHierarchyBuilder;
+import geometries.Sphere;
+import geometries.TraversalStatistics;
+import geometries.TraversalStatistics.RayType;
+import geometries.Triangle;
+import primitives.Colour;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Material;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the FlatHierarchy class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class FlatHierarchyTests {
+
+	/**
+	 * Tests that the compiled hierarchy finds exactly the same intersections as the hierarchy it was compiled from.
+	 */
+	@Test
+	public void testIntersect() {
+		GeometryList geometries = scene();
+		geometries.optimize();
+		FlatHierarchy hierarchy = new FlatHierarchy(geometries);
+		Random random = new Random(0);
+		for (LineSegment line : RandomLines.lines(500, 100,
+			i -> new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10, 10),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble()))) {
+			RandomLines.assertSameIntersections("Compiled hierarchy", geometries, hierarchy, line);
+		}
+
+		// Empty hierarchy
+		hierarchy = new FlatHierarchy(new GeometryList());
+		Assert.assertTrue("Empty hierarchy returned intersections.",
+			hierarchy.intersect(new Ray(Point.ORIGIN, NormalizedVector.I)).isEmpty());
+	}
+
+	/**
+	 * Tests that the closest intersection found by traversing front to back is the closest of all the intersections.
+	 */
+	@Test
+	public void testClosestIntersection() {
+		GeometryList geometries = scene();
+		geometries.optimize();
+		FlatHierarchy hierarchy = new FlatHierarchy(geometries);
+		Random random = new Random(1);
+		for (LineSegment line : RandomLines.lines(500, 100,
+			i -> new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10, 10),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble()))) {
+			List<Intersection> intersections = geometries.intersect(line);
+			Point expected = intersections.isEmpty() ? null : line.closest(intersections).point;
+			Intersection closest = hierarchy.closestIntersection(line);
+			Assert.assertEquals("Compiled hierarchy found the wrong closest intersection.", expected,
+				closest == null ? null : closest.point);
+			closest = geometries.closestIntersection(line);
+			Assert.assertEquals("Hierarchy found the wrong closest intersection.", expected,
+				closest == null ? null : closest.point);
+		}
+	}
+
+	/**
+	 * Tests that the light passing through the hierarchy is attenuated once per intersection, and blocked entirely by
+	 * opaque geometries.
+	 */
+	@Test
+	public void testTransparency() {
+		Material glass = new Material(Colour.BLACK, 0, Factors.ZERO, Factors.ZERO, Factors.ZERO, Factors.ZERO,
+			new Factors(0.5));
+		Material stone = new Material(Colour.BLACK, 0, Factors.ZERO, Factors.ZERO, Factors.ZERO, Factors.ZERO,
+			Factors.ZERO);
+		GeometryList geometries = new GeometryList(new Sphere(glass, new Point(0, 0, 20), 1),
+			new Sphere(glass, new Point(0, 0, 30), 1), new Sphere(stone, new Point(0, 5, 20), 1));
+		for (int x = 1; x < 10; ++x) {
+			geometries.add(new Sphere(stone, new Point(3 * x, 0, 20), 1));
+		}
+		geometries.optimize();
+		FlatHierarchy hierarchy = new FlatHierarchy(geometries);
+		for (Intersectible intersectible : new Intersectible[] { geometries, hierarchy }) {
+			// Through both glass spheres, each intersected twice
+			Factors transparency = intersectible.transparency(new LineSegment(new Point(0, 0, 40), new Point(0, 0, 10)),
+				Factors.ONE, 0.01);
+			Assert.assertTrue("Wrong transparency through transparent geometries.",
+				!transparency.lt(0.0624) && transparency.lt(0.0626));
+			// Through the glass spheres, but stopping once the light is weak enough
+			transparency = intersectible.transparency(new LineSegment(new Point(0, 0, 40), new Point(0, 0, 10)),
+				Factors.ONE, 0.1);
+			Assert.assertTrue("Transparency below the threshold should be zero.", transparency.lt(Double.MIN_VALUE));
+			// Through the opaque sphere
+			transparency = intersectible.transparency(new LineSegment(new Point(0, 5, 40), new Point(0, 5, 10)),
+				Factors.ONE, 0.01);
+			Assert.assertTrue("Opaque geometries should block all the light.", transparency.lt(Double.MIN_VALUE));
+			// Nothing in the way
+			transparency = intersectible.transparency(new LineSegment(new Point(0, 10, 40), new Point(0, 10, 10)),
+				Factors.ONE, 0.01);
+			Assert.assertFalse("Light should not be blocked when nothing is in the way.", transparency.lt(1));
+		}
+	}
+
+	/**
+	 * Tests that the estimated cost of a hierarchy is lower than that of a flat list of the same geometries, and that
+	 * the cost of a flat list is the cost of visiting it plus the cost of intersecting each of its geometries.
+	 */
+	@Test
+	public void testCost() {
+		GeometryList geometries = scene();
+		double flat = new FlatHierarchy(geometries).cost();
+		Assert.assertEquals("Wrong cost of a flat list.", 302, flat, 1e-9);
+		for (HierarchyBuilder builder : new HierarchyBuilder[] { new SahHierarchyBuilder(),
+			new MortonHierarchyBuilder() }) {
+			geometries = scene();
+			geometries.optimize(builder);
+			Assert.assertTrue("The hierarchy should be cheaper than a flat list.",
+				new FlatHierarchy(geometries).cost() < flat);
+		}
+	}
+
+	/**
+	 * Tests the summary of the shape of the hierarchy, and the counting of the work done by rays.
+	 */
+	@Test
+	public void testStatistics() {
+		GeometryList geometries = scene();
+		geometries.optimize();
+		FlatHierarchy hierarchy = new FlatHierarchy(geometries);
+		HierarchyStatistics statistics = hierarchy.statistics();
+		Assert.assertEquals("Wrong number of primitives.", 301, statistics.primitives);
+		int leaves = 0;
+		for (int size = 0; size <= statistics.primitives; ++size) {
+			leaves += statistics.leaves(size);
+		}
+		Assert.assertEquals("The leaf sizes don't add up to the number of leaves.", statistics.leaves, leaves);
+		Assert.assertTrue("Wrong depth.", statistics.averageDepth <= statistics.maxDepth && statistics.maxDepth > 0);
+		Assert.assertEquals("Wrong cost.", hierarchy.cost(), statistics.cost, 0);
+
+		TraversalStatistics counters = new TraversalStatistics();
+		hierarchy.count(counters);
+		hierarchy.closestIntersection(new Ray(new Point(0, 0, 10), NormalizedVector.K.reversed()));
+		hierarchy.closestIntersection(new Ray(new Point(1, 1, 10), NormalizedVector.K.reversed()));
+		hierarchy.intersects(new LineSegment(new Point(0, 0, 10), new Point(0, 0, -30)));
+		Assert.assertEquals("Wrong number of primary rays.", 2, counters.rays(RayType.PRIMARY));
+		Assert.assertEquals("Wrong number of shadow rays.", 1, counters.rays(RayType.SHADOW));
+		Assert.assertTrue("No primitives were tested.", counters.primitiveTests(RayType.PRIMARY) > 0);
+		Assert.assertTrue("Visited more nodes than bounding boxes tested.",
+			counters.nodes(RayType.SHADOW) <= counters.boxTests(RayType.SHADOW));
+		long tests = 0;
+		for (long[] type : counters.primitiveTypes().values()) {
+			Assert.assertTrue("More false positives than tests.", type[1] <= type[0]);
+			tests += type[0];
+		}
+		Assert.assertEquals("The tests of each type of primitive don't add up to the primitive tests.",
+			counters.primitiveTests(RayType.PRIMARY) + counters.primitiveTests(RayType.SHADOW), tests);
+		hierarchy.count(null);
+		hierarchy.closestIntersection(new Ray(new Point(0, 0, 10), NormalizedVector.K.reversed()));
+		Assert.assertEquals("Counted a ray after counting was stopped.", 2, counters.rays(RayType.PRIMARY));
+	}
+
+	/**
+	 * Tests that tracing packets of line segments finds the same closest intersections as tracing each line segment on
+	 * its own, both for coherent packets and for packets which diverge.
+	 */
+	@Test
+	public void testPacket() {
+		GeometryList geometries = scene();
+		geometries.optimize();
+		FlatHierarchy hierarchy = new FlatHierarchy(geometries);
+		Random random = new Random(3);
+		HitRecord[] hits = new HitRecord[16];
+		for (int i = 0; i < hits.length; ++i) {
+			hits[i] = new HitRecord();
+		}
+		for (int i = 0; i < 500; ++i) {
+			Point start = new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10, 10);
+			double spread = i % 2 == 0 ? 0.01 : 1; // most of the wide packets diverge
+			NormalizedVector direction =
+				new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble());
+			LineSegment[] packet = new LineSegment[1 + random.nextInt(hits.length)];
+			for (int j = 0; j < packet.length; ++j) {
+				Point jittered = start.add(new Vector(random.nextDouble() * spread, random.nextDouble() * spread, 0));
+				NormalizedVector jitteredDirection = direction.add(new Vector(random.nextDouble() * spread,
+					random.nextDouble() * spread, random.nextDouble() * spread)).normalized();
+				packet[j] = j % 3 == 0 ? new LineSegment(jittered, jitteredDirection, 200)
+					: new Ray(jittered, jitteredDirection);
+				hits[j].reset();
+			}
+			hierarchy.intersect(packet, hits);
+			for (int j = 0; j < packet.length; ++j) {
+				Intersection expected = hierarchy.closestIntersection(packet[j]);
+				Assert.assertEquals("Packet found the wrong closest intersection.",
+					expected == null ? null : expected.point, hits[j].found() ? hits[j].intersection().point : null);
+			}
+		}
+	}
+
+	/**
+	 * Create a scene with a few hundred finite geometries and an infinite plane.
+	 *
+	 * @return The geometries of the scene.
+	 */
+	static GeometryList scene() {
+		GeometryList geometries = new GeometryList(new Plane(null, new Point(0, 0, -20), NormalizedVector.K));
+		for (int x = 0; x < 10; ++x) {
+			for (int y = 0; y < 10; ++y) {
+				geometries.add(new Sphere(null, new Point(3 * x, 3 * y, 0), 1));
+				geometries.add(new Sphere(null, new Point(3 * x + 1, 3 * y, -5), 0.5));
+				geometries.add(new Triangle(null, new Point(3 * x, 3 * y, -8), new Point(3 * x + 2, 3 * y, -8),
+					new Point(3 * x, 3 * y + 2, -9)));
+			}
+		}
+		return geometries;
+	}
+}
@@ -1,14 +1,38 @@
 package unit.geometries;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
 import org.junit.Assert;
 import org.junit.Test;
+import geometries.AgglomerativeHierarchyBuilder;
+import geometries.Cylinder;
+import geometries.FlatHierarchy;
+import geometries.Geometry;
 import geometries.GeometryList;
+import geometries.HierarchyBuilder;
+import geometries.Intersectible;
+import geometries.MortonHierarchyBuilder;
 import geometries.Plane;
+import geometries.SahHierarchyBuilder;
+import geometries.SpatialSplitHierarchyBuilder;
 import geometries.Sphere;
 import geometries.Triangle;
+import geometries.Tube;
+import geometries.WideHierarchy;
+import primitives.LineSegment;
 import primitives.NormalizedVector;
 import primitives.Point;
 import primitives.Ray;
+import primitives.Vector;
+import unit.geometries.util.PointExtractor;
+import unit.geometries.util.RandomLines;
 
 /**
  * Tests the methods of the Geometries class.
@@ -66,4 +90,204 @@ public class GeometriesTests {
 		Assert.assertEquals("Wrong number of intersections when all shapes intersect", 3,
 			geometries.intersect(ray).size());
 	}
+
+	/**
+	 * Tests that building a hierarchy with any of the builders doesn't change the intersections.
+	 */
+	@Test
+	public void testOptimize() {
+		for (HierarchyBuilder builder : new HierarchyBuilder[] { new SahHierarchyBuilder(),
+			new AgglomerativeHierarchyBuilder(), new MortonHierarchyBuilder() }) {
+			GeometryList geometries = sphereGrid();
+			geometries.optimize(builder);
+			for (Ray ray : new Ray[] { new Ray(new Point(-10, 0.5, 0.5), NormalizedVector.I),
+				new Ray(new Point(0.5, 0.5, 10), NormalizedVector.K.reversed()),
+				new Ray(new Point(-10, -10, 0.2), new NormalizedVector(1, 1, 0)),
+				new Ray(new Point(-10, 0.5, 0.5), NormalizedVector.J) }) {
+				Assert.assertEquals("Optimizing the geometries changed the intersections.",
+					PointExtractor.extractPoints(sphereGrid().intersect(ray)),
+					PointExtractor.extractPoints(geometries.intersect(ray)));
+			}
+		}
+
+		// A single geometry can't be arranged into a hierarchy
+		GeometryList geometries = new GeometryList(new Sphere(null, Point.ORIGIN, 1));
+		geometries.optimize();
+		Ray ray = new Ray(new Point(2, 0, 0), NormalizedVector.I.reversed());
+		Assert.assertEquals("Wrong intersections after optimizing a single geometry.",
+			Set.of(new Point(1, 0, 0), new Point(-1, 0, 0)), PointExtractor.extractPoints(geometries.intersect(ray)));
+	}
+
+	/**
+	 * Tests that the hierarchy built in parallel is the same no matter how many threads are used.
+	 */
+	@Test
+	public void testParallelOptimize() {
+		Random random = new Random(0);
+		Sphere[] spheres = new Sphere[5000];
+		for (int i = 0; i < spheres.length; ++i) {
+			spheres[i] = new Sphere(null,
+				new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 1);
+		}
+		for (IntFunction<HierarchyBuilder> builder : List.<IntFunction<HierarchyBuilder>>of(SahHierarchyBuilder::new,
+			MortonHierarchyBuilder::new)) {
+			GeometryList sequential = new GeometryList(spheres);
+			sequential.optimize(builder.apply(1));
+			GeometryList parallel = new GeometryList(spheres);
+			parallel.optimize(builder.apply(4));
+			Iterator<Geometry> expected = sequential.iterator();
+			Iterator<Geometry> actual = parallel.iterator();
+			while (expected.hasNext()) {
+				Assert.assertSame("The hierarchy depends on the number of threads.", expected.next(), actual.next());
+			}
+			Assert.assertFalse("The hierarchy depends on the number of threads.", actual.hasNext());
+			Ray ray = new Ray(new Point(-10, 50, 50), NormalizedVector.I);
+			Assert.assertEquals("Optimizing the geometries in parallel changed the intersections.",
+				PointExtractor.extractPoints(sequential.intersect(ray)),
+				PointExtractor.extractPoints(parallel.intersect(ray)));
+		}
+	}
+
+	/**
+	 * Tests that refitting the hierarchy after replacing some geometries finds the same intersections as the replaced
+	 * geometries, and that subtrees are only rebuilt when geometries move far.
+	 */
+	@Test
+	public void testRefit() {
+		Random random = new Random(2);
+		Point[] centres = new Point[2000];
+		Sphere[] spheres = new Sphere[centres.length];
+		for (int i = 0; i < spheres.length; ++i) {
+			centres[i] = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+			spheres[i] = new Sphere(null, centres[i], 1);
+		}
+		GeometryList geometries = new GeometryList(spheres);
+		geometries.optimize();
+
+		// Small moves are refitted without rebuilding anything
+		Map<Sphere, Sphere> moved = new IdentityHashMap<>();
+		for (int i = 0; i < spheres.length; i += 50) {
+			centres[i] = centres[i].add(new Vector(0.5, -0.5, 0.5));
+			moved.put(spheres[i], spheres[i] = new Sphere(null, centres[i], 1));
+		}
+		Assert.assertEquals("Rebuilt a subtree after small moves.", 0, geometries.refit(moved));
+		assertRefitted(new GeometryList(spheres), geometries, random);
+
+		// A geometry moved across the scene degrades the subtrees containing it
+		moved.clear();
+		moved.put(spheres[0], spheres[0] = new Sphere(null, new Point(-50, -50, -50), 1));
+		Assert.assertTrue("Didn't rebuild a degraded subtree.", geometries.refit(moved) > 0);
+		assertRefitted(new GeometryList(spheres), geometries, random);
+		Set<Geometry> leaves = new HashSet<>();
+		geometries.forEach(leaves::add);
+		Assert.assertEquals("The leaves are not the replaced geometries.", Set.of(spheres), leaves);
+	}
+
+	/**
+	 * Tests that optimizing clips planes and tubes to the region of the finite geometries and the viewpoint without
+	 * changing the intersections of line segments starting either inside or outside the region.
+	 */
+	@Test
+	public void testOptimizeInfinite() {
+		Random random = new Random(3);
+		Geometry[] infinites = { new Plane(null, new Point(0, 0, 10), new NormalizedVector(0.1, 0.2, 1)),
+			new Plane(null, new Point(0, 0, -20), NormalizedVector.K),
+			new Tube(null, new Ray(new Point(10, 10, 0), new NormalizedVector(0.3, -0.2, 1)), 2),
+			new Tube(null, new Ray(new Point(100, 100, 0), NormalizedVector.J), 1) };
+		GeometryList expected = new GeometryList(infinites);
+		GeometryList geometries = new GeometryList(infinites);
+		for (int i = 0; i < 300; ++i) {
+			Sphere sphere = new Sphere(null,
+				new Point(random.nextDouble() * 20, random.nextDouble() * 20, random.nextDouble() * 20), 0.5);
+			expected.add(sphere);
+			geometries.add(sphere);
+		}
+		Point viewpoint = new Point(10, 10, 40);
+		geometries.optimize(new SahHierarchyBuilder(), viewpoint);
+
+		Set<Geometry> leaves = new HashSet<>();
+		geometries.forEach(leaves::add);
+		Assert.assertEquals("Optimizing changed the geometries.", 304, leaves.size());
+
+		assertOptimizedIntersections(expected, geometries, RandomLines.lines(500, 400,
+			i -> i % 3 == 0 ? viewpoint
+				: i % 3 == 1 ? new Point(random.nextDouble() * 20, random.nextDouble() * 20, random.nextDouble() * 20)
+				: new Point(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100, 150),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+				random.nextDouble() - 0.8)));
+	}
+
+	/**
+	 * Tests that a spatial split hierarchy, which places long triangles and cylinders in more than one leaf, finds
+	 * each intersection and each geometry once.
+	 */
+	@Test
+	public void testSpatialSplits() {
+		Random random = new Random(4);
+		GeometryList expected = new GeometryList();
+		GeometryList geometries = new GeometryList();
+		for (int i = 0; i < 200; ++i) {
+			Point point = new Point(random.nextDouble() * 20, random.nextDouble() * 20, random.nextDouble() * 20);
+			Geometry geometry = i % 4 == 0
+				? new Cylinder(null, new Ray(point, new NormalizedVector(random.nextDouble() - 0.5,
+					random.nextDouble() - 0.5, random.nextDouble() - 0.5)), 0.3, 15)
+				: new Triangle(null, point,
+					new Point(random.nextDouble() * 20, random.nextDouble() * 20, random.nextDouble() * 20),
+					point.add(new Vector(random.nextDouble() + 0.1, random.nextDouble(), random.nextDouble())));
+			expected.add(geometry);
+			geometries.add(geometry);
+		}
+		geometries.optimize(new SpatialSplitHierarchyBuilder());
+
+		Assert.assertTrue("No geometry was split between nodes.",
+			new FlatHierarchy(geometries).statistics().primitives > 200);
+		List<Geometry> leaves = new ArrayList<>();
+		geometries.forEach(leaves::add);
+		Assert.assertEquals("Iterating repeated split geometries.", 200, leaves.size());
+		Assert.assertEquals("Optimizing changed the geometries.", 200, new HashSet<>(leaves).size());
+
+		assertOptimizedIntersections(expected, geometries, RandomLines.lines(500, 25,
+			i -> new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10, 30),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1)));
+	}
+
+	/**
+	 * Asserts that optimized geometries, and each hierarchy compiled from them, find each intersection of each line
+	 * exactly once, as the geometries did before they were optimized.
+	 */
+	private static void assertOptimizedIntersections(GeometryList expected, GeometryList geometries,
+		List<LineSegment> lines) {
+		Intersectible[] optimized = { geometries, new FlatHierarchy(geometries), new WideHierarchy(geometries) };
+		for (LineSegment line : lines) {
+			for (Intersectible intersectible : optimized) {
+				RandomLines.assertSameIntersections("Optimized hierarchy", expected, intersectible, line);
+				Assert.assertEquals("Optimized hierarchy duplicated intersections.", expected.intersect(line).size(),
+					intersectible.intersect(line).size());
+			}
+		}
+	}
+
+	/**
+	 * Asserts that refitted geometries, and the hierarchy compiled from them, find the same intersections as the
+	 * geometries which replaced the original ones.
+	 */
+	private static void assertRefitted(GeometryList expected, GeometryList actual, Random random) {
+		FlatHierarchy hierarchy = new FlatHierarchy(actual);
+		for (LineSegment line : RandomLines.lines(100, 200,
+			i -> new Point(random.nextDouble() * 100, random.nextDouble() * 100, 150),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1))) {
+			RandomLines.assertSameIntersections("Refitted hierarchy", expected, actual, line);
+			RandomLines.assertSameIntersections("Refitted hierarchy", expected, hierarchy, line);
+		}
+	}
+
+	private GeometryList sphereGrid() {
+		GeometryList geometries = new GeometryList(new Plane(null, new Point(0, 0, -20), NormalizedVector.K));
+		for (int x = 0; x < 8; ++x) {
+			for (int y = 0; y < 8; ++y) {
+				geometries.add(new Sphere(null, new Point(3 * x, 3 * y, 0), 1));
+			}
+		}
+		return geometries;
+	}
 }
@@ -0,0 +1,58 @@
+package unit.geometries;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.Geometry;
+import geometries.HitRecord;
+import geometries.Intersection;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the allocation free intersection methods which write to a {@link HitRecord}.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class HitRecordTests {
+
+	/**
+	 * Tests that each geometry records the same closest intersection as the one found in the list of all its
+	 * intersections, and that intersections further than the one already recorded are ignored.
+	 */
+	@Test
+	public void testIntersect() {
+		Geometry[] geometries = { new Sphere(null, new Point(0, 0, 0), 2),
+			new Plane(null, Point.ORIGIN, NormalizedVector.K),
+			new Polygon(null, new Point(-2, -2, 0), new Point(2, -2, 0), new Point(2, 2, 0), new Point(-2, 2, 0)),
+			new Triangle(null, new Point(-2, -2, 1), new Point(2, -1, -1), new Point(0, 2, 0)) };
+		Random random = new Random(0);
+		HitRecord hit = new HitRecord();
+		for (LineSegment line : RandomLines.lines(1000, 9,
+			i -> new Point(random.nextDouble() * 8 - 4, random.nextDouble() * 8 - 4, random.nextDouble() * 8 - 4),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+				random.nextDouble() - 0.5))) {
+			for (Geometry geometry : geometries) {
+				List<Intersection> intersections = geometry.intersect(line);
+				Point expected = intersections.isEmpty() ? null : line.closest(intersections).point;
+				Assert.assertEquals("Wrong intersection recorded.", expected != null,
+					geometry.intersect(line, hit.reset()));
+				Intersection closest = hit.intersection();
+				Assert.assertEquals("Wrong intersection recorded.", expected, closest == null ? null : closest.point);
+				if (expected != null) {
+					Assert.assertSame("Wrong geometry recorded.", geometry, hit.geometry());
+					Assert.assertFalse("Recorded an intersection further than the closest so far.",
+						geometry.intersect(line, hit));
+				}
+			}
+		}
+	}
+}
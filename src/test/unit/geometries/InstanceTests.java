@@ -0,0 +1,141 @@
+package unit.geometries;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.Instance;
+import geometries.Intersectible;
+import geometries.Intersection;
+import geometries.Sphere;
+import geometries.Triangle;
+import geometries.UniformGrid;
+import math.matrices.Matrix;
+import math.matrices.RotationMatrix;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import unit.geometries.util.NormalCompare;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the Instance class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class InstanceTests {
+
+	/**
+	 * Tests that an instance finds the same intersections and normals as the transformed geometries would.
+	 */
+	@Test
+	public void testIntersect() {
+		Matrix matrix = new RotationMatrix(0.3, 1.2, -0.5).scale(2);
+		Vector translation = new Vector(5, -3, 1);
+		GeometryList expected = transformed(matrix, translation);
+		GeometryList asset = asset();
+		asset.optimize();
+		Intersectible[] instances = { new Instance(asset, matrix, translation),
+			new Instance(new FlatHierarchy(asset), matrix, translation) };
+
+		Random random = new Random(0);
+		for (LineSegment line : RandomLines.lines(500,
+			i -> new Point(random.nextDouble() * 20 - 5, random.nextDouble() * 20 - 13, 15),
+			i -> new Point(random.nextDouble() * 10, random.nextDouble() * 10 - 8, random.nextDouble() * 8 - 3))) {
+			Intersection closest = expected.closestIntersection(line);
+			for (Intersectible instance : instances) {
+				RandomLines.assertSameIntersections("Instance", expected, instance, line);
+				if (closest != null) {
+					Assert.assertTrue("Instance calculated the wrong normal.",
+						NormalCompare.eq(closest.normal(), instance.closestIntersection(line).normal()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that a scene made of many instances of a shared asset, in a hierarchy or a grid, finds the same closest
+	 * intersections as the same scene made of copies of the asset.
+	 */
+	@Test
+	public void testScene() {
+		GeometryList asset = asset();
+		asset.optimize();
+		FlatHierarchy shared = new FlatHierarchy(asset);
+		GeometryList instances = new GeometryList();
+		GeometryList copies = new GeometryList();
+		for (int x = 0; x < 5; ++x) {
+			for (int y = 0; y < 5; ++y) {
+				Matrix matrix = new RotationMatrix(0, 0.4 * x + y, 0).scale(1 + 0.1 * y);
+				Vector translation = new Vector(8 * x, 8 * y, 0);
+				instances.add(new Instance(shared, matrix, translation));
+				copies.add(transformed(matrix, translation));
+			}
+		}
+		instances.optimize();
+		Intersectible[] accelerators = { new FlatHierarchy(instances), new UniformGrid(instances) };
+
+		Random random = new Random(1);
+		for (int i = 0; i < 500; ++i) {
+			Point start = new Point(random.nextDouble() * 40 - 4, random.nextDouble() * 40 - 4, 20);
+			NormalizedVector direction =
+				new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble());
+			Ray ray = new Ray(start, direction);
+			Intersection expected = copies.closestIntersection(ray);
+			for (Intersectible accelerator : accelerators) {
+				Intersection actual = accelerator.closestIntersection(ray);
+				Assert.assertEquals("Found the wrong closest intersection.", expected == null ? null : expected.point,
+					actual == null ? null : actual.point);
+			}
+		}
+	}
+
+	/**
+	 * Tests that instances cannot be nested or have singular matrices.
+	 */
+	@Test
+	public void testConstructor() {
+		Instance instance = new Instance(asset(), new Vector(1, 2, 3));
+		GeometryList nested = asset();
+		nested.add(instance);
+		Assert.assertThrows("Constructed a nested instance.", IllegalArgumentException.class,
+			() -> new Instance(nested, new Vector(1, 2, 3)));
+		Assert.assertThrows("Constructed an instance with a singular matrix.", IllegalArgumentException.class,
+			() -> new Instance(asset(), Matrix.IDENTITY.scale(0), new Vector(1, 2, 3)));
+	}
+
+	/**
+	 * Create a small asset made of a few geometries.
+	 *
+	 * @return The geometries of the asset.
+	 */
+	private static GeometryList asset() {
+		return transformed(Matrix.IDENTITY, new Vector(0, 0, 0));
+	}
+
+	/**
+	 * Create a copy of the asset transformed by the given matrix, which must be a rotation scaled uniformly, and then
+	 * moved by the given translation.
+	 *
+	 * @param matrix      The rotation and scale.
+	 * @param translation The translation.
+	 * @return The geometries of the transformed asset.
+	 */
+	private static GeometryList transformed(Matrix matrix, Vector translation) {
+		double scale = matrix.multiply(NormalizedVector.I).length();
+		return new GeometryList(new Sphere(null, transform(matrix, translation, 1, 0, 0), scale),
+			new Sphere(null, transform(matrix, translation, -1, 2, 1), 0.5 * scale),
+			new Triangle(null, transform(matrix, translation, 0, 0, -2), transform(matrix, translation, 2, 0, -2),
+				transform(matrix, translation, 0, 2, -3)),
+			new Triangle(null, transform(matrix, translation, -2, -1, 0), transform(matrix, translation, 0, -2, 0),
+				transform(matrix, translation, -2, -2, 1)));
+	}
+
+	private static Point transform(Matrix matrix, Vector translation, double x, double y, double z) {
+		return matrix.multiply(new Point(x, y, z)).add(translation);
+	}
+}
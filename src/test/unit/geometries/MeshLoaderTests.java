@@ -0,0 +1,141 @@
+package unit.geometries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.Intersection;
+import geometries.MeshLoader;
+import geometries.TriangleMesh;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+
+/**
+ * Tests the methods of the MeshLoader class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class MeshLoaderTests {
+
+	/**
+	 * Tests that a mesh loaded from an OBJ file, with quads, negative indices, texture coordinates, normals, and
+	 * comments, is the same as the mesh it was written from.
+	 *
+	 * @throws IOException if the temporary file could not be written.
+	 */
+	@Test
+	public void testLoadObj() throws IOException {
+		double[] vertices = TriangleMeshTests.vertices();
+		int[] indices = TriangleMeshTests.indices();
+		StringBuilder obj = new StringBuilder("# test mesh\no grid\n");
+		for (int i = 0; i < vertices.length; i += 3) {
+			obj.append(String.format("v %s %s %.9e\r\n", vertices[i], vertices[i + 1], vertices[i + 2]));
+		}
+		obj.append("vt 0 0\nvn 0 0 1\nusemtl none\n");
+		for (int i = 0; i < indices.length; i += 3) {
+			// alternately relative and absolute indices, with texture coordinates and normals
+			obj.append(i % 2 == 0
+				? String.format("f %d/1/1 %d//1 %d\n", indices[i] + 1, indices[i + 1] + 1, indices[i + 2] + 1)
+				: String.format("f %d %d %d # a comment\n", indices[i] - vertices.length / 3,
+					indices[i + 1] - vertices.length / 3, indices[i + 2] - vertices.length / 3));
+		}
+		// a quad out of the way of the rays, split into two triangles
+		obj.append("v 1000 0 0\nv 1001 0 0\nv 1001 1 0\nv 1000 1 0\nf -4 -3 -2 -1\n");
+		Path file = Files.createTempFile("mesh", ".obj");
+		try {
+			Files.writeString(file, obj);
+			TriangleMesh loaded = MeshLoader.load(file, null);
+			Assert.assertEquals("Loaded the wrong number of triangles.", indices.length / 3 + 2, loaded.size());
+			assertSame(new TriangleMesh(null, vertices, indices), loaded);
+
+			Files.writeString(file, "v 0 0 0\nv 1 0 0\nf 1 2 3\n");
+			Assert.assertThrows("Loaded a face with an undefined vertex.", IOException.class,
+				() -> MeshLoader.load(file, null));
+
+			for (String truncated : new String[] { "v 1 2", "v 1 2 ", "v 1 2 3e", "v 1 2 3\nv 4 5 6\nf 1 2 -" }) {
+				Files.writeString(file, truncated);
+				Assert.assertThrows("Loaded a truncated OBJ file.", IOException.class, () -> MeshLoader.load(file, null));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Tests that a mesh loaded from a binary PLY file, in either byte order, with extra elements and properties, is
+	 * the same as the mesh it was written from.
+	 *
+	 * @throws IOException if the temporary file could not be written.
+	 */
+	@Test
+	public void testLoadPly() throws IOException {
+		double[] vertices = TriangleMeshTests.vertices();
+		int[] indices = TriangleMeshTests.indices();
+		Path file = Files.createTempFile("mesh", ".ply");
+		try {
+			for (ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+				String header = "ply\nformat binary_" + (order == ByteOrder.LITTLE_ENDIAN ? "little" : "big")
+					+ "_endian 1.0\ncomment test mesh\nelement vertex " + vertices.length / 3
+					+ "\nproperty double x\nproperty double y\nproperty double z\nproperty uchar red\n"
+					+ "element face " + indices.length / 3 + "\nproperty list uchar int vertex_indices\n"
+					+ "property list uchar float texcoord\nelement edge 1\nproperty int vertex1\n"
+					+ "property int vertex2\nend_header\n";
+				byte[] bytes = header.getBytes(StandardCharsets.US_ASCII);
+				int size = bytes.length + vertices.length / 3 * 25 + indices.length / 3 * 22 + 8;
+				ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+				buffer.put(bytes);
+				for (int i = 0; i < vertices.length; i += 3) {
+					buffer.putDouble(vertices[i]).putDouble(vertices[i + 1]).putDouble(vertices[i + 2]).put((byte) 7);
+				}
+				for (int i = 0; i < indices.length; i += 3) {
+					buffer.put((byte) 3).putInt(indices[i]).putInt(indices[i + 1]).putInt(indices[i + 2]);
+					buffer.put((byte) 2).putFloat(0.5f).putFloat(0.25f);
+				}
+				buffer.putInt(0).putInt(1);
+				Files.write(file, buffer.array());
+				TriangleMesh loaded = MeshLoader.load(file, null);
+				Assert.assertEquals("Loaded the wrong number of triangles.", indices.length / 3, loaded.size());
+				assertSame(new TriangleMesh(null, vertices, indices), loaded);
+			}
+
+			Files.writeString(file, "ply\nformat ascii 1.0\nelement vertex 0\nend_header\n");
+			Assert.assertThrows("Loaded an ASCII PLY file.", IOException.class, () -> MeshLoader.load(file, null));
+
+			for (String line : new String[] { "format", "element", "element vertex", "property float",
+				"property list uchar", "property list uchar int" }) {
+				Files.writeString(file, "ply\nformat binary_little_endian 1.0\nelement vertex 0\n" + line
+					+ "\nend_header\n");
+				Assert.assertThrows("Loaded a malformed PLY header.", IOException.class,
+					() -> MeshLoader.load(file, null));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Asserts that two meshes find the same closest intersections, within the precision of floats.
+	 */
+	private static void assertSame(TriangleMesh expected, TriangleMesh actual) {
+		Random random = new Random(0);
+		for (int i = 0; i < 200; ++i) {
+			Point start = new Point(random.nextDouble() * 12, random.nextDouble() * 12, 5);
+			Ray ray = new Ray(start, new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+			Intersection expectedIntersection = expected.closestIntersection(ray);
+			Intersection actualIntersection = actual.closestIntersection(ray);
+			Assert.assertEquals("Loaded mesh disagrees about whether there is an intersection.",
+				expectedIntersection != null, actualIntersection != null);
+			if (expectedIntersection != null) {
+				Assert.assertEquals("Loaded mesh found a different intersection.", 0,
+					expectedIntersection.point.distance(actualIntersection.point), 1e-5);
+			}
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package unit.geometries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.GeometryPages;
+import geometries.Intersection;
+import geometries.MeshFile;
+import geometries.MeshLoader;
+import geometries.OffHeapHierarchy;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.SpatialSplitHierarchyBuilder;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Colour;
+import primitives.Factors;
+import primitives.LineSegment;
+import primitives.Material;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the OffHeapHierarchy class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class OffHeapHierarchyTests {
+
+	/**
+	 * Tests that the off heap hierarchy finds the same intersections as the binary hierarchy it was compiled from, with
+	 * the same materials, normals, and transparency, both when each primitive is in a single leaf and when primitives
+	 * are split between leaves.
+	 */
+	@Test
+	public void testIntersect() {
+		for (boolean split : new boolean[] { false, true }) {
+			GeometryList geometries = scene();
+			if (split) {
+				geometries.optimize(new SpatialSplitHierarchyBuilder());
+			} else {
+				geometries.optimize();
+			}
+			FlatHierarchy binary = new FlatHierarchy(geometries);
+			OffHeapHierarchy offHeap = new OffHeapHierarchy(geometries);
+			geometries.clear(); // the off heap hierarchy must not depend on the list
+			Random random = new Random(0);
+			for (LineSegment line : RandomLines.lines(1000, 20,
+				i -> new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10,
+					random.nextDouble() * 22 - 12),
+				i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+					random.nextDouble() - 0.5))) {
+				RandomLines.assertSameIntersections("Off heap hierarchy", binary, offHeap, line);
+				Intersection expected = binary.closestIntersection(line);
+				Intersection actual = offHeap.closestIntersection(line);
+				if (expected != null) {
+					Assert.assertSame("Off heap hierarchy found the wrong material.", expected.geometry.material,
+						actual.geometry.material);
+					Assert.assertEquals("Off heap hierarchy found the wrong normal.", expected.normal(),
+						actual.normal());
+				}
+				for (double threshold : new double[] { 0.01, 0.3 }) {
+					Assert.assertEquals("Off heap hierarchy let through a different amount of light.",
+						halvings(binary.transparency(line, Factors.ONE, threshold)),
+						halvings(offHeap.transparency(line, Factors.ONE, threshold)));
+				}
+			}
+		}
+
+		// Empty hierarchy
+		OffHeapHierarchy offHeap = new OffHeapHierarchy(new GeometryList());
+		Assert.assertTrue("Empty hierarchy returned intersections.",
+			offHeap.intersect(new Ray(Point.ORIGIN, NormalizedVector.I)).isEmpty());
+		Assert.assertNull("Empty hierarchy found an intersection.",
+			offHeap.closestIntersection(new Ray(Point.ORIGIN, NormalizedVector.I)));
+	}
+
+	/**
+	 * Tests that a hierarchy kept in a memory mapped file which is much larger than its budget finds the same
+	 * intersections as the binary hierarchy it was compiled from, while mapping no more than its budget at once,
+	 * including the pages which were unmapped but not yet released.
+	 *
+	 * @throws IOException if the file cannot be created.
+	 */
+	@Test
+	public void testPaged() throws IOException {
+		Material[] materials = { material(0), material(0.5) };
+		GeometryList geometries = new GeometryList();
+		Random random = new Random(1);
+		for (int i = 0; i < 20000; ++i) {
+			Point corner = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+			geometries.add(new Triangle(materials[i % 2], corner, new Point(corner.x + 1, corner.y, corner.z),
+				new Point(corner.x, corner.y + 1, corner.z + 1)));
+			if (i % 4 == 0) {
+				geometries.add(new Sphere(materials[i % 2], new Point(corner.x, corner.y, corner.z - 2), 0.5));
+			}
+		}
+		geometries.optimize();
+		FlatHierarchy binary = new FlatHierarchy(geometries);
+		long budget = 1 << 19;
+		try (GeometryPages pages = new GeometryPages(budget)) {
+			OffHeapHierarchy paged = new OffHeapHierarchy(geometries, pages);
+			geometries.clear();
+			Assert.assertTrue("The test hierarchy fits in the budget.", pages.size() > 4 * budget);
+			for (LineSegment line : RandomLines.lines(500, 20,
+				i -> new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100),
+				i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+					random.nextDouble() - 0.5))) {
+				RandomLines.assertSameIntersections("Paged hierarchy", binary, paged, line);
+				Assert.assertEquals("Paged hierarchy let through a different amount of light.",
+					halvings(binary.transparency(line, Factors.ONE, 0.01)),
+					halvings(paged.transparency(line, Factors.ONE, 0.01)));
+			}
+			Assert.assertTrue("Paged hierarchy never unmapped a page.", pages.evictions() > 0);
+			Assert.assertTrue("Paged hierarchy used more than its budget.", pages.peakResident() <= budget);
+			Assert.assertTrue("Paged hierarchy used more than its budget.", pages.resident() <= budget);
+		}
+	}
+
+	/**
+	 * Tests that a mesh streamed from its file into a paged hierarchy, with and without other geometries, finds the
+	 * same intersections as the mesh loaded onto the heap, including through its vertices and edges, with the same
+	 * materials and normals.
+	 *
+	 * @throws IOException if the temporary file could not be written.
+	 */
+	@Test
+	public void testStream() throws IOException {
+		double[] vertices = TriangleMeshTests.vertices();
+		int[] indices = TriangleMeshTests.indices();
+		StringBuilder obj = new StringBuilder();
+		for (int i = 0; i < vertices.length; i += 3) {
+			obj.append(String.format("v %s %s %s\n", vertices[i], vertices[i + 1], vertices[i + 2]));
+		}
+		for (int i = 0; i < indices.length; i += 3) {
+			obj.append(String.format("f %d %d %d\n", indices[i] + 1, indices[i + 1] + 1, indices[i + 2] + 1));
+		}
+		obj.append("v 0 0 0\nf 1 1 -1\n"); // a triangle with no area
+		Material material = material(0.5);
+		Path file = Files.createTempFile("mesh", ".obj");
+		try (GeometryPages pages = new GeometryPages(1 << 16)) {
+			Files.writeString(file, obj);
+			for (boolean others : new boolean[] { false, true }) {
+				GeometryList loaded = new GeometryList(MeshLoader.load(file, material));
+				GeometryList geometries = new GeometryList();
+				if (others) {
+					Plane floor = new Plane(material(0), new Point(0, 0, -3), NormalizedVector.K);
+					loaded.add(floor);
+					geometries.add(floor);
+				}
+				for (int x = 0; others && x < 6; ++x) {
+					for (int y = 0; y < 6; ++y) {
+						Sphere sphere = new Sphere(material(0), new Point(2 * x + 0.5, 2 * y + 0.5, 2), 0.4);
+						loaded.add(sphere);
+						geometries.add(sphere);
+					}
+				}
+				loaded.optimize();
+				geometries.optimize();
+				FlatHierarchy expected = new FlatHierarchy(loaded);
+				OffHeapHierarchy streamed =
+					OffHeapHierarchy.stream(geometries, List.of(new MeshFile(file, material)), pages);
+				Random random = new Random(2);
+				for (LineSegment line : RandomLines.lines(500, 25,
+					i -> new Point(random.nextDouble() * 12, random.nextDouble() * 12, 5),
+					i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+						-random.nextDouble()))) {
+					RandomLines.assertSameIntersections("Streamed mesh", expected, streamed, line);
+					Intersection closest = expected.closestIntersection(line);
+					if (closest != null) {
+						Intersection actual = streamed.closestIntersection(line);
+						Assert.assertSame("Streamed mesh found the wrong material.", closest.geometry.material,
+							actual.geometry.material);
+						Assert.assertEquals("Streamed mesh found the wrong normal.", closest.normal(), actual.normal());
+					}
+				}
+				// through the vertices, and through the middle of the diagonal edges, where the closest of the
+				// triangles which share them depends on the order they are tested in
+				for (double offset : new double[] { 1, 0.5 }) {
+					for (LineSegment line : RandomLines.lines(121, i -> new Point(offset + i % 11, offset + i / 11, 5),
+						i -> new Point(offset + i % 11, offset + i / 11, -5))) {
+						RandomLines.assertSameIntersections("Streamed mesh", expected, streamed, line);
+					}
+				}
+			}
+
+			Files.writeString(file, "v 0 0 0\nv 1 0 0\nf 1 2 3\n");
+			Assert.assertThrows("Streamed a face with an undefined vertex.", IOException.class,
+				() -> OffHeapHierarchy.stream(new GeometryList(), List.of(new MeshFile(file, material)), null));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Spheres, triangles, a polygon, and a plane, made of an opaque material and of two materials which let through
+	 * half the light.
+	 */
+	private static GeometryList scene() {
+		Material[] materials = { material(0), material(0.5), material(0.5) };
+		GeometryList geometries = new GeometryList(
+			new Plane(materials[0], new Point(0, 0, -20), NormalizedVector.K),
+			new Polygon(materials[1], new Point(-5, -5, -12), new Point(5, -5, -12), new Point(5, 5, -12),
+				new Point(-5, 5, -12)));
+		for (int x = 0; x < 10; ++x) {
+			for (int y = 0; y < 10; ++y) {
+				geometries.add(new Sphere(materials[(x + y) % 3], new Point(3 * x, 3 * y, 0), 1));
+				geometries.add(new Sphere(materials[(x * y) % 3], new Point(3 * x + 1, 3 * y, -5), 0.5));
+				geometries.add(new Triangle(materials[(x + 2 * y) % 3], new Point(3 * x, 3 * y, -8),
+					new Point(3 * x + 4, 3 * y, -8), new Point(3 * x, 3 * y + 4, -9)));
+			}
+		}
+		// long slivers, which a spatial split hierarchy splits between leaves
+		for (int i = 0; i < 10; ++i) {
+			geometries.add(new Triangle(materials[i % 3], new Point(-5, 3 * i, -10 + 0.3 * i),
+				new Point(35, 3 * i + 0.5, -10 + 0.3 * i), new Point(-5, 3 * i + 1, -10.5 + 0.3 * i)));
+		}
+		return geometries;
+	}
+
+	private static Material material(double transparency) {
+		return new Material(Colour.BLACK, 1, Factors.ZERO, Factors.ONE, Factors.ZERO, Factors.ZERO,
+			new Factors(transparency));
+	}
+
+	/**
+	 * Count how many times the light was halved, given the transparency of a line through the scene.
+	 */
+	private static int halvings(Factors transparency) {
+		int halvings = 0;
+		while (halvings < 64 && transparency.lt(Math.pow(0.5, halvings) - 1e-9)) {
+			++halvings;
+		}
+		return halvings;
+	}
+}
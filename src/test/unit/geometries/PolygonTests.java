@@ -1,14 +1,20 @@
 package unit.geometries;
 
+import java.util.Random;
 import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
+import geometries.GeometryList;
 import geometries.Polygon;
+import geometries.Triangle;
+import primitives.LineSegment;
 import primitives.NormalizedVector;
 import primitives.Point;
 import primitives.Ray;
 import unit.geometries.util.NormalCompare;
 import unit.geometries.util.PointExtractor;
+import unit.geometries.util.RandomLines;
+import util.DoubleTriFunction;
 
 /**
  * Tests the methods of the Polygon class.
@@ -216,4 +222,46 @@ public class PolygonTests {
 		ray = new Ray(Point.ORIGIN, new NormalizedVector(0.5, 1, 0));
 		Assert.assertTrue("Expected no intersection from ray starting on corner.", polygon.intersect(ray).isEmpty());
 	}
+
+	/**
+	 * Tests that polygons facing mostly along each axis, with their vertices in either order, find the same
+	 * intersections as the fan of triangles they can be divided into.
+	 */
+	@Test
+	public void testIntersectLikeFan() {
+		Random random = new Random(0);
+		for (int axis = 0; axis < 3; ++axis) {
+			for (boolean reversed : new boolean[] { false, true }) {
+				Point[] vertices = new Point[6];
+				for (int i = 0; i < vertices.length; ++i) {
+					double angle = 2 * Math.PI * (reversed ? -i : i) / vertices.length;
+					vertices[i] =
+						permuted(axis, Point::new, 3 * Math.cos(angle), 2 * Math.sin(angle), 0.5 * Math.cos(angle));
+				}
+				Polygon polygon = new Polygon(null, vertices);
+				GeometryList fan = new GeometryList();
+				for (int i = 1; i + 1 < vertices.length; ++i) {
+					fan.add(new Triangle(null, vertices[0], vertices[i], vertices[i + 1]));
+				}
+				int first = axis;
+				for (LineSegment line : RandomLines.lines(500, 5,
+					i -> permuted(first, Point::new, random.nextDouble() * 8 - 4, random.nextDouble() * 6 - 3, 4),
+					i -> permuted(first, NormalizedVector::new, random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+						-random.nextDouble()))) {
+					Assert.assertEquals("Polygon found different intersections to its triangles.",
+						PointExtractor.extractPoints(fan.intersect(line)),
+						PointExtractor.extractPoints(polygon.intersect(line)));
+					Assert.assertEquals("Polygon disagrees with its triangles about whether it is intersected.",
+						fan.intersects(line), polygon.intersects(line));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a triple from the given values, rotated so that its x coordinate is the value at the given index.
+	 */
+	private static <T> T permuted(int axis, DoubleTriFunction<T> creator, double... values) {
+		return creator.apply(values[axis], values[(axis + 1) % 3], values[(axis + 2) % 3]);
+	}
 }
@@ -0,0 +1,141 @@
+package unit.geometries;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.GeometryList;
+import geometries.Intersectible;
+import geometries.Intersection;
+import geometries.TriangleMesh;
+import geometries.Triangle;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import unit.geometries.util.NormalCompare;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the TriangleMesh class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class TriangleMeshTests {
+	/** The number of cells along each side of the test mesh. */
+	private static final int CELLS = 12;
+
+	/**
+	 * Tests that a mesh finds the same intersections and normals as the same triangles as separate geometries, with
+	 * its vertices stored either as floats or as doubles.
+	 */
+	@Test
+	public void testIntersect() {
+		double[] vertices = vertices();
+		float[] floats = new float[vertices.length];
+		for (int i = 0; i < vertices.length; ++i) {
+			floats[i] = (float) vertices[i];
+			vertices[i] = floats[i]; // so that both meshes have exactly the same vertices
+		}
+		int[] indices = indices();
+		GeometryList triangles = new GeometryList();
+		for (int i = 0; i < indices.length; i += 3) {
+			triangles.add(new Triangle(null, vertex(vertices, indices[i]), vertex(vertices, indices[i + 1]),
+				vertex(vertices, indices[i + 2])));
+		}
+		Intersectible[] meshes = { new TriangleMesh(null, vertices, indices), new TriangleMesh(null, floats, indices) };
+
+		Random random = new Random(0);
+		for (LineSegment line : RandomLines.lines(1000, 25,
+			i -> new Point(random.nextDouble() * CELLS, random.nextDouble() * CELLS, 5),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble()))) {
+			Intersection expected = triangles.closestIntersection(line);
+			for (Intersectible mesh : meshes) {
+				RandomLines.assertSameIntersections("Mesh", triangles, mesh, line);
+				if (expected != null) {
+					Intersection actual = mesh.closestIntersection(line);
+					Assert.assertTrue("Mesh calculated the wrong normal.",
+						NormalCompare.eq(expected.normal(), actual.normal()));
+					Assert.assertTrue("Mesh found the wrong triangle containing the point.",
+						NormalCompare.eq(expected.normal(), actual.geometry.normal(actual.point)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that a mesh of triangles much smaller than a millimetre is not mistaken for being parallel to the lines
+	 * which hit it head on.
+	 */
+	@Test
+	public void testSmallTriangles() {
+		double[] vertices = { 0, 0, 0, 1e-3, 0, 0, 0, 1e-3, 0, 1e-3, 1e-3, 0 };
+		TriangleMesh mesh = new TriangleMesh(null, vertices, new int[] { 0, 1, 2, 1, 3, 2 });
+		LineSegment line = new LineSegment(new Point(2.5e-4, 2.5e-4, 1), new Point(2.5e-4, 2.5e-4, -1));
+		Assert.assertEquals("Mesh missed a small triangle.", 1, mesh.intersect(line).size());
+		Assert.assertTrue("Mesh missed a small triangle.", mesh.intersects(line));
+		Intersection intersection = mesh.closestIntersection(line);
+		Assert.assertNotNull("Mesh missed a small triangle.", intersection);
+		Assert.assertEquals("Mesh found the wrong point.", new Point(2.5e-4, 2.5e-4, 0), intersection.point);
+	}
+
+	/**
+	 * Tests that meshes with invalid vertices or indices cannot be constructed.
+	 */
+	@Test
+	public void testConstructor() {
+		double[] vertices = { 0, 0, 0, 1, 0, 0, 0, 1, 0 };
+		Assert.assertEquals("Wrong number of triangles.", 1, new TriangleMesh(null, vertices, new int[] { 0, 1, 2 })
+			.size());
+		Assert.assertThrows("Constructed a mesh with no triangles.", IllegalArgumentException.class,
+			() -> new TriangleMesh(null, vertices, new int[0]));
+		Assert.assertThrows("Constructed a mesh with an incomplete triangle.", IllegalArgumentException.class,
+			() -> new TriangleMesh(null, vertices, new int[] { 0, 1 }));
+		Assert.assertThrows("Constructed a mesh with an incomplete vertex.", IllegalArgumentException.class,
+			() -> new TriangleMesh(null, new double[] { 0, 0, 0, 1, 0, 0, 0, 1 }, new int[] { 0, 1, 2 }));
+		Assert.assertThrows("Constructed a mesh with an index out of range.", IllegalArgumentException.class,
+			() -> new TriangleMesh(null, vertices, new int[] { 0, 1, 3 }));
+	}
+
+	/**
+	 * The vertices of a bumpy grid of {@value #CELLS} by {@value #CELLS} cells.
+	 *
+	 * @return The x, y, and z coordinates of each vertex.
+	 */
+	static double[] vertices() {
+		double[] vertices = new double[3 * (CELLS + 1) * (CELLS + 1)];
+		for (int x = 0; x <= CELLS; ++x) {
+			for (int y = 0; y <= CELLS; ++y) {
+				int vertex = x * (CELLS + 1) + y;
+				vertices[3 * vertex] = x;
+				vertices[3 * vertex + 1] = y;
+				vertices[3 * vertex + 2] = Math.sin(x) * Math.cos(0.7 * y);
+			}
+		}
+		return vertices;
+	}
+
+	/**
+	 * The indices of the two triangles of each cell of the grid made of {@link #vertices()}.
+	 *
+	 * @return The indices of the three vertices of each triangle.
+	 */
+	static int[] indices() {
+		int[] indices = new int[6 * CELLS * CELLS];
+		int i = 0;
+		for (int x = 0; x < CELLS; ++x) {
+			for (int y = 0; y < CELLS; ++y) {
+				int corner = x * (CELLS + 1) + y;
+				int[] cell = { corner, corner + CELLS + 1, corner + 1, corner + 1, corner + CELLS + 1,
+					corner + CELLS + 2 };
+				for (int index : cell) {
+					indices[i++] = index;
+				}
+			}
+		}
+		return indices;
+	}
+
+	private static Point vertex(double[] vertices, int index) {
+		return new Point(vertices[3 * index], vertices[3 * index + 1], vertices[3 * index + 2]);
+	}
+}
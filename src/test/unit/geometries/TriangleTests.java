@@ -1,13 +1,19 @@
 package unit.geometries;
 
+import java.util.Random;
 import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
+import geometries.HitRecord;
+import geometries.Intersection;
+import geometries.Polygon;
 import geometries.Triangle;
+import primitives.LineSegment;
 import primitives.NormalizedVector;
 import primitives.Point;
 import primitives.Ray;
 import unit.geometries.util.PointExtractor;
+import unit.geometries.util.RandomLines;
 
 /**
  * Tests the methods of the Triangle class.
@@ -102,4 +108,33 @@ public class TriangleTests {
 		ray = new Ray(Point.ORIGIN, new NormalizedVector(0.5, 1, 0));
 		Assert.assertTrue("Expected no intersection from ray starting on corner.", triangle.intersect(ray).isEmpty());
 	}
+
+	/**
+	 * Tests that a triangle finds the same intersections as a polygon with the same vertices, and that the barycentric
+	 * coordinates of the closest intersection are the weights of the vertices at the point of intersection.
+	 */
+	@Test
+	public void testIntersectLikePolygon() {
+		Point p1 = new Point(-1, -2, 0.5), p2 = new Point(3, -1, -0.5), p3 = new Point(0.5, 2.5, 1);
+		Triangle triangle = new Triangle(null, p1, p2, p3);
+		Polygon polygon = new Polygon(null, p1, p2, p3);
+		Random random = new Random(0);
+		HitRecord hit = new HitRecord();
+		for (LineSegment line : RandomLines.lines(1000, 3.5,
+			i -> new Point(random.nextDouble() * 8 - 4, random.nextDouble() * 8 - 4, 3),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+				random.nextDouble() - 0.8))) {
+			RandomLines.assertSameIntersections("Triangle", polygon, triangle, line);
+			Intersection expected = polygon.closestIntersection(line);
+			Assert.assertEquals("Triangle disagrees with polygon about whether a hit was recorded.", expected != null,
+				triangle.intersect(line, hit.reset()));
+			if (expected != null) {
+				double u = hit.u(), v = hit.v(), w = 1 - u - v;
+				Point weighted = new Point(w * p1.x + u * p2.x + v * p3.x, w * p1.y + u * p2.y + v * p3.y,
+					w * p1.z + u * p2.z + v * p3.z);
+				Assert.assertEquals("Wrong barycentric coordinates.", expected.point, weighted);
+				Assert.assertEquals("Wrong intersection recorded.", expected.point, hit.intersection().point);
+			}
+		}
+	}
 }
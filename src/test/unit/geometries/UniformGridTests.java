@@ -0,0 +1,46 @@
+package unit.geometries;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.GeometryList;
+import geometries.Sphere;
+import geometries.UniformGrid;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the UniformGrid class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class UniformGridTests {
+
+	/**
+	 * Tests that the grid finds exactly the same intersections as the geometries it contains, each only once, and the
+	 * same closest intersection.
+	 */
+	@Test
+	public void testIntersect() {
+		GeometryList geometries = FlatHierarchyTests.scene();
+		geometries.add(new Sphere(null, new Point(15, 15, 0), 6)); // spans many cells
+		UniformGrid grid = new UniformGrid(geometries);
+		Random random = new Random(0);
+		for (LineSegment line : RandomLines.lines(500, 100,
+			i -> new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10, 10),
+			i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -random.nextDouble()))) {
+			RandomLines.assertSameIntersections("Grid", geometries, grid, line);
+			Assert.assertEquals("Grid tested a geometry more than once.", geometries.intersect(line).size(),
+				grid.intersect(line).size());
+		}
+
+		// Empty grid
+		grid = new UniformGrid(new GeometryList());
+		Assert.assertTrue("Empty grid returned intersections.",
+			grid.intersect(new Ray(Point.ORIGIN, NormalizedVector.I)).isEmpty());
+	}
+}
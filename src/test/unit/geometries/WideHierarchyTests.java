@@ -0,0 +1,61 @@
+package unit.geometries;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import geometries.FlatHierarchy;
+import geometries.GeometryList;
+import geometries.Intersection;
+import geometries.Polygon;
+import geometries.WideHierarchy;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+import unit.geometries.util.RandomLines;
+
+/**
+ * Tests the methods of the WideHierarchy class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class WideHierarchyTests {
+
+	/**
+	 * Tests that the wide hierarchy finds exactly the same intersections as the binary hierarchy it was compiled from,
+	 * including for primitives which are neither spheres nor triangles, both with the scalar loops and with the Vector
+	 * API, which is only tested if it is available.
+	 */
+	@Test
+	public void testIntersect() {
+		GeometryList geometries = FlatHierarchyTests.scene();
+		geometries.add(new Polygon(null, new Point(-5, -5, -12), new Point(5, -5, -12), new Point(5, 5, -12),
+			new Point(-5, 5, -12)));
+		geometries.optimize();
+		FlatHierarchy binary = new FlatHierarchy(geometries);
+		for (boolean vector : new boolean[] { false, true }) {
+			WideHierarchy wide = new WideHierarchy(geometries, vector);
+			Assert.assertFalse("Scalar wide hierarchy used the Vector API.", !vector && wide.vectorized());
+			String name = wide.vectorized() ? "Vectorized wide hierarchy" : "Wide hierarchy";
+			Random random = new Random(0);
+			for (LineSegment line : RandomLines.lines(1000, 150,
+				i -> new Point(random.nextDouble() * 40 - 10, random.nextDouble() * 40 - 10, 10),
+				i -> new NormalizedVector(random.nextDouble() - 0.5, random.nextDouble() - 0.5,
+					-random.nextDouble()))) {
+				RandomLines.assertSameIntersections(name, binary, wide, line);
+				Intersection expected = binary.closestIntersection(line);
+				Intersection actual = wide.closestIntersection(line);
+				Assert.assertEquals(name + " found the wrong geometry.",
+					expected == null ? null : expected.geometry, actual == null ? null : actual.geometry);
+			}
+		}
+
+		// Empty hierarchy
+		WideHierarchy wide = new WideHierarchy(new GeometryList());
+		Assert.assertTrue("Empty hierarchy returned intersections.",
+			wide.intersect(new Ray(Point.ORIGIN, NormalizedVector.I)).isEmpty());
+		Assert.assertNull("Empty hierarchy found an intersection.",
+			wide.closestIntersection(new Ray(Point.ORIGIN, NormalizedVector.I)));
+	}
+}
@@ -0,0 +1,88 @@
+package unit.geometries.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import org.junit.Assert;
+import geometries.Intersectible;
+import geometries.Intersection;
+import primitives.LineSegment;
+import primitives.NormalizedVector;
+import primitives.Point;
+import primitives.Ray;
+
+/**
+ * Helper class for tests which trace random lines through geometries, and compare what they find with what other
+ * geometries which should be equivalent find.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class RandomLines {
+
+	private RandomLines() {}
+
+	/**
+	 * Generate a ray and a line segment of the given length from each of a number of random starting points in random
+	 * directions. The start and the direction of each pair are generated in that order.
+	 *
+	 * @param count      The number of starting points.
+	 * @param length     The length of the line segments.
+	 * @param starts     Generates the start of the lines with the given index.
+	 * @param directions Generates the direction of the lines with the given index.
+	 * @return The rays and line segments, in pairs with the same start and direction.
+	 */
+	public static List<LineSegment> lines(int count, double length, IntFunction<Point> starts,
+		IntFunction<NormalizedVector> directions) {
+		List<LineSegment> lines = new ArrayList<>(2 * count);
+		for (int i = 0; i < count; ++i) {
+			Point start = starts.apply(i);
+			NormalizedVector direction = directions.apply(i);
+			lines.add(new Ray(start, direction));
+			lines.add(new LineSegment(start, direction, length));
+		}
+		return lines;
+	}
+
+	/**
+	 * Generate a ray from each of a number of random starting points through a random target, and the line segment
+	 * from the starting point to the target. The start and the target of each pair are generated in that order.
+	 *
+	 * @param count   The number of starting points.
+	 * @param starts  Generates the start of the lines with the given index.
+	 * @param targets Generates the target of the lines with the given index.
+	 * @return The rays and line segments, in pairs with the same start and direction.
+	 */
+	public static List<LineSegment> lines(int count, IntFunction<Point> starts, IntFunction<Point> targets) {
+		List<LineSegment> lines = new ArrayList<>(2 * count);
+		for (int i = 0; i < count; ++i) {
+			Point start = starts.apply(i);
+			Point target = targets.apply(i);
+			lines.add(new Ray(start, start.nonZeroVectorTo(target).normalized()));
+			lines.add(new LineSegment(start, target));
+		}
+		return lines;
+	}
+
+	/**
+	 * Assert that a line finds the same intersection points and the same closest intersection in two intersectibles,
+	 * and that they agree about whether it intersects them.
+	 *
+	 * @param name     The name of the intersectible being tested, with which each failure message starts.
+	 * @param expected The intersectible which finds the right intersections.
+	 * @param actual   The intersectible being tested.
+	 * @param line     The line to intersect them with.
+	 */
+	public static void assertSameIntersections(String name, Intersectible expected, Intersectible actual,
+		LineSegment line) {
+		Assert.assertEquals(name + " found different intersections.",
+			PointExtractor.extractPoints(expected.intersect(line)),
+			PointExtractor.extractPoints(actual.intersect(line)));
+		Intersection expectedClosest = expected.closestIntersection(line);
+		Intersection actualClosest = actual.closestIntersection(line);
+		Assert.assertEquals(name + " found the wrong closest intersection.",
+			expectedClosest == null ? null : expectedClosest.point, actualClosest == null ? null : actualClosest.point);
+		Assert.assertEquals(name + " disagrees about whether there is an intersection.", expectedClosest != null,
+			actual.intersects(line));
+	}
+}
@@ -0,0 +1,113 @@
+package unit.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.BiFunction;
+import org.junit.Assert;
+import org.junit.Test;
+import util.CompleteWeightedGraph;
+
+/**
+ * Tests the methods of the CompleteWeightedGraph class.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+public class CompleteWeightedGraphTests {
+	/** The weight of an edge between two intervals is the length of the smallest interval containing both. */
+	private static final BiFunction<double[], double[], Double> UNION = (a, b) -> Math.max(a[1], b[1])
+		- Math.min(a[0], b[0]);
+
+	/**
+	 * Tests that repeatedly extracting the lightest edge and adding the union of its vertices, as an agglomerative
+	 * clustering does, extracts the same edges as comparing every pair of vertices, both with the default search for
+	 * nearest neighbors and with a given index.
+	 */
+	@Test
+	public void testExtract() {
+		Random random = new Random(0);
+		List<double[]> intervals = new ArrayList<>();
+		for (int i = 0; i < 300; ++i) {
+			double start = random.nextDouble() * 100;
+			intervals.add(new double[] { start, start + random.nextDouble() * 3 });
+		}
+		List<double[]> expected = clusterByEveryPair(intervals);
+
+		List<double[]> index = new ArrayList<>();
+		CompleteWeightedGraph.NearestNeighbors<double[]> neighbors = new CompleteWeightedGraph.NearestNeighbors<>() {
+			@Override
+			public void add(double[] vertex) {
+				index.add(vertex);
+			}
+
+			@Override
+			public void remove(double[] vertex) {
+				Assert.assertTrue("Removed a vertex which is not in the index.", index.remove(vertex));
+			}
+
+			@Override
+			public double[] nearest(double[] vertex) {
+				double[] nearest = null;
+				for (double[] other : index) {
+					if (other != vertex
+						&& (nearest == null || UNION.apply(vertex, other) < UNION.apply(vertex, nearest))) {
+						nearest = other;
+					}
+				}
+				return nearest;
+			}
+		};
+		for (CompleteWeightedGraph<double[], Double> graph : List.of(new CompleteWeightedGraph<>(intervals, UNION),
+			new CompleteWeightedGraph<>(intervals, UNION, neighbors))) {
+			List<double[]> actual = new ArrayList<>();
+			while (graph.size() > 1) {
+				CompleteWeightedGraph<double[], Double>.Edge edge = graph.extract();
+				double[] union = { Math.min(edge.vertex1[0], edge.vertex2[0]),
+					Math.max(edge.vertex1[1], edge.vertex2[1]) };
+				Assert.assertEquals("The weight of the edge is wrong.", UNION.apply(edge.vertex1, edge.vertex2),
+					edge.weight);
+				actual.add(union);
+				graph.add(union);
+			}
+			Assert.assertEquals("Extracted the wrong number of edges.", expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); ++i) {
+				Assert.assertArrayEquals("Extracted an edge which is not the lightest.", expected.get(i), actual.get(i),
+					0);
+			}
+			Assert.assertThrows("Extracted an edge from a graph with a single vertex.", NoSuchElementException.class,
+				graph::extract);
+		}
+		Assert.assertEquals("Extracted vertices were not removed from the index.", 1, index.size());
+	}
+
+	/**
+	 * Clusters the intervals by repeatedly merging the pair whose union is the shortest, comparing every pair.
+	 *
+	 * @return The union formed by each merge, in order.
+	 */
+	private static List<double[]> clusterByEveryPair(List<double[]> intervals) {
+		List<double[]> clusters = new ArrayList<>(intervals);
+		List<double[]> unions = new ArrayList<>();
+		while (clusters.size() > 1) {
+			int first = 0, second = 1;
+			for (int i = 0; i < clusters.size(); ++i) {
+				for (int j = i + 1; j < clusters.size(); ++j) {
+					if (UNION.apply(clusters.get(i), clusters.get(j)) < UNION.apply(clusters.get(first),
+						clusters.get(second))) {
+						first = i;
+						second = j;
+					}
+				}
+			}
+			double[] a = clusters.get(first), b = clusters.get(second);
+			double[] union = { Math.min(a[0], b[0]), Math.max(a[1], b[1]) };
+			clusters.remove(second);
+			clusters.remove(first);
+			clusters.add(union);
+			unions.add(union);
+		}
+		return unions;
+	}
+}
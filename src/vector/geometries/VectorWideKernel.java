@@ -0,0 +1,102 @@
+package geometries;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import primitives.LineSegment;
+
+/**
+ * The calculations of a {@link WideHierarchy} written with the incubating Vector API. The boxes of the children of a
+ * node are tested in one vector with a lane for each child, and the spheres and triangles of a leaf are filtered in
+ * vectors of the widest shape the processor supports. Each calculation is done in the same order as the scalar one, so
+ * the entry distances are identical, and no sphere or triangle which the scalar test accepts is filtered out.
+ *
+ * This class is only compiled by the {@code vector} profile of the build, and only loads if the
+ * {@code jdk.incubator.vector} module is added when running.
+ *
+ * @author Abraham Murciano
+ * @author Eli Levin
+ */
+class VectorWideKernel implements WideKernel {
+	/** The species with a lane for each child of a node. */
+	private static final VectorSpecies<Double> NODE =
+		VectorSpecies.of(double.class, VectorShape.forBitSize(Double.SIZE * WideHierarchy.WIDTH));
+	/** The widest species the processor supports, for the primitives of leaves. */
+	private static final VectorSpecies<Double> LEAF = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public void entryDistances(double[] bounds, int offset, LineSegment line, double[] entries) {
+		int width = WideHierarchy.WIDTH;
+		double startX = line.start.x, startY = line.start.y, startZ = line.start.z;
+		double inverseX = line.inverse.x, inverseY = line.inverse.y, inverseZ = line.inverse.z;
+		DoubleVector tx1 = DoubleVector.fromArray(NODE, bounds, offset).sub(startX).mul(inverseX);
+		DoubleVector tx2 = DoubleVector.fromArray(NODE, bounds, offset + 3 * width).sub(startX).mul(inverseX);
+		DoubleVector ty1 = DoubleVector.fromArray(NODE, bounds, offset + width).sub(startY).mul(inverseY);
+		DoubleVector ty2 = DoubleVector.fromArray(NODE, bounds, offset + 4 * width).sub(startY).mul(inverseY);
+		DoubleVector tz1 = DoubleVector.fromArray(NODE, bounds, offset + 2 * width).sub(startZ).mul(inverseZ);
+		DoubleVector tz2 = DoubleVector.fromArray(NODE, bounds, offset + 5 * width).sub(startZ).mul(inverseZ);
+		DoubleVector tmin = tx1.min(tx2).max(ty1.min(ty2).max(tz1.min(tz2)));
+		DoubleVector tmax = tx1.max(tx2).min(ty1.max(ty2).min(tz1.max(tz2)));
+		VectorMask<Double> enters = tmax.compare(VectorOperators.GT, 0)
+			.and(tmax.compare(VectorOperators.GE, tmin))
+			.and(tmin.compare(VectorOperators.LT, 0).or(tmin.mul(tmin).compare(VectorOperators.LT, line.squareLength)));
+		DoubleVector.broadcast(NODE, Double.POSITIVE_INFINITY).blend(tmin.max(0), enters).intoArray(entries, 0);
+	}
+
+	@Override
+	public long spheres(double[][] spheres, int from, int count, LineSegment line) {
+		double dx = line.direction.x, dy = line.direction.y, dz = line.direction.z;
+		long candidates = 0;
+		for (int i = 0; i < count; i += LEAF.length()) {
+			VectorMask<Double> range = LEAF.indexInRange(i, count);
+			DoubleVector toCenterX = DoubleVector.fromArray(LEAF, spheres[0], from + i, range).sub(line.start.x);
+			DoubleVector toCenterY = DoubleVector.fromArray(LEAF, spheres[1], from + i, range).sub(line.start.y);
+			DoubleVector toCenterZ = DoubleVector.fromArray(LEAF, spheres[2], from + i, range).sub(line.start.z);
+			DoubleVector radiusSquared = DoubleVector.fromArray(LEAF, spheres[3], from + i, range);
+			DoubleVector scalarsMid = toCenterX.mul(dx).add(toCenterY.mul(dy)).add(toCenterZ.mul(dz));
+			DoubleVector perpendicularDistanceSquared = toCenterX.mul(toCenterX).add(toCenterY.mul(toCenterY))
+				.add(toCenterZ.mul(toCenterZ)).sub(scalarsMid.mul(scalarsMid));
+			VectorMask<Double> inside = perpendicularDistanceSquared.compare(VectorOperators.LT, radiusSquared);
+			candidates |= inside.and(range).toLong() << i;
+		}
+		return candidates;
+	}
+
+	@Override
+	public long triangles(double[][] t, int from, int count, LineSegment line) {
+		double dx = line.direction.x, dy = line.direction.y, dz = line.direction.z;
+		DoubleVector startX = DoubleVector.broadcast(LEAF, line.start.x);
+		DoubleVector startY = DoubleVector.broadcast(LEAF, line.start.y);
+		DoubleVector startZ = DoubleVector.broadcast(LEAF, line.start.z);
+		DoubleVector one = DoubleVector.broadcast(LEAF, 1);
+		long candidates = 0;
+		for (int i = 0; i < count; i += LEAF.length()) {
+			VectorMask<Double> range = LEAF.indexInRange(i, count);
+			int offset = from + i;
+			DoubleVector e1x = DoubleVector.fromArray(LEAF, t[3], offset, range);
+			DoubleVector e1y = DoubleVector.fromArray(LEAF, t[4], offset, range);
+			DoubleVector e1z = DoubleVector.fromArray(LEAF, t[5], offset, range);
+			DoubleVector e2x = DoubleVector.fromArray(LEAF, t[6], offset, range);
+			DoubleVector e2y = DoubleVector.fromArray(LEAF, t[7], offset, range);
+			DoubleVector e2z = DoubleVector.fromArray(LEAF, t[8], offset, range);
+			DoubleVector px = e2z.mul(dy).sub(e2y.mul(dz));
+			DoubleVector py = e2x.mul(dz).sub(e2z.mul(dx));
+			DoubleVector pz = e2y.mul(dx).sub(e2x.mul(dy));
+			DoubleVector inverse = one.div(e1x.mul(px).add(e1y.mul(py)).add(e1z.mul(pz)));
+			DoubleVector sx = startX.sub(DoubleVector.fromArray(LEAF, t[0], offset, range));
+			DoubleVector sy = startY.sub(DoubleVector.fromArray(LEAF, t[1], offset, range));
+			DoubleVector sz = startZ.sub(DoubleVector.fromArray(LEAF, t[2], offset, range));
+			DoubleVector u = sx.mul(px).add(sy.mul(py)).add(sz.mul(pz)).mul(inverse);
+			DoubleVector qx = sy.mul(e1z).sub(sz.mul(e1y));
+			DoubleVector qy = sz.mul(e1x).sub(sx.mul(e1z));
+			DoubleVector qz = sx.mul(e1y).sub(sy.mul(e1x));
+			DoubleVector v = qx.mul(dx).add(qy.mul(dy)).add(qz.mul(dz)).mul(inverse);
+			VectorMask<Double> inside = u.compare(VectorOperators.GE, 0).and(u.compare(VectorOperators.LE, 1))
+				.and(v.compare(VectorOperators.GE, 0)).and(u.add(v).compare(VectorOperators.LE, 1));
+			candidates |= inside.and(range).toLong() << i;
+		}
+		return candidates;
+	}
+}